@@ -0,0 +1,65 @@
+package application;
+
+/**
+ * The ActivityEntry class is one question or reply written by a user, with the title of the post it
+ * belongs to, as listed by {@link QuestionHandler#listPostsByAuthor} and {@link AnswerHandler#listRepliesByAuthor}.
+ */
+public class ActivityEntry {
+    private final int id;
+    private final int postId;
+    private final String postTitle;
+    private final String content;
+    private final boolean isPrivate;
+
+    /**
+     * Constructs an ActivityEntry with the given details.
+     *
+     * @param id        the post ID of a question, or the reply ID of a reply
+     * @param postId    the ID of the post the entry belongs to
+     * @param postTitle the title of that post, or null if the post no longer exists
+     * @param content   the text of the question or reply
+     * @param isPrivate whether the entry is private; questions are always public
+     */
+    public ActivityEntry(int id, int postId, String postTitle, String content, boolean isPrivate) {
+        this.id = id;
+        this.postId = postId;
+        this.postTitle = postTitle;
+        this.content = content;
+        this.isPrivate = isPrivate;
+    }
+
+    /**
+     * Returns the post ID of a question, or the reply ID of a reply.
+     *
+     * @return the entry's id
+     */
+    public int getId() { return id; }
+
+    /**
+     * Returns the ID of the post the entry belongs to.
+     *
+     * @return the post id
+     */
+    public int getPostId() { return postId; }
+
+    /**
+     * Returns the title of the post the entry belongs to.
+     *
+     * @return the title, or null if the post no longer exists
+     */
+    public String getPostTitle() { return postTitle; }
+
+    /**
+     * Returns the text of the question or reply.
+     *
+     * @return the content
+     */
+    public String getContent() { return content; }
+
+    /**
+     * Returns whether the entry is private.
+     *
+     * @return true for a private reply
+     */
+    public boolean isPrivate() { return isPrivate; }
+}
@@ -0,0 +1,82 @@
+package application;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ActivityPage class is one page of a user's questions or replies, newest first, with the cursor
+ * that continues the listing after them.
+ */
+public class ActivityPage {
+    /** The largest page the per-author listings return, whatever limit is asked for. */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final List<ActivityEntry> entries;
+    private final String nextCursor;
+
+    /**
+     * Constructs an ActivityPage.
+     *
+     * @param entries    the entries on the page, newest first
+     * @param nextCursor the cursor for the following page, or null if this is the last page
+     */
+    public ActivityPage(List<ActivityEntry> entries, String nextCursor) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the entries on the page.
+     *
+     * @return an unmodifiable list of entries
+     */
+    public List<ActivityEntry> getEntries() { return entries; }
+
+    /**
+     * Returns the cursor to pass back to get the following page.
+     *
+     * @return the next cursor, or null if there are no more entries
+     */
+    public String getNextCursor() { return nextCursor; }
+
+    /**
+     * Returns whether another page follows this one.
+     *
+     * @return true if {@link #getNextCursor()} is not null
+     */
+    public boolean hasMore() { return nextCursor != null; }
+
+    /**
+     * Reads the id a cursor continues after.
+     *
+     * @param cursor the cursor, or null for the first page
+     * @return the id, or {@link Integer#MAX_VALUE} for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    static int cursorId(String cursor) {
+        if (cursor == null) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            return Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed activity cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Builds a page from the rows read with one more than the page size, so the extra row
+     * tells whether another page follows.
+     *
+     * @param entries  the rows read, newest first
+     * @param pageSize the page size
+     * @return the page
+     */
+    static ActivityPage of(List<ActivityEntry> entries, int pageSize) {
+        if (entries.size() <= pageSize) {
+            return new ActivityPage(entries, null);
+        }
+        entries.remove(pageSize);
+        return new ActivityPage(entries, Integer.toString(entries.get(pageSize - 1).getId()));
+    }
+}
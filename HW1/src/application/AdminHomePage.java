@@ -45,11 +45,6 @@ public class AdminHomePage {
         this.userId = userId;
         this.userName = userName;
         dbHelper = new DatabaseHelper();
-        try {
-            dbHelper.connectToDatabase();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
         this.qHandler = qHandler;
         this.aHandler = aHandler;
         this.uHandler = uHandler;
@@ -154,6 +149,8 @@ public class AdminHomePage {
 
         try {
             dbHelper.displayNotifications(notificationsArea, userId);
+            // Once displayed, they no longer count towards the badge on the home page
+            dbHelper.markNotificationsRead(userId);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -19,14 +19,12 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import databasePart1.DatabaseHelper;
+import databasePart1.ForumEvents;
 
 /**
  * The Answer class handles the display and interaction of replies (answers)
@@ -52,73 +50,8 @@ public class Answer {
     /** The current sorting order for displaying answers */
     private String currentSortOrder = "None";
 
-    /**
-     * Inner class representing a reply to a post or another reply.
-     * Contains all information required to display and interact with a reply.
-     */
-    private static class Reply {
-        /** The unique identifier for this reply */
-        private int replyId;
-        
-        /** The text content of the reply */
-        private String content;
-        
-        /** The username of the reply author */
-        private String userName;
-        
-        /** The number of likes this reply has received */
-        private int likes;
-        
-        /** The number of replies to this reply */
-        private int numReplies;
-
-        /**
-         * Constructs a new Reply object with the specified parameters.
-         *
-         * @param replyId The unique identifier for this reply
-         * @param content The text content of the reply
-         * @param userName The username of the reply author
-         * @param likes The number of likes this reply has received
-         * @param numReplies The number of replies to this reply
-         */
-        public Reply(int replyId, String content, String userName, int likes, int numReplies) {
-            this.replyId = replyId;
-            this.content = content;
-            this.userName = userName;
-            this.likes = likes;
-            this.numReplies = numReplies;
-        }
-
-        /**
-         * Gets the unique identifier for this reply.
-         * @return The reply ID
-         */
-        public int getReplyId() { return replyId; }
-        
-        /**
-         * Gets the text content of the reply.
-         * @return The reply content
-         */
-        public String getContent() { return content; }
-        
-        /**
-         * Gets the username of the reply author.
-         * @return The username
-         */
-        public String getUserName() { return userName; }
-        
-        /**
-         * Gets the number of likes this reply has received.
-         * @return The like count
-         */
-        public int getLikes() { return likes; }
-        
-        /**
-         * Gets the number of replies to this reply.
-         * @return The count of nested replies
-         */
-        public int getNumReplies() { return numReplies; }
-    }
+    /** Background loads for the answers page currently shown; replaced each time it is shown */
+    private AsyncDataService.Scope loads = AsyncDataService.getShared().newScope();
 
     /**
      * Constructs a new Answer object with the specified handlers and post ID.
@@ -166,9 +99,17 @@ public class Answer {
             if (!errors.isEmpty()) {
                 showAlert("Validation Error", String.join("\n\n", errors), Alert.AlertType.ERROR);
             } else {
-                answerHandler.addAnswer(answer, postId, userName, false);
-                showAlert("Success", "Answer submitted!", Alert.AlertType.INFORMATION);
-                answerStage.close();
+                submitButton.setDisable(true);
+                loads.load(() -> {
+                    answerHandler.addAnswer(answer, postId, userName, false);
+                    return answer;
+                }, added -> {
+                    showAlert("Success", "Answer submitted!", Alert.AlertType.INFORMATION);
+                    answerStage.close();
+                }, error -> {
+                    submitButton.setDisable(false);
+                    loadFailed("Failed to submit answer", error);
+                });
             }
         });
 
@@ -198,6 +139,10 @@ public class Answer {
      */
     public void show(Stage primaryStage, String currentUser, QuestionHandler questionHandler,
                      AnswerHandler answerHandler, UserHandler userHandler, String userName, DatabaseHelper databaseHelper) {
+        // Results still loading for the page this one replaces are no longer wanted.
+        loads.cancel();
+        loads = AsyncDataService.getShared().newScope();
+
         BorderPane rootLayout = new BorderPane();
         rootLayout.setPadding(new Insets(10));
 
@@ -239,12 +184,13 @@ public class Answer {
         primaryStage.setScene(scene);
         primaryStage.setTitle("Display Answers");
         primaryStage.show();
+        loads.cancelWhenLeft(primaryStage, scene);
     }
 
     /**
      * Creates the layout containing all answers to the current post.
-     * Retrieves answers from the database, applies sorting if specified,
-     * and creates visual components for each answer and its nested replies.
+     * The layout shows a loading message while the answers are retrieved in the background;
+     * they are then sorted if specified and shown with their nested replies.
      *
      * @param currentUser The username of the current user
      * @param primaryStage The primary stage of the application
@@ -261,63 +207,75 @@ public class Answer {
         answersLayout.setPadding(new Insets(20));
         answersLayout.setStyle("-fx-background-color: #F5F5F5;");
 
-        try {
-            ResultSet rs = answerHandler.getRepliesByPostId(postId, currentUser);
-            List<Reply> replies = new ArrayList<>();
-
-            while (rs.next()) {
-                int replyId = rs.getInt("replyId");
-                String replyContent = rs.getString("reply");
-                String replyUserName = rs.getString("userName");
-                int likes = rs.getInt("likes");
-                int numReplies = rs.getInt("numReplies");
-                replies.add(new Reply(replyId, replyContent, replyUserName, likes, numReplies));
-            }
+        Label loadingLabel = new Label("Loading answers...");
+        answersLayout.getChildren().add(loadingLabel);
+
+        // Spans the background read and the layout, so a slow thread shows up as one event.
+        ForumEvents.ThreadLoad event = new ForumEvents.ThreadLoad();
+        event.postId = postId;
+        event.sort = currentSortOrder;
+        event.begin();
+
+        // Changing the sort order while answers are loading replaces the earlier load.
+        loads.load("thread", () -> event.measure(() -> answerHandler.loadThread(postId, currentUser)), thread -> {
+            answersLayout.getChildren().clear();
+            List<ReplyThread.Node> replies = new ArrayList<>(thread.getReplies());
 
             if ("Most Likes".equals(currentSortOrder)) {
                 replies.sort((a, b) -> Integer.compare(b.getLikes(), a.getLikes()));
             }
 
-            for (Reply reply : replies) {
-                BorderPane answerPane = createAnswerPane(reply, currentUser, primaryStage, questionHandler,
+            for (ReplyThread.Node reply : replies) {
+                addAnswerPanes(answersLayout, reply, 0, currentUser, primaryStage, questionHandler,
                         answerHandler, userHandler, userName, databaseHelper);
-                answersLayout.getChildren().add(answerPane);
-
-                if (reply.getNumReplies() > 0) {
-                    ResultSet nestedReplies = answerHandler.getNestedReplies(reply.getReplyId(), currentUser);
-                    while (nestedReplies.next()) {
-                        int nestedReplyId = nestedReplies.getInt("replyId");
-                        String nestedReplyContent = nestedReplies.getString("reply");
-                        String nestedReplyUserName = nestedReplies.getString("userName");
-                        int nestedLikes = nestedReplies.getInt("likes");
-                        int nestedNumReplies = nestedReplies.getInt("numReplies");
-
-                        BorderPane nestedReplyPane = createAnswerPane(
-                                new Reply(nestedReplyId, nestedReplyContent, nestedReplyUserName, nestedLikes, nestedNumReplies),
-                                currentUser, primaryStage, questionHandler, answerHandler, userHandler, userName, databaseHelper
-                        );
-                        nestedReplyPane.setPadding(new Insets(10, 30, 10, 30));
-                        answersLayout.getChildren().add(nestedReplyPane);
-                    }
-                }
-
             }
-
-        } catch (SQLException e) {
-            showAlert("Database Error", "Failed to load answers", Alert.AlertType.ERROR);
-            e.printStackTrace();
-        }
+            event.rows = thread.size();
+            event.finish();
+        }, error -> {
+            event.finish();
+            loadingLabel.setText("Answers could not be loaded");
+            loadFailed("Failed to load answers", error);
+        });
 
         return answersLayout;
     }
 
+    /**
+     * Adds the pane for a reply followed by the panes for its replies, each level indented further.
+     *
+     * @param answersLayout The layout the panes are added to
+     * @param reply The reply to add
+     * @param depth How deeply the reply is nested, 0 for an answer to the post
+     * @param currentUser The username of the current user
+     * @param primaryStage The primary stage of the application
+     * @param questionHandler The handler for question-related operations
+     * @param answerHandler The handler for answer-related operations
+     * @param userHandler The handler for user-related operations
+     * @param userName The username of the current user (possibly redundant with currentUser)
+     * @param databaseHelper The database helper for database operations
+     */
+    private void addAnswerPanes(VBox answersLayout, ReplyThread.Node reply, int depth, String currentUser,
+                                Stage primaryStage, QuestionHandler questionHandler, AnswerHandler answerHandler,
+                                UserHandler userHandler, String userName, DatabaseHelper databaseHelper) {
+        BorderPane answerPane = createAnswerPane(reply, currentUser, primaryStage, questionHandler,
+                answerHandler, userHandler, userName, databaseHelper);
+        if (depth > 0) {
+            answerPane.setPadding(new Insets(10, 30, 10, 30 * depth));
+        }
+        answersLayout.getChildren().add(answerPane);
+        for (ReplyThread.Node child : reply.getChildren()) {
+            addAnswerPanes(answersLayout, child, depth + 1, currentUser, primaryStage, questionHandler,
+                    answerHandler, userHandler, userName, databaseHelper);
+        }
+    }
+
     /**
      * Creates a visual component for a single answer or reply.
      * The component includes the answer content, author information,
      * and buttons for actions like edit, delete, like, reply, and viewing reviews.
      * Available actions depend on whether the current user is the author of the answer.
      *
-     * @param reply The Reply object containing answer data
+     * @param reply The reply to display, including the current user's like state and its review count
      * @param currentUser The username of the current user
      * @param primaryStage The primary stage of the application
      * @param questionHandler The handler for question-related operations
@@ -327,7 +285,7 @@ public class Answer {
      * @param databaseHelper The database helper for database operations
      * @return A BorderPane containing the answer component
      */
-    private BorderPane createAnswerPane(Reply reply, String currentUser, Stage primaryStage, 
+    private BorderPane createAnswerPane(ReplyThread.Node reply, String currentUser, Stage primaryStage, 
                                         QuestionHandler questionHandler, AnswerHandler answerHandler, 
                                         UserHandler userHandler, String userName, DatabaseHelper databaseHelper) {
         BorderPane answerPane = new BorderPane();
@@ -350,7 +308,7 @@ public class Answer {
         buttonBox.setAlignment(Pos.CENTER_RIGHT);
 
         // Updated Reviews button for answers.
-        Button reviewsButton = new Button("Reviews");
+        Button reviewsButton = new Button("Reviews (" + reply.getReviewCount() + ")");
         reviewsButton.setOnAction(e -> {
             // Instantiate the Review window for an answer using replyId and set isForPost to false.
             application.Review reviewWindow = new application.Review(reviewHandler, reply.getReplyId(), false);
@@ -366,46 +324,40 @@ public class Answer {
 
             Button deleteButton = new Button("Delete");
             deleteButton.setStyle("-fx-background-color: #f44336; -fx-text-fill: white;");
-            deleteButton.setOnAction(e -> {
+            deleteButton.setOnAction(e -> loads.load(() -> {
                 answerHandler.deleteReplyById(reply.getReplyId());
-                show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper);
-            });
+                return reply.getReplyId();
+            }, deleted -> show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper),
+               error -> loadFailed("Failed to delete answer", error)));
             Button replyButton = new Button("Reply");
             replyButton.setOnAction(e -> {
                 TextInputDialog dialog = new TextInputDialog();
                 dialog.setTitle("Reply to Answer");
                 dialog.setHeaderText("Reply to: " + reply.getContent());
                 dialog.setContentText("Enter your reply:");
-                dialog.showAndWait().ifPresent(replyText -> {
-                    boolean success = answerHandler.addReplyToReply(reply.getReplyId(), replyText, currentUser, false);
-                    if (success) {
-                        showAlert("Success", "Reply submitted!", Alert.AlertType.INFORMATION);
-                        show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper);
-                    } else {
-                        showAlert("Error", "Failed to submit reply", Alert.AlertType.ERROR);
-                    }
-                });
+                dialog.showAndWait().ifPresent(replyText -> loads.load(
+                        () -> answerHandler.addReplyToReply(reply.getReplyId(), replyText, currentUser, false),
+                        success -> {
+                            if (success) {
+                                showAlert("Success", "Reply submitted!", Alert.AlertType.INFORMATION);
+                                show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper);
+                            } else {
+                                showAlert("Error", "Failed to submit reply", Alert.AlertType.ERROR);
+                            }
+                        }, error -> loadFailed("Failed to submit reply", error)));
             });
 
             buttonBox.getChildren().addAll(editButton, deleteButton, replyButton);
         } else {
-            String likeList = answerHandler.getLikeList(reply.getReplyId());
-            List<String> likes = new ArrayList<>();
-            if (likeList != null && !likeList.trim().isEmpty()) {
-                likes = Arrays.asList(likeList.split("\n"));
-            }
-            boolean isLiked = likes.contains(currentUser);
-
-            Button likeButton = new Button((isLiked ? "Unlike " : "Like ") + reply.getLikes());
+            Button likeButton = new Button((reply.isLikedByViewer() ? "Unlike " : "Like ") + reply.getLikes());
             likeButton.setOnAction(e -> {
-                if (isLiked) {
-                    answerHandler.decrementLikes(reply.getReplyId());
-                    answerHandler.removeUserFromLikeList(currentUser, reply.getReplyId());
-                } else {
-                    answerHandler.incrementLikes(reply.getReplyId());
-                    answerHandler.addUsertoLikeList(currentUser, reply.getReplyId());
-                }
-                show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper);
+                likeButton.setDisable(true);
+                loads.load(() -> answerHandler.toggleLike(reply.getReplyId(), currentUser),
+                        liked -> show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper),
+                        error -> {
+                            loadFailed("Failed to update like", error);
+                            show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper);
+                        });
             });
 
             Button replyButton = new Button("Reply");
@@ -414,15 +366,16 @@ public class Answer {
                 dialog.setTitle("Reply to Answer");
                 dialog.setHeaderText("Reply to: " + reply.getContent());
                 dialog.setContentText("Enter your reply:");
-                dialog.showAndWait().ifPresent(replyText -> {
-                    boolean success = answerHandler.addReplyToReply(reply.getReplyId(), replyText, currentUser, false);
-                    if (success) {
-                        showAlert("Success", "Reply submitted!", Alert.AlertType.INFORMATION);
-                        show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper);
-                    } else {
-                        showAlert("Error", "Failed to submit reply", Alert.AlertType.ERROR);
-                    }
-                });
+                dialog.showAndWait().ifPresent(replyText -> loads.load(
+                        () -> answerHandler.addReplyToReply(reply.getReplyId(), replyText, currentUser, false),
+                        success -> {
+                            if (success) {
+                                showAlert("Success", "Reply submitted!", Alert.AlertType.INFORMATION);
+                                show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper);
+                            } else {
+                                showAlert("Error", "Failed to submit reply", Alert.AlertType.ERROR);
+                            }
+                        }, error -> loadFailed("Failed to submit reply", error)));
             });
 
             buttonBox.getChildren().addAll(likeButton, replyButton);
@@ -451,8 +404,7 @@ public class Answer {
     private void showEditAnswerScreen(int replyId, Stage primaryStage, String currentUser, 
                                       QuestionHandler questionHandler, AnswerHandler answerHandler, 
                                       UserHandler userHandler, String userName, DatabaseHelper databaseHelper) {
-        try {
-            String currentContent = answerHandler.getReplyContentById(replyId);
+        loads.load(() -> answerHandler.getReplyContentById(replyId), currentContent -> {
             Stage editStage = new Stage();
 
             VBox layout = new VBox(10);
@@ -466,12 +418,14 @@ public class Answer {
             saveBtn.setOnAction(e -> {
                 String newContent = editArea.getText().trim();
                 if (!newContent.isEmpty()) {
-                    if (answerHandler.updateReply(replyId, newContent)) {
-                        show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper);
-                        editStage.close();
-                    } else {
-                        showAlert("Error", "Failed to update answer", Alert.AlertType.ERROR);
-                    }
+                    loads.load(() -> answerHandler.updateReply(replyId, newContent), updated -> {
+                        if (updated) {
+                            show(primaryStage, currentUser, questionHandler, answerHandler, userHandler, userName, databaseHelper);
+                            editStage.close();
+                        } else {
+                            showAlert("Error", "Failed to update answer", Alert.AlertType.ERROR);
+                        }
+                    }, error -> loadFailed("Failed to update answer", error));
                 }
             });
 
@@ -479,10 +433,18 @@ public class Answer {
             editStage.setScene(new Scene(layout, 400, 300));
             editStage.initOwner(primaryStage);
             editStage.show();
-        } catch (SQLException ex) {
-            showAlert("Error", "Could not load answer content", Alert.AlertType.ERROR);
-            ex.printStackTrace();
-        }
+        }, error -> loadFailed("Could not load answer content", error));
+    }
+
+    /**
+     * Reports a background database call that failed.
+     *
+     * @param message What could not be done
+     * @param error The cause
+     */
+    private void loadFailed(String message, Throwable error) {
+        showAlert("Database Error", message, Alert.AlertType.ERROR);
+        error.printStackTrace();
     }
 
     /**
@@ -2,27 +2,74 @@ package application;
 
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
+
+import databasePart1.ConnectionPool;
+import databasePart1.OperationMetrics;
+import databasePart1.SchemaMigrator;
+import databasePart1.WriteBehindCounters;
 
 /**
  * The {@code AnswerHandler} class manages database interactions related to replies/answers.
  * It performs tasks such as validating answers, inserting new replies, updating and deleting replies,
- * handling likes, and retrieving nested replies.
+ * handling likes, and retrieving nested replies. Likes are stored one row per user and reply
+ * in the ReplyLikes table. The {@code Replies.likes} and {@code Replies.numReplies} counters are
+ * changed through {@link WriteBehindCounters}, so a popular reply does not serialize its likers on
+ * one row lock; reads add the changes that have not been written yet. Both counters are derived from
+ * rows, the ReplyLikes and the nested Replies, and are recounted from them at startup after a crash.
  */
 public class AnswerHandler {
-    private Connection connection; // Database connection used for executing SQL queries.
+    // Call counts and latencies of the public methods, published over JMX.
+    private static final OperationMetrics METRICS = OperationMetrics.forComponent("AnswerHandler");
+
+    private final ConnectionPool pool; // Pool the handler borrows a connection from for each operation.
     private QuestionHandler qHandler; // Reference to a QuestionHandler for inter-related operations.
 
-    // Predefined patterns to detect potential SQL injection attempts.
-    private static final String[] SQL_INJECTION_PATTERNS = {
-        "(?i)\\b(union|select|insert|update|delete|drop|alter|create|execute|shutdown)\\b",
-        "--", 
-        ";", 
-        "/\\*", 
-        "\\*/"
-    };
+    // Buffered counter columns of the Replies table.
+    private static final WriteBehindCounters.Counter LIKES =
+            new WriteBehindCounters.Counter("Replies", "replyId", "likes")
+                    .countedBy("SELECT COUNT(*) FROM ReplyLikes L WHERE L.replyId = Replies.replyId");
+    private static final WriteBehindCounters.Counter NESTED_REPLIES =
+            new WriteBehindCounters.Counter("Replies", "replyId", "numReplies")
+                    .countedBy("SELECT COUNT(*) FROM Replies C WHERE C.parentReplyId = Replies.replyId");
+    private final WriteBehindCounters counters;
+
+    // Versioned schema for the Replies table.
+    private static final SchemaMigrator MIGRATIONS = new SchemaMigrator("answers")
+            .step(1, "Create Replies table",
+                    "CREATE TABLE IF NOT EXISTS Replies ("
+                    + "replyId INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "reply VARCHAR(10000), "
+                    + "userName VARCHAR(255), "
+                    + "likes INT DEFAULT 0, "
+                    + "isPrivate BOOLEAN DEFAULT FALSE, "
+                    + "parentReplyId INT DEFAULT NULL, "
+                    + "likeList VARCHAR(10000), "
+                    + "numReplies INT DEFAULT 0, "
+                    + "postId INT)")
+            .step(2, "Index replies by post and parent reply",
+                    // Top-level replies are looked up by postId with parentReplyId IS NULL.
+                    "CREATE INDEX IF NOT EXISTS idx_replies_post ON Replies (postId, parentReplyId)",
+                    "CREATE INDEX IF NOT EXISTS idx_replies_parent ON Replies (parentReplyId)")
+            .step(3, "Create ReplyLikes table",
+                    "CREATE TABLE IF NOT EXISTS ReplyLikes ("
+                    + "replyId INT NOT NULL, "
+                    + "userName VARCHAR(255) NOT NULL, "
+                    + "likedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                    + "PRIMARY KEY (replyId, userName), "
+                    + "FOREIGN KEY (replyId) REFERENCES Replies(replyId) ON DELETE CASCADE)",
+                    // Serves the "which of these replies did I like" lookup for a whole thread.
+                    "CREATE INDEX IF NOT EXISTS idx_reply_likes_user ON ReplyLikes (userName, replyId)")
+            .step(4, "Move likeList columns into ReplyLikes", AnswerHandler::migrateLikeLists)
+            .step(5, "Index replies by author",
+                    // Serves the per-student activity listing, newest first.
+                    "CREATE INDEX IF NOT EXISTS idx_replies_author ON Replies (userName, replyId DESC)");
 
     /**
      * Constructs an {@code AnswerHandler} with the given database connection and question handler.
@@ -32,29 +79,77 @@ public class AnswerHandler {
      * @throws SQLException If an SQL error occurs during table creation.
      */
     public AnswerHandler(Connection connection, QuestionHandler qHandler) throws SQLException {
-        this.connection = connection;
+        this(ConnectionPool.wrap(connection), qHandler);
+    }
+
+    /**
+     * Constructs an {@code AnswerHandler} that borrows connections from the given pool.
+     *
+     * @param pool     The connection pool.
+     * @param qHandler A reference to the QuestionHandler.
+     * @throws SQLException If an SQL error occurs during table creation.
+     */
+    public AnswerHandler(ConnectionPool pool, QuestionHandler qHandler) throws SQLException {
+        this.pool = pool;
         this.qHandler = qHandler;
         createTables();
+        this.counters = WriteBehindCounters.forPool(pool);
+        counters.reconcile(LIKES);
+        counters.reconcile(NESTED_REPLIES);
+        if (qHandler != null) {
+            qHandler.reconcileReplyCounts();
+        }
+    }
+
+    /**
+     * Writes the buffered like and nested reply counts to the Replies table.
+     */
+    public void flushCounters() {
+        METRICS.run("flushCounters", () -> {
+            try {
+                counters.flush();
+            } catch (SQLException e) {
+                System.err.println("Error writing reply counters: " + e.getMessage());
+            }
+        });
     }
 
     /**
-     * Creates the Replies table if it does not exist.
+     * Brings the Replies table up to the current schema version. Nothing is executed
+     * when the database is already current.
      *
      * @throws SQLException If an SQL error occurs.
      */
     private void createTables() throws SQLException {
-        String repliesTable = "CREATE TABLE IF NOT EXISTS Replies ("
-                + "replyId INT AUTO_INCREMENT PRIMARY KEY, "
-                + "reply VARCHAR(10000), "
-                + "userName VARCHAR(255), "
-                + "likes INT DEFAULT 0, "
-                + "isPrivate BOOLEAN DEFAULT FALSE, " 
-                + "parentReplyId INT DEFAULT NULL, "
-                + "likeList VARCHAR(10000), "
-                + "numReplies INT DEFAULT 0, "
-                + "postId INT)";
+        try (Connection connection = pool.getConnection()) {
+            MIGRATIONS.migrate(connection);
+        }
+    }
+
+    /**
+     * Converts the newline separated {@code likeList} column into ReplyLikes rows and recounts
+     * {@code likes} from them, since the two used to be updated separately and could drift apart.
+     */
+    private static void migrateLikeLists(Connection connection) throws SQLException {
+        String query = "SELECT replyId, likeList FROM Replies WHERE likeList IS NOT NULL";
+        String insert = "MERGE INTO ReplyLikes (replyId, userName) KEY (replyId, userName) VALUES (?, ?)";
+        try (PreparedStatement select = connection.prepareStatement(query);
+             PreparedStatement pstmt = connection.prepareStatement(insert);
+             ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                for (String userName : rs.getString("likeList").split("\n")) {
+                    if (!userName.trim().isEmpty()) {
+                        pstmt.setInt(1, rs.getInt("replyId"));
+                        pstmt.setString(2, userName.trim());
+                        pstmt.addBatch();
+                    }
+                }
+            }
+            pstmt.executeBatch();
+        }
         try (Statement stmt = connection.createStatement()) {
-            stmt.execute(repliesTable);
+            stmt.executeUpdate("UPDATE Replies R SET likes = "
+                    + "(SELECT COUNT(*) FROM ReplyLikes L WHERE L.replyId = R.replyId), likeList = NULL");
         }
     }
 
@@ -88,14 +183,7 @@ public class AnswerHandler {
      * @return {@code true} if any SQL injection pattern is detected, otherwise {@code false}.
      */
     public boolean detectSQLInjection(String input) {
-        if (input == null || input.isEmpty()) return false;
-        String cleaned = sanitizeInput(input).toLowerCase();
-        for (String pattern : SQL_INJECTION_PATTERNS) {
-            if (cleaned.matches(".*" + pattern + ".*")) {
-                return true;
-            }
-        }
-        return false;
+        return InputSecurityScanner.isSuspicious(input);
     }
 
     /**
@@ -105,11 +193,7 @@ public class AnswerHandler {
      * @return A sanitized version of the input string.
      */
     public String sanitizeInput(String input) {
-        if (input == null) return "";
-        String sanitized = input.replaceAll("[\"'#;()*/]", "");
-        sanitized = sanitized.replaceAll("\\b(union|select|insert|update|delete|drop|alter|create|execute|shutdown)\\b", "");
-        sanitized = sanitized.replaceAll("(?i)(;\\s*--|UNION\\s*--)", ";"); 
-        return sanitized;
+        return InputSecurityScanner.sanitize(input);
     }
 
     /**
@@ -121,21 +205,21 @@ public class AnswerHandler {
      * @param isPrivate Whether the reply is private.
      */
     public void addAnswer(String answer, int postId, String userName, boolean isPrivate) {
-        String cleanAnswer = answer;
-        if (detectSQLInjection(answer)) {
-            cleanAnswer = sanitizeInput(answer);
-        }
-        String insertQuery = "INSERT INTO Replies (reply, postId, userName, isPrivate) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertQuery)) {
-            pstmt.setString(1, cleanAnswer);
-            pstmt.setInt(2, postId);
-            pstmt.setString(3, userName);
-            pstmt.setBoolean(4, isPrivate);
-            pstmt.executeUpdate();
-            qHandler.incrementNumReplies(postId);
-        } catch (SQLException e) {
-            System.err.println("Error inserting reply: " + e.getMessage());
-        }
+        METRICS.run("addAnswer", () -> {
+            String cleanAnswer = InputSecurityScanner.scan(answer).getCleaned(answer);
+            String insertQuery = "INSERT INTO Replies (reply, postId, userName, isPrivate) VALUES (?, ?, ?, ?)";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(insertQuery)) {
+                pstmt.setString(1, cleanAnswer);
+                pstmt.setInt(2, postId);
+                pstmt.setString(3, userName);
+                pstmt.setBoolean(4, isPrivate);
+                pstmt.executeUpdate();
+                qHandler.incrementNumReplies(postId);
+            } catch (SQLException e) {
+                System.err.println("Error inserting reply: " + e.getMessage());
+            }
+        });
     }
 
     /**
@@ -146,24 +230,28 @@ public class AnswerHandler {
      * @return A {@code ResultSet} containing the replies, or {@code null} if an error occurs.
      */
     public ResultSet getRepliesByPostId(int postId, String currentUser) {
-        String query = "SELECT R.* FROM Replies R "
-            + "LEFT JOIN Posts P ON R.postId = P.postId "
-            + "WHERE R.postId = ? AND R.parentReplyId IS NULL AND ("
-            + "  R.isPrivate = FALSE OR "
-            + "  R.userName = ? OR "
-            + "  P.userName = ?"
-            + ") "
-            + "ORDER BY R.replyId ASC";
-        try {
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            pstmt.setInt(1, postId);
-            pstmt.setString(2, currentUser);
-            pstmt.setString(3, currentUser);
-            return pstmt.executeQuery();
-        } catch (SQLException e) {
-            System.err.println("Error fetching replies: " + e.getMessage());
-            return null;
-        }
+        return METRICS.time("getRepliesByPostId", () -> {
+            String query = "SELECT R.* FROM Replies R "
+                + "LEFT JOIN Posts P ON R.postId = P.postId "
+                + "WHERE R.postId = ? AND R.parentReplyId IS NULL AND ("
+                + "  R.isPrivate = FALSE OR "
+                + "  R.userName = ? OR "
+                + "  P.userName = ?"
+                + ") "
+                + "ORDER BY R.replyId ASC";
+            // The caller reads the counter columns straight from the result set.
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                pstmt.setInt(1, postId);
+                pstmt.setString(2, currentUser);
+                pstmt.setString(3, currentUser);
+                return pending.detach(pstmt.executeQuery(), LIKES, NESTED_REPLIES);
+            } catch (SQLException e) {
+                System.err.println("Error fetching replies: " + e.getMessage());
+                return null;
+            }
+        });
     }
 
     /**
@@ -173,15 +261,18 @@ public class AnswerHandler {
      * @return {@code true} if one or more rows were deleted, {@code false} otherwise.
      */
     public boolean deleteReplyByPostId(int postId) {
-        String sql = "DELETE FROM Replies WHERE postId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, postId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return METRICS.time("deleteReplyByPostId", () -> {
+            String sql = "DELETE FROM Replies WHERE postId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                pstmt.setInt(1, postId);
+                int rowsAffected = pstmt.executeUpdate();
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        });
     }
 
     /**
@@ -190,18 +281,21 @@ public class AnswerHandler {
      * @param replyId The ID of the reply to be deleted.
      */
     public void deleteReplyById(int replyId) {
-        String query = "DELETE FROM Replies WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, replyId);
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
-                System.out.println("Reply deleted successfully.");
-            } else {
-                System.out.println("No reply found with ID: " + replyId);
+        METRICS.run("deleteReplyById", () -> {
+            String query = "DELETE FROM Replies WHERE replyId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, replyId);
+                int rowsAffected = pstmt.executeUpdate();
+                if (rowsAffected > 0) {
+                    System.out.println("Reply deleted successfully.");
+                } else {
+                    System.out.println("No reply found with ID: " + replyId);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        });
     }
 
     /**
@@ -212,15 +306,19 @@ public class AnswerHandler {
      * @throws SQLException If an error occurs during query execution.
      */
     public String getReplyContentById(int replyId) throws SQLException {
-        String query = "SELECT reply FROM Replies WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, replyId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("reply");
+        return METRICS.time("getReplyContentById", () -> {
+            String query = "SELECT reply FROM Replies WHERE replyId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, replyId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getString("reply");
+                    }
+                }
             }
-        }
-        return null;
+            return null;
+        });
     }
 
     /**
@@ -231,56 +329,46 @@ public class AnswerHandler {
      * @return {@code true} if the update was successful, {@code false} otherwise.
      */
     public boolean updateReply(int replyId, String newContent) {
-        String query = "UPDATE Replies SET reply = ? WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, newContent);
-            pstmt.setInt(2, replyId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-    /**
-     * Increments the like count for a specific reply.
-     *
-     * @param replyId The ID of the reply.
-     * @return {@code true} if the update was successful, {@code false} otherwise.
-     */
-    public boolean incrementLikes(int replyId) {
-        String sql = "UPDATE Replies SET likes = COALESCE(likes, 0) + 1 WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, replyId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return METRICS.time("updateReply", () -> {
+            String query = "UPDATE Replies SET reply = ? WHERE replyId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setString(1, newContent);
+                pstmt.setInt(2, replyId);
+                int rowsAffected = pstmt.executeUpdate();
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        });
     }
 
     /**
-     * Retrieves the number of likes for a specific reply.
+     * Retrieves the number of likes for a specific reply, including likes not yet written to the table.
      *
      * @param replyId The ID of the reply.
      * @return The number of likes, or -1 if an error occurs.
      */
     public int getNumLikes(int replyId) {
-        String sql = "SELECT COALESCE(likes, 0) AS likes FROM Replies WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, replyId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("likes");
-            } else {
+        return METRICS.time("getNumLikes", () -> {
+            String sql = "SELECT COALESCE(likes, 0) AS likes FROM Replies WHERE replyId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(sql);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                pstmt.setInt(1, replyId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt("likes") + (int) pending.pending(LIKES, replyId);
+                    } else {
+                        return -1;
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
                 return -1;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return -1;
-        }
+        });
     }
 
     /**
@@ -290,8 +378,14 @@ public class AnswerHandler {
      * @return The postId if found, or -1 otherwise.
      */
     public int getPostIdByReplyId(int replyId) {
+        return METRICS.time("getPostIdByReplyId", () -> postIdOf(replyId));
+    }
+
+    // Untimed, so addReplyToReply counts one operation.
+    private int postIdOf(int replyId) {
         String query = "SELECT postId FROM Replies WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setInt(1, replyId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
@@ -308,7 +402,7 @@ public class AnswerHandler {
 
     /**
      * Inserts a new reply that is a response to an existing reply (nested reply).
-     * Also increments the {@code numReplies} count for the parent reply.
+     * Also increments the {@code numReplies} count for the parent reply once the reply is committed.
      *
      * @param parentReplyId The ID of the parent reply.
      * @param reply         The content of the new reply.
@@ -317,52 +411,52 @@ public class AnswerHandler {
      * @return {@code true} if the insertion and update are successful, {@code false} otherwise.
      */
     public boolean addReplyToReply(int parentReplyId, String reply, String userName, boolean isPrivate) {
-        String insertQuery = "INSERT INTO Replies (reply, parentReplyId, userName, isPrivate, postId) VALUES (?, ?, ?, ?, ?)";
-        String updateQuery = "UPDATE Replies SET numReplies = numReplies + 1 WHERE replyId = ?";
-
-        Connection conn = this.connection;
-
-        try {
-            conn.setAutoCommit(false);
-            PreparedStatement insertStmt = conn.prepareStatement(insertQuery);
-            PreparedStatement updateStmt = conn.prepareStatement(updateQuery);
-            insertStmt.setString(1, reply);
-            insertStmt.setInt(2, parentReplyId);
-            insertStmt.setString(3, userName);
-            insertStmt.setBoolean(4, isPrivate);
-            int postId = getPostIdByReplyId(parentReplyId);
-            if (postId == -1) {
-                throw new SQLException("Parent reply not found.");
-            }
-            insertStmt.setInt(5, postId);
-            int rowsInserted = insertStmt.executeUpdate();
-            if (rowsInserted == 0) {
-                throw new SQLException("Failed to insert reply.");
-            }
-            updateStmt.setInt(1, parentReplyId);
-            int rowsUpdated = updateStmt.executeUpdate();
-            if (rowsUpdated == 0) {
-                throw new SQLException("Failed to update numReplies for parent reply.");
-            }
-            conn.commit();
-            insertStmt.close();
-            updateStmt.close();
-            return true;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            try {
-                conn.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-            return false;
-        } finally {
-            try {
-                conn.setAutoCommit(true);
+        return METRICS.time("addReplyToReply", () -> {
+            String insertQuery = "INSERT INTO Replies (reply, parentReplyId, userName, isPrivate, postId) VALUES (?, ?, ?, ?, ?)";
+            boolean committed = false;
+
+            // Hold one connection for the whole transaction; the parent lookup below joins it.
+            try (Connection conn = pool.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
+                    insertStmt.setString(1, reply);
+                    insertStmt.setInt(2, parentReplyId);
+                    insertStmt.setString(3, userName);
+                    insertStmt.setBoolean(4, isPrivate);
+                    int postId = postIdOf(parentReplyId);
+                    if (postId == -1) {
+                        throw new SQLException("Parent reply not found.");
+                    }
+                    insertStmt.setInt(5, postId);
+                    int rowsInserted = insertStmt.executeUpdate();
+                    if (rowsInserted == 0) {
+                        throw new SQLException("Failed to insert reply.");
+                    }
+                    conn.commit();
+                    committed = true;
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    try {
+                        conn.rollback();
+                    } catch (SQLException ex) {
+                        ex.printStackTrace();
+                    }
+                } finally {
+                    try {
+                        conn.setAutoCommit(true);
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
-        }
+            // Counted after the connection is returned, so an inline write does not start a transaction on it.
+            if (committed) {
+                counters.add(NESTED_REPLIES, parentReplyId, 1);
+            }
+            return committed;
+        });
     }
 
     /**
@@ -373,19 +467,22 @@ public class AnswerHandler {
      * @return The parentReplyId as an {@code Integer}, or {@code null} if it is a top-level reply.
      */
     public Integer getParentReplyId(int replyId) {
-        String query = "SELECT parentReplyId FROM Replies WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, replyId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    int parentId = rs.getInt("parentReplyId");
-                    return rs.wasNull() ? null : parentId;
+        return METRICS.time("getParentReplyId", () -> {
+            String query = "SELECT parentReplyId FROM Replies WHERE replyId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, replyId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        int parentId = rs.getInt("parentReplyId");
+                        return rs.wasNull() ? null : parentId;
+                    }
                 }
+            } catch (SQLException e) {
+                e.printStackTrace();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+            return null;
+        });
     }
 
     /**
@@ -396,108 +493,368 @@ public class AnswerHandler {
      * @return A {@code ResultSet} containing the nested replies, or {@code null} if an error occurs.
      */
     public ResultSet getNestedReplies(int parentReplyId, String currentUser) {
-        int postId = getPostIdByReplyId(parentReplyId);
-        if (postId == -1) return null;
-        String query = "SELECT R.* FROM Replies R "
-            + "LEFT JOIN Posts P ON R.postId = P.postId "
-            + "WHERE R.parentReplyId = ? AND ("
-            + "  R.isPrivate = FALSE OR "
-            + "  R.userName = ? OR "
-            + "  P.userName = ?"
-            + ") "
-            + "ORDER BY R.replyId ASC";
-        try {
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            pstmt.setInt(1, parentReplyId);
-            pstmt.setString(2, currentUser);
-            pstmt.setString(3, currentUser);
-            return pstmt.executeQuery();
-        } catch (SQLException e) {
-            System.err.println("Error fetching nested replies: " + e.getMessage());
-            return null;
-        }
+        return METRICS.time("getNestedReplies", () -> {
+            String query = "SELECT R.* FROM Replies R "
+                + "LEFT JOIN Posts P ON R.postId = P.postId "
+                + "WHERE R.parentReplyId = ? AND ("
+                + "  R.isPrivate = FALSE OR "
+                + "  R.userName = ? OR "
+                + "  P.userName = ?"
+                + ") "
+                + "ORDER BY R.replyId ASC";
+            // The caller reads the counter columns straight from the result set.
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                pstmt.setInt(1, parentReplyId);
+                pstmt.setString(2, currentUser);
+                pstmt.setString(3, currentUser);
+                return pending.detach(pstmt.executeQuery(), LIKES, NESTED_REPLIES);
+            } catch (SQLException e) {
+                System.err.println("Error fetching nested replies: " + e.getMessage());
+                return null;
+            }
+        });
     }
 
     /**
-     * Adds the given username to the like list for a reply.
+     * Loads every reply to a post that the current user may see, as a tree, in three queries no matter
+     * how large the thread is: the replies, the user's likes and the review counts. A private reply is
+     * visible to its author and to the author of the post, and a reply is only shown if its parent is.
+     * The Reviews table must exist, which it does once a {@link ReviewHandler} has been created.
      *
-     * @param userName The username to add.
-     * @param replyId  The reply's ID.
-     * @return {@code true} if the update was successful, {@code false} otherwise.
+     * @param postId      The ID of the post.
+     * @param currentUser The username of the current user.
+     * @return The visible thread.
+     * @throws SQLException If an error occurs while loading the thread.
      */
-    public boolean addUsertoLikeList(String userName, int replyId) {
-        String query = "UPDATE Replies SET likeList = CONCAT(COALESCE(likeList, ''), '\n', ?) WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, userName);
-            pstmt.setInt(2, replyId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+    public ReplyThread loadThread(int postId, String currentUser) throws SQLException {
+        return METRICS.time("loadThread", () -> {
+            String repliesQuery = "SELECT R.replyId, R.reply, R.userName, R.likes, R.numReplies, R.parentReplyId "
+                + "FROM Replies R "
+                + "LEFT JOIN Posts P ON R.postId = P.postId "
+                + "WHERE R.postId = ? AND ("
+                + "  R.isPrivate = FALSE OR "
+                + "  R.userName = ? OR "
+                + "  P.userName = ?"
+                + ") "
+                + "ORDER BY R.replyId ASC";
+            String likesQuery = "SELECT L.replyId FROM ReplyLikes L JOIN Replies R ON L.replyId = R.replyId "
+                + "WHERE R.postId = ? AND L.userName = ?";
+            String reviewsQuery = "SELECT V.replyId, COUNT(*) AS reviewCount FROM Reviews V "
+                + "JOIN Replies R ON V.replyId = R.replyId WHERE R.postId = ? GROUP BY V.replyId";
+
+            Set<Integer> liked = new HashSet<>();
+            Map<Integer, Integer> reviewCounts = new HashMap<>();
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement repliesStmt = connection.prepareStatement(repliesQuery);
+                 PreparedStatement likesStmt = connection.prepareStatement(likesQuery);
+                 PreparedStatement reviewsStmt = connection.prepareStatement(reviewsQuery);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                repliesStmt.setInt(1, postId);
+                repliesStmt.setString(2, currentUser);
+                repliesStmt.setString(3, currentUser);
+                likesStmt.setInt(1, postId);
+                likesStmt.setString(2, currentUser);
+                reviewsStmt.setInt(1, postId);
+
+                try (ResultSet rs = likesStmt.executeQuery()) {
+                    while (rs.next()) {
+                        liked.add(rs.getInt("replyId"));
+                    }
+                }
+                try (ResultSet rs = reviewsStmt.executeQuery()) {
+                    while (rs.next()) {
+                        reviewCounts.put(rs.getInt("replyId"), rs.getInt("reviewCount"));
+                    }
+                }
+
+                List<ReplyRow> rows = new ArrayList<>();
+                try (ResultSet rs = repliesStmt.executeQuery()) {
+                    while (rs.next()) {
+                        int parentId = rs.getInt("parentReplyId");
+                        Integer parentReplyId = rs.wasNull() ? null : parentId;
+                        int replyId = rs.getInt("replyId");
+                        rows.add(new ReplyRow(replyId, rs.getString("reply"), rs.getString("userName"),
+                                rs.getInt("likes") + (int) pending.pending(LIKES, replyId),
+                                rs.getInt("numReplies") + (int) pending.pending(NESTED_REPLIES, replyId),
+                                parentReplyId));
+                    }
+                }
+
+                // Reply ids increase with insertion, so a child always comes after its parent. Walking the
+                // rows newest first means every child node is finished before its parent is built.
+                List<ReplyThread.Node> roots = new ArrayList<>();
+                Map<Integer, List<ReplyThread.Node>> childrenByParent = new HashMap<>();
+                for (int i = rows.size() - 1; i >= 0; i--) {
+                    ReplyRow row = rows.get(i);
+                    List<ReplyThread.Node> children = childrenByParent.remove(row.replyId);
+                    if (children == null) {
+                        children = new ArrayList<>();
+                    }
+                    Collections.reverse(children);
+                    ReplyThread.Node node = new ReplyThread.Node(row.replyId, row.content, row.userName, row.likes,
+                            row.numReplies, liked.contains(row.replyId), reviewCounts.getOrDefault(row.replyId, 0),
+                            children);
+                    if (row.parentReplyId == null) {
+                        roots.add(node);
+                    } else {
+                        // Children of a reply the user cannot see are left here and dropped.
+                        childrenByParent.computeIfAbsent(row.parentReplyId, id -> new ArrayList<>()).add(node);
+                    }
+                }
+                Collections.reverse(roots);
+                return new ReplyThread(postId, roots);
+            }
+        });
     }
 
     /**
-     * Retrieves the like list (a string of usernames separated by newlines) for a reply.
+     * Lists one page of the replies a user has written, newest first, each with the title of its post.
+     * Private replies are included. The listing seeks the per-author index, so a page costs the same
+     * however many replies the forum has.
      *
-     * @param replyId The ID of the reply.
-     * @return A string representing the like list, or an empty string if none exists.
+     * @param userName The author.
+     * @param cursor   The cursor returned with the previous page, or null for the first page.
+     * @param limit    The maximum number of replies to return, at most {@link ActivityPage#MAX_PAGE_SIZE}.
+     * @return The page of replies with the cursor for the next page.
+     * @throws SQLException If an error occurs during the query.
+     * @throws IllegalArgumentException If the cursor is malformed.
      */
-    public String getLikeList(int replyId) {
-        String query = "SELECT likeList FROM Replies WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, replyId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString("likeList");
+    public ActivityPage listRepliesByAuthor(String userName, String cursor, int limit) throws SQLException {
+        return METRICS.time("listRepliesByAuthor", () -> {
+            int pageSize = Math.max(1, Math.min(limit, ActivityPage.MAX_PAGE_SIZE));
+            String query = "SELECT R.replyId, R.postId, R.reply, R.isPrivate, P.title FROM Replies R "
+                + "LEFT JOIN Posts P ON R.postId = P.postId "
+                + "WHERE R.userName = ? AND R.replyId < ? "
+                + "ORDER BY R.replyId DESC LIMIT ?";
+            List<ActivityEntry> entries = new ArrayList<>();
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setString(1, userName);
+                pstmt.setInt(2, ActivityPage.cursorId(cursor));
+                pstmt.setInt(3, pageSize + 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(new ActivityEntry(rs.getInt("replyId"), rs.getInt("postId"), rs.getString("title"),
+                                rs.getString("reply"), rs.getBoolean("isPrivate")));
+                    }
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return "";
+            return ActivityPage.of(entries, pageSize);
+        });
+    }
+
+    /**
+     * Records that a user likes a reply and increments the reply's like count.
+     * Liking a reply twice has no effect.
+     *
+     * @param replyId  The ID of the reply.
+     * @param userName The username of the user liking the reply.
+     * @return {@code true} if the like was added, {@code false} if it already existed or an error occurred.
+     */
+    public boolean likeReply(int replyId, String userName) {
+        return METRICS.time("likeReply", () -> {
+            try {
+                return inLikeTransaction(replyId, connection -> insertLike(connection, replyId, userName)) > 0;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Removes a user's like from a reply and decrements the reply's like count.
+     *
+     * @param replyId  The ID of the reply.
+     * @param userName The username of the user.
+     * @return {@code true} if the like was removed, {@code false} if there was none or an error occurred.
+     */
+    public boolean unlikeReply(int replyId, String userName) {
+        return METRICS.time("unlikeReply", () -> {
+            try {
+                return inLikeTransaction(replyId, connection -> deleteLike(connection, replyId, userName)) < 0;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Likes the reply if the user has not liked it yet, otherwise removes the like.
+     * The reply's like count follows the change once it is committed.
+     *
+     * @param replyId  The ID of the reply.
+     * @param userName The username of the user.
+     * @return {@code true} if the user now likes the reply, {@code false} if the like was removed.
+     * @throws SQLException If the like could not be changed.
+     */
+    public boolean toggleLike(int replyId, String userName) throws SQLException {
+        return METRICS.time("toggleLike", () -> {
+            return inLikeTransaction(replyId, connection -> {
+                int removed = deleteLike(connection, replyId, userName);
+                return removed != 0 ? removed : insertLike(connection, replyId, userName);
+            }) > 0;
+        });
     }
 
     /**
-     * Decrements the like count for a specific reply.
+     * Checks whether a user has liked a reply.
+     *
+     * @param replyId  The ID of the reply.
+     * @param userName The username of the user.
+     * @return {@code true} if the user has liked the reply, {@code false} otherwise.
+     */
+    public boolean isLikedBy(int replyId, String userName) {
+        return METRICS.time("isLikedBy", () -> {
+            String query = "SELECT 1 FROM ReplyLikes WHERE replyId = ? AND userName = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, replyId);
+                pstmt.setString(2, userName);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Finds which of the given replies a user has liked, in a single query.
+     * Used to render a whole thread without a lookup per reply.
+     *
+     * @param userName The username of the user.
+     * @param replyIds The IDs of the replies being displayed.
+     * @return The subset of {@code replyIds} the user has liked.
+     */
+    public Set<Integer> getLikedReplyIds(String userName, Collection<Integer> replyIds) {
+        return METRICS.time("getLikedReplyIds", () -> {
+            Set<Integer> liked = new HashSet<>();
+            if (replyIds.isEmpty()) {
+                return liked;
+            }
+            String query = "SELECT replyId FROM ReplyLikes WHERE userName = ? AND replyId = ANY(?)";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setString(1, userName);
+                pstmt.setArray(2, connection.createArrayOf("INTEGER", replyIds.toArray()));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        liked.add(rs.getInt("replyId"));
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return liked;
+        });
+    }
+
+    /**
+     * Retrieves the usernames of everyone who liked a reply, in the order they liked it.
      *
      * @param replyId The ID of the reply.
-     * @return {@code true} if the update was successful, {@code false} otherwise.
+     * @return The usernames, or an empty list if there are none or an error occurs.
      */
-    public boolean decrementLikes(int replyId) {
-        String sql = "UPDATE Replies SET likes = COALESCE(likes, 0) - 1 WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, replyId);
-            return pstmt.executeUpdate() > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
+    public List<String> getLikers(int replyId) {
+        return METRICS.time("getLikers", () -> {
+            List<String> likers = new ArrayList<>();
+            String query = "SELECT userName FROM ReplyLikes WHERE replyId = ? ORDER BY likedAt, userName";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, replyId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        likers.add(rs.getString("userName"));
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return likers;
+        });
+    }
+
+    /**
+     * One row of the replies query, held until the thread tree is built.
+     */
+    private static class ReplyRow {
+        final int replyId;
+        final String content;
+        final String userName;
+        final int likes;
+        final int numReplies;
+        final Integer parentReplyId;
+
+        ReplyRow(int replyId, String content, String userName, int likes, int numReplies, Integer parentReplyId) {
+            this.replyId = replyId;
+            this.content = content;
+            this.userName = userName;
+            this.likes = likes;
+            this.numReplies = numReplies;
+            this.parentReplyId = parentReplyId;
         }
     }
 
     /**
-     * Removes a username from the like list of a reply.
-     *
-     * @param userName The username to remove.
-     * @param replyId  The reply's ID.
-     * @return {@code true} if the removal was successful, {@code false} otherwise.
+     * A change to the ReplyLikes table made inside a transaction.
      */
-    public boolean removeUserFromLikeList(String userName, int replyId) {
-        String currentList = getLikeList(replyId);
-        if (currentList == null || currentList.isEmpty()) return false;
-        List<String> users = new ArrayList<>(Arrays.asList(currentList.split("\n")));
-        boolean removed = users.removeIf(u -> u.equals(userName));
-        if (!removed) return false;
-        String newList = String.join("\n", users);
-        String query = "UPDATE Replies SET likeList = ? WHERE replyId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, newList);
+    @FunctionalInterface
+    private interface LikeChange {
+        // Returns the change to the reply's like count: 1, -1 or 0.
+        int apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Runs a like change in one transaction and adds it to the reply's like count once committed.
+     * The ReplyLikes rows are the record of who liked what; the count is derived from them, and if the
+     * process dies before the count is written it is recounted from them at a later startup.
+     */
+    private int inLikeTransaction(int replyId, LikeChange change) throws SQLException {
+        int delta;
+        try (Connection connection = pool.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                delta = change.apply(connection);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        if (delta != 0) {
+            counters.add(LIKES, replyId, delta);
+        }
+        return delta;
+    }
+
+    private static int insertLike(Connection connection, int replyId, String userName) throws SQLException {
+        // Selecting from Replies skips likes on replies that no longer exist; the primary key rejects duplicates.
+        String insert = "INSERT INTO ReplyLikes (replyId, userName) SELECT replyId, ? FROM Replies R "
+                + "WHERE R.replyId = ? AND NOT EXISTS "
+                + "(SELECT 1 FROM ReplyLikes L WHERE L.replyId = R.replyId AND L.userName = ?)";
+        try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
+            pstmt.setString(1, userName);
             pstmt.setInt(2, replyId);
-            return pstmt.executeUpdate() > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
+            pstmt.setString(3, userName);
+            return pstmt.executeUpdate() > 0 ? 1 : 0;
+        }
+    }
+
+    private static int deleteLike(Connection connection, int replyId, String userName) throws SQLException {
+        String delete = "DELETE FROM ReplyLikes WHERE replyId = ? AND userName = ?";
+        try (PreparedStatement pstmt = connection.prepareStatement(delete)) {
+            pstmt.setInt(1, replyId);
+            pstmt.setString(2, userName);
+            return pstmt.executeUpdate() > 0 ? -1 : 0;
         }
     }
 }
@@ -0,0 +1,336 @@
+package application;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.event.EventHandler;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+
+/**
+ * The AsyncDataService class runs handler calls off the JavaFX Application Thread, so a slow
+ * query never freezes the UI. Calls run on a bounded pool of worker threads, or on virtual
+ * threads where the Java runtime has them, and their results are handed back to the UI thread
+ * with {@link Platform#runLater}.
+ *
+ * <p>Pages load through a {@link Scope}. Cancelling the scope, or leaving the page it is bound to,
+ * drops every pending result so a stale query can never update a page the user has left. A call
+ * that is already running finishes, since interrupting a thread inside JDBC can close the
+ * database file, but its result is discarded.</p>
+ */
+public class AsyncDataService implements AutoCloseable {
+
+    /**
+     * A unit of data access to run in the background.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface DataCall<T> {
+        /**
+         * Runs the call.
+         *
+         * @return the result
+         * @throws Exception if the call fails, typically with an SQLException
+         */
+        T call() throws Exception;
+    }
+
+    /** Worker threads in the shared bounded pool. */
+    public static final int DEFAULT_THREADS = 4;
+
+    /** Calls that may wait for a worker before new ones are rejected. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /** System property that switches the shared service to virtual threads when set to true. */
+    public static final String VIRTUAL_THREADS_PROPERTY = "cse360.async.virtualThreads";
+
+    private static AsyncDataService shared;
+
+    private final ExecutorService executor;
+    private final Executor uiExecutor;
+
+    /**
+     * Creates a service with its own bounded pool of daemon worker threads that delivers
+     * results on the JavaFX Application Thread.
+     *
+     * @param threads       the number of worker threads
+     * @param queueCapacity the number of calls that may wait for a worker
+     */
+    public AsyncDataService(int threads, int queueCapacity) {
+        this(boundedPool(threads, queueCapacity), Platform::runLater);
+    }
+
+    /**
+     * Creates a service over the given executors.
+     *
+     * @param executor   runs the data calls
+     * @param uiExecutor delivers results to the UI, {@code Platform::runLater} in the application
+     */
+    public AsyncDataService(ExecutorService executor, Executor uiExecutor) {
+        this.executor = executor;
+        this.uiExecutor = uiExecutor;
+    }
+
+    /**
+     * Returns the service shared by the application's pages, creating it on first use.
+     * It uses virtual threads if the {@value #VIRTUAL_THREADS_PROPERTY} system property is true
+     * and the runtime supports them, and a bounded pool of {@value #DEFAULT_THREADS} threads otherwise.
+     *
+     * @return the shared service
+     */
+    public static synchronized AsyncDataService getShared() {
+        if (shared == null) {
+            ExecutorService executor = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY) ? virtualThreadExecutor() : null;
+            if (executor == null) {
+                executor = boundedPool(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+            }
+            shared = new AsyncDataService(executor, Platform::runLater);
+        }
+        return shared;
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor if the runtime supports virtual threads.
+     * Looked up reflectively so the application still builds and runs on Java 17.
+     *
+     * @return the executor, or null if virtual threads are not available
+     */
+    public static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService boundedPool(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "data-worker-" + count.incrementAndGet());
+            // Workers must not keep the JVM alive after the last window closes.
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), factory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs a call in the background. The returned future completes on the worker thread;
+     * use a {@link Scope} to have results delivered to the UI. Cancelling the future before
+     * the call starts keeps it from running at all.
+     *
+     * @param call the call to run
+     * @param <T>  the type of the result
+     * @return a future for the result; it fails with a RejectedExecutionException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(DataCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(call.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a scope for the loads of one page or window.
+     *
+     * @return a new scope
+     */
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    /**
+     * Stops accepting calls. Calls already queued still run.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * The loads started by one page. Results are delivered on the UI thread unless the scope
+     * has been cancelled or a newer load with the same key has been started since.
+     */
+    public final class Scope {
+        private final Set<CompletableFuture<?>> pending = new HashSet<>();
+        private final Map<String, CompletableFuture<?>> latestByKey = new HashMap<>();
+        private boolean cancelled;
+
+        private Scope() {
+        }
+
+        /**
+         * Runs a call in the background and hands its result or failure to a callback on the UI thread.
+         *
+         * @param call      the call to run
+         * @param onSuccess receives the result on the UI thread
+         * @param onFailure receives the failure on the UI thread
+         * @param <T>       the type of the result
+         * @return a future for the result
+         */
+        public <T> CompletableFuture<T> load(DataCall<T> call, Consumer<? super T> onSuccess,
+                                             Consumer<Throwable> onFailure) {
+            return load(null, call, onSuccess, onFailure);
+        }
+
+        /**
+         * Runs a call like {@link #load(DataCall, Consumer, Consumer)}, first cancelling any earlier
+         * load with the same key, so only the latest of, for example, several searches is shown.
+         *
+         * @param key       identifies loads that replace each other, or null
+         * @param call      the call to run
+         * @param onSuccess receives the result on the UI thread
+         * @param onFailure receives the failure on the UI thread
+         * @param <T>       the type of the result
+         * @return a future for the result
+         */
+        public <T> CompletableFuture<T> load(String key, DataCall<T> call, Consumer<? super T> onSuccess,
+                                             Consumer<Throwable> onFailure) {
+            CompletableFuture<T> future;
+            synchronized (this) {
+                if (cancelled) {
+                    future = new CompletableFuture<>();
+                    future.cancel(false);
+                    return future;
+                }
+                future = submit(call);
+                pending.add(future);
+                if (key != null) {
+                    CompletableFuture<?> previous = latestByKey.put(key, future);
+                    if (previous != null) {
+                        pending.remove(previous);
+                        previous.cancel(false);
+                    }
+                }
+            }
+            future.whenComplete((result, error) -> {
+                if (future.isCancelled()) {
+                    return;
+                }
+                uiExecutor.execute(() -> {
+                    synchronized (this) {
+                        // Cancelled or superseded while the result was on its way.
+                        if (!pending.remove(future)) {
+                            return;
+                        }
+                        if (key != null && latestByKey.get(key) == future) {
+                            latestByKey.remove(key);
+                        }
+                    }
+                    if (error == null) {
+                        onSuccess.accept(result);
+                    } else {
+                        onFailure.accept(error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error);
+                    }
+                });
+            });
+            return future;
+        }
+
+        /**
+         * Cancels every pending load; no callback of this scope runs afterwards.
+         * Loads started after cancelling are cancelled immediately.
+         */
+        public synchronized void cancel() {
+            cancelled = true;
+            for (CompletableFuture<?> future : pending) {
+                future.cancel(false);
+            }
+            pending.clear();
+            latestByKey.clear();
+        }
+
+        /**
+         * Returns whether the scope has been cancelled.
+         *
+         * @return true once {@link #cancel()} has been called
+         */
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Returns the number of loads whose results have not been delivered yet.
+         *
+         * @return the number of pending loads
+         */
+        public synchronized int getPendingCount() {
+            return pending.size();
+        }
+
+        /**
+         * Cancels the scope when the page it belongs to goes away: when the stage shows another
+         * scene, or when the stage is closed. Call on the UI thread after showing the scene.
+         *
+         * @param stage the stage showing the page
+         * @param scene the page's scene
+         */
+        public void cancelWhenLeft(Stage stage, Scene scene) {
+            PageWatch watch = new PageWatch(stage, scene);
+            stage.sceneProperty().addListener(watch);
+            stage.addEventHandler(WindowEvent.WINDOW_HIDDEN, watch);
+        }
+
+        // Cancels the scope on the first scene change or close of a stage, then stops listening.
+        private final class PageWatch implements ChangeListener<Scene>, EventHandler<WindowEvent> {
+            private final Stage stage;
+            private final Scene scene;
+
+            PageWatch(Stage stage, Scene scene) {
+                this.stage = stage;
+                this.scene = scene;
+            }
+
+            @Override
+            public void changed(ObservableValue<? extends Scene> observable, Scene oldScene, Scene newScene) {
+                if (newScene != scene) {
+                    leave();
+                }
+            }
+
+            @Override
+            public void handle(WindowEvent event) {
+                leave();
+            }
+
+            private void leave() {
+                stage.sceneProperty().removeListener(this);
+                stage.removeEventHandler(WindowEvent.WINDOW_HIDDEN, this);
+                cancel();
+            }
+        }
+    }
+}
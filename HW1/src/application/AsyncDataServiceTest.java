@@ -0,0 +1,142 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncDataServiceTest {
+
+    private AsyncDataService service;
+    private final List<Object> delivered = Collections.synchronizedList(new ArrayList<>());
+    // Released once per callback, so a test can wait for the callback itself and not just the call.
+    private final Semaphore deliveries = new Semaphore(0);
+
+    @Before
+    public void setUp() {
+        // Results are delivered on the worker thread in place of the JavaFX Application Thread.
+        service = new AsyncDataService(Executors.newFixedThreadPool(2), Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        service.close();
+    }
+
+    // The success and failure callback of every load.
+    private void deliver(Object resultOrFailure) {
+        delivered.add(resultOrFailure);
+        deliveries.release();
+    }
+
+    // Waits until the given number of results or failures has reached the callbacks.
+    private void awaitDeliveries(int count) throws InterruptedException {
+        if (!deliveries.tryAcquire(count, 5, TimeUnit.SECONDS)) {
+            throw new AssertionError("Load results were not delivered");
+        }
+    }
+
+    @Test
+    public void testResultsAndFailuresAreDelivered() throws InterruptedException {
+        AsyncDataService.Scope scope = service.newScope();
+        scope.load(() -> 42, this::deliver, this::deliver);
+        awaitDeliveries(1);
+        scope.load(() -> { throw new SQLException("no table"); }, this::deliver, this::deliver);
+        awaitDeliveries(1);
+
+        assertEquals(2, delivered.size());
+        assertEquals(42, delivered.get(0));
+        assertTrue("The original exception reaches the callback", delivered.get(1) instanceof SQLException);
+        assertEquals(0, scope.getPendingCount());
+    }
+
+    @Test
+    public void testNewerLoadWithSameKeyReplacesOlder() throws InterruptedException {
+        AsyncDataService.Scope scope = service.newScope();
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> older = scope.load("search", () -> {
+            release.await();
+            return "older";
+        }, this::deliver, this::deliver);
+        scope.load("search", () -> "newer", this::deliver, this::deliver);
+        awaitDeliveries(1);
+        release.countDown();
+
+        assertTrue(older.isCancelled());
+        assertEquals(Collections.singletonList("newer"), delivered);
+    }
+
+    @Test
+    public void testCancelDropsPendingAndLaterLoads() throws InterruptedException {
+        AsyncDataService.Scope scope = service.newScope();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = scope.load(() -> {
+            started.countDown();
+            release.await();
+            return "stale";
+        }, this::deliver, this::deliver);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        scope.cancel();
+        release.countDown();
+        CompletableFuture<String> later = scope.load(() -> "later", this::deliver, this::deliver);
+
+        assertTrue(scope.isCancelled());
+        assertTrue(running.isCancelled());
+        assertTrue(later.isCancelled());
+        assertEquals(0, scope.getPendingCount());
+        // Give the running call time to finish; its result must not be delivered.
+        Thread.sleep(50);
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void testFullQueueRejectsCalls() throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        AsyncDataService bounded = new AsyncDataService(pool, Runnable::run);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            bounded.submit(() -> release.await(5, TimeUnit.SECONDS));
+            bounded.submit(() -> "queued");
+            CompletableFuture<String> rejected = bounded.submit(() -> "rejected");
+
+            assertTrue(rejected.isCompletedExceptionally());
+            try {
+                rejected.join();
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        } finally {
+            release.countDown();
+            bounded.close();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsNeedRuntimeSupport() {
+        if (Runtime.version().feature() < 21) {
+            assertNull(AsyncDataService.virtualThreadExecutor());
+        } else {
+            AsyncDataService.virtualThreadExecutor().shutdown();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+import databasePart1.ForumDataGenerator;
+
+public class ForumDataGeneratorTest {
+
+    private Connection conn;
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:forumgeneratortest;DB_CLOSE_DELAY=0");
+        pool = ConnectionPool.wrap(conn);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private ForumDataGenerator generator(long seed) {
+        return new ForumDataGenerator(pool, seed).users(60).posts(120).repliesPerPost(3)
+                .reviews(50, 2, 40).feedbackPerReview(2);
+    }
+
+    private long single(String query) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            assertTrue(rs.next());
+            return rs.getLong(1);
+        }
+    }
+
+    // Order-independent fingerprint of the generated content.
+    private long fingerprint() throws SQLException {
+        return single("SELECT SUM(CAST(ORA_HASH(reply) AS BIGINT) + likes * 31 + postId) FROM Replies")
+                + single("SELECT SUM(CAST(ORA_HASH(content) AS BIGINT) + versionNumber) FROM Reviews")
+                + single("SELECT SUM(CAST(ORA_HASH(userName || role) AS BIGINT)) FROM cse360users");
+    }
+
+    @Test
+    public void testSameSeedGeneratesSameRows() throws SQLException {
+        Map<String, Long> rows = generator(5).generate();
+        long first = fingerprint();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        assertEquals(rows, generator(5).generate());
+        assertEquals(first, fingerprint());
+
+        assertEquals(Long.valueOf(60), rows.get("cse360users"));
+        assertEquals(Long.valueOf(120), rows.get("Posts"));
+        assertEquals(rows.get("Replies").longValue(), single("SELECT COUNT(*) FROM Replies"));
+    }
+
+    @Test
+    public void testDerivedColumnsMatchTheRows() throws SQLException {
+        generator(11).generate();
+        assertEquals("Posts.numReplies counts top-level replies", 0, single("SELECT COUNT(*) FROM Posts P "
+                + "WHERE numReplies <> (SELECT COUNT(*) FROM Replies R WHERE R.postId = P.postId AND R.parentReplyId IS NULL)"));
+        assertEquals("Replies.numReplies counts nested replies", 0, single("SELECT COUNT(*) FROM Replies P "
+                + "WHERE numReplies <> (SELECT COUNT(*) FROM Replies R WHERE R.parentReplyId = P.replyId)"));
+        assertEquals("Replies.likes counts ReplyLikes", 0, single("SELECT COUNT(*) FROM Replies R "
+                + "WHERE likes <> (SELECT COUNT(*) FROM ReplyLikes L WHERE L.replyId = R.replyId)"));
+        assertEquals("Reviews.feedbackCount counts ReviewFeedback", 0, single("SELECT COUNT(*) FROM Reviews R "
+                + "WHERE feedbackCount <> (SELECT COUNT(*) FROM ReviewFeedback F WHERE F.reviewId = R.reviewId)"));
+        assertEquals("Nested replies stay on their parent's post", 0, single("SELECT COUNT(*) FROM Replies C "
+                + "JOIN Replies P ON P.replyId = C.parentReplyId WHERE P.postId <> C.postId"));
+        assertTrue("Some chains are deeper than one reply", single("SELECT COUNT(*) FROM Replies C "
+                + "JOIN Replies P ON P.replyId = C.parentReplyId WHERE P.parentReplyId IS NOT NULL") > 0);
+        assertTrue(single("SELECT COUNT(*) FROM Replies WHERE isPrivate") > 0);
+        assertTrue(single("SELECT COUNT(*) FROM reviewer_ratings WHERE trusted") > 0);
+        assertTrue(single("SELECT COUNT(*) FROM PostReadSets") > 0);
+    }
+
+    @Test
+    public void testReviewChainsHaveOneCurrentVersion() throws SQLException {
+        generator(3).generate();
+        assertTrue("Some reviews were edited", single("SELECT COUNT(*) FROM Reviews WHERE versionNumber > 1") > 0);
+        assertEquals(0, single("SELECT COUNT(*) FROM Reviews WHERE isCurrent AND reviewId IN "
+                + "(SELECT previousReviewId FROM Reviews WHERE previousReviewId IS NOT NULL)"));
+        assertEquals(0, single("SELECT COUNT(*) FROM Reviews WHERE NOT isCurrent AND reviewId NOT IN "
+                + "(SELECT previousReviewId FROM Reviews WHERE previousReviewId IS NOT NULL)"));
+
+        ReviewHandler rHandler = new ReviewHandler(pool);
+        int edited = (int) single("SELECT MIN(reviewId) FROM Reviews WHERE versionNumber = 3");
+        assertEquals(3, rHandler.getReviewHistory(edited).size());
+    }
+
+    @Test
+    public void testHandlersKeepWorkingOnGeneratedData() throws SQLException {
+        ForumDataGenerator generator = generator(8);
+        generator.generate();
+        long posts = single("SELECT MAX(postId) FROM Posts");
+
+        QuestionHandler qHandler = new QuestionHandler(pool);
+        AnswerHandler aHandler = new AnswerHandler(pool, qHandler);
+        UserHandler uHandler = new UserHandler(pool);
+        DatabaseHelper dbHelper = new DatabaseHelper(pool);
+
+        qHandler.addPost(generator.userName(1), "After generation", "New body");
+        assertEquals("Ids continue after the generated rows", posts + 1, single("SELECT MAX(postId) FROM Posts"));
+        aHandler.addAnswer("New reply", (int) posts + 1, generator.userName(2), false);
+        assertEquals(1, qHandler.getNumReplies((int) posts + 1));
+
+        assertNotNull(aHandler.loadThread(1, generator.userName(0)));
+        assertFalse(qHandler.searchPosts("homework", 5).isEmpty());
+        assertTrue(dbHelper.doesUserExist(generator.userName(59)));
+        assertTrue(dbHelper.getUserRole(generator.userName(59)).startsWith("Student"));
+        uHandler.addPostRead(generator.userName(0), (int) posts + 1);
+        assertTrue(uHandler.getReadPostSet(generator.userName(0)).contains((int) posts + 1));
+    }
+}
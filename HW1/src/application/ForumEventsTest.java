@@ -0,0 +1,151 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+import databasePart1.ForumEvents;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class ForumEventsTest {
+
+    private static int databases;
+
+    private String url;
+    private ConnectionPool pool;
+    private DatabaseHelper dbHelper;
+    private QuestionHandler qHandler;
+    private Recording recording;
+
+    @Before
+    public void setUp() throws SQLException {
+        url = "jdbc:h2:mem:forumevents" + (databases++) + ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(url, "sa", "", 2);
+        dbHelper = new DatabaseHelper(pool);
+        qHandler = new QuestionHandler(pool);
+        recording = new Recording();
+        recording.enable("cse360.*");
+        recording.start();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        recording.close();
+        ForumEvents.setSessionRole(null);
+        // Closing the pool writes the buffered counters, so the tables are dropped after it.
+        pool.close();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    private List<RecordedEvent> recorded() throws Exception {
+        recording.stop();
+        Path file = Files.createTempFile("forumevents", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testLoginSetsTheRoleOfLaterEvents() throws Exception {
+        dbHelper.register(new User("alice", "Password1!", "Student"));
+        assertTrue(dbHelper.login(new User("alice", "Password1!", "Student")));
+        qHandler.addPost("alice", "Title", "A question about JUnit");
+
+        List<RecordedEvent> events = recorded();
+        List<RecordedEvent> logins = named(events, "cse360.Login");
+        assertEquals(1, logins.size());
+        assertTrue(logins.get(0).getBoolean("success"));
+        assertEquals(1, logins.get(0).getLong("queries"));
+        assertEquals("Student", named(events, "cse360.PostCreate").get(0).getString("role"));
+    }
+
+    @Test
+    public void testPostEventsCarryRowsQueriesAndRole() throws Exception {
+        ForumEvents.setSessionRole("Student");
+        qHandler.addPost("alice", "Title", "A question about JUnit");
+        qHandler.addPost("bob", "Title", "A question about tables");
+        qHandler.searchPosts("junit", 10);
+        qHandler.listPosts(QuestionHandler.PostFilter.ALL, new PostReadSet(), QuestionHandler.PostSort.NEWEST, null, 20);
+
+        List<RecordedEvent> events = recorded();
+        List<RecordedEvent> creates = named(events, "cse360.PostCreate");
+        assertEquals(2, creates.size());
+        assertEquals("alice", creates.get(0).getString("userName"));
+        assertEquals("Student", creates.get(0).getString("role"));
+        assertEquals(1, creates.get(0).getLong("rows"));
+        assertTrue(creates.get(0).getLong("queries") >= 1);
+
+        RecordedEvent search = named(events, "cse360.PostSearch").get(0);
+        assertEquals("junit", search.getString("keyword"));
+        assertEquals(1, search.getLong("rows"));
+        assertEquals(0, search.getLong("queries"));
+
+        RecordedEvent list = named(events, "cse360.PostList").get(0);
+        assertEquals("ALL", list.getString("filter"));
+        assertEquals(2, list.getLong("rows"));
+        assertTrue(list.getLong("queries") >= 1);
+    }
+
+    @Test
+    public void testNotificationReadsAreRecorded() throws Exception {
+        dbHelper.register(new User("carol", "Password1!", "Instructor"));
+        int userId = dbHelper.getUserIdByUsername("carol");
+        dbHelper.addNotificationToUser("first", userId);
+        dbHelper.addNotificationToUser("second", userId);
+        dbHelper.getNotificationsPage(userId, 0, 10);
+
+        List<RecordedEvent> reads = named(recorded(), "cse360.NotificationRead");
+        assertEquals(1, reads.size());
+        assertEquals("page", reads.get(0).getString("operation"));
+        assertEquals(userId, reads.get(0).getInt("userId"));
+        assertEquals(2, reads.get(0).getLong("rows"));
+    }
+
+    @Test
+    public void testPageLoadsCountTheirBackgroundWork() throws Exception {
+        ForumEvents.ThreadLoad event = new ForumEvents.ThreadLoad();
+        event.postId = 7;
+        event.begin();
+        Thread reader = new Thread(() -> {
+            try {
+                event.measure(() -> qHandler.getPostTitleById(7));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        reader.start();
+        reader.join();
+        event.finish();
+
+        List<RecordedEvent> loads = named(recorded(), "cse360.ThreadLoad");
+        assertEquals(1, loads.size());
+        assertEquals(1, loads.get(0).getLong("queries"));
+        assertTrue(loads.get(0).getDuration("loadTime").toNanos() > 0);
+    }
+}
@@ -0,0 +1,269 @@
+package application;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+import databasePart1.ForumDataGenerator;
+
+/**
+ * JMH benchmarks of the handler and {@link DatabaseHelper} calls the pages make most often, against an
+ * in-memory database filled by {@link ForumDataGenerator}. The data volumes are {@code @Param}s, so one run
+ * can compare several sizes. Compile with {@code jmh-generator-annprocess} on the annotation processor path
+ * and run through JMH, for example
+ * {@code java -cp <classes and jars> org.openjdk.jmh.Main HotPathBenchmark -p posts=5000,50000 -rf json
+ * -rff hotpath-benchmark.json}; add a benchmark name pattern such as {@code HotPathBenchmark.search} to run
+ * only some of them. Comparing the JSON of runs before and after a change shows what it cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotPathBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:hotpathbenchmark;DB_CLOSE_DELAY=-1";
+    private static final int POOL_SIZE = 8;
+
+    private static final String[] WORDS = {
+        "exam", "homework", "chapter", "database", "table", "junit", "test", "method", "review", "deadline",
+        "lecture", "project", "team", "question", "answer", "grading", "rubric", "design", "sprint", "javafx"
+    };
+
+    /** Number of generated users. */
+    @Param("500")
+    public int users;
+
+    /** Number of generated posts. */
+    @Param("5000")
+    public int posts;
+
+    /** Average number of replies per post. */
+    @Param("4")
+    public int repliesPerPost;
+
+    /** Average number of likes per reply. */
+    @Param("2")
+    public int likesPerReply;
+
+    /** Percentage of the posts each student has read. */
+    @Param("60")
+    public int readPercent;
+
+    /** Seed of the generated data. */
+    @Param("1")
+    public long seed;
+
+    private ConnectionPool pool;
+    private ForumDataGenerator generator;
+    private DatabaseHelper dbHelper;
+    private QuestionHandler qHandler;
+    private AnswerHandler aHandler;
+    private ReviewHandler rHandler;
+    private UserHandler uHandler;
+
+    private String student;
+    private int studentId;
+    private int reviewedReply;
+    private int replies;
+
+    /**
+     * The random choices of one benchmark thread, the same sequence in every run.
+     */
+    @State(Scope.Thread)
+    public static class Choices {
+        final Random random = new Random(42);
+    }
+
+    /**
+     * Fills the database and opens the handlers.
+     *
+     * @throws SQLException if the database cannot be filled
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        pool = new ConnectionPool(URL, "sa", "", POOL_SIZE);
+        generator = new ForumDataGenerator(pool, seed).users(users).posts(posts)
+                .repliesPerPost(repliesPerPost).likesPerReply(likesPerReply).readPercent(readPercent);
+        replies = generator.generate().get("Replies").intValue();
+
+        // Opened after generating, so the search index and caches start from the generated rows.
+        dbHelper = new DatabaseHelper(pool);
+        qHandler = new QuestionHandler(pool);
+        aHandler = new AnswerHandler(pool, qHandler);
+        rHandler = new ReviewHandler(pool);
+        uHandler = new UserHandler(pool);
+
+        student = pickStudent(pool);
+        studentId = dbHelper.getUserIdByUsername(student);
+        reviewedReply = pickReviewedReply(pool);
+    }
+
+    /**
+     * Closes the pool, which writes the buffered counters, then discards the database.
+     *
+     * @throws SQLException if the database cannot be shut down
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        pool.close();
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+    }
+
+    @Benchmark
+    public void addPost(Choices choices) {
+        qHandler.addPost(student, "Benchmark question", sentence(choices.random, 30));
+    }
+
+    @Benchmark
+    public int repliesWithNested(Choices choices) throws SQLException {
+        int count = 0;
+        try (ResultSet topLevel = aHandler.getRepliesByPostId(1 + choices.random.nextInt(posts), student)) {
+            while (topLevel.next()) {
+                count += countRows(aHandler.getNestedReplies(topLevel.getInt("replyId"), student)) + 1;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public ReplyThread loadThread(Choices choices) throws SQLException {
+        return aHandler.loadThread(1 + choices.random.nextInt(posts), student);
+    }
+
+    @Benchmark
+    public int searchPostsByKeyword(Choices choices) throws SQLException {
+        return countRows(qHandler.searchPostsByKeyword(WORDS[choices.random.nextInt(WORDS.length)]));
+    }
+
+    @Benchmark
+    public int readPostsAndUnreadQuestions() throws SQLException {
+        return countRows(qHandler.getUnreadQuestions(uHandler.getReadPosts(student)));
+    }
+
+    @Benchmark
+    public int readPostSetAndUnreadQuestions() throws SQLException {
+        return countRows(qHandler.getUnreadQuestions(uHandler.getReadPostSet(student)));
+    }
+
+    @Benchmark
+    public boolean toggleLike(Choices choices) throws SQLException {
+        return aHandler.toggleLike(1 + choices.random.nextInt(replies), generator.userName(choices.random.nextInt(users)));
+    }
+
+    @Benchmark
+    public boolean addNotificationToUser() {
+        return dbHelper.addNotificationToUser("Benchmark notification", studentId);
+    }
+
+    @Benchmark
+    public int getNumNotifications() {
+        return dbHelper.getNumNotifications(studentId);
+    }
+
+    @Benchmark
+    public int reviewsSortedByWeight() throws SQLException {
+        return countRows(rHandler.getReviewsByReplyIdSortedByWeight(reviewedReply, student, 10));
+    }
+
+    @Benchmark
+    public int trustedReviews() throws SQLException {
+        return countRows(rHandler.getTrustedReviewsByReplyId(reviewedReply, student));
+    }
+
+    // The "TopReviewers" order of the review page: current reviews sorted by the student's rating of the reviewer.
+    @Benchmark
+    public List<String> reviewerProfileSort() throws SQLException {
+        ReviewerProfile profile = dbHelper.getReviewerProfile(student);
+        List<String> reviewers = new ArrayList<>();
+        try (ResultSet rs = rHandler.getCurrentReviewsByReplyId(reviewedReply)) {
+            while (rs.next()) {
+                reviewers.add(rs.getString("reviewerName"));
+            }
+        }
+        reviewers.sort(Comparator.comparingInt(profile::getRatingOrZero).reversed());
+        return reviewers;
+    }
+
+    @Benchmark
+    public List<String> validateQuestion(Choices choices) {
+        return qHandler.validateQuestion("How do I " + WORDS[choices.random.nextInt(WORDS.length)],
+                sentence(choices.random, 60));
+    }
+
+    @Benchmark
+    public List<String> validateAnswer(Choices choices) {
+        return aHandler.validateAnswer(sentence(choices.random, 60));
+    }
+
+    @Benchmark
+    public List<String> validateReview(Choices choices) {
+        return rHandler.validateReview(sentence(choices.random, 60));
+    }
+
+    // The user with the most reviewer ratings, so the review sort paths have profiles to apply.
+    private static String pickStudent(ConnectionPool pool) throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT student_username FROM reviewer_ratings "
+                     + "GROUP BY student_username ORDER BY COUNT(*) DESC, student_username LIMIT 1")) {
+            return rs.next() ? rs.getString(1) : "user0";
+        }
+    }
+
+    // The reply with the most current reviews.
+    private static int pickReviewedReply(ConnectionPool pool) throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT replyId FROM Reviews WHERE isCurrent AND replyId IS NOT NULL "
+                     + "GROUP BY replyId ORDER BY COUNT(*) DESC, replyId LIMIT 1")) {
+            return rs.next() ? rs.getInt(1) : 1;
+        }
+    }
+
+    private static int countRows(ResultSet rs) throws SQLException {
+        if (rs == null) {
+            throw new IllegalStateException("Query failed; see the error output");
+        }
+        int rows = 0;
+        try (ResultSet results = rs) {
+            while (results.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(i > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.append('.').toString();
+    }
+}
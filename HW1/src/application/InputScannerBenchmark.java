@@ -0,0 +1,122 @@
+package application;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks comparing {@link InputSecurityScanner} with the regular expression checks the handlers
+ * used before, on generated posts. The post size and whether the posts are broken into lines are
+ * {@code @Param}s. Run it through JMH like {@link HotPathBenchmark}, for example
+ * {@code java -cp <classes and jars> org.openjdk.jmh.Main InputScannerBenchmark -rf json}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InputScannerBenchmark {
+
+    private static final String[] LEGACY_PATTERNS = {
+        "(?i)\\b(union|select|insert|update|delete|drop|alter|create|execute|shutdown)\\b",
+        "--",
+        ";",
+        "/\\*",
+        "\\*/"
+    };
+
+    // Ordinary words, with a few that trip the checks mixed in at a realistic rate.
+    private static final String[] WORDS = {
+        "the", "exam", "is", "on", "friday", "and", "homework", "covers", "chapter", "three", "how", "do", "i",
+        "test", "this", "method", "with", "junit", "database", "table", "question", "answer", "review",
+        "(see", "notes)", "it's", "#5", "e-mail", "a/b", "Update:", "select", "--", "Drop"
+    };
+
+    private static final int POST_COUNT = 200;
+
+    /** Approximate length of each post in characters. */
+    @Param({"200", "2000", "10000"})
+    public int size;
+
+    /** Whether the posts are on one line or broken into lines. */
+    @Param({"single", "multi"})
+    public String lines;
+
+    private String[] posts;
+
+    /**
+     * The post the next call of one benchmark thread validates.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    /**
+     * Generates the posts.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(360);
+        posts = new String[POST_COUNT];
+        for (int i = 0; i < posts.length; i++) {
+            posts[i] = generatePost(random, size, lines.equals("multi"));
+        }
+    }
+
+    @Benchmark
+    public String legacy(Cursor cursor) {
+        String post = posts[cursor.next++ % POST_COUNT];
+        return legacyDetect(post) ? legacySanitize(post) : post;
+    }
+
+    @Benchmark
+    public String scanner(Cursor cursor) {
+        String post = posts[cursor.next++ % POST_COUNT];
+        return InputSecurityScanner.scan(post).getCleaned(post);
+    }
+
+    // The detection the handlers used before the shared scanner, line break quirk included.
+    private static boolean legacyDetect(String input) {
+        if (input == null || input.isEmpty()) return false;
+        String cleaned = legacySanitize(input).toLowerCase();
+        for (String pattern : LEGACY_PATTERNS) {
+            if (cleaned.matches(".*" + pattern + ".*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The sanitizing the handlers used before the shared scanner.
+    private static String legacySanitize(String input) {
+        if (input == null) return "";
+        return input.replaceAll("[\"'#;()*/]", "")
+                    .replaceAll("\\b(union|select|insert|update|delete|drop|alter|create|execute|shutdown)\\b", "");
+    }
+
+    // Generates a post body of about the given length.
+    private static String generatePost(Random random, int length, boolean multiLine) {
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            // Most words are ordinary; the last few are the suspicious ones.
+            int word = random.nextInt(100) < 97 ? random.nextInt(WORDS.length - 5) : random.nextInt(WORDS.length);
+            text.append(WORDS[word]);
+            text.append(multiLine && random.nextInt(15) == 0 ? '\n' : ' ');
+        }
+        return text.toString();
+    }
+}
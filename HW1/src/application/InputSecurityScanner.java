@@ -0,0 +1,221 @@
+package application;
+
+import java.util.Arrays;
+
+/**
+ * The InputSecurityScanner class checks user text for SQL injection patterns and produces the
+ * sanitized text, both in one left-to-right pass. It is shared by the question, answer and
+ * review handlers.
+ *
+ * <p>Sanitizing removes the characters {@code " ' # ; ( ) * /} and then every word that is exactly
+ * one of the lower case keywords {@code union select insert update delete drop alter create execute
+ * shutdown}. Text is suspicious when, after sanitizing, it still contains one of those keywords in
+ * any case, or {@code --}. Words are runs of letters, digits and underscores. Line breaks are ordinary
+ * characters, so a payload on one line of a multi-line post is reported like any other.</p>
+ *
+ * <p>Keywords are recognized with a small automaton that follows each word as it is read, so the
+ * cost is linear in the length of the text.</p>
+ */
+public final class InputSecurityScanner {
+
+    /**
+     * The outcome of scanning one piece of text.
+     */
+    public static final class Result {
+        private final boolean suspicious;
+        private final String sanitized;
+
+        private Result(boolean suspicious, String sanitized) {
+            this.suspicious = suspicious;
+            this.sanitized = sanitized;
+        }
+
+        /**
+         * Checks whether the text looks like an SQL injection attempt.
+         * @return true if the text is suspicious
+         */
+        public boolean isSuspicious() { return suspicious; }
+
+        /**
+         * Gets the text with dangerous characters and lower case keywords removed.
+         * @return the sanitized text
+         */
+        public String getSanitized() { return sanitized; }
+
+        /**
+         * Gets the text a handler should store: the sanitized text if the input was suspicious,
+         * otherwise the input unchanged.
+         * @param input the text that was scanned
+         * @return the text to store
+         */
+        public String getCleaned(String input) { return suspicious ? sanitized : input; }
+    }
+
+    private static final String[] KEYWORDS = {
+        "union", "select", "insert", "update", "delete", "drop", "alter", "create", "execute", "shutdown"
+    };
+
+    private static final String REMOVED_CHARACTERS = "\"'#;()*/";
+
+    // Lookup tables for the ASCII range, which is almost all of the text users type.
+    private static final boolean[] REMOVED = new boolean[128];
+    private static final boolean[] ASCII_WORD = new boolean[128];
+
+    private static final Result EMPTY = new Result(false, "");
+
+    // Keyword trie over 'a'..'z'. State 0 is the root and DEAD means the word cannot be a keyword.
+    private static final int DEAD = -1;
+    private static final int[][] TRANSITIONS;
+    private static final boolean[] ACCEPTING;
+
+    static {
+        for (char c : REMOVED_CHARACTERS.toCharArray()) {
+            REMOVED[c] = true;
+        }
+        for (char c = 0; c < 128; c++) {
+            ASCII_WORD[c] = isWordCodePoint(c);
+        }
+
+        int states = 1;
+        for (String keyword : KEYWORDS) {
+            states += keyword.length();
+        }
+        int[][] transitions = new int[states][26];
+        boolean[] accepting = new boolean[states];
+        for (int[] row : transitions) {
+            Arrays.fill(row, DEAD);
+        }
+        int next = 1;
+        for (String keyword : KEYWORDS) {
+            int state = 0;
+            for (char c : keyword.toCharArray()) {
+                if (transitions[state][c - 'a'] == DEAD) {
+                    transitions[state][c - 'a'] = next++;
+                }
+                state = transitions[state][c - 'a'];
+            }
+            accepting[state] = true;
+        }
+        TRANSITIONS = transitions;
+        ACCEPTING = accepting;
+    }
+
+    private InputSecurityScanner() {
+    }
+
+    /**
+     * Scans text, producing the verdict and the sanitized text together.
+     *
+     * @param input the text to scan, may be null
+     * @return the scan result
+     */
+    public static Result scan(String input) {
+        if (input == null || input.isEmpty()) {
+            return EMPTY;
+        }
+        StringBuilder out = new StringBuilder(input.length());
+        boolean keyword = false;
+        boolean doubleDash = false;
+
+        // The word being read: where it starts in the output, its trie state, and whether it is all lower case.
+        int wordStart = -1;
+        int state = 0;
+        boolean lowerCase = true;
+
+        // Whether the word so far ends in a letter or digit, in which case a combining mark continues it.
+        boolean afterLetterOrDigit = false;
+
+        for (int i = 0; i <= input.length(); i++) {
+            char c = i < input.length() ? input.charAt(i) : ' ';
+            int codePoint;
+            boolean mark;
+            boolean word;
+            if (c < 128) {
+                if (REMOVED[c]) {
+                    // Removed before words are formed, so "sel'ect" is read as "select".
+                    continue;
+                }
+                codePoint = c;
+                mark = false;
+                word = ASCII_WORD[c];
+            } else {
+                codePoint = codePointAround(input, i);
+                mark = Character.getType(codePoint) == Character.NON_SPACING_MARK;
+                word = isWordCodePoint(codePoint) || (mark && afterLetterOrDigit);
+            }
+            if (word) {
+                if (wordStart < 0) {
+                    wordStart = out.length();
+                    state = 0;
+                    lowerCase = true;
+                }
+                if (state != DEAD) {
+                    char lower = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+                    state = lower >= 'a' && lower <= 'z' ? TRANSITIONS[state][lower - 'a'] : DEAD;
+                    lowerCase &= lower == c;
+                }
+                if (!mark) {
+                    afterLetterOrDigit = Character.isLetterOrDigit(codePoint);
+                }
+                out.append(c);
+                continue;
+            }
+            afterLetterOrDigit = false;
+            if (wordStart >= 0) {
+                if (state != DEAD && ACCEPTING[state]) {
+                    if (lowerCase) {
+                        out.setLength(wordStart);
+                    } else {
+                        keyword = true;
+                    }
+                }
+                wordStart = -1;
+            }
+            if (i == input.length()) {
+                break;
+            }
+            if (c == '-' && out.length() > 0 && out.charAt(out.length() - 1) == '-') {
+                doubleDash = true;
+            }
+            out.append(c);
+        }
+        return new Result(keyword || doubleDash, out.toString());
+    }
+
+    /**
+     * Checks whether text looks like an SQL injection attempt.
+     *
+     * @param input the text to check, may be null
+     * @return true if the text is suspicious
+     */
+    public static boolean isSuspicious(String input) {
+        return scan(input).isSuspicious();
+    }
+
+    /**
+     * Removes dangerous characters and lower case SQL keywords from text.
+     *
+     * @param input the text to sanitize, may be null
+     * @return the sanitized text, empty for null
+     */
+    public static String sanitize(String input) {
+        return scan(input).getSanitized();
+    }
+
+    // The code point a char belongs to, so both halves of a surrogate pair are classified alike.
+    private static int codePointAround(String input, int i) {
+        if (i >= input.length()) {
+            return ' ';
+        }
+        char c = input.charAt(i);
+        if (Character.isLowSurrogate(c) && i > 0 && Character.isHighSurrogate(input.charAt(i - 1))) {
+            return Character.codePointAt(input, i - 1);
+        }
+        return Character.codePointAt(input, i);
+    }
+
+    // Same definition of a word character as \b in java.util.regex.
+    private static boolean isWordCodePoint(int codePoint) {
+        return Character.isLetterOrDigit(codePoint) || codePoint == '_';
+    }
+}
@@ -0,0 +1,88 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class InputSecurityScannerTest {
+
+    // The regular expression checks the scanner replaced, searching the whole text rather than
+    // matching it with ".*", which stopped at the first line break.
+    private static final Pattern[] REFERENCE_PATTERNS = {
+        Pattern.compile("(?i)\\b(union|select|insert|update|delete|drop|alter|create|execute|shutdown)\\b"),
+        Pattern.compile("--")
+    };
+
+    private static String referenceSanitize(String input) {
+        return input.replaceAll("[\"'#;()*/]", "")
+                    .replaceAll("\\b(union|select|insert|update|delete|drop|alter|create|execute|shutdown)\\b", "");
+    }
+
+    private static boolean referenceDetect(String input) {
+        String cleaned = referenceSanitize(input);
+        for (Pattern pattern : REFERENCE_PATTERNS) {
+            if (pattern.matcher(cleaned).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testKnownInputs() {
+        assertTrue(InputSecurityScanner.isSuspicious("DROP TABLE Reviews"));
+        assertTrue(InputSecurityScanner.isSuspicious("grade' -- This is a comment"));
+        assertTrue("Removed characters join words", InputSecurityScanner.isSuspicious("SEL'ECT name"));
+        assertTrue("Removing a keyword can join dashes", InputSecurityScanner.isSuspicious("a -select- b"));
+        assertFalse(InputSecurityScanner.isSuspicious("This # of user stories is up to you, but make sure to implement CRUD!"));
+        assertFalse("Lower case keywords are removed rather than flagged", InputSecurityScanner.isSuspicious("please select one"));
+        assertFalse("Keywords inside longer words do not count", InputSecurityScanner.isSuspicious("Reunion and Updated notes"));
+        assertFalse(InputSecurityScanner.isSuspicious(null));
+
+        assertEquals("SELECT  FROM users  TABLE posts", InputSecurityScanner.sanitize("SELECT * FROM users; drop TABLE posts;"));
+        assertEquals("", InputSecurityScanner.sanitize(null));
+    }
+
+    @Test
+    public void testMultiLinePayloadsAreFlagged() {
+        InputSecurityScanner.Result keyword = InputSecurityScanner.scan("Thanks for the answer.\nDROP TABLE Reviews");
+        assertTrue(keyword.isSuspicious());
+        assertEquals("Thanks for the answer.\nDROP TABLE Reviews", keyword.getSanitized());
+
+        InputSecurityScanner.Result comment = InputSecurityScanner.scan("first line\r\ngrade' -- This is a comment");
+        assertTrue(comment.isSuspicious());
+        assertEquals("first line\r\ngrade -- This is a comment", comment.getSanitized());
+
+        assertTrue(InputSecurityScanner.isSuspicious("a\nb\nUnion c"));
+
+        InputSecurityScanner.Result plain = InputSecurityScanner.scan("Notes:\nplease select one\nof the options");
+        assertFalse(plain.isSuspicious());
+        assertEquals("Notes:\nplease  one\nof the options", plain.getSanitized());
+    }
+
+    @Test
+    public void testMatchesReferenceChecks() {
+        String[] pieces = {
+            "select", "SELECT", "Drop", "union", "unions", "update_", "_delete", "x", "42", " ", "  ", "-", "--",
+            "'", "\"", "#", ";", "(", ")", "*", "/", "/*", "*/", "\n", "\r\n", "\t", ".", "é", "é",
+            "éselect", "select́", "𝐀", " ", "İ", "UNION"
+        };
+        Random random = new Random(2025);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder input = new StringBuilder();
+            int parts = 1 + random.nextInt(8);
+            for (int p = 0; p < parts; p++) {
+                input.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String text = input.toString();
+            InputSecurityScanner.Result result = InputSecurityScanner.scan(text);
+            assertEquals("Verdict for [" + text + "]", referenceDetect(text), result.isSuspicious());
+            assertEquals("Sanitized [" + text + "]", referenceSanitize(text), result.getSanitized());
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package application;
 
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
 
 import databasePart1.DatabaseHelper;
 import javafx.geometry.Insets;
@@ -15,17 +17,23 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.util.Pair;
 
 /**
  * This page displays the instructor interface with notifications and reviewer approval functionality.
  */
 public class InstructorHomePage {
+    // Questions or replies shown per page of the student activity window.
+    private static final int ACTIVITY_PAGE_SIZE = 25;
+
     private final DatabaseHelper databaseHelper;
     private QuestionHandler qHandler;
     private AnswerHandler aHandler;
     private UserHandler uHandler;
     private ReviewHandler rHandler;
     private String userName; // Added to track current user
+    // Background loads for the dashboard and its windows; cancelled when the user leaves the dashboard.
+    private AsyncDataService.Scope loads = AsyncDataService.getShared().newScope();
 
     public InstructorHomePage(DatabaseHelper databaseHelper, QuestionHandler qHandler, 
                             AnswerHandler aHandler, UserHandler uHandler, ReviewHandler rHandler) {
@@ -38,6 +46,8 @@ public class InstructorHomePage {
 
     public void show(Stage primaryStage, String userName) {
         this.userName = userName;
+        loads.cancel();
+        loads = AsyncDataService.getShared().newScope();
         VBox layout = new VBox(10);
         layout.setPadding(new Insets(20));
         layout.setStyle("-fx-alignment: center;");
@@ -60,12 +70,18 @@ public class InstructorHomePage {
         Scene userScene = new Scene(layout, 800, 400);
         primaryStage.setScene(userScene);
         primaryStage.setTitle("Instructor Dashboard");
+        loads.cancelWhenLeft(primaryStage, userScene);
     }
 
     private void showNotifications(Stage primaryStage) {
-        int userId = databaseHelper.getUserIdByUsername(userName);
-        String notifications = databaseHelper.getNotifications(userId);
+        loads.load(() -> {
+            int userId = databaseHelper.getUserIdByUsername(userName);
+            return new Pair<>(userId, databaseHelper.getNotifications(userId));
+        }, loaded -> showNotifications(primaryStage, loaded.getKey(), loaded.getValue()),
+           error -> loadFailed("Could not load notifications", error));
+    }
 
+    private void showNotifications(Stage primaryStage, int userId, String notifications) {
         Stage notificationStage = new Stage();
         VBox layout = new VBox(10);
         layout.setPadding(new Insets(20));
@@ -96,11 +112,13 @@ public class InstructorHomePage {
                     approveButton.setOnAction(e -> handleReviewerApproval(studentUsername, notification, userId, notificationStage, primaryStage));
                     
                     Button rejectButton = new Button("Reject");
-                    rejectButton.setOnAction(e -> {
+                    rejectButton.setOnAction(e -> loads.load(() -> {
                         databaseHelper.deleteNotificationLine(userId, notification);
+                        return notification;
+                    }, rejected -> {
                         notificationStage.close();
                         showNotifications(primaryStage);
-                    });
+                    }, error -> loadFailed("Could not reject the request", error)));
                     
                     buttonPanel.getChildren().addAll(viewActivityButton, approveButton, rejectButton);
                     notificationBox.getChildren().addAll(notificationLabel, buttonPanel);
@@ -117,11 +135,10 @@ public class InstructorHomePage {
 
 
         Button clearButton = new Button("Clear Notifications");
-        clearButton.setOnAction(e -> {
-            databaseHelper.clearNotifications(userId);
+        clearButton.setOnAction(e -> loads.load(() -> databaseHelper.clearNotifications(userId), cleared -> {
             notificationStage.close();
             show(primaryStage, userName); // Refresh the view
-        });
+        }, error -> loadFailed("Could not clear notifications", error)));
 
         Button closeButton = new Button("Close");
         closeButton.setOnAction(e -> notificationStage.close());
@@ -142,64 +159,26 @@ public class InstructorHomePage {
         
         // Tab for student's questions
         Tab questionsTab = new Tab("Questions");
-        VBox questionsBox = new VBox(5);
-        try {
-            ResultSet questions = qHandler.getAllQuestions();
-            while (questions.next()) {
-                if (questions.getString("userName").equals(studentUsername)) {
-                    String title = questions.getString("title");
-                    String content = questions.getString("post");
-                    
-                    VBox questionBox = new VBox(5);
-                    questionBox.setStyle("-fx-border-color: #ccc; -fx-border-width: 1; -fx-padding: 10;");
-                    questionBox.getChildren().addAll(
-                        new Label("Title: " + title),
-                        new Label("Content: " + content),
-                        new Separator()
-                    );
-                    questionsBox.getChildren().add(questionBox);
-                }
-            }
-        } catch (SQLException e) {
-            questionsBox.getChildren().add(new Label("Error loading questions: " + e.getMessage()));
-        }
+        VBox questionsBox = new VBox(5, new Label("Loading questions..."));
         questionsTab.setContent(new ScrollPane(questionsBox));
+        showActivityPage(questionsBox, "questions", null,
+                cursor -> qHandler.listPostsByAuthor(studentUsername, cursor, ACTIVITY_PAGE_SIZE),
+                entry -> Arrays.asList(
+                    "Title: " + entry.getPostTitle(),
+                    "Content: " + entry.getContent()
+                ));
         
         // Tab for student's replies
         Tab repliesTab = new Tab("Replies");
-        VBox repliesBox = new VBox(5);
-        try {
-            String query = "SELECT * FROM Replies WHERE userName = ?";
-            PreparedStatement pstmt = databaseHelper.connectToDatabase().prepareStatement(query);
-            pstmt.setString(1, studentUsername);
-            ResultSet replies = pstmt.executeQuery();
-            
-            while (replies.next()) {
-                String replyContent = replies.getString("reply");
-                int postId = replies.getInt("postId");
-                boolean isPrivate = replies.getBoolean("isPrivate");
-                
-                VBox replyBox = new VBox(5);
-                replyBox.setStyle("-fx-border-color: #ccc; -fx-border-width: 1; -fx-padding: 10;");
-                
-                try {
-                    String postTitle = qHandler.getPostTitleById(postId);
-                    replyBox.getChildren().addAll(
-                        new Label("On post: " + postTitle),
-                        new Label("Reply: " + replyContent),
-                        new Label("Visibility: " + (isPrivate ? "Private" : "Public")),
-                        new Separator()
-                    );
-                } catch (SQLException e) {
-                    replyBox.getChildren().add(new Label("Error loading post details"));
-                }
-                
-                repliesBox.getChildren().add(replyBox);
-            }
-        } catch (SQLException e) {
-            repliesBox.getChildren().add(new Label("Error loading replies: " + e.getMessage()));
-        }
+        VBox repliesBox = new VBox(5, new Label("Loading replies..."));
         repliesTab.setContent(new ScrollPane(repliesBox));
+        showActivityPage(repliesBox, "replies", null,
+                cursor -> aHandler.listRepliesByAuthor(studentUsername, cursor, ACTIVITY_PAGE_SIZE),
+                entry -> Arrays.asList(
+                    "On post: " + (entry.getPostTitle() != null ? entry.getPostTitle() : "(deleted post)"),
+                    "Reply: " + entry.getContent(),
+                    "Visibility: " + (entry.isPrivate() ? "Private" : "Public")
+                ));
         
         tabPane.getTabs().addAll(questionsTab, repliesTab);
         layout.getChildren().addAll(
@@ -212,30 +191,83 @@ public class InstructorHomePage {
         activityStage.show();
     }
 
+    // Reads one page of a student's questions or replies.
+    @FunctionalInterface
+    private interface ActivityPageLoader {
+        ActivityPage load(String cursor) throws SQLException;
+    }
+
+    // Loads one page of a student's activity into an activity tab, with a button for the next page.
+    private void showActivityPage(VBox box, String what, String cursor,
+                                  ActivityPageLoader page, Function<ActivityEntry, List<String>> lines) {
+        loads.load(() -> page.load(cursor), loaded -> {
+            if (cursor == null) {
+                box.getChildren().clear();
+                if (loaded.getEntries().isEmpty()) {
+                    box.getChildren().add(new Label("No " + what + " yet."));
+                }
+            } else {
+                // Drop the "Load more" button of the previous page.
+                box.getChildren().remove(box.getChildren().size() - 1);
+            }
+            for (ActivityEntry entry : loaded.getEntries()) {
+                VBox entryBox = new VBox(5);
+                entryBox.setStyle("-fx-border-color: #ccc; -fx-border-width: 1; -fx-padding: 10;");
+                for (String line : lines.apply(entry)) {
+                    entryBox.getChildren().add(new Label(line));
+                }
+                entryBox.getChildren().add(new Separator());
+                box.getChildren().add(entryBox);
+            }
+            if (loaded.hasMore()) {
+                Button moreButton = new Button("Load more " + what);
+                moreButton.setOnAction(e -> {
+                    moreButton.setDisable(true);
+                    showActivityPage(box, what, loaded.getNextCursor(), page, lines);
+                });
+                box.getChildren().add(moreButton);
+            }
+        }, error -> box.getChildren().setAll(new Label("Error loading " + what + ": " + error.getMessage())));
+    }
+
     private void handleReviewerApproval(String studentUsername, String notification, 
                                       int userId, Stage notificationStage, Stage primaryStage) {
-        int studentId = databaseHelper.getUserIdByUsername(studentUsername);
-		String currentRole = databaseHelper.getUserRole(studentUsername);
-		String newRole = currentRole.contains("Reviewer") ? currentRole : 
-		                currentRole.isEmpty() ? "Reviewer" : currentRole + ",Reviewer";
-		
-		if (databaseHelper.changeUserRole(studentId, newRole)) {
-		    // Notify student
-		    String approvalMsg = "Your reviewer request has been approved by " + userName;
-		    databaseHelper.addNotificationToUser(approvalMsg, studentId);
-		    
-		    // Remove this notification
-		    databaseHelper.deleteNotificationLine(userId, notification);
-		    
-		    Alert success = new Alert(Alert.AlertType.INFORMATION);
-		    success.setTitle("Success");
-		    success.setContentText(studentUsername + " is now a Reviewer");
-		    success.showAndWait();
-		    
-		    // Refresh notifications
-		    notificationStage.close();
-		    showNotifications(primaryStage);
-		}
+        loads.load(() -> {
+            int studentId = databaseHelper.getUserIdByUsername(studentUsername);
+            String currentRole = databaseHelper.getUserRole(studentUsername);
+            String newRole = currentRole.contains("Reviewer") ? currentRole : 
+                            currentRole.isEmpty() ? "Reviewer" : currentRole + ",Reviewer";
+            
+            if (!databaseHelper.changeUserRole(studentId, newRole)) {
+                return false;
+            }
+            // Notify student
+            String approvalMsg = "Your reviewer request has been approved by " + userName;
+            databaseHelper.addNotificationToUser(approvalMsg, studentId);
+            
+            // Remove this notification
+            databaseHelper.deleteNotificationLine(userId, notification);
+            return true;
+        }, approved -> {
+            if (approved) {
+                Alert success = new Alert(Alert.AlertType.INFORMATION);
+                success.setTitle("Success");
+                success.setContentText(studentUsername + " is now a Reviewer");
+                success.showAndWait();
+                
+                // Refresh notifications
+                notificationStage.close();
+                showNotifications(primaryStage);
+            }
+        }, error -> loadFailed("Could not approve the request", error));
+    }
+
+    private void loadFailed(String message, Throwable error) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Database Error");
+        alert.setContentText(message);
+        alert.showAndWait();
+        error.printStackTrace();
     }
 
     
@@ -0,0 +1,82 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import databasePart1.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+    private static void assertWithin(long expected, long actual, double tolerance) {
+        assertTrue("Expected about " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected * tolerance);
+    }
+
+    @Test
+    public void testPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertWithin(5_000_000, histogram.getPercentileNanos(50), 0.035);
+        assertWithin(9_900_000, histogram.getPercentileNanos(99), 0.035);
+        assertEquals(10_000_000, histogram.getPercentileNanos(100));
+        assertEquals(10_000_000, histogram.getMaxNanos());
+        assertEquals(5_000_500.0, histogram.getMeanNanos(), 0.001);
+    }
+
+    @Test
+    public void testSmallAndHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE / 2);
+        assertEquals(0, histogram.getPercentileNanos(10));
+        assertEquals(3, histogram.getPercentileNanos(50));
+        assertEquals("The last bucket is capped by the maximum", Long.MAX_VALUE / 2, histogram.getPercentileNanos(100));
+        assertEquals(0, new LatencyHistogram().getPercentileNanos(99));
+    }
+
+    @Test
+    public void testConcurrentRecordingLosesNothing() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    histogram.record(1000 + i % 500);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(160_000, histogram.getCount());
+        assertEquals(1499, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void testAddAndReset() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(100);
+        second.record(200);
+        second.record(300);
+        first.add(second);
+        assertEquals(3, first.getCount());
+        assertEquals(600, first.getTotalNanos());
+        assertEquals(300, first.getMaxNanos());
+
+        first.reset();
+        assertEquals(0, first.getCount());
+        assertEquals(0, first.getPercentileNanos(50));
+    }
+}
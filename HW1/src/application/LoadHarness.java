@@ -0,0 +1,463 @@
+package application;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+import databasePart1.ForumDataGenerator;
+import databasePart1.LatencyHistogram;
+import databasePart1.StatementProfiler;
+
+/**
+ * Simulates many people using the forum at once, without the UI. Every session is a thread acting as one
+ * student, reviewer or instructor: it picks an operation from its role's mix, calls the handlers the way
+ * the pages do, then waits an exponentially distributed think time before the next one. At the end it
+ * prints the throughput, the p50 and p99 latency and the error rate of every operation.
+ *
+ * <p>Run it with {@code main}. It is configured with system properties:</p>
+ * <ul>
+ *   <li>{@code load.url}: the database, by default an {@code AUTO_SERVER=TRUE} file in the temp directory
+ *       like the application's own; it is filled with {@link ForumDataGenerator} if it has no posts
+ *       ({@code load.seedUsers}, {@code load.seedPosts})</li>
+ *   <li>{@code load.students}, {@code load.reviewers}, {@code load.instructors}: the number of sessions</li>
+ *   <li>{@code load.duration} and {@code load.rampUp}: seconds to run, and over which to stagger the starts</li>
+ *   <li>{@code load.thinkMillis}: the mean think time</li>
+ *   <li>{@code load.studentMix}, {@code load.reviewerMix}, {@code load.instructorMix}: weights such as
+ *       {@code browse=30,search=10}; operations left out are not run</li>
+ *   <li>{@code load.poolSize}: the size of the connection pool all sessions share</li>
+ *   <li>{@code load.report}: a CSV file to also write the results to</li>
+ *   <li>{@code load.slowQueryMillis}: profile every statement the sessions run, log those slower than this
+ *       and print the costliest statements at the end</li>
+ * </ul>
+ */
+public class LoadHarness {
+
+    private static final String DEFAULT_STUDENT_MIX = "browse=30,open=25,search=10,read=20,answer=5,like=8,message=2";
+    private static final String DEFAULT_REVIEWER_MIX = "browse=20,open=20,reviews=35,review=15,edit=10";
+    private static final String DEFAULT_INSTRUCTOR_MIX = "count=45,page=30,markRead=10,browse=15";
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * One simulated operation. It returns false when the handler reported a failure without throwing,
+     * and null when the session had nothing to do it on yet (no reply seen to like, say), which is not
+     * counted.
+     */
+    @FunctionalInterface
+    private interface Operation {
+        Boolean run(Session session) throws Exception;
+    }
+
+    /**
+     * The latency and outcome counts of one operation across all sessions.
+     */
+    private static final class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+    }
+
+    /**
+     * The state of one simulated user: who they are and what they last looked at.
+     */
+    private static final class Session {
+        final String userName;
+        final int userId;
+        final Map<String, Integer> mix;
+        final Random random;
+        final List<Integer> listedPosts = new ArrayList<>();
+        final List<Integer> seenReplies = new ArrayList<>();
+        int openPost;
+        int ownReview;
+
+        Session(String userName, int userId, Map<String, Integer> mix, long seed) {
+            this.userName = userName;
+            this.userId = userId;
+            this.mix = mix;
+            this.random = new Random(seed);
+        }
+
+        int anyListedPost(int fallback) {
+            return listedPosts.isEmpty() ? fallback : listedPosts.get(random.nextInt(listedPosts.size()));
+        }
+    }
+
+    private final QuestionHandler qHandler;
+    private final AnswerHandler aHandler;
+    private final ReviewHandler rHandler;
+    private final UserHandler uHandler;
+    private final DatabaseHelper dbHelper;
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+    // Filled in with the operations, then only read, so sessions can share it.
+    private final Map<String, Stats> stats = new LinkedHashMap<>();
+    private final int maxPostId;
+    private final List<Integer> instructorIds;
+
+    private LoadHarness(ConnectionPool pool) throws SQLException {
+        dbHelper = new DatabaseHelper(pool);
+        qHandler = new QuestionHandler(pool);
+        aHandler = new AnswerHandler(pool, qHandler);
+        rHandler = new ReviewHandler(pool);
+        uHandler = new UserHandler(pool);
+        maxPostId = Math.max(1, queryInt(pool, "SELECT COALESCE(MAX(postId), 0) FROM Posts"));
+        instructorIds = usersWithRole(pool, "%Instructor%").ids;
+        defineOperations();
+    }
+
+    // The operations, named as in the mixes, each calling the handlers like the matching page does.
+    private void defineOperations() {
+        operations.put("browse", s -> {
+            PostReadSet readSet = uHandler.getReadPostSet(s.userName);
+            QuestionHandler.PostFilter filter = s.random.nextInt(3) == 0
+                    ? QuestionHandler.PostFilter.UNREAD : QuestionHandler.PostFilter.ALL;
+            QuestionHandler.PostSort[] sorts = QuestionHandler.PostSort.values();
+            PostPage page = qHandler.listPosts(filter, readSet, sorts[s.random.nextInt(sorts.length)], null, PAGE_SIZE);
+            remember(s, page);
+            return true;
+        });
+        operations.put("search", s -> {
+            String[] words = {"exam", "homework", "database", "junit", "deadline", "project", "grading", "javafx"};
+            PostPage page = qHandler.listPosts(words[s.random.nextInt(words.length)], QuestionHandler.PostFilter.ALL,
+                    null, QuestionHandler.PostSort.NEWEST, null, PAGE_SIZE);
+            remember(s, page);
+            return true;
+        });
+        operations.put("open", s -> {
+            s.openPost = s.anyListedPost(1 + s.random.nextInt(maxPostId));
+            ReplyThread thread = aHandler.loadThread(s.openPost, s.userName);
+            s.seenReplies.clear();
+            collectReplies(thread.getReplies(), s.seenReplies);
+            return qHandler.getPostContentById(s.openPost) != null;
+        });
+        operations.put("read", s -> {
+            // Hovering over a post in the list marks it read.
+            uHandler.addPostRead(s.userName, s.anyListedPost(1 + s.random.nextInt(maxPostId)));
+            return true;
+        });
+        operations.put("answer", s -> {
+            int postId = s.openPost > 0 ? s.openPost : s.anyListedPost(1 + s.random.nextInt(maxPostId));
+            String answer = "Load test answer from " + s.userName + " about the homework deadline.";
+            if (!aHandler.validateAnswer(answer).isEmpty()) {
+                return false;
+            }
+            aHandler.addAnswer(answer, postId, s.userName, s.random.nextInt(20) == 0);
+            return true;
+        });
+        operations.put("like", s -> {
+            if (s.seenReplies.isEmpty()) {
+                return null;
+            }
+            aHandler.toggleLike(s.seenReplies.get(s.random.nextInt(s.seenReplies.size())), s.userName);
+            return true;
+        });
+        operations.put("message", s -> instructorIds.isEmpty() ? null : dbHelper.addNotificationToUser(
+                s.userName + " (User " + s.userId + "): question about grading",
+                instructorIds.get(s.random.nextInt(instructorIds.size()))));
+        operations.put("reviews", s -> {
+            if (s.seenReplies.isEmpty()) {
+                return null;
+            }
+            try (ResultSet rs = rHandler.getCurrentReviewsByReplyId(s.seenReplies.get(s.random.nextInt(s.seenReplies.size())))) {
+                if (rs == null) {
+                    return false;
+                }
+                while (rs.next()) {
+                    // Read every row, as the review page does.
+                }
+            }
+            ReviewerProfile profile = dbHelper.getReviewerProfile(s.userName);
+            return profile != null;
+        });
+        operations.put("review", s -> {
+            if (s.seenReplies.isEmpty()) {
+                return null;
+            }
+            String review = "Clear answer, but cite the lecture notes for the database part.";
+            if (!rHandler.validateReview(review).isEmpty()) {
+                return false;
+            }
+            boolean added = rHandler.addReviewForReply(review, s.userName,
+                    s.seenReplies.get(s.random.nextInt(s.seenReplies.size())));
+            if (added) {
+                s.ownReview = queryOwnLatestReview(s.userName);
+            }
+            return added;
+        });
+        operations.put("edit", s -> {
+            if (s.ownReview <= 0) {
+                return null;
+            }
+            if (!rHandler.updateReview(s.ownReview, "Updated after feedback: cite the lecture notes.")) {
+                return false;
+            }
+            // The edit is a new version; the next edit applies to it.
+            s.ownReview = queryOwnLatestReview(s.userName);
+            return true;
+        });
+        operations.put("count", s -> dbHelper.getNumNotifications(s.userId) >= 0);
+        operations.put("page", s -> dbHelper.getNotificationsPage(s.userId, 0, PAGE_SIZE) != null);
+        operations.put("markRead", s -> dbHelper.markNotificationsRead(s.userId));
+        for (String name : operations.keySet()) {
+            stats.put(name, new Stats());
+        }
+    }
+
+    private static void remember(Session s, PostPage page) {
+        s.listedPosts.clear();
+        for (PostSummary summary : page.getPosts()) {
+            s.listedPosts.add(summary.getPostId());
+        }
+    }
+
+    private static void collectReplies(List<ReplyThread.Node> nodes, List<Integer> ids) {
+        for (ReplyThread.Node node : nodes) {
+            ids.add(node.getReplyId());
+            collectReplies(node.getChildren(), ids);
+        }
+    }
+
+    // The reviewer's newest current review, which the review page would be showing after a save.
+    private int queryOwnLatestReview(String reviewer) throws SQLException {
+        try (Connection conn = dbHelper.getConnectionPool().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT MAX(reviewId) FROM Reviews WHERE reviewerName = ? AND isCurrent = TRUE")) {
+            pstmt.setString(1, reviewer);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    // Runs one session until the deadline.
+    private void runSession(Session session, long thinkMillis, long deadline) throws InterruptedException {
+        int totalWeight = 0;
+        for (int weight : session.mix.values()) {
+            totalWeight += weight;
+        }
+        while (System.currentTimeMillis() < deadline) {
+            int pick = session.random.nextInt(totalWeight);
+            String name = null;
+            for (Map.Entry<String, Integer> entry : session.mix.entrySet()) {
+                pick -= entry.getValue();
+                if (pick < 0) {
+                    name = entry.getKey();
+                    break;
+                }
+            }
+            Stats opStats = stats.get(name);
+            long start = System.nanoTime();
+            Boolean ok;
+            try {
+                ok = operations.get(name).run(session);
+            } catch (Exception e) {
+                ok = false;
+            }
+            if (ok != null) {
+                opStats.latency.record(System.nanoTime() - start);
+                if (!ok) {
+                    opStats.errors.increment();
+                }
+            }
+            // Exponential think times give the bursty arrivals of real users.
+            long think = (long) (-Math.log(1 - session.random.nextDouble()) * thinkMillis);
+            Thread.sleep(Math.min(think, Math.max(0, deadline - System.currentTimeMillis())));
+        }
+    }
+
+    /**
+     * Parses a mix such as {@code browse=30,search=10} into operation weights.
+     *
+     * @param mix the mix
+     * @return the weights by operation name, in the order given
+     * @throws IllegalArgumentException if an operation is unknown or a weight is not a positive number
+     */
+    private Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2 || !operations.containsKey(pair[0].trim())) {
+                throw new IllegalArgumentException("Unknown operation in mix: " + part
+                        + " (known: " + operations.keySet() + ")");
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(pair[0].trim(), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Mix has no operations: " + mix);
+        }
+        return weights;
+    }
+
+    private void report(long elapsedMillis, String csvFile) throws IOException {
+        double seconds = elapsedMillis / 1000.0;
+        System.out.printf("%n%-10s %9s %9s %10s %10s %10s %8s%n",
+                "operation", "count", "ops/s", "p50 ms", "p99 ms", "max ms", "errors");
+        List<String> csv = new ArrayList<>();
+        csv.add("operation,count,opsPerSecond,p50Millis,p99Millis,maxMillis,errors,errorRate");
+        long totalCount = 0;
+        long totalErrors = 0;
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            String name = entry.getKey();
+            Stats opStats = entry.getValue();
+            long count = opStats.latency.getCount();
+            if (count == 0) {
+                continue;
+            }
+            long errors = opStats.errors.sum();
+            totalCount += count;
+            totalErrors += errors;
+            double p50 = opStats.latency.getPercentileNanos(50) / 1e6;
+            double p99 = opStats.latency.getPercentileNanos(99) / 1e6;
+            double max = opStats.latency.getMaxNanos() / 1e6;
+            System.out.printf(Locale.ROOT, "%-10s %9d %9.1f %10.2f %10.2f %10.2f %7.2f%%%n",
+                    name, count, count / seconds, p50, p99, max, 100.0 * errors / Math.max(1, count));
+            csv.add(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f,%.3f,%d,%.5f",
+                    name, count, count / seconds, p50, p99, max, errors, (double) errors / Math.max(1, count)));
+        }
+        System.out.printf(Locale.ROOT, "%-10s %9d %9.1f %43.2f%%%n", "total", totalCount, totalCount / seconds,
+                100.0 * totalErrors / Math.max(1, totalCount));
+        if (csvFile != null) {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(csvFile), StandardCharsets.UTF_8))) {
+                for (String line : csv) {
+                    out.println(line);
+                }
+            }
+            System.out.println("Results written to " + Paths.get(csvFile).toAbsolutePath());
+        }
+    }
+
+    /**
+     * The user names and ids of one role.
+     */
+    private static final class Users {
+        final List<String> names = new ArrayList<>();
+        final List<Integer> ids = new ArrayList<>();
+    }
+
+    private static Users usersWithRole(ConnectionPool pool, String rolePattern) throws SQLException {
+        Users users = new Users();
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT id, userName FROM cse360users WHERE role LIKE ? ORDER BY id")) {
+            pstmt.setString(1, rolePattern);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    users.ids.add(rs.getInt("id"));
+                    users.names.add(rs.getString("userName"));
+                }
+            }
+        }
+        return users;
+    }
+
+    private static int queryInt(ConnectionPool pool, String query) throws SQLException {
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args not used; the test is configured with system properties
+     * @throws Exception if the database cannot be opened or filled
+     */
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("load.url", "jdbc:h2:" + Paths.get(System.getProperty("java.io.tmpdir"),
+                "cse360-load").toAbsolutePath() + ";AUTO_SERVER=TRUE");
+        int students = Integer.getInteger("load.students", 200);
+        int reviewers = Integer.getInteger("load.reviewers", 20);
+        int instructors = Integer.getInteger("load.instructors", 5);
+        long durationMillis = Long.getLong("load.duration", 60L) * 1000;
+        long rampUpMillis = Long.getLong("load.rampUp", 10L) * 1000;
+        long thinkMillis = Long.getLong("load.thinkMillis", 2000L);
+
+        try (ConnectionPool pool = new ConnectionPool(url, "sa", "", Integer.getInteger("load.poolSize", 20))) {
+            new DatabaseHelper(pool);
+            new QuestionHandler(pool);
+            if (queryInt(pool, "SELECT COUNT(*) FROM Posts") == 0) {
+                System.out.println("Filling " + url + " with generated data");
+                new ForumDataGenerator(pool, Long.getLong("load.seed", 1L))
+                        .users(Integer.getInteger("load.seedUsers", 2000))
+                        .posts(Integer.getInteger("load.seedPosts", 20000))
+                        .generate();
+            }
+            long slowQueryMillis = Long.getLong("load.slowQueryMillis", -1);
+            StatementProfiler profiler = slowQueryMillis >= 0 ? new StatementProfiler(slowQueryMillis) : null;
+            pool.setProfiler(profiler);
+            LoadHarness harness = new LoadHarness(pool);
+            Map<String, Integer> studentMix = harness.parseMix(System.getProperty("load.studentMix", DEFAULT_STUDENT_MIX));
+            Map<String, Integer> reviewerMix = harness.parseMix(System.getProperty("load.reviewerMix", DEFAULT_REVIEWER_MIX));
+            Map<String, Integer> instructorMix = harness.parseMix(System.getProperty("load.instructorMix", DEFAULT_INSTRUCTOR_MIX));
+
+            Users studentUsers = usersWithRole(pool, "Student");
+            Users reviewerUsers = usersWithRole(pool, "%Reviewer%");
+            Users instructorUsers = usersWithRole(pool, "%Instructor%");
+            List<Session> sessions = new ArrayList<>();
+            addSessions(sessions, studentUsers, students, studentMix, "students");
+            addSessions(sessions, reviewerUsers, reviewers, reviewerMix, "reviewers");
+            addSessions(sessions, instructorUsers, instructors, instructorMix, "instructors");
+
+            System.out.printf("Running %d students, %d reviewers and %d instructors for %d s (think time %d ms)%n",
+                    students, reviewers, instructors, durationMillis / 1000, thinkMillis);
+            long begin = System.currentTimeMillis();
+            long deadline = begin + rampUpMillis + durationMillis;
+            CountDownLatch done = new CountDownLatch(sessions.size());
+            for (int i = 0; i < sessions.size(); i++) {
+                Session session = sessions.get(i);
+                long startDelay = rampUpMillis * i / sessions.size();
+                Thread thread = new Thread(() -> {
+                    try {
+                        Thread.sleep(startDelay);
+                        harness.runSession(session, thinkMillis, deadline);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }, "load-" + session.userName);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            done.await();
+            harness.report(System.currentTimeMillis() - begin, System.getProperty("load.report"));
+            if (profiler != null) {
+                System.out.println();
+                System.out.print(profiler.report(15));
+            }
+            harness.aHandler.flushCounters();
+            harness.qHandler.flushCounters();
+            harness.rHandler.flushCounters();
+        }
+    }
+
+    // Gives each session one of the role's users, reusing users when there are fewer than sessions.
+    private static void addSessions(List<Session> sessions, Users users, int count, Map<String, Integer> mix,
+            String role) {
+        if (count > 0 && users.names.isEmpty()) {
+            System.err.println("No users to run " + role + " as; skipping them");
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int u = i % users.names.size();
+            sessions.add(new Session(users.names.get(u), users.ids.get(u), mix, sessions.size()));
+        }
+    }
+}
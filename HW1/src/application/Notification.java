@@ -0,0 +1,72 @@
+package application;
+
+import java.sql.Timestamp;
+
+/**
+ * The Notification class represents one message sent to a user.
+ * Notifications are stored one per row, so they can be counted, paged and deleted individually.
+ */
+public class Notification {
+    private final long id;
+    private final int userId;
+    private final String message;
+    private final Timestamp createdAt;
+    private final boolean read;
+
+    /**
+     * Constructs a Notification with the given details.
+     *
+     * @param id        the unique identifier of the notification
+     * @param userId    the id of the user the notification was sent to
+     * @param message   the notification text
+     * @param createdAt when the notification was sent
+     * @param read      whether the user has seen the notification
+     */
+    public Notification(long id, int userId, String message, Timestamp createdAt, boolean read) {
+        this.id = id;
+        this.userId = userId;
+        this.message = message;
+        this.createdAt = createdAt;
+        this.read = read;
+    }
+
+    /**
+     * Returns the unique identifier of the notification.
+     *
+     * @return the notification id
+     */
+    public long getId() { return id; }
+
+    /**
+     * Returns the id of the user the notification was sent to.
+     *
+     * @return the recipient's user id
+     */
+    public int getUserId() { return userId; }
+
+    /**
+     * Returns the notification text.
+     *
+     * @return the message
+     */
+    public String getMessage() { return message; }
+
+    /**
+     * Returns when the notification was sent.
+     *
+     * @return the creation time
+     */
+    public Timestamp getCreatedAt() { return createdAt; }
+
+    /**
+     * Returns whether the user has seen the notification.
+     *
+     * @return true if the notification has been read
+     */
+    public boolean isRead() { return read; }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
@@ -0,0 +1,120 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+
+public class NotificationTest {
+
+    private Connection conn;
+    private DatabaseHelper dbHelper;
+    private int userId;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:notificationtest;DB_CLOSE_DELAY=0");
+        dbHelper = new DatabaseHelper(ConnectionPool.wrap(conn));
+        dbHelper.register(new User("instructor1", "Password1!", "Instructor"));
+        userId = dbHelper.getUserIdByUsername("instructor1");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testCountAndMarkRead() {
+        assertTrue(dbHelper.addNotificationToUser("first", userId));
+        assertTrue(dbHelper.addNotificationToUser("second", userId));
+        assertEquals(2, dbHelper.getNumNotifications(userId));
+
+        assertTrue(dbHelper.markNotificationsRead(userId));
+        assertEquals("Read notifications no longer count", 0, dbHelper.getNumNotifications(userId));
+        assertEquals("\nfirst\nsecond", dbHelper.getNotifications(userId));
+    }
+
+    @Test
+    public void testUnknownUserGetsNothing() {
+        assertFalse(dbHelper.addNotificationToUser("lost", 9999));
+    }
+
+    @Test
+    public void testPagingAndDeleteById() {
+        for (int i = 1; i <= 5; i++) {
+            dbHelper.addNotificationToUser("message " + i, userId);
+        }
+        List<Notification> firstPage = dbHelper.getNotificationsPage(userId, 0, 2);
+        assertEquals(2, firstPage.size());
+        assertEquals("Newest first", "message 5", firstPage.get(0).getMessage());
+        assertEquals("message 3", dbHelper.getNotificationsPage(userId, 2, 2).get(0).getMessage());
+
+        assertTrue(dbHelper.deleteNotification(firstPage.get(0).getId()));
+        assertEquals(4, dbHelper.getNumNotifications(userId));
+    }
+
+    @Test
+    public void testDeleteNotificationLineMatchesSubstring() {
+        dbHelper.addNotificationToUser("User 7 forgot their password. Send them a temporary one.", userId);
+        dbHelper.addNotificationToUser("Unrelated", userId);
+        assertTrue(dbHelper.deleteNotificationLine(userId, "User 7 forgot their password."));
+        assertEquals("\nUnrelated", dbHelper.getNotifications(userId));
+        assertTrue("Clearing works even when nothing is left to clear",
+                dbHelper.clearNotifications(userId) && dbHelper.clearNotifications(userId));
+    }
+
+    @Test
+    public void testLegacyNotificationTextIsMigrated() throws SQLException {
+        try (Connection legacy = DriverManager.getConnection("jdbc:h2:mem:legacynotifications;DB_CLOSE_DELAY=0");
+             Statement stmt = legacy.createStatement()) {
+            stmt.execute("CREATE TABLE cse360users (id INT AUTO_INCREMENT PRIMARY KEY, userName VARCHAR(255) UNIQUE, "
+                    + "password VARCHAR(255), role VARCHAR(200), notifications VARCHAR(10000), "
+                    + "forgotPassword BOOLEAN DEFAULT FALSE)");
+            stmt.execute("INSERT INTO cse360users (userName, role, notifications) "
+                    + "VALUES ('old', 'Student', CONCAT(CHAR(10), 'one', CHAR(10), 'two'))");
+
+            DatabaseHelper migrated = new DatabaseHelper(ConnectionPool.wrap(legacy));
+            int oldId = migrated.getUserIdByUsername("old");
+            assertEquals(2, migrated.getNumNotifications(oldId));
+            assertEquals("\none\ntwo", migrated.getNotifications(oldId));
+        }
+    }
+
+    @Test
+    public void testBroadcastToRole() throws SQLException {
+        dbHelper.register(new User("instructor2", "Password1!", "Instructor"));
+        dbHelper.register(new User("student1", "Password1!", "Student"));
+        int secondId = dbHelper.getUserIdByUsername("instructor2");
+        int studentId = dbHelper.getUserIdByUsername("student1");
+
+        assertTrue(dbHelper.addNotificationToAllInstructors("Request to become reviewer from student: student1"));
+        assertEquals(1, dbHelper.getNumNotifications(userId));
+        assertEquals(1, dbHelper.getNumNotifications(secondId));
+        assertEquals(0, dbHelper.getNumNotifications(studentId));
+        assertEquals(0, dbHelper.addNotificationToRole("nobody", "Staff"));
+    }
+
+    @Test
+    public void testBroadcastToUserIdsSkipsUnknownIds() throws SQLException {
+        dbHelper.register(new User("student1", "Password1!", "Student"));
+        int studentId = dbHelper.getUserIdByUsername("student1");
+
+        assertEquals(2, dbHelper.addNotificationToUsers("Office hours moved", Arrays.asList(userId, studentId, 9999)));
+        assertEquals(1, dbHelper.getNumNotifications(studentId));
+        assertEquals(0, dbHelper.addNotificationToUsers("Nobody", Arrays.asList()));
+    }
+}
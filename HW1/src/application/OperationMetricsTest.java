@@ -0,0 +1,154 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+import databasePart1.OperationMetrics;
+
+public class OperationMetricsTest {
+
+    private static int databases;
+
+    private String url;
+    private ConnectionPool pool;
+    private QuestionHandler qHandler;
+
+    @Before
+    public void setUp() throws SQLException {
+        url = "jdbc:h2:mem:operationmetrics" + (databases++) + ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(url, "sa", "", 2);
+        qHandler = new QuestionHandler(pool);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        // Closing the pool writes the buffered counters, so the tables are dropped after it.
+        pool.close();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    private static long count(String component, String method) {
+        OperationMetrics.MethodStats stats = OperationMetrics.forComponent(component).getMethod(method);
+        return stats == null ? 0 : stats.getCount();
+    }
+
+    private static long errors(String component, String method) {
+        OperationMetrics.MethodStats stats = OperationMetrics.forComponent(component).getMethod(method);
+        return stats == null ? 0 : stats.getErrors();
+    }
+
+    @Test
+    public void testHandlerCallsAreCounted() throws SQLException {
+        long before = count("QuestionHandler", "addPost");
+        qHandler.addPost("alice", "Title", "First post");
+        qHandler.addPost("alice", "Title", "Second post");
+        assertEquals(before + 2, count("QuestionHandler", "addPost"));
+
+        OperationMetrics.MethodStats stats = OperationMetrics.forComponent("QuestionHandler").getMethod("addPost");
+        assertTrue(stats.getMaxMillis() > 0);
+        assertTrue(stats.getP50Millis() <= stats.getMaxMillis());
+        assertTrue(stats.getMeanRate() > 0);
+    }
+
+    @Test
+    public void testCaughtSqlErrorsAreCountedAsErrors() throws SQLException {
+        long before = errors("QuestionHandler", "deletePostById");
+        try (Connection connection = pool.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE Posts CASCADE");
+        }
+        assertFalse(qHandler.deletePostById(1));
+        assertEquals(before + 1, errors("QuestionHandler", "deletePostById"));
+    }
+
+    @Test
+    public void testErrorsSwallowedByPrivateHelpersAreCounted() throws SQLException {
+        ReviewHandler rHandler = new ReviewHandler(pool);
+        long before = errors("ReviewHandler", "getTrustedReviewsByReplyId");
+        try (Connection connection = pool.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE Reviews CASCADE");
+        }
+        assertNull(rHandler.getTrustedReviewsByReplyId(1, "alice"));
+        assertEquals(before + 1, errors("ReviewHandler", "getTrustedReviewsByReplyId"));
+    }
+
+    @Test
+    public void testOverloadsAreCountedOnce() throws SQLException {
+        long unreadList = count("QuestionHandler", "getUnreadQuestions(List)");
+        long unreadSet = count("QuestionHandler", "getUnreadQuestions(PostReadSet)");
+        long all = count("QuestionHandler", "getAllQuestions");
+        long listAll = count("QuestionHandler", "listPosts(PostFilter,PostReadSet,PostSort,String,int)");
+        long listKeyword = count("QuestionHandler", "listPosts(String,PostFilter,PostReadSet,PostSort,String,int)");
+
+        qHandler.getUnreadQuestions(new ArrayList<>()).close();
+        qHandler.listPosts(QuestionHandler.PostFilter.ALL, new PostReadSet(), QuestionHandler.PostSort.NEWEST, null, 10);
+
+        assertEquals(unreadList + 1, count("QuestionHandler", "getUnreadQuestions(List)"));
+        assertEquals("The overload it delegates to is not counted again",
+                unreadSet, count("QuestionHandler", "getUnreadQuestions(PostReadSet)"));
+        assertEquals(all, count("QuestionHandler", "getAllQuestions"));
+        assertEquals(listAll + 1, count("QuestionHandler", "listPosts(PostFilter,PostReadSet,PostSort,String,int)"));
+        assertEquals(listKeyword, count("QuestionHandler", "listPosts(String,PostFilter,PostReadSet,PostSort,String,int)"));
+    }
+
+    @Test
+    public void testUtilitiesAreNotTimed() {
+        DatabaseHelper.countNewlines("a\nb");
+        assertNull(OperationMetrics.forComponent("DatabaseHelper").getMethod("countNewlines"));
+    }
+
+    @Test
+    public void testFailedCallsAreCountedAsErrors() {
+        OperationMetrics metrics = OperationMetrics.forComponent("OperationMetricsTest");
+        OperationMetrics.Call ok = metrics.begin("work");
+        ok.end();
+        OperationMetrics.Call failed = metrics.begin("work");
+        failed.fail();
+        failed.end();
+
+        OperationMetrics.MethodStats stats = metrics.getMethod("work");
+        assertEquals(2, stats.getCount());
+        assertEquals(1, stats.getErrors());
+        assertEquals(0.5, stats.getErrorRate(), 0.0001);
+
+        stats.reset();
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getErrors());
+    }
+
+    @Test
+    public void testMethodsArePublishedOverJmx() throws Exception {
+        qHandler.getPostTitleById(1);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("cse360:type=Operation,component=\"QuestionHandler\",method=\"getPostTitleById\"");
+        assertTrue(server.isRegistered(name));
+        assertNotNull(server.getAttribute(name, "P99Millis"));
+        assertTrue((Long) server.getAttribute(name, "Count") >= 1);
+
+        ObjectName overload = new ObjectName(
+                "cse360:type=Operation,component=\"QuestionHandler\",method=\"getUnreadQuestions(PostReadSet)\"");
+        qHandler.getUnreadQuestions(new PostReadSet()).close();
+        assertTrue(server.isRegistered(overload));
+    }
+}
@@ -0,0 +1,164 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class PostListingTest {
+
+    private Connection conn;
+    private QuestionHandler handler;
+    private List<Integer> ids;
+
+    @Before
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:postlistingtest;DB_CLOSE_DELAY=0");
+        handler = new QuestionHandler(conn);
+        for (int i = 1; i <= 5; i++) {
+            handler.addPost("student" + i, "Post " + i, i % 2 == 0 ? "Lab question " + i : "Exam question " + i);
+        }
+        ids = all(QuestionHandler.PostSort.NEWEST, 10);
+        ids.sort(null);
+        // Replies: post 2 gets two, post 4 one, and post 2 is replied to last.
+        Thread.sleep(5);
+        handler.incrementNumReplies(ids.get(1));
+        Thread.sleep(5);
+        handler.incrementNumReplies(ids.get(3));
+        Thread.sleep(5);
+        handler.incrementNumReplies(ids.get(1));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    // Follows the cursors through every page of a listing.
+    private List<Integer> all(QuestionHandler.PostSort sort, int pageSize) throws SQLException {
+        List<Integer> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            PostPage page = handler.listPosts(QuestionHandler.PostFilter.ALL, new PostReadSet(), sort, cursor, pageSize);
+            assertTrue(page.getPosts().size() <= pageSize);
+            for (PostSummary post : page.getPosts()) {
+                listed.add(post.getPostId());
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return listed;
+    }
+
+    private List<Integer> posts(int... numbers) {
+        List<Integer> expected = new ArrayList<>();
+        for (int number : numbers) {
+            expected.add(ids.get(number - 1));
+        }
+        return expected;
+    }
+
+    @Test
+    public void testEverySortOrderPagesThroughAllPosts() throws SQLException {
+        assertEquals(posts(5, 4, 3, 2, 1), all(QuestionHandler.PostSort.NEWEST, 2));
+        assertEquals(posts(2, 4, 5, 3, 1), all(QuestionHandler.PostSort.MOST_REPLIES, 2));
+        assertEquals(posts(5, 3, 1, 4, 2), all(QuestionHandler.PostSort.UNANSWERED_FIRST, 2));
+        assertEquals(posts(2, 4), all(QuestionHandler.PostSort.RECENTLY_ACTIVE, 2).subList(0, 2));
+        assertEquals(posts(2, 4, 5, 3, 1), all(QuestionHandler.PostSort.MOST_REPLIES, 1));
+    }
+
+    @Test
+    public void testCursorSurvivesInsertsAndDeletes() throws SQLException {
+        PostPage first = handler.listPosts(QuestionHandler.PostFilter.ALL, new PostReadSet(),
+                QuestionHandler.PostSort.NEWEST, null, 2);
+        assertEquals(posts(5, 4), idsOf(first));
+
+        handler.addPost("student6", "Post 6", "Posted after the first page was read");
+        assertTrue(handler.deletePostById(ids.get(2)));
+
+        PostPage second = handler.listPosts(QuestionHandler.PostFilter.ALL, new PostReadSet(),
+                QuestionHandler.PostSort.NEWEST, first.getNextCursor(), 2);
+        assertEquals("Continues after the last post shown, skipping nothing", posts(2, 1), idsOf(second));
+        assertFalse(second.hasMore());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    public void testFiltersAndSearch() throws SQLException {
+        PostReadSet readSet = PostReadSet.of(posts(1, 2, 5));
+        PostPage unread = handler.listPosts(QuestionHandler.PostFilter.UNREAD, readSet,
+                QuestionHandler.PostSort.MOST_REPLIES, null, 10);
+        assertEquals(posts(4, 3), idsOf(unread));
+
+        PostPage answered = handler.listPosts(QuestionHandler.PostFilter.ANSWERED, readSet,
+                QuestionHandler.PostSort.NEWEST, null, 10);
+        assertEquals(posts(4, 2), idsOf(answered));
+
+        PostPage lab = handler.listPosts("lab", QuestionHandler.PostFilter.ALL, new PostReadSet(),
+                QuestionHandler.PostSort.NEWEST, null, 1);
+        assertEquals(posts(4), idsOf(lab));
+        lab = handler.listPosts("lab", QuestionHandler.PostFilter.ALL, new PostReadSet(),
+                QuestionHandler.PostSort.NEWEST, lab.getNextCursor(), 1);
+        assertEquals(posts(2), idsOf(lab));
+        assertFalse(lab.hasMore());
+
+        assertTrue(handler.listPosts("spaceship", QuestionHandler.PostFilter.ALL, new PostReadSet(),
+                QuestionHandler.PostSort.NEWEST, null, 10).getPosts().isEmpty());
+    }
+
+    @Test
+    public void testPageSizeIsBoundedAndCursorsAreChecked() throws SQLException {
+        for (int i = 0; i < QuestionHandler.MAX_PAGE_SIZE; i++) {
+            handler.addPost("student", "Filler " + i, "Filler");
+        }
+        PostPage page = handler.listPosts(QuestionHandler.PostFilter.ALL, new PostReadSet(),
+                QuestionHandler.PostSort.NEWEST, null, Integer.MAX_VALUE);
+        assertEquals(QuestionHandler.MAX_PAGE_SIZE, page.getPosts().size());
+        assertTrue(page.hasMore());
+
+        try {
+            handler.listPosts(QuestionHandler.PostFilter.ALL, new PostReadSet(),
+                    QuestionHandler.PostSort.MOST_REPLIES, page.getNextCursor(), 10);
+            fail("A NEWEST cursor must not be accepted for another order");
+        } catch (IllegalArgumentException expected) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testSortOrdersHaveIndexes() throws SQLException {
+        Set<String> indexes = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME = 'POSTS'")) {
+            while (rs.next()) {
+                indexes.add(rs.getString(1));
+            }
+        }
+        assertTrue(indexes.containsAll(Arrays.asList(
+                "IDX_POSTS_NEWEST", "IDX_POSTS_REPLIES", "IDX_POSTS_ANSWERED", "IDX_POSTS_ACTIVITY")));
+    }
+
+    private List<Integer> idsOf(PostPage page) {
+        List<Integer> listed = new ArrayList<>();
+        for (PostSummary post : page.getPosts()) {
+            listed.add(post.getPostId());
+        }
+        return listed;
+    }
+}
@@ -0,0 +1,46 @@
+package application;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The PostPage class is one page of a post listing from {@link QuestionHandler#listPosts}:
+ * the summaries on the page and the cursor that continues the listing after them.
+ */
+public class PostPage {
+    private final List<PostSummary> posts;
+    private final String nextCursor;
+
+    /**
+     * Constructs a PostPage.
+     *
+     * @param posts      the summaries on the page, in listing order
+     * @param nextCursor the cursor for the following page, or null if this is the last page
+     */
+    public PostPage(List<PostSummary> posts, String nextCursor) {
+        this.posts = Collections.unmodifiableList(posts);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the summaries on the page.
+     *
+     * @return an unmodifiable list of summaries
+     */
+    public List<PostSummary> getPosts() { return posts; }
+
+    /**
+     * Returns the cursor to pass back to get the following page. Cursors stay valid while
+     * posts are added or deleted; a page continues after the last post of this one.
+     *
+     * @return the next cursor, or null if there are no more posts
+     */
+    public String getNextCursor() { return nextCursor; }
+
+    /**
+     * Returns whether another page follows this one.
+     *
+     * @return true if {@link #getNextCursor()} is not null
+     */
+    public boolean hasMore() { return nextCursor != null; }
+}
@@ -0,0 +1,293 @@
+package application;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The PostReadSet class holds the set of post ids a user has read as a compressed bitmap.
+ * Ids are stored as sorted, non-overlapping runs of consecutive ids, so a user who has read
+ * posts 1 through 5000 costs one run instead of 5000 entries.
+ *
+ * <p>The set is saved as a byte array of variable length integers: the number of runs, then for
+ * every run the gap since the end of the previous run and the run length. Lookups and inserts
+ * are a binary search over the runs.</p>
+ */
+public class PostReadSet {
+    // Run i covers the ids starts[i] through ends[i], inclusive.
+    private int[] starts;
+    private int[] ends;
+    private int runCount;
+
+    /**
+     * Constructs an empty set.
+     */
+    public PostReadSet() {
+        this.starts = new int[4];
+        this.ends = new int[4];
+    }
+
+    /**
+     * Builds a set from a list of post ids in any order, ignoring duplicates.
+     *
+     * @param postIds the post ids
+     * @return a set containing the ids
+     */
+    public static PostReadSet of(List<Integer> postIds) {
+        int[] sorted = postIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+        PostReadSet set = new PostReadSet();
+        for (int id : sorted) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    /**
+     * Adds a post id to the set.
+     *
+     * @param postId the post id
+     * @return true if the id was not in the set before
+     */
+    public boolean add(int postId) {
+        return addRange(postId, postId);
+    }
+
+    /**
+     * Adds every post id from {@code from} through {@code to}, inclusive.
+     *
+     * @param from the first post id
+     * @param to   the last post id
+     * @return true if at least one id was not in the set before
+     */
+    public boolean addRange(int from, int to) {
+        if (from > to) {
+            throw new IllegalArgumentException("Invalid range: " + from + " > " + to);
+        }
+        // First run that ends at or after from - 1, i.e. could touch or overlap the new range.
+        int first = firstRunEndingAtOrAfter(from == Integer.MIN_VALUE ? from : from - 1);
+        if (first < runCount && starts[first] <= from && ends[first] >= to) {
+            return false;
+        }
+        // Runs first..last overlap or touch the new range and are merged into it.
+        int last = first;
+        while (last < runCount && (to == Integer.MAX_VALUE || starts[last] <= to + 1)) {
+            last++;
+        }
+        int newStart = from;
+        int newEnd = to;
+        if (last > first) {
+            newStart = Math.min(from, starts[first]);
+            newEnd = Math.max(to, ends[last - 1]);
+        }
+        replaceRuns(first, last, newStart, newEnd);
+        return true;
+    }
+
+    /**
+     * Checks whether a post id is in the set.
+     *
+     * @param postId the post id
+     * @return true if the post has been read
+     */
+    public boolean contains(int postId) {
+        int i = firstRunEndingAtOrAfter(postId);
+        return i < runCount && starts[i] <= postId;
+    }
+
+    /**
+     * Gets the number of post ids in the set.
+     *
+     * @return the number of read posts
+     */
+    public long size() {
+        long total = 0;
+        for (int i = 0; i < runCount; i++) {
+            total += (long) ends[i] - starts[i] + 1;
+        }
+        return total;
+    }
+
+    /**
+     * Checks whether the set is empty.
+     *
+     * @return true if no post has been read
+     */
+    public boolean isEmpty() {
+        return runCount == 0;
+    }
+
+    /**
+     * Gets the number of runs of consecutive ids, which is what storage and filtering cost depend on.
+     *
+     * @return the number of runs
+     */
+    public int getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Gets the first id of each run, in increasing order.
+     *
+     * @return the run starts
+     */
+    public Integer[] getRunStarts() {
+        Integer[] copy = new Integer[runCount];
+        for (int i = 0; i < runCount; i++) {
+            copy[i] = starts[i];
+        }
+        return copy;
+    }
+
+    /**
+     * Gets the last id of each run, in increasing order.
+     *
+     * @return the run ends
+     */
+    public Integer[] getRunEnds() {
+        Integer[] copy = new Integer[runCount];
+        for (int i = 0; i < runCount; i++) {
+            copy[i] = ends[i];
+        }
+        return copy;
+    }
+
+    /**
+     * Lists every post id in the set in increasing order.
+     *
+     * @return the read post ids
+     */
+    public List<Integer> toList() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < runCount; i++) {
+            for (int id = starts[i]; id <= ends[i]; id++) {
+                ids.add(id);
+                if (id == Integer.MAX_VALUE) {
+                    break;
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Encodes the set for storage.
+     *
+     * @return the encoded set
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 + runCount * 4);
+        writeVarLong(out, runCount);
+        long previousEnd = -1;
+        for (int i = 0; i < runCount; i++) {
+            writeVarLong(out, starts[i] - previousEnd - 1);
+            writeVarLong(out, (long) ends[i] - starts[i]);
+            previousEnd = ends[i];
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a set saved with {@link #toBytes()}.
+     *
+     * @param bytes the encoded set, or null for an empty set
+     * @return the decoded set
+     */
+    public static PostReadSet fromBytes(byte[] bytes) {
+        PostReadSet set = new PostReadSet();
+        if (bytes == null || bytes.length == 0) {
+            return set;
+        }
+        int[] pos = {0};
+        int count = (int) readVarLong(bytes, pos);
+        set.starts = new int[Math.max(count, 4)];
+        set.ends = new int[Math.max(count, 4)];
+        long previousEnd = -1;
+        for (int i = 0; i < count; i++) {
+            long start = previousEnd + 1 + readVarLong(bytes, pos);
+            long end = start + readVarLong(bytes, pos);
+            set.starts[i] = (int) start;
+            set.ends[i] = (int) end;
+            previousEnd = end;
+        }
+        set.runCount = count;
+        return set;
+    }
+
+    /**
+     * Binary search for the first run whose end is at or after the given id.
+     */
+    private int firstRunEndingAtOrAfter(int id) {
+        int lo = 0;
+        int hi = runCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ends[mid] < id) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Replaces runs {@code from} (inclusive) to {@code to} (exclusive) with a single run.
+     */
+    private void replaceRuns(int from, int to, int start, int end) {
+        int removed = to - from;
+        int newCount = runCount - removed + 1;
+        if (newCount > starts.length) {
+            int capacity = Math.max(newCount, starts.length * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        int tail = runCount - to;
+        System.arraycopy(starts, to, starts, from + 1, tail);
+        System.arraycopy(ends, to, ends, from + 1, tail);
+        starts[from] = start;
+        ends[from] = end;
+        runCount = newCount;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof PostReadSet)) {
+            return false;
+        }
+        PostReadSet that = (PostReadSet) other;
+        return runCount == that.runCount
+                && Arrays.equals(starts, 0, runCount, that.starts, 0, runCount)
+                && Arrays.equals(ends, 0, runCount, that.ends, 0, runCount);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = runCount;
+        for (int i = 0; i < runCount; i++) {
+            hash = 31 * hash + starts[i];
+            hash = 31 * hash + ends[i];
+        }
+        return hash;
+    }
+}
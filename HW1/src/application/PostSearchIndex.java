@@ -0,0 +1,414 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The PostSearchIndex class is an in-memory inverted index over post titles and bodies.
+ * Results are ranked with BM25, and words in the title count double.
+ *
+ * <p>Query syntax:</p>
+ * <ul>
+ *   <li>{@code exam review} - posts containing both words (AND is the default, and the word AND is ignored)</li>
+ *   <li>{@code exam OR quiz} - posts matching either side</li>
+ *   <li>{@code "final exam"} - the words next to each other, in that order</li>
+ *   <li>{@code data*} - any word starting with "data"</li>
+ * </ul>
+ *
+ * <p>Matching is case-insensitive and works on whole words. The index is safe to use from several threads.</p>
+ */
+public class PostSearchIndex {
+
+    /**
+     * A matching post and its relevance score.
+     */
+    public static class Hit {
+        private final int postId;
+        private final double score;
+
+        /**
+         * Constructs a hit.
+         *
+         * @param postId the ID of the matching post
+         * @param score  the BM25 score, higher is more relevant
+         */
+        public Hit(int postId, double score) {
+            this.postId = postId;
+            this.score = score;
+        }
+
+        /**
+         * Gets the ID of the matching post.
+         * @return the post ID
+         */
+        public int getPostId() { return postId; }
+
+        /**
+         * Gets the relevance score.
+         * @return the BM25 score
+         */
+        public double getScore() { return score; }
+    }
+
+    // Standard BM25 parameters.
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // An occurrence in the title counts as this many occurrences in the body.
+    private static final int TITLE_WEIGHT = 2;
+
+    /**
+     * Where one term occurs in one post. Positions let phrase queries check word order.
+     */
+    private static class Posting {
+        int[] positions = new int[2];
+        int count;
+        int weightedFrequency;
+
+        void add(int position, int weight) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+            weightedFrequency += weight;
+        }
+
+        boolean hasPosition(int position) {
+            return Arrays.binarySearch(positions, 0, count, position) >= 0;
+        }
+    }
+
+    /**
+     * One part of a query: a phrase of one or more words, or a word prefix.
+     */
+    private static class Clause {
+        final List<String> terms;
+        final boolean prefix;
+
+        Clause(List<String> terms, boolean prefix) {
+            this.terms = terms;
+            this.prefix = prefix;
+        }
+    }
+
+    // Sorted so prefix queries are a range scan.
+    private final TreeMap<String, Map<Integer, Posting>> postings = new TreeMap<>();
+    private final Map<Integer, Set<String>> termsByPost = new HashMap<>();
+    private final Map<Integer, Integer> lengthByPost = new HashMap<>();
+    private long totalLength;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds a post to the index, replacing it if it was indexed before.
+     *
+     * @param postId the ID of the post
+     * @param title  the post title
+     * @param body   the post text
+     */
+    public void addPost(int postId, String title, String body) {
+        List<String> titleTokens = tokenize(title);
+        List<String> bodyTokens = tokenize(body);
+        lock.writeLock().lock();
+        try {
+            removeLocked(postId);
+            Set<String> terms = new HashSet<>();
+            int position = 0;
+            for (String token : titleTokens) {
+                addOccurrence(postId, token, position++, TITLE_WEIGHT);
+                terms.add(token);
+            }
+            // Leave a gap so a phrase cannot run from the end of the title into the body.
+            position++;
+            for (String token : bodyTokens) {
+                addOccurrence(postId, token, position++, 1);
+                terms.add(token);
+            }
+            int length = titleTokens.size() * TITLE_WEIGHT + bodyTokens.size();
+            termsByPost.put(postId, terms);
+            lengthByPost.put(postId, length);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a post from the index.
+     *
+     * @param postId the ID of the post
+     */
+    public void removePost(int postId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every post from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsByPost.clear();
+            lengthByPost.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of indexed posts.
+     *
+     * @return the number of posts
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return lengthByPost.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the posts matching a query, most relevant first. Ties are broken by newest post first.
+     *
+     * @param query the query, see the class description for the syntax
+     * @param limit the maximum number of hits to return
+     * @return the matching posts, empty if the query has no words
+     */
+    public List<Hit> search(String query, int limit) {
+        List<List<Clause>> groups = parse(query);
+        List<Hit> hits = new ArrayList<>();
+        if (groups.isEmpty()) {
+            return hits;
+        }
+        lock.readLock().lock();
+        try {
+            Set<Integer> matches = new HashSet<>();
+            Set<String> scoredTerms = new LinkedHashSet<>();
+            for (List<Clause> group : groups) {
+                matches.addAll(matchGroup(group, scoredTerms));
+            }
+            for (int postId : matches) {
+                double score = 0;
+                for (String term : scoredTerms) {
+                    score += score(term, postId);
+                }
+                hits.add(new Hit(postId, score));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort((a, b) -> a.score != b.score
+                ? Double.compare(b.score, a.score)
+                : Integer.compare(b.postId, a.postId));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /**
+     * Splits text into lower case words made of letters and digits.
+     *
+     * @param text the text to split, may be null
+     * @return the words in order
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Parses a query into OR groups of clauses that must all match.
+     */
+    private static List<List<Clause>> parse(String query) {
+        List<List<Clause>> groups = new ArrayList<>();
+        List<Clause> group = new ArrayList<>();
+        if (query == null) {
+            return groups;
+        }
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = query.length();
+                }
+                List<String> terms = tokenize(query.substring(i + 1, end));
+                if (!terms.isEmpty()) {
+                    group.add(new Clause(terms, false));
+                }
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end)) && query.charAt(end) != '"') {
+                    end++;
+                }
+                String word = query.substring(i, end);
+                i = end;
+                if (word.equals("OR")) {
+                    if (!group.isEmpty()) {
+                        groups.add(group);
+                        group = new ArrayList<>();
+                    }
+                    continue;
+                }
+                if (word.equals("AND")) {
+                    continue;
+                }
+                List<String> terms = tokenize(word);
+                if (terms.isEmpty()) {
+                    continue;
+                }
+                // A word such as "e-mail" becomes the phrase "e mail".
+                group.add(new Clause(terms, terms.size() == 1 && word.endsWith("*")));
+            }
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * Finds the posts matching every clause of a group and records the terms to score them on.
+     */
+    private Set<Integer> matchGroup(List<Clause> group, Set<String> scoredTerms) {
+        Set<Integer> result = null;
+        for (Clause clause : group) {
+            Set<Integer> clauseMatches = clause.prefix
+                    ? matchPrefix(clause.terms.get(0), scoredTerms)
+                    : matchPhrase(clause.terms, scoredTerms);
+            if (result == null) {
+                result = clauseMatches;
+            } else {
+                result.retainAll(clauseMatches);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result == null ? new HashSet<>() : result;
+    }
+
+    private Set<Integer> matchPrefix(String prefix, Set<String> scoredTerms) {
+        Set<Integer> result = new HashSet<>();
+        for (Map.Entry<String, Map<Integer, Posting>> entry
+                : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).entrySet()) {
+            scoredTerms.add(entry.getKey());
+            result.addAll(entry.getValue().keySet());
+        }
+        return result;
+    }
+
+    private Set<Integer> matchPhrase(List<String> terms, Set<String> scoredTerms) {
+        scoredTerms.addAll(terms);
+        List<Map<Integer, Posting>> lists = new ArrayList<>();
+        for (String term : terms) {
+            Map<Integer, Posting> list = postings.get(term);
+            if (list == null) {
+                return new HashSet<>();
+            }
+            lists.add(list);
+        }
+        // Walk the rarest term's posts and check the others against it.
+        Map<Integer, Posting> rarest = lists.get(0);
+        for (Map<Integer, Posting> list : lists) {
+            if (list.size() < rarest.size()) {
+                rarest = list;
+            }
+        }
+        Set<Integer> result = new HashSet<>();
+        for (int postId : rarest.keySet()) {
+            boolean inAll = true;
+            for (Map<Integer, Posting> list : lists) {
+                if (!list.containsKey(postId)) {
+                    inAll = false;
+                    break;
+                }
+            }
+            if (inAll && (terms.size() == 1 || containsPhrase(lists, postId))) {
+                result.add(postId);
+            }
+        }
+        return result;
+    }
+
+    private static boolean containsPhrase(List<Map<Integer, Posting>> lists, int postId) {
+        Posting first = lists.get(0).get(postId);
+        for (int i = 0; i < first.count; i++) {
+            int start = first.positions[i];
+            boolean match = true;
+            for (int offset = 1; offset < lists.size() && match; offset++) {
+                match = lists.get(offset).get(postId).hasPosition(start + offset);
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double score(String term, int postId) {
+        Map<Integer, Posting> list = postings.get(term);
+        Posting posting = list == null ? null : list.get(postId);
+        if (posting == null) {
+            return 0;
+        }
+        int postCount = lengthByPost.size();
+        double idf = Math.log(1 + (postCount - list.size() + 0.5) / (list.size() + 0.5));
+        double averageLength = (double) totalLength / postCount;
+        double tf = posting.weightedFrequency;
+        double norm = K1 * (1 - B + B * lengthByPost.get(postId) / Math.max(averageLength, 1));
+        return idf * tf * (K1 + 1) / (tf + norm);
+    }
+
+    private void addOccurrence(int postId, String token, int position, int weight) {
+        postings.computeIfAbsent(token, t -> new HashMap<>())
+                .computeIfAbsent(postId, id -> new Posting())
+                .add(position, weight);
+    }
+
+    private void removeLocked(int postId) {
+        Set<String> terms = termsByPost.remove(postId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Integer, Posting> list = postings.get(term);
+            list.remove(postId);
+            if (list.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= lengthByPost.remove(postId);
+    }
+}
@@ -0,0 +1,115 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+public class PostSearchTest {
+
+    private PostSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new PostSearchIndex();
+        index.addPost(1, "Final exam room", "Where is the final exam held this semester?");
+        index.addPost(2, "Homework 3", "The exam review session covers homework 3. Is the final open book?");
+        index.addPost(3, "Database question", "How do I index a database table?");
+        index.addPost(4, "Quiz dates", "When is the next quiz?");
+    }
+
+    private List<Integer> ids(String query) {
+        List<Integer> ids = new ArrayList<>();
+        for (PostSearchIndex.Hit hit : index.search(query, 10)) {
+            ids.add(hit.getPostId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testAllWordsMustMatchAndTitleRanksHigher() {
+        assertEquals("Title matches outrank body matches", Arrays.asList(1, 2), ids("final exam"));
+        assertEquals(Arrays.asList(2), ids("exam AND homework"));
+        assertTrue(ids("exam spaceship").isEmpty());
+    }
+
+    @Test
+    public void testOrPhraseAndPrefix() {
+        assertEquals(new HashSet<>(Arrays.asList(3, 4)), new HashSet<>(ids("quiz OR database")));
+        assertEquals("Words must be adjacent and in order", Arrays.asList(1), ids("\"final exam\""));
+        assertTrue(ids("\"exam final\"").isEmpty());
+        assertEquals(Arrays.asList(3), ids("data*"));
+        assertEquals("Matching ignores case", Arrays.asList(3), ids("DATABASE"));
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        index.addPost(4, "Quiz moved", "The quiz is now a database lab");
+        assertEquals(2, ids("database").size());
+        index.removePost(3);
+        assertEquals(Arrays.asList(4), ids("database"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testQuestionHandlerKeepsIndexInStep() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:postsearchtest;DB_CLOSE_DELAY=0")) {
+            QuestionHandler handler = new QuestionHandler(conn);
+            handler.addPost("student1", "Lab partner", "Looking for a partner for lab 2");
+            handler.addPost("student2", "Lab 2 deadline", "Is lab 2 due Friday?");
+
+            // A second handler on the same database rebuilds its index at startup.
+            QuestionHandler restarted = new QuestionHandler(conn);
+            List<String> titles = new ArrayList<>();
+            try (ResultSet rs = restarted.searchPostsByKeyword("lab deadline")) {
+                while (rs.next()) {
+                    titles.add(rs.getString("title"));
+                }
+            }
+            assertEquals(Arrays.asList("Lab 2 deadline"), titles);
+
+            int postId = restarted.searchPosts("partner", 1).get(0).getPostId();
+            assertTrue(restarted.updatePost(postId, "Study group", "Anyone want to study together?"));
+            assertTrue(restarted.searchPosts("partner", 10).isEmpty());
+            assertTrue(restarted.deletePostById(postId));
+            assertTrue(restarted.searchPosts("study", 10).isEmpty());
+
+            try (ResultSet rs = restarted.searchPostsByKeyword("  ")) {
+                assertTrue("A blank search shows every post", rs.next());
+            }
+        }
+    }
+
+    @Test
+    public void testSearchCatchesUpWithAnotherProcess() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:postsearchsync;DB_CLOSE_DELAY=0")) {
+            // Two handlers on one database stand for two processes sharing the database file.
+            QuestionHandler handler = new QuestionHandler(conn);
+            QuestionHandler other = new QuestionHandler(conn);
+            other.addPost("student1", "Lab partner", "Looking for a partner for lab 2");
+            Thread.sleep(QuestionHandler.SEARCH_SYNC_MILLIS + 100);
+            assertEquals("New posts are found", 1, handler.searchPosts("partner", 10).size());
+
+            int postId = handler.searchPosts("partner", 1).get(0).getPostId();
+            assertTrue(other.updatePost(postId, "Study group", "Anyone want to study together?"));
+            Thread.sleep(QuestionHandler.SEARCH_SYNC_MILLIS + 100);
+            assertTrue("Edited posts are indexed again", handler.searchPosts("partner", 10).isEmpty());
+            assertEquals(1, handler.searchPosts("study", 10).size());
+
+            assertTrue(other.deletePostById(postId));
+            Thread.sleep(QuestionHandler.SEARCH_SYNC_MILLIS + 100);
+            assertTrue("Deleted posts are dropped", handler.searchPosts("study", 10).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package application;
+
+import java.sql.Timestamp;
+
+/**
+ * The PostSummary class holds what the post list shows for one post: its title, author, reply count
+ * and the start of its text. The full text is loaded separately when the user expands the post.
+ */
+public class PostSummary {
+    /** Number of characters of the post text included in a summary. */
+    public static final int PREVIEW_LENGTH = 200;
+
+    private final int postId;
+    private final String userName;
+    private final String title;
+    private final String preview;
+    private final int postLength;
+    private final int numReplies;
+    private final Timestamp lastActivity;
+
+    /**
+     * Constructs a PostSummary with the given details.
+     *
+     * @param postId       the unique identifier of the post
+     * @param userName     the username of the post author
+     * @param title        the post title
+     * @param preview      the first {@link #PREVIEW_LENGTH} characters of the post text
+     * @param postLength   the length of the full post text
+     * @param numReplies   the number of replies to the post
+     * @param lastActivity when the post was last edited or replied to
+     */
+    public PostSummary(int postId, String userName, String title, String preview, int postLength, int numReplies,
+                       Timestamp lastActivity) {
+        this.postId = postId;
+        this.userName = userName;
+        this.title = title;
+        this.preview = preview;
+        this.postLength = postLength;
+        this.numReplies = numReplies;
+        this.lastActivity = lastActivity;
+    }
+
+    /**
+     * Returns the unique identifier of the post.
+     *
+     * @return the post id
+     */
+    public int getPostId() { return postId; }
+
+    /**
+     * Returns the username of the post author.
+     *
+     * @return the author's username
+     */
+    public String getUserName() { return userName; }
+
+    /**
+     * Returns the post title.
+     *
+     * @return the title
+     */
+    public String getTitle() { return title; }
+
+    /**
+     * Returns the start of the post text.
+     *
+     * @return the preview text
+     */
+    public String getPreview() { return preview; }
+
+    /**
+     * Returns the length of the full post text.
+     *
+     * @return the number of characters in the post
+     */
+    public int getPostLength() { return postLength; }
+
+    /**
+     * Returns the number of replies to the post.
+     *
+     * @return the reply count
+     */
+    public int getNumReplies() { return numReplies; }
+
+    /**
+     * Returns when the post was created, last edited or last replied to, whichever is latest.
+     *
+     * @return the time of the latest activity on the post
+     */
+    public Timestamp getLastActivity() { return lastActivity; }
+
+    /**
+     * Returns whether the preview is shorter than the full post text.
+     *
+     * @return true if the full text has to be loaded to show the whole post
+     */
+    public boolean isTruncated() { return postLength > preview.length(); }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+}
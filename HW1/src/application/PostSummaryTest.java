@@ -0,0 +1,104 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PostSummaryTest {
+
+    private Connection conn;
+    private QuestionHandler handler;
+    private final List<Integer> postIds = new ArrayList<>();
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:postsummarytest;DB_CLOSE_DELAY=0");
+        handler = new QuestionHandler(conn);
+        StringBuilder longPost = new StringBuilder();
+        while (longPost.length() < 500) {
+            longPost.append("This post is long enough to need the full text. ");
+        }
+        handler.addPost("student1", "Long post", longPost.toString());
+        for (int i = 2; i <= 7; i++) {
+            handler.addPost("student" + i, "Post " + i, "Short post " + i);
+        }
+        for (PostSearchIndex.Hit hit : handler.searchPosts("post", 100)) {
+            postIds.add(hit.getPostId());
+        }
+        postIds.sort(null);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private List<Integer> ids(List<PostSummary> summaries) {
+        List<Integer> ids = new ArrayList<>();
+        for (PostSummary summary : summaries) {
+            ids.add(summary.getPostId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testPagesCoverEveryPostOnce() throws SQLException {
+        assertEquals(7, postIds.size());
+        List<Integer> seen = new ArrayList<>();
+        for (int offset = 0; ; offset += 3) {
+            List<PostSummary> page = handler.getPostSummaries(QuestionHandler.PostFilter.ALL, new PostReadSet(), offset, 3);
+            seen.addAll(ids(page));
+            if (page.size() < 3) {
+                break;
+            }
+        }
+        assertEquals(postIds, seen);
+    }
+
+    @Test
+    public void testPreviewIsTruncated() throws SQLException {
+        PostSummary longPost = handler.getPostSummaries(Arrays.asList(postIds.get(0))).get(0);
+        assertEquals(PostSummary.PREVIEW_LENGTH, longPost.getPreview().length());
+        assertTrue(longPost.isTruncated());
+        assertEquals(handler.getPostContentById(postIds.get(0)).length(), longPost.getPostLength());
+
+        PostSummary shortPost = handler.getPostSummaries(Arrays.asList(postIds.get(1))).get(0);
+        assertEquals("Short post 2", shortPost.getPreview());
+        assertFalse(shortPost.isTruncated());
+    }
+
+    @Test
+    public void testFilters() throws SQLException {
+        PostReadSet readSet = PostReadSet.of(Arrays.asList(postIds.get(1), postIds.get(2), postIds.get(5)));
+        assertEquals(Arrays.asList(postIds.get(1), postIds.get(2), postIds.get(5)),
+                ids(handler.getPostSummaries(QuestionHandler.PostFilter.READ, readSet, 0, 10)));
+        assertEquals(Arrays.asList(postIds.get(0), postIds.get(3), postIds.get(4), postIds.get(6)),
+                ids(handler.getPostSummaries(QuestionHandler.PostFilter.UNREAD, readSet, 0, 10)));
+        assertTrue(handler.getPostSummaries(QuestionHandler.PostFilter.READ, new PostReadSet(), 0, 10).isEmpty());
+        assertEquals(7, handler.getPostSummaries(QuestionHandler.PostFilter.UNREAD, new PostReadSet(), 0, 10).size());
+
+        handler.incrementNumReplies(postIds.get(3));
+        List<PostSummary> answered = handler.getPostSummaries(QuestionHandler.PostFilter.ANSWERED, readSet, 0, 10);
+        assertEquals(Arrays.asList(postIds.get(3)), ids(answered));
+        assertEquals(1, answered.get(0).getNumReplies());
+    }
+
+    @Test
+    public void testSummariesFollowTheGivenOrder() throws SQLException {
+        List<Integer> ranked = Arrays.asList(postIds.get(4), postIds.get(0), -1, postIds.get(2));
+        assertEquals("Missing posts are skipped", Arrays.asList(postIds.get(4), postIds.get(0), postIds.get(2)),
+                ids(handler.getPostSummaries(ranked)));
+        assertTrue(handler.getPostSummaries(new ArrayList<>()).isEmpty());
+    }
+}
@@ -1,17 +1,25 @@
 package application;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import databasePart1.DatabaseHelper;
 import javafx.animation.PauseTransition;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
@@ -30,9 +38,29 @@ public class Question {
     private UserHandler userHandler;
     // Username of the currently logged-in user.
     private String userName;
-    private int userId;
     DatabaseHelper dbHelper;
 
+    // Background loads for this page; cancelled when the user navigates away.
+    private final AsyncDataService.Scope loads = AsyncDataService.getShared().newScope();
+
+    // Number of post summaries fetched per page, and how close to the end of the list the next page is fetched.
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_ROWS = 10;
+
+    // Posts loaded so far for the current filter or search, and where further pages come from.
+    private final ObservableList<PostSummary> posts = FXCollections.observableArrayList();
+    private PageSource pageSource;
+    private String nextCursor;
+    private boolean lastPageLoaded;
+    private boolean nextPageRequested;
+
+    // Posts the user expanded, and the full text loaded for them.
+    private final Set<Integer> expandedPosts = new HashSet<>();
+    private final Map<Integer, String> loadedBodies = new HashMap<>();
+
+    // Shown in the list while it is empty: a loading message or "No posts to show".
+    private final Label listPlaceholder = new Label();
+
     /**
      * Constructs a Question object with necessary handlers and user information.
      *
@@ -51,7 +79,6 @@ public class Question {
         this.rHandler = rHandler;
         this.userName = userName;
         this.dbHelper = dbHelper;
-        userId = dbHelper.getUserIdByUsername(userName);
     }
 
     /**
@@ -70,10 +97,8 @@ public class Question {
      * @param primaryStage The main application stage.
      */
     private void returnToHome(Stage primaryStage) {
-        try {
-            // Get the user's role from the database
-            String role = dbHelper.getUserRoleById(dbHelper.getUserIdByUsername(userName));
-            
+        // Get the user's role from the database
+        loads.load(() -> dbHelper.getUserRoleById(dbHelper.getUserIdByUsername(userName)), role -> {
             if (role != null && role.equalsIgnoreCase("student")) {
                 StudentHomePage homePage = new StudentHomePage(questionHandler, answerHandler, userHandler, rHandler, userName, dbHelper);
                 homePage.show(primaryStage);
@@ -82,12 +107,12 @@ public class Question {
                 ReviewerHomePage homePage = new ReviewerHomePage(questionHandler, answerHandler, userHandler, rHandler, userName, dbHelper);
                 homePage.show(primaryStage);
             }
-        } catch (Exception e) {
+        }, e -> {
             // Fallback to student home if there's an error checking role
             System.err.println("Error determining user role: " + e.getMessage());
             StudentHomePage homePage = new StudentHomePage(questionHandler, answerHandler, userHandler, rHandler, userName, dbHelper);
             homePage.show(primaryStage);
-        }
+        });
     }
     
     /**
@@ -145,9 +170,17 @@ public class Question {
                          String.join("\n\n", errors));
             } else {
                 // Add the post and display success message.
-                questionHandler.addPost(userName, title, question);
-                showAlert(Alert.AlertType.INFORMATION, "Success", "Question submitted!");
-                returnToHome(primaryStage);
+                submitButton.setDisable(true);
+                loads.load(() -> {
+                    questionHandler.addPost(userName, title, question);
+                    return title;
+                }, added -> {
+                    showAlert(Alert.AlertType.INFORMATION, "Success", "Question submitted!");
+                    returnToHome(primaryStage);
+                }, error -> {
+                    submitButton.setDisable(false);
+                    loadFailed("Failed to submit question", error);
+                });
             }
         });
 
@@ -165,16 +198,19 @@ public class Question {
     }
 
     /**
-     * Displays all posts in a scrollable view along with filtering options.
+     * Displays the posts in a scrollable list along with filtering options.
      * Allows users to filter questions by read status and search by keywords.
+     * The list only builds cells for the rows on screen and fetches post summaries
+     * a page at a time as the user scrolls.
      *
      * @param primaryStage The main application stage.
      */
     public void showPosts(Stage primaryStage) {
-        // Layout to hold individual posts.
-        VBox postsLayout = new VBox(20);
-        postsLayout.setPadding(new Insets(20, 20, 20, 20));
-        postsLayout.setStyle("-fx-background-color: #F5F5F5;");
+        // Virtualized list of posts; cells are created for visible rows only and reused.
+        ListView<PostSummary> postList = new ListView<>(posts);
+        postList.setStyle("-fx-background-color: #F5F5F5;");
+        postList.setCellFactory(view -> new PostCell(postList, primaryStage));
+        postList.setPlaceholder(listPlaceholder);
 
         // Dropdown for filtering posts.
         ComboBox<String> filterDropdown = new ComboBox<>();
@@ -185,10 +221,20 @@ public class Question {
             "Show Answered Posts"
         );
         filterDropdown.setValue("Show All Posts");
+
+        // Dropdown for the order posts are listed in.
+        ComboBox<String> sortDropdown = new ComboBox<>();
+        sortDropdown.getItems().addAll(
+            "Newest",
+            "Most Replies",
+            "Unanswered First",
+            "Recently Active"
+        );
+        sortDropdown.setValue("Newest");
         
         // Create search bar and button.
         TextField searchField = new TextField();
-        searchField.setPromptText("Search posts...");
+        searchField.setPromptText("Search posts by whole words (data* for prefixes)...");
         Button searchButton = new Button("Search");
         
         // Event handler for search button.
@@ -196,9 +242,9 @@ public class Question {
             String keyword = searchField.getText().trim();
             if (keyword.isEmpty()) {
                 // If no keyword is entered, use the dropdown filter.
-                refreshPosts(postsLayout, filterDropdown.getValue(), primaryStage);
+                refreshPosts(filterDropdown.getValue(), sortDropdown.getValue());
             } else {
-                refreshPostsSearch(postsLayout, keyword, primaryStage);
+                refreshPostsSearch(keyword);
             }
         });
         
@@ -206,24 +252,26 @@ public class Question {
         filterDropdown.setOnAction(e -> {
             // Clear search field when changing filter.
             searchField.clear();
-            refreshPosts(postsLayout, filterDropdown.getValue(), primaryStage);
+            refreshPosts(filterDropdown.getValue(), sortDropdown.getValue());
+        });
+        sortDropdown.setOnAction(e -> {
+            searchField.clear();
+            refreshPosts(filterDropdown.getValue(), sortDropdown.getValue());
         });
         
         // Create an HBox to hold the filter dropdown and search bar inline.
-        HBox controlsBox = new HBox(10, filterDropdown, searchField, searchButton);
+        HBox controlsBox = new HBox(10, filterDropdown, sortDropdown, searchField, searchButton);
         controlsBox.setAlignment(Pos.CENTER_LEFT);
         controlsBox.setPadding(new Insets(10));
         
         // Initial loading of posts.
-        refreshPosts(postsLayout, filterDropdown.getValue(), primaryStage);
+        refreshPosts(filterDropdown.getValue(), sortDropdown.getValue());
 
         // Main layout with padding to prevent edge-sticking
         VBox mainLayout = new VBox(10);
         mainLayout.setPadding(new Insets(10));  // Add padding around main content
-        mainLayout.getChildren().addAll(controlsBox, postsLayout);
-
-        ScrollPane scrollPane = new ScrollPane(mainLayout);
-        scrollPane.setFitToWidth(true);
+        mainLayout.getChildren().addAll(controlsBox, postList);
+        VBox.setVgrow(postList, Priority.ALWAYS);
 
         // Back button with proper alignment and padding
         HBox backButtonBox = new HBox(createBackButton(primaryStage));
@@ -232,353 +280,491 @@ public class Question {
         HBox.setMargin(backButtonBox, new Insets(15, 0, 0, 20));  // Add left margin
 
         BorderPane rootLayout = new BorderPane();
-        rootLayout.setCenter(scrollPane);
+        rootLayout.setCenter(mainLayout);
         rootLayout.setBottom(backButtonBox);  // Position back button at bottom
 
-        primaryStage.setScene(new Scene(rootLayout, 800, 500));
+        Scene scene = new Scene(rootLayout, 800, 500);
+        primaryStage.setScene(scene);
         primaryStage.setTitle("Questions");
         primaryStage.show();
+        loads.cancelWhenLeft(primaryStage, scene);
+    }
+
+    /**
+     * Loads the page of post summaries that follows a cursor, or the first page for a null cursor.
+     */
+    @FunctionalInterface
+    private interface PageSource {
+        PostPage load(String cursor, int limit) throws SQLException;
     }
 
     /**
      * Refreshes the posts displayed based on the selected filter.
-     * Retrieves posts from the database according to the filter criteria and 
-     * renders them in the UI.
+     * The user's read posts are read once here, so posts marked read while scrolling
+     * do not shift the pages of the read and unread filters.
      *
-     * @param postsLayout  The layout that holds the posts.
-     * @param filter       The selected filter option.
-     * @param primaryStage The main application stage.
+     * @param filter The selected filter option.
+     * @param sort   The selected sort order.
      */
-    private void refreshPosts(VBox postsLayout, String filter, Stage primaryStage) {
-        // Clear the current posts.
-        postsLayout.getChildren().clear();
-        
-        try {
-            // Get posts based on the applied filter.
-            ResultSet rs = getFilteredResultSet(filter);
-            while (rs.next()) {
-                int postId = rs.getInt("postId");
-                String postUser = rs.getString("userName");
-                String title = rs.getString("title");
-                String content = rs.getString("post");
-                
-                // Create a pane for each post.
-                BorderPane postPane = createPostPane(postId, postUser, title, content, postsLayout, primaryStage);
-                postsLayout.getChildren().add(postPane);
-            }
-        } catch (SQLException e) {
-            // Display an error if posts cannot be loaded.
-            showAlert(Alert.AlertType.ERROR, "Database Error", "Failed to load posts");
-            e.printStackTrace();
+    private void refreshPosts(String filter, String sort) {
+        QuestionHandler.PostFilter postFilter;
+        switch (filter) {
+            case "Show Read Posts":
+                postFilter = QuestionHandler.PostFilter.READ;
+                break;
+            case "Show Unread Posts":
+                postFilter = QuestionHandler.PostFilter.UNREAD;
+                break;
+            case "Show Answered Posts":
+                postFilter = QuestionHandler.PostFilter.ANSWERED;
+                break;
+            default:
+                postFilter = QuestionHandler.PostFilter.ALL;
         }
+        QuestionHandler.PostSort postSort;
+        switch (sort) {
+            case "Most Replies":
+                postSort = QuestionHandler.PostSort.MOST_REPLIES;
+                break;
+            case "Unanswered First":
+                postSort = QuestionHandler.PostSort.UNANSWERED_FIRST;
+                break;
+            case "Recently Active":
+                postSort = QuestionHandler.PostSort.RECENTLY_ACTIVE;
+                break;
+            default:
+                postSort = QuestionHandler.PostSort.NEWEST;
+        }
+        boolean needsReadSet = postFilter == QuestionHandler.PostFilter.READ
+                || postFilter == QuestionHandler.PostFilter.UNREAD;
+        showLoading();
+        loads.load("posts",
+                () -> needsReadSet ? userHandler.getReadPostSet(userName) : new PostReadSet(),
+                readSet -> loadPosts((cursor, limit) ->
+                        questionHandler.listPosts(postFilter, readSet, postSort, cursor, limit)),
+                error -> loadFailed("Failed to load posts", error));
     }
     
     /**
-     * Refreshes the posts displayed based on a keyword search.
-     * Retrieves posts containing the keyword from the database and renders them in the UI.
+     * Refreshes the posts displayed based on a keyword search, most relevant first.
+     * The search runs once; scrolling then loads the summaries of the next ranked posts,
+     * with the position in the ranking as the cursor.
      * 
-     * @param postsLayout  The layout that holds the posts.
-     * @param keyword      The keyword to search for in posts.
-     * @param primaryStage The main application stage.
+     * @param keyword The keyword to search for in posts.
      */
-    private void refreshPostsSearch(VBox postsLayout, String keyword, Stage primaryStage) {
-        // Clear the current posts.
-        postsLayout.getChildren().clear();
-        
-        try {
-            // Get posts based on the applied filter.
-            ResultSet rs = questionHandler.searchPostsByKeyword(keyword);
-            while (rs.next()) {
-                int postId = rs.getInt("postId");
-                String postUser = rs.getString("userName");
-                String title = rs.getString("title");
-                String content = rs.getString("post");
-                
-                // Create a pane for each post.
-                BorderPane postPane = createPostPane(postId, postUser, title, content, postsLayout, primaryStage);
-                postsLayout.getChildren().add(postPane);
-            }
-        } catch (SQLException e) {
-            // Display an error if posts cannot be loaded.
-            showAlert(Alert.AlertType.ERROR, "Database Error", "Failed to load posts");
-            e.printStackTrace();
+    private void refreshPostsSearch(String keyword) {
+        List<Integer> rankedIds = new ArrayList<>();
+        for (PostSearchIndex.Hit hit : questionHandler.searchPosts(keyword, Integer.MAX_VALUE)) {
+            rankedIds.add(hit.getPostId());
         }
+        loadPosts((cursor, limit) -> {
+            int from = cursor == null ? 0 : Integer.parseInt(cursor);
+            int to = Math.min(from + limit, rankedIds.size());
+            List<PostSummary> page = questionHandler.getPostSummaries(rankedIds.subList(from, to));
+            return new PostPage(page, to < rankedIds.size() ? Integer.toString(to) : null);
+        });
     }
-    
+
     /**
-     * Returns a ResultSet filtered by the selected option.
-     * Maps filter options to appropriate database queries.
+     * Replaces the list contents with the first page from the given source.
      *
-     * @param filter The filter option.
-     * @return A ResultSet containing posts based on the filter.
-     * @throws SQLException if a database access error occurs.
+     * @param source Where the pages of posts come from.
      */
-    private ResultSet getFilteredResultSet(String filter) throws SQLException {
-        // Retrieve list of post IDs that the user has already read.
-        List<Integer> readPosts = userHandler.getReadPosts(userName);
-        
-        // Return the appropriate ResultSet based on the filter.
-        switch (filter) {
-            case "Show Read Posts":
-                return questionHandler.getReadQuestions(readPosts);
-            case "Show Unread Posts":
-                return questionHandler.getUnreadQuestions(readPosts);
-            case "Show Answered Posts":
-                return questionHandler.getAnsweredQuestions();
-            default:
-                return questionHandler.getAllQuestions();
+    private void loadPosts(PageSource source) {
+        showLoading();
+        posts.clear();
+        expandedPosts.clear();
+        loadedBodies.clear();
+        pageSource = source;
+        nextCursor = null;
+        lastPageLoaded = false;
+        loadNextPage();
+    }
+
+    /**
+     * Appends the next page of posts to the list, unless every page has been loaded.
+     */
+    private void loadNextPage() {
+        if (lastPageLoaded || pageSource == null) {
+            nextPageRequested = false;
+            return;
         }
+        PageSource source = pageSource;
+        String cursor = nextCursor;
+        // A new filter or search replaces any page still loading for the old one.
+        loads.load("posts", () -> source.load(cursor, PAGE_SIZE), page -> {
+            nextPageRequested = false;
+            nextCursor = page.getNextCursor();
+            lastPageLoaded = !page.hasMore();
+            posts.addAll(page.getPosts());
+            listPlaceholder.setText("No posts to show");
+        }, error -> {
+            nextPageRequested = false;
+            lastPageLoaded = true;
+            listPlaceholder.setText("No posts to show");
+            loadFailed("Failed to load posts", error);
+        });
+    }
+
+    /**
+     * Empties the list and shows the loading message until the first page arrives.
+     */
+    private void showLoading() {
+        posts.clear();
+        pageSource = null;
+        nextPageRequested = false;
+        listPlaceholder.setText("Loading posts...");
     }
 
     /**
-     * Creates a visual pane for an individual post with title, content, metadata, and action buttons.
-     * Each post is displayed in a BorderPane with appropriate styling and interactive elements.
+     * Reports a background load that failed.
      *
-     * @param postId       The ID of the post.
-     * @param postUser     The username of the person who posted.
-     * @param title        The title of the post.
-     * @param content      The content of the post.
-     * @param postsLayout  The container layout for posts.
-     * @param primaryStage The main application stage.
-     * @return A BorderPane representing the post.
+     * @param message What could not be done.
+     * @param error   The cause.
      */
-    private BorderPane createPostPane(int postId, String postUser, String title, String content, 
-                                    VBox postsLayout, Stage primaryStage) {
-        // Create the main pane for the post.
-        BorderPane pane = new BorderPane();
-        pane.setPadding(new Insets(10));
-        pane.setStyle("-fx-background-color: white; -fx-border-color: gray;");
-        pane.setPrefWidth(760);
-
-        // --- Title Section ---
-        Label titleLabel = new Label(title.isEmpty() ? "(No Title)" : title);
-        titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
-
-        // --- Content Section ---
-        TextArea contentArea = new TextArea(content);
-        contentArea.setStyle("-fx-font-size: 14px;");
-        contentArea.setWrapText(true);
-        contentArea.setEditable(false);
+    private void loadFailed(String message, Throwable error) {
+        showAlert(Alert.AlertType.ERROR, "Database Error", message);
+        error.printStackTrace();
+    }
 
-        // --- Metadata Section ---
-        Label userLabel = new Label("Posted by: " + postUser);
-        userLabel.setStyle("-fx-text-fill: #555; -fx-font-size: 12px;");
+    /**
+     * A row of the post list. Each cell builds its controls once and shows whichever post
+     * it is currently given, so only as many panes exist as fit on screen.
+     */
+    private class PostCell extends ListCell<PostSummary> {
+        private final BorderPane pane = new BorderPane();
+        private final Label titleLabel = new Label();
+        private final Label contentLabel = new Label();
+        private final Label userLabel = new Label();
+        private final Button moreBtn = new Button();
+        private final Button editBtn = new Button("Edit");
+        private final Button deleteBtn = new Button("Delete");
+        // Marks the post under the mouse as read after 5 seconds of continuous hover.
+        private final PauseTransition hoverTimer = new PauseTransition(Duration.seconds(5));
+
+        /**
+         * Creates a cell for the given list.
+         *
+         * @param postList     The list the cell belongs to.
+         * @param primaryStage The main application stage.
+         */
+        PostCell(ListView<PostSummary> postList, Stage primaryStage) {
+            pane.setPadding(new Insets(10));
+            pane.setStyle("-fx-background-color: white; -fx-border-color: gray;");
+            // Follow the list width so long text wraps instead of scrolling sideways.
+            pane.prefWidthProperty().bind(postList.widthProperty().subtract(40));
+            pane.setMaxWidth(Region.USE_PREF_SIZE);
+
+            // --- Title Section ---
+            titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+
+            // --- Content Section ---
+            contentLabel.setStyle("-fx-font-size: 14px;");
+            contentLabel.setWrapText(true);
+            moreBtn.setOnAction(e -> toggleExpanded());
+
+            // --- Metadata Section ---
+            userLabel.setStyle("-fx-text-fill: #555; -fx-font-size: 12px;");
+
+            // Arrange title, content, and metadata vertically.
+            VBox contentBox = new VBox(5, titleLabel, contentLabel, moreBtn, userLabel);
+            pane.setCenter(contentBox);
+
+            // Add action buttons (edit, delete, reply, view answers, reviews, notify).
+            pane.setBottom(createActionButtons(primaryStage));
+
+            hoverTimer.setOnFinished(e -> {
+                PostSummary post = getItem();
+                if (post != null) {
+                    loads.load(() -> {
+                        userHandler.addPostRead(userName, post.getPostId());
+                        return post.getPostId();
+                    }, postId -> System.out.println("Marked post " + postId + " as read"),
+                       error -> error.printStackTrace());
+                }
+            });
+            // Start timer when mouse enters; stop when it exits.
+            pane.setOnMouseEntered(e -> hoverTimer.playFromStart());
+            pane.setOnMouseExited(e -> hoverTimer.stop());
+        }
 
-        // Arrange title, content, and metadata vertically.
-        VBox contentBox = new VBox(5, titleLabel, contentArea, userLabel);
-        pane.setCenter(contentBox);
+        @Override
+        protected void updateItem(PostSummary post, boolean empty) {
+            super.updateItem(post, empty);
+            hoverTimer.stop();
+            if (empty || post == null) {
+                setGraphic(null);
+                return;
+            }
+            String title = post.getTitle();
+            titleLabel.setText(title == null || title.isEmpty() ? "(No Title)" : title);
+            boolean expanded = expandedPosts.contains(post.getPostId());
+            contentLabel.setText(expanded ? loadedBodies.get(post.getPostId())
+                    : post.getPreview() + (post.isTruncated() ? "..." : ""));
+            moreBtn.setText(expanded ? "Show less" : "Show full post");
+            moreBtn.setVisible(post.isTruncated());
+            moreBtn.setManaged(post.isTruncated());
+            userLabel.setText("Posted by: " + post.getUserName());
+
+            // Only the post owner can edit or delete.
+            boolean owner = post.getUserName().equals(userName);
+            editBtn.setVisible(owner);
+            editBtn.setManaged(owner);
+            deleteBtn.setVisible(owner);
+            deleteBtn.setManaged(owner);
+            setGraphic(pane);
+
+            // Fetch the next page shortly before the user scrolls to the end.
+            if (getIndex() >= posts.size() - PREFETCH_ROWS && !lastPageLoaded && !nextPageRequested) {
+                nextPageRequested = true;
+                loadNextPage();
+            }
+        }
 
-        // Add action buttons (reply, view answers, edit, delete).
-        setupActionButtons(pane, postId, postUser, postsLayout, primaryStage);
+        /**
+         * Shows the full text of the post, loading it on first use, or goes back to the preview.
+         */
+        private void toggleExpanded() {
+            PostSummary post = getItem();
+            if (post == null) {
+                return;
+            }
+            int postId = post.getPostId();
+            if (expandedPosts.remove(postId)) {
+                refreshPost(post);
+                return;
+            }
+            if (loadedBodies.containsKey(postId)) {
+                expandedPosts.add(postId);
+                refreshPost(post);
+                return;
+            }
+            moreBtn.setText("Loading...");
+            loads.load(() -> questionHandler.getPostContentById(postId), body -> {
+                loadedBodies.put(postId, body == null ? "" : body);
+                expandedPosts.add(postId);
+                refreshPost(post);
+            }, error -> {
+                refreshPost(post);
+                loadFailed("Could not load post content", error);
+            });
+        }
 
-        // Setup hover tracking to mark the post as read.
-        setupHoverTracking(pane, postId);
+        // Redraws the post if this cell is still showing it.
+        private void refreshPost(PostSummary post) {
+            if (getItem() == post) {
+                updateItem(post, false);
+            }
+        }
 
-        return pane;
+        /**
+         * Creates the action buttons shared by every post the cell shows.
+         * Edit and Delete are shown only when the current user owns the post.
+         *
+         * @param primaryStage The main application stage.
+         * @return The box holding the buttons.
+         */
+        private HBox createActionButtons(Stage primaryStage) {
+            // Create a single HBox to hold all action buttons.
+            HBox buttonBox = new HBox(10);
+            buttonBox.setPadding(new Insets(10));
+            buttonBox.setAlignment(Pos.CENTER_RIGHT);
+
+            editBtn.setStyle("-fx-text-fill: blue;");
+            editBtn.setOnAction(e -> showEditPostScreen(getItem(), primaryStage));
+
+            deleteBtn.setStyle("-fx-text-fill: red;");
+            deleteBtn.setOnAction(e -> deletePost(getItem()));
+
+            Button replyBtn = new Button("Reply");
+            replyBtn.setOnAction(e -> new Answer(answerHandler, rHandler, getItem().getPostId()).writeAnswer(userName, primaryStage));
+
+            Button answersBtn = new Button("Answers");
+            answersBtn.setOnAction(e -> new Answer(answerHandler, rHandler, getItem().getPostId()).show(primaryStage, userName, questionHandler, answerHandler, userHandler, userName, dbHelper));
+
+            // Updated Reviews button for questions.
+            Button reviewsBtn = new Button("Reviews");
+            reviewsBtn.setOnAction(e -> {
+                // For a question, we instantiate the Review window with the postId and set isForPost=true.
+                application.Review reviewWindow = new application.Review(rHandler, getItem().getPostId(), true);
+                reviewWindow.showReviews(primaryStage, userName, dbHelper);
+            });
+
+            Button notifyBtn = new Button("Notify Creator");
+            notifyBtn.setOnAction(e -> notifyCreator(getItem()));
+
+            // Add buttons to the buttonBox in the desired order.
+            buttonBox.getChildren().addAll(editBtn, deleteBtn, replyBtn, answersBtn, reviewsBtn, notifyBtn);
+            return buttonBox;
+        }
     }
 
     /**
-     * Sets up action buttons for a post pane.
-     * Adds different buttons based on whether the current user is the post owner,
-     * including Reply, View Answers, Review, and notification functionality.
+     * Asks for a message and sends it to the author of a post as a notification,
+     * also recording it as a private answer on the post.
      *
-     * @param pane         The post pane to add buttons to.
-     * @param postId       The ID of the post.
-     * @param postUser     The username of the post creator.
-     * @param postsLayout  The layout containing all posts.
-     * @param primaryStage The main application stage.
+     * @param post The post whose author is notified.
      */
-    private void setupActionButtons(BorderPane pane, int postId, String postUser, 
-            VBox postsLayout, Stage primaryStage) {
-        // Create a single HBox to hold all action buttons.
-        HBox buttonBox = new HBox(10);
-        buttonBox.setPadding(new Insets(10));
-        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+    private void notifyCreator(PostSummary post) {
+        String postUser = post.getUserName();
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Send Notification");
+        dialog.setHeaderText("Send a private notification to " + postUser);
+        dialog.setContentText("Enter your notification message:");
         
-        // If the current user is the post owner, add Edit and Delete buttons first.
-        if (postUser.equals(userName)) {
-            Button editBtn = new Button("Edit");
-            editBtn.setStyle("-fx-text-fill: blue;");
-            editBtn.setOnAction(e -> showEditPostScreen(postId, primaryStage, postsLayout));
-            
-            Button deleteBtn = new Button("Delete");
-            deleteBtn.setStyle("-fx-text-fill: red;");
-            deleteBtn.setOnAction(e -> deletePost(postId, postsLayout, pane));
-            
-            buttonBox.getChildren().addAll(editBtn, deleteBtn);
-        }
-        
-        // Add the common action buttons.
-        Button replyBtn = new Button("Reply");
-        replyBtn.setOnAction(e -> new Answer(answerHandler, rHandler, postId).writeAnswer(userName, primaryStage));
-        
-        Button answersBtn = new Button("Answers");
-        answersBtn.setOnAction(e -> new Answer(answerHandler, rHandler, postId).show(primaryStage, userName, questionHandler, answerHandler, userHandler, userName, dbHelper));
-        
-        // Updated Reviews button for questions.
-        Button reviewsBtn = new Button("Reviews");
-        reviewsBtn.setOnAction(e -> {
-            // For a question, we instantiate the Review window with the postId and set isForPost=true.
-            application.Review reviewWindow = new application.Review(rHandler, postId, true);
-            reviewWindow.showReviews(primaryStage, userName, dbHelper);
-        });
-        
-        Button notifyBtn = new Button("Notify Creator");
-        notifyBtn.setOnAction(e -> {
-            TextInputDialog dialog = new TextInputDialog();
-            dialog.setTitle("Send Notification");
-            dialog.setHeaderText("Send a private notification to " + postUser);
-            dialog.setContentText("Enter your notification message:");
-            
-            dialog.showAndWait().ifPresent(message -> {
-                int postCreatorId = dbHelper.getUserIdByUsername(postUser);
-                boolean success = dbHelper.addNotificationToUser(userName + ": " + message, postCreatorId);
-                
-                if (success) {
-                    answerHandler.addAnswer("[PRIVATE] " + message, postId, userName, true);
-                    showAlert(Alert.AlertType.INFORMATION, "Success", "Notification sent to " + postUser);
-                } else {
-                    showAlert(Alert.AlertType.ERROR, "Error", "Failed to send notification");
-                }
-            });
-        });
-        
-        // Add buttons to the buttonBox in the desired order.
-        buttonBox.getChildren().addAll(replyBtn, answersBtn, reviewsBtn, notifyBtn);
-        
-        // Place the combined HBox at the bottom of the pane.
-        pane.setBottom(buttonBox);
+        dialog.showAndWait().ifPresent(message -> loads.load(() -> {
+            int postCreatorId = dbHelper.getUserIdByUsername(postUser);
+            boolean success = dbHelper.addNotificationToUser(userName + ": " + message, postCreatorId);
+            if (success) {
+                answerHandler.addAnswer("[PRIVATE] " + message, post.getPostId(), userName, true);
+            }
+            return success;
+        }, success -> {
+            if (success) {
+                showAlert(Alert.AlertType.INFORMATION, "Success", "Notification sent to " + postUser);
+            } else {
+                showAlert(Alert.AlertType.ERROR, "Error", "Failed to send notification");
+            }
+        }, error -> loadFailed("Failed to send notification", error)));
     }
 
     /**
      * Displays an edit screen for modifying an existing post.
      * Creates a modal dialog with fields pre-filled with the post's current content.
      *
-     * @param postId       The ID of the post to edit.
+     * @param post         The post to edit.
      * @param primaryStage The main application stage.
-     * @param postsLayout  The container layout for posts (to be refreshed after editing).
      */
-    private void showEditPostScreen(int postId, Stage primaryStage, VBox postsLayout) {
-        try {
-            // Retrieve current title and content for the post.
-            String currentTitle = questionHandler.getPostTitleById(postId);
-            String currentContent = questionHandler.getPostContentById(postId);
-            
-            // Create a new stage for editing the post.
-            Stage editStage = new Stage();
-            editStage.setTitle("Edit Post");
-            
-            VBox layout = new VBox(10);
-            layout.setPadding(new Insets(20));
-            
-            // --- Title Editor ---
-            Label titleLabel = new Label("Title:");
-            TextField titleField = new TextField(currentTitle);
-            Label titleCharLabel = new Label(currentTitle.length() + "");
-            // Update character count for title.
-            titleField.textProperty().addListener((obs, oldVal, newVal) -> {
-                int length = newVal.length();
-                titleCharLabel.setText(length + "");
-                titleCharLabel.setStyle(length > 100 ? "-fx-text-fill: red;" : "-fx-text-fill: #666;");
-            });
+    private void showEditPostScreen(PostSummary post, Stage primaryStage) {
+        int postId = post.getPostId();
+        // Retrieve current title and content for the post.
+        loads.load(() -> new String[] {questionHandler.getPostTitleById(postId), questionHandler.getPostContentById(postId)},
+                current -> showEditPostScreen(post, current[0], current[1], primaryStage),
+                error -> loadFailed("Could not load post content", error));
+    }
+
+    /**
+     * Displays the edit screen once the post's current title and content have been loaded.
+     *
+     * @param post           The post to edit.
+     * @param currentTitle   The post's current title.
+     * @param currentContent The post's current content.
+     * @param primaryStage   The main application stage.
+     */
+    private void showEditPostScreen(PostSummary post, String currentTitle, String currentContent, Stage primaryStage) {
+        int postId = post.getPostId();
+        // Create a new stage for editing the post.
+        Stage editStage = new Stage();
+        editStage.setTitle("Edit Post");
+        
+        VBox layout = new VBox(10);
+        layout.setPadding(new Insets(20));
+        
+        // --- Title Editor ---
+        Label titleLabel = new Label("Title:");
+        TextField titleField = new TextField(currentTitle);
+        Label titleCharLabel = new Label(currentTitle.length() + "");
+        // Update character count for title.
+        titleField.textProperty().addListener((obs, oldVal, newVal) -> {
+            int length = newVal.length();
+            titleCharLabel.setText(length + "");
+            titleCharLabel.setStyle(length > 100 ? "-fx-text-fill: red;" : "-fx-text-fill: #666;");
+        });
+        
+        // --- Content Editor ---
+        Label contentLabel = new Label("Content:");
+        TextArea contentArea = new TextArea(currentContent);
+        contentArea.setPrefRowCount(8);
+        contentArea.setWrapText(true);
+        
+        // Save button to update the post.
+        Button saveBtn = new Button("Save Changes");
+        saveBtn.setOnAction(e -> {
+            String newTitle = titleField.getText().trim();
+            String newContent = contentArea.getText().trim();
             
-            // --- Content Editor ---
-            Label contentLabel = new Label("Content:");
-            TextArea contentArea = new TextArea(currentContent);
-            contentArea.setPrefRowCount(8);
-            contentArea.setWrapText(true);
+            // Validate title length.
+            if (newTitle.length() > 100) {
+                showAlert(Alert.AlertType.ERROR, "Invalid Title", 
+                         "Title cannot exceed 100 characters");
+                return;
+            }
             
-            // Save button to update the post.
-            Button saveBtn = new Button("Save Changes");
-            saveBtn.setOnAction(e -> {
-                String newTitle = titleField.getText().trim();
-                String newContent = contentArea.getText().trim();
-                
-                // Validate title length.
-                if (newTitle.length() > 100) {
-                    showAlert(Alert.AlertType.ERROR, "Invalid Title", 
-                             "Title cannot exceed 100 characters");
-                    return;
-                }
-                
-                // Attempt to update the post and refresh the posts view.
-                if (questionHandler.updatePost(postId, newTitle, newContent)) {
-                    refreshPosts(postsLayout, "Show All Posts", primaryStage);
+            // Attempt to update the post and refresh its row in the list.
+            saveBtn.setDisable(true);
+            loads.load(() -> questionHandler.updatePost(postId, newTitle, newContent), updated -> {
+                saveBtn.setDisable(false);
+                if (updated) {
+                    replacePost(post);
                     editStage.close();
                 } else {
                     showAlert(Alert.AlertType.ERROR, "Error", "Failed to update post");
                 }
+            }, error -> {
+                saveBtn.setDisable(false);
+                loadFailed("Failed to update post", error);
             });
-            
-            // Add editor components to the layout.
-            layout.getChildren().addAll(
-                titleLabel,
-                titleField,
-                titleCharLabel,
-                contentLabel,
-                contentArea,
-                saveBtn
-            );
-            
-            editStage.setScene(new Scene(layout, 800, 400));
-            editStage.initOwner(primaryStage);
-            editStage.show();
-        } catch (SQLException ex) {
-            showAlert(Alert.AlertType.ERROR, "Error", "Could not load post content");
-            ex.printStackTrace();
-        }
+        });
+        
+        // Add editor components to the layout.
+        layout.getChildren().addAll(
+            titleLabel,
+            titleField,
+            titleCharLabel,
+            contentLabel,
+            contentArea,
+            saveBtn
+        );
+        
+        editStage.setScene(new Scene(layout, 800, 400));
+        editStage.initOwner(primaryStage);
+        editStage.show();
     }
 
     /**
-     * Sets up a hover listener on the post pane that marks the post as read
-     * after 5 seconds of continuous mouse hover.
-     * This implements the automatic read-tracking functionality.
+     * Reloads the summary of an edited post and puts it in place of the old one.
      *
-     * @param pane   The pane representing the post.
-     * @param postId The ID of the post.
+     * @param post The post as it was before editing.
      */
-    private void setupHoverTracking(BorderPane pane, int postId) {
-        // Create a PauseTransition for 5 seconds.
-        PauseTransition hoverTimer = new PauseTransition(Duration.seconds(5));
-        hoverTimer.setOnFinished(e -> {
-            // Mark the post as read after the hover duration.
-            userHandler.addPostRead(userName, postId);
-            System.out.println("Marked post " + postId + " as read");
-        });
-        // Start timer when mouse enters; stop when it exits.
-        pane.setOnMouseEntered(e -> hoverTimer.playFromStart());
-        pane.setOnMouseExited(e -> hoverTimer.stop());
+    private void replacePost(PostSummary post) {
+        loads.load(() -> questionHandler.getPostSummaries(Collections.singletonList(post.getPostId())), updated -> {
+            int index = posts.indexOf(post);
+            if (index >= 0 && !updated.isEmpty()) {
+                expandedPosts.remove(post.getPostId());
+                loadedBodies.remove(post.getPostId());
+                posts.set(index, updated.get(0));
+            }
+        }, error -> loadFailed("Failed to reload post", error));
     }
 
     /**
      * Deletes a post and its associated replies from the database.
-     * Removes the post from both the database and the UI.
+     * Removes the post from both the database and the list.
      *
-     * @param postId      The ID of the post to delete.
-     * @param postsLayout The layout containing all post panes.
-     * @param pane        The pane corresponding to the post.
+     * @param post The post to delete.
      */
-    private void deletePost(int postId, VBox postsLayout, BorderPane pane) {
-        try {
+    private void deletePost(PostSummary post) {
+        int postId = post.getPostId();
+        loads.load(() -> {
+            // Check for replies before the post row, and its reply count, are gone.
+            boolean hasReplies = questionHandler.getNumReplies(postId) > 0;
             // Attempt to delete the post.
             boolean postDeleted = questionHandler.deletePostById(postId);
             boolean repliesDeleted = true;
             // If there are replies, attempt to delete them.
-            if (questionHandler.getNumReplies(postId) > 0) {
+            if (postDeleted && hasReplies) {
                 repliesDeleted = answerHandler.deleteReplyByPostId(postId);
             }
-            
-            // If deletion was successful, remove the post pane.
-            if (postDeleted && repliesDeleted) {
-                postsLayout.getChildren().remove(pane);
+            return postDeleted && repliesDeleted;
+        }, deleted -> {
+            // If deletion was successful, remove the post from the list.
+            if (deleted) {
+                posts.remove(post);
                 showAlert(Alert.AlertType.INFORMATION, "Success", "Post deleted");
             } else {
                 showAlert(Alert.AlertType.ERROR, "Error", "Failed to delete post");
             }
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Error", "Database error during deletion");
-            e.printStackTrace();
-        }
+        }, error -> loadFailed("Database error during deletion", error));
     }
 
     /**
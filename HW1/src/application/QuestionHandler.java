@@ -3,47 +3,193 @@ package application;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.ListIterator;
+
+import databasePart1.ConnectionPool;
+import databasePart1.ForumEvents;
+import databasePart1.OperationMetrics;
+import databasePart1.SchemaMigrator;
+import databasePart1.WriteBehindCounters;
 
 public class QuestionHandler {
-    // Database connection used for executing SQL queries.
-    private Connection connection;
+    // Call counts and latencies of the public methods, published over JMX.
+    private static final OperationMetrics METRICS = OperationMetrics.forComponent("QuestionHandler");
+
+    // Pool the handler borrows a connection from for each operation.
+    private final ConnectionPool pool;
+
+    // Full-text index over titles and bodies, kept in step by addPost, updatePost and deletePostById,
+    // and caught up with other processes by syncSearchIndex.
+    private final PostSearchIndex searchIndex = new PostSearchIndex();
+
+    // Other processes sharing the database change posts without this handler, so searches check for
+    // their changes, at most this often.
+    static final long SEARCH_SYNC_MILLIS = 1000;
+    // Each check looks again at activity this far back, for changes committed after a later one was seen.
+    private static final long SEARCH_SYNC_OVERLAP_MILLIS = 5000;
+
+    // The newest post and the latest activity time the index has caught up with. Guarded by searchSyncLock.
+    private final Object searchSyncLock = new Object();
+    private int syncedPostId;
+    private Timestamp syncedActivity = new Timestamp(0);
+    private long searchSyncedAt;
+
+    // Reply counts are buffered, since every answer to a popular post updates its row. Reads add the
+    // counts not written yet; filters and sort orders on numReplies or lastActivityAt see the last flush.
+    // The count is of the post's top-level rows in Replies, and is recounted from them after a crash.
+    private static final WriteBehindCounters.Counter REPLIES =
+            new WriteBehindCounters.Counter("Posts", "postId", "numReplies", "lastActivityAt")
+                    .countedBy("SELECT COUNT(*) FROM Replies R WHERE R.postId = Posts.postId AND R.parentReplyId IS NULL");
+    private final WriteBehindCounters counters;
     
-    // Predefined patterns used to detect potential SQL injection attempts.
-    private static final String[] SQL_INJECTION_PATTERNS = {
-        "(?i)\\b(union|select|insert|update|delete|drop|alter|create|execute|shutdown)\\b",
-        "--", 
-        ";", 
-        "/\\*", 
-        "\\*/"
-    };
+    // Versioned schema for the Posts table.
+    private static final SchemaMigrator MIGRATIONS = new SchemaMigrator("questions")
+            .step(1, "Create Posts table",
+                    "CREATE TABLE IF NOT EXISTS Posts ("
+                    + "postId INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "userName VARCHAR(255), "
+                    + "title VARCHAR(255), "
+                    + "numReplies INT DEFAULT 0, "
+                    + "post VARCHAR(10000))")
+            // One index per listing sort order, each ending in postId so keyset cursors are unique.
+            .step(2, "Track post activity and index the listing sort orders",
+                    "ALTER TABLE Posts ADD COLUMN IF NOT EXISTS lastActivityAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP",
+                    "ALTER TABLE Posts ADD COLUMN IF NOT EXISTS answered BOOLEAN GENERATED ALWAYS AS (numReplies > 0)",
+                    "CREATE INDEX IF NOT EXISTS idx_posts_newest ON Posts(postId DESC)",
+                    "CREATE INDEX IF NOT EXISTS idx_posts_replies ON Posts(numReplies DESC, postId DESC)",
+                    "CREATE INDEX IF NOT EXISTS idx_posts_answered ON Posts(answered, postId DESC)",
+                    "CREATE INDEX IF NOT EXISTS idx_posts_activity ON Posts(lastActivityAt DESC, postId DESC)")
+            .step(3, "Index posts by author",
+                    // Serves the per-student activity listing, newest first.
+                    "CREATE INDEX IF NOT EXISTS idx_posts_author ON Posts(userName, postId DESC)");
 
     /**
      * Constructs a QuestionHandler with a given database connection.
+     * The connection stays owned by the caller and is used for every operation.
      *
      * @param connection The database connection.
      * @throws SQLException if an error occurs while creating the tables.
      */
     public QuestionHandler(Connection connection) throws SQLException {
-        this.connection = connection;
+        this(ConnectionPool.wrap(connection));
+    }
+
+    /**
+     * Constructs a QuestionHandler that borrows connections from the given pool.
+     *
+     * @param pool The connection pool.
+     * @throws SQLException if an error occurs while creating the tables.
+     */
+    public QuestionHandler(ConnectionPool pool) throws SQLException {
+        this.pool = pool;
         createTables();
+        rebuildSearchIndex();
+        this.counters = WriteBehindCounters.forPool(pool);
     }
 
     /**
-     * Creates the Posts table if it does not already exist.
+     * Recounts the reply counts from the Replies table if the last run did not write them all.
+     * Called by the AnswerHandler, which creates that table, before it adds any reply.
+     *
+     * @throws SQLException if the counts could not be recounted.
+     */
+    void reconcileReplyCounts() throws SQLException {
+        counters.reconcile(REPLIES);
+    }
+
+    /**
+     * Writes the buffered reply counts and activity times to the Posts table.
+     */
+    public void flushCounters() {
+        METRICS.run("flushCounters", () -> {
+            try {
+                counters.flush();
+            } catch (SQLException e) {
+                System.err.println("Error writing reply counts: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Brings the Posts table up to the current schema version. Nothing is executed
+     * when the database is already current.
      *
      * @throws SQLException if an error occurs while executing the SQL query.
      */
     private void createTables() throws SQLException {
-        String postTable = "CREATE TABLE IF NOT EXISTS Posts (" 
-                + "postId INT AUTO_INCREMENT PRIMARY KEY, "
-                + "userName VARCHAR(255), "
-                + "title VARCHAR(255), "  
-                + "numReplies INT DEFAULT 0, "
-                + "post VARCHAR(10000))";
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(postTable);
+        try (Connection connection = pool.getConnection()) {
+            MIGRATIONS.migrate(connection);
+        }
+    }
+
+    /**
+     * Rebuilds the search index from the Posts table. Searches catch up with posts changed
+     * without going through this handler on their own, within about a second.
+     *
+     * @throws SQLException if an error occurs while reading the posts.
+     */
+    public void rebuildSearchIndex() throws SQLException {
+        METRICS.run("rebuildSearchIndex", this::loadSearchIndex);
+    }
+
+    private void loadSearchIndex() throws SQLException {
+        synchronized (searchSyncLock) {
+            searchIndex.clear();
+            syncedPostId = 0;
+            syncedActivity = new Timestamp(0);
+            indexPosts("SELECT postId, title, post, lastActivityAt FROM Posts");
+            searchSyncedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Catches the search index up with posts that other processes sharing the database added, edited
+     * or deleted, at most once every {@value #SEARCH_SYNC_MILLIS} ms. New posts are found by their ID
+     * and edited ones by {@code lastActivityAt}, which edits and new replies move forward; a deletion
+     * leaves the index with more posts than the table, and the index is rebuilt.
+     */
+    private void syncSearchIndex() {
+        synchronized (searchSyncLock) {
+            long now = System.currentTimeMillis();
+            if (now - searchSyncedAt < SEARCH_SYNC_MILLIS) {
+                return;
+            }
+            searchSyncedAt = now;
+            try {
+                indexPosts("SELECT postId, title, post, lastActivityAt FROM Posts WHERE postId > ? "
+                        + "UNION ALL SELECT postId, title, post, lastActivityAt FROM Posts WHERE lastActivityAt >= ?",
+                        syncedPostId, new Timestamp(syncedActivity.getTime() - SEARCH_SYNC_OVERLAP_MILLIS));
+                try (Connection connection = pool.getConnection();
+                     Statement stmt = connection.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Posts")) {
+                    if (rs.next() && rs.getInt(1) != searchIndex.size()) {
+                        loadSearchIndex();
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Error refreshing the search index: " + e.getMessage());
+            }
+        }
+    }
+
+    // Adds the posts a query returns to the index and moves the synced ID and activity time forward.
+    private void indexPosts(String query, Object... params) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int postId = rs.getInt("postId");
+                    searchIndex.addPost(postId, rs.getString("title"), rs.getString("post"));
+                    syncedPostId = Math.max(syncedPostId, postId);
+                    Timestamp activity = rs.getTimestamp("lastActivityAt");
+                    if (activity != null && activity.after(syncedActivity)) {
+                        syncedActivity = activity;
+                    }
+                }
+            }
         }
     }
 
@@ -55,39 +201,44 @@ public class QuestionHandler {
      * @param title    The title of the post.
      * @param post     The content of the post.
      */
-    public void addPost(String userName, String title, String post) {  
-        // Initialize clean copies of title and post.
-        String cleanTitle = title;
-        String cleanPost = post;
-        
-        // Sanitize title if SQL injection is detected.
-        if (detectSQLInjection(title)){
-            cleanTitle = sanitizeInput(title);
-        }
-        // Sanitize post content if SQL injection is detected.
-        if (detectSQLInjection(post)){
-            cleanPost = sanitizeInput(post);
-        }
-        
-        // SQL query to insert a new post.
-        String insertQuery = "INSERT INTO Posts (userName, title, post) VALUES (?, ?, ?)";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(insertQuery, 
-                Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, userName);
-            pstmt.setString(2, cleanTitle);
-            pstmt.setString(3, cleanPost);
-            pstmt.executeUpdate();
-            
-            // Retrieve the generated post ID and log it.
-            ResultSet rs = pstmt.getGeneratedKeys();
-            if (rs.next()) {
-                int postId = rs.getInt(1);
-                System.out.println("Post added successfully with ID: " + postId);
+    public void addPost(String userName, String title, String post) {
+        METRICS.run("addPost", () -> {
+            ForumEvents.PostCreate event = new ForumEvents.PostCreate();
+            event.userName = userName;
+            event.start();
+            try {
+                // Sanitize the title and post content if SQL injection is detected.
+                String cleanTitle = InputSecurityScanner.scan(title).getCleaned(title);
+                String cleanPost = InputSecurityScanner.scan(post).getCleaned(post);
+
+                // SQL query to insert a new post.
+                String insertQuery = "INSERT INTO Posts (userName, title, post) VALUES (?, ?, ?)";
+
+                try (Connection connection = pool.getConnection();
+                     PreparedStatement pstmt = connection.prepareStatement(insertQuery,
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setString(1, userName);
+                    pstmt.setString(2, cleanTitle);
+                    pstmt.setString(3, cleanPost);
+                    pstmt.executeUpdate();
+
+                    // Retrieve the generated post ID and log it.
+                    try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            int postId = rs.getInt(1);
+                            searchIndex.addPost(postId, cleanTitle, cleanPost);
+                            event.postId = postId;
+                            event.rows = 1;
+                            System.out.println("Post added successfully with ID: " + postId);
+                        }
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Error inserting post: " + e.getMessage());
+                }
+            } finally {
+                event.finish();
             }
-        } catch (SQLException e) {
-            System.err.println("Error inserting post: " + e.getMessage());
-        }
+        });
     }
 
     /**
@@ -97,28 +248,41 @@ public class QuestionHandler {
      * @throws SQLException if an error occurs during the query.
      */
     public ResultSet getAllQuestions() throws SQLException {
+        return METRICS.time("getAllQuestions", this::allQuestions);
+    }
+
+    // Untimed, so the timed methods that fall back to every post count one operation.
+    private ResultSet allQuestions() throws SQLException {
         String query = "SELECT * FROM Posts";
-        Statement statement = connection.createStatement();
-        return statement.executeQuery(query);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query);
+             WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+            return pending.detach(pstmt.executeQuery(), REPLIES);
+        }
     }
 
     /**
-     * Retrieves the number of replies for a specific post.
+     * Retrieves the number of replies for a specific post, including replies not yet counted in the table.
      *
      * @param postId The ID of the post.
      * @return The number of replies for the given post, or 0 if not found.
      * @throws SQLException if an error occurs during the query.
      */
     public int getNumReplies(int postId) throws SQLException {
-        String query = "SELECT numReplies FROM Posts WHERE postId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, postId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("numReplies");
+        return METRICS.time("getNumReplies", () -> {
+            String query = "SELECT numReplies FROM Posts WHERE postId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                pstmt.setInt(1, postId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt("numReplies") + (int) pending.pending(REPLIES, postId);
+                    }
+                }
             }
-        }
-        return 0;
+            return 0;
+        });
     }
 
     /**
@@ -128,74 +292,117 @@ public class QuestionHandler {
      * @return true if the deletion was successful; false otherwise.
      */
     public boolean deletePostById(int postId) {
-        String sql = "DELETE FROM Posts WHERE postId = ?";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, postId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return METRICS.time("deletePostById", () -> {
+            String sql = "DELETE FROM Posts WHERE postId = ?";
+
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                pstmt.setInt(1, postId);
+                int rowsAffected = pstmt.executeUpdate();
+                if (rowsAffected > 0) {
+                    searchIndex.removePost(postId);
+                }
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        });
     }
 
     /**
-     * Increments the number of replies for a specific post.
+     * Increments the number of replies for a specific post and marks it as active now.
+     * The change is buffered and written to the Posts table shortly after. The count is of the
+     * post's top-level replies and is recounted from the Replies table after a crash.
      *
      * @param postId The ID of the post.
-     * @return true if at least one row was updated; false otherwise.
+     * @return true once the change is recorded.
      */
     public boolean incrementNumReplies(int postId) {
-        String query = "UPDATE Posts SET numReplies = numReplies + 1 WHERE postId = ?";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, postId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0; // Returns true if at least one row was updated.
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return METRICS.time("incrementNumReplies", () -> {
+            counters.add(REPLIES, postId, 1);
+            return true;
+        });
     }
     
     /**
      * Decrements the number of replies for a specific post.
+     * The change is buffered and written to the Posts table shortly after.
      *
      * @param postId The ID of the post.
-     * @return true if at least one row was updated; false otherwise.
+     * @return true once the change is recorded.
      */
     public boolean decrementNumReplies(int postId) {
-        String query = "UPDATE Posts SET numReplies = numReplies - 1 WHERE postId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, postId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0; // Returns true if at least one row was updated.
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return METRICS.time("decrementNumReplies", () -> {
+            counters.add(REPLIES, postId, -1);
+            return true;
+        });
     }
 
     /**
-     * Retrieves all posts that contain a keyword in their title or text.
+     * Retrieves the posts matching a search query, most relevant first.
+     * The query may combine words, quoted phrases, {@code OR} and {@code word*} prefixes;
+     * see {@link PostSearchIndex}. A query without any words returns every post.
      *
-     * @return A ResultSet containing posts that contain the keyword.
+     * @param keyword The search query.
+     * @return A ResultSet containing the matching posts in ranked order.
      * @throws SQLException if an error occurs during the query.
      */
     public ResultSet searchPostsByKeyword(String keyword) throws SQLException {
-        // SQL query using LOWER() for a case-insensitive match on title and post columns.
-        String query = "SELECT * FROM Posts WHERE LOWER(title) LIKE ? OR LOWER(post) LIKE ?";
-        PreparedStatement pstmt = connection.prepareStatement(query);
-        
-        // Convert the keyword to lowercase and wrap with wildcards.
-        String searchPattern = "%" + keyword.toLowerCase() + "%";
-        pstmt.setString(1, searchPattern);
-        pstmt.setString(2, searchPattern);
-        
-        return pstmt.executeQuery();
+        return METRICS.time("searchPostsByKeyword", () -> {
+            ForumEvents.PostSearch event = new ForumEvents.PostSearch();
+            event.keyword = keyword;
+            event.start();
+            try {
+                if (PostSearchIndex.tokenize(keyword).isEmpty()) {
+                    return allQuestions();
+                }
+                syncSearchIndex();
+                List<Integer> postIds = new ArrayList<>();
+                for (PostSearchIndex.Hit hit : searchIndex.search(keyword, Integer.MAX_VALUE)) {
+                    postIds.add(hit.getPostId());
+                }
+                event.rows = postIds.size();
+                // Join on the ranked ids so the rows come back in rank order.
+                String query = "SELECT P.* FROM UNNEST(?) WITH ORDINALITY AS S(postId, rank) "
+                        + "JOIN Posts P ON P.postId = S.postId ORDER BY S.rank";
+                try (Connection connection = pool.getConnection();
+                     PreparedStatement pstmt = connection.prepareStatement(query)) {
+                    pstmt.setArray(1, connection.createArrayOf("INTEGER", postIds.toArray()));
+                    try (WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                        return pending.detach(pstmt.executeQuery(), REPLIES);
+                    }
+                }
+            } finally {
+                event.finish();
+            }
+        });
     }
-    
+
+    /**
+     * Ranks posts against a search query using the in-memory index, which only reads the database
+     * to catch up with posts changed by other processes.
+     *
+     * @param query The search query.
+     * @param limit The maximum number of results.
+     * @return The matching post IDs with their scores, most relevant first.
+     */
+    public List<PostSearchIndex.Hit> searchPosts(String query, int limit) {
+        return METRICS.time("searchPosts", () -> {
+            ForumEvents.PostSearch event = new ForumEvents.PostSearch();
+            event.keyword = query;
+            event.start();
+            try {
+                syncSearchIndex();
+                List<PostSearchIndex.Hit> hits = searchIndex.search(query, limit);
+                event.rows = hits.size();
+                return hits;
+            } finally {
+                event.finish();
+            }
+        });
+    }
+
     /**
      * Retrieves all posts that have at least one reply.
      *
@@ -203,9 +410,14 @@ public class QuestionHandler {
      * @throws SQLException if an error occurs during the query.
      */
     public ResultSet getAnsweredQuestions() throws SQLException {
-        String query = "SELECT * FROM Posts WHERE numReplies > 0";
-        PreparedStatement statement = connection.prepareStatement(query);
-        return statement.executeQuery();
+        return METRICS.time("getAnsweredQuestions", () -> {
+            String query = "SELECT * FROM Posts WHERE numReplies > 0";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(query);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                return pending.detach(statement.executeQuery(), REPLIES);
+            }
+        });
     }
 
     /**
@@ -216,17 +428,20 @@ public class QuestionHandler {
      * @throws SQLException if an error occurs during the query.
      */
     public ResultSet getReadQuestions(List<Integer> readPostIds) throws SQLException {
-        // If no posts have been read, return an empty result set.
-        if (readPostIds.isEmpty()) return connection.createStatement().executeQuery("SELECT * FROM Posts WHERE 1=0");
-        
-        // Convert list of IDs into a comma-separated string.
-        String ids = readPostIds.stream()
-                              .map(String::valueOf)
-                              .collect(Collectors.joining(","));
-        
-        return connection.createStatement().executeQuery(
-            "SELECT * FROM Posts WHERE postId IN (" + ids + ")"
-        );
+        return METRICS.time("getReadQuestions(List)", () -> queryByReadSet(PostReadSet.of(readPostIds), "EXISTS"));
+    }
+
+    /**
+     * Retrieves posts that have been read by the user. The read set is passed to the database
+     * as its runs of consecutive ids, so the query cost grows with the number of runs rather
+     * than with the number of posts read.
+     *
+     * @param readSet The posts the user has read.
+     * @return A ResultSet containing posts that have been read.
+     * @throws SQLException if an error occurs during the query.
+     */
+    public ResultSet getReadQuestions(PostReadSet readSet) throws SQLException {
+        return METRICS.time("getReadQuestions(PostReadSet)", () -> queryByReadSet(readSet, "EXISTS"));
     }
 
     /**
@@ -237,17 +452,397 @@ public class QuestionHandler {
      * @throws SQLException if an error occurs during the query.
      */
     public ResultSet getUnreadQuestions(List<Integer> readPostIds) throws SQLException {
+        return METRICS.time("getUnreadQuestions(List)", () -> unreadQuestions(PostReadSet.of(readPostIds)));
+    }
+
+    /**
+     * Retrieves posts that have not been read by the user.
+     *
+     * @param readSet The posts the user has read.
+     * @return A ResultSet containing posts that have not been read.
+     * @throws SQLException if an error occurs during the query.
+     */
+    public ResultSet getUnreadQuestions(PostReadSet readSet) throws SQLException {
+        return METRICS.time("getUnreadQuestions(PostReadSet)", () -> unreadQuestions(readSet));
+    }
+
+    private ResultSet unreadQuestions(PostReadSet readSet) throws SQLException {
         // If no posts have been read, return all posts.
-        if (readPostIds.isEmpty()) return getAllQuestions();
-        
-        // Convert list of IDs into a comma-separated string.
-        String ids = readPostIds.stream()
-                              .map(String::valueOf)
-                              .collect(Collectors.joining(","));
-        
-        return connection.createStatement().executeQuery(
-            "SELECT * FROM Posts WHERE postId NOT IN (" + ids + ")"
-        );
+        if (readSet.isEmpty()) return allQuestions();
+        return queryByReadSet(readSet, "NOT EXISTS");
+    }
+
+    private ResultSet queryByReadSet(PostReadSet readSet, String existence) throws SQLException {
+        // Each row of the unnested arrays is one run [lo, hi] of read post IDs.
+        String query = "SELECT P.* FROM Posts P WHERE " + existence + " ("
+                + "SELECT 1 FROM UNNEST(?, ?) AS R(lo, hi) WHERE P.postId BETWEEN R.lo AND R.hi)";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setArray(1, connection.createArrayOf("INTEGER", readSet.getRunStarts()));
+            pstmt.setArray(2, connection.createArrayOf("INTEGER", readSet.getRunEnds()));
+            try (WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                return pending.detach(pstmt.executeQuery(), REPLIES);
+            }
+        }
+    }
+
+    /**
+     * The posts a page of summaries is drawn from, matching the filters in the post list.
+     */
+    public enum PostFilter {
+        /** Every post. */
+        ALL,
+        /** Posts the user has read. */
+        READ,
+        /** Posts the user has not read. */
+        UNREAD,
+        /** Posts with at least one reply. */
+        ANSWERED
+    }
+
+    // Columns of a PostSummary; the post text is cut to a preview in the database.
+    private static final String SUMMARY_COLUMNS = "P.postId, P.userName, P.title, P.numReplies, "
+            + "SUBSTRING(P.post, 1, " + PostSummary.PREVIEW_LENGTH + ") AS preview, CHAR_LENGTH(P.post) AS postLength, "
+            + "P.lastActivityAt";
+
+    /**
+     * Retrieves one page of post summaries, oldest post first. Only the start of each post's
+     * text is read, so a page costs the same however long the posts are.
+     *
+     * @param filter  Which posts to include.
+     * @param readSet The posts the user has read; only used by {@link PostFilter#READ} and {@link PostFilter#UNREAD}.
+     * @param offset  The number of matching posts to skip.
+     * @param limit   The maximum number of summaries to return.
+     * @return The summaries on the page.
+     * @throws SQLException if an error occurs during the query.
+     */
+    public List<PostSummary> getPostSummaries(PostFilter filter, PostReadSet readSet, int offset, int limit)
+            throws SQLException {
+        return METRICS.time("getPostSummaries(PostFilter,PostReadSet,int,int)", () -> {
+            String condition = filterCondition(filter, readSet);
+            if (condition == null) {
+                return new ArrayList<>();
+            }
+            String query = "SELECT " + SUMMARY_COLUMNS + " FROM Posts P WHERE " + condition
+                    + " ORDER BY P.postId LIMIT ? OFFSET ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                int index = bindFilter(connection, pstmt, condition, readSet, 1);
+                pstmt.setInt(index++, limit);
+                pstmt.setInt(index, offset);
+                try (WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                    return addPending(readSummaries(pstmt), pending);
+                }
+            }
+        });
+    }
+
+    // The WHERE condition selecting the posts of a filter, or null if no post can match.
+    private static String filterCondition(PostFilter filter, PostReadSet readSet) {
+        switch (filter) {
+            case READ:
+                if (readSet.isEmpty()) {
+                    return null;
+                }
+                return "EXISTS (SELECT 1 FROM UNNEST(?, ?) AS R(lo, hi) WHERE P.postId BETWEEN R.lo AND R.hi)";
+            case UNREAD:
+                // If no posts have been read, every post is unread.
+                return readSet.isEmpty() ? "TRUE"
+                        : "NOT EXISTS (SELECT 1 FROM UNNEST(?, ?) AS R(lo, hi) WHERE P.postId BETWEEN R.lo AND R.hi)";
+            case ANSWERED:
+                return "P.numReplies > 0";
+            default:
+                return "TRUE";
+        }
+    }
+
+    // Binds the read set runs if the filter condition uses them, returning the next parameter index.
+    private static int bindFilter(Connection connection, PreparedStatement pstmt, String condition,
+                                  PostReadSet readSet, int index) throws SQLException {
+        if (condition.contains("UNNEST")) {
+            pstmt.setArray(index++, connection.createArrayOf("INTEGER", readSet.getRunStarts()));
+            pstmt.setArray(index++, connection.createArrayOf("INTEGER", readSet.getRunEnds()));
+        }
+        return index;
+    }
+
+    /**
+     * The orders a post listing can be sorted in. Each is backed by an index on Posts, and
+     * posts with equal sort keys are listed newest first.
+     */
+    public enum PostSort {
+        /** Newest posts first. */
+        NEWEST(null, false),
+        /** Posts with the most replies first. */
+        MOST_REPLIES("P.numReplies", false),
+        /** Posts without replies first, newest first within each group. */
+        UNANSWERED_FIRST("P.answered", true),
+        /** Posts most recently created, edited or replied to first. */
+        RECENTLY_ACTIVE("P.lastActivityAt", false);
+
+        private final String keyColumn;
+        private final boolean ascending;
+
+        PostSort(String keyColumn, boolean ascending) {
+            this.keyColumn = keyColumn;
+            this.ascending = ascending;
+        }
+    }
+
+    /** The largest page {@link #listPosts} returns, whatever limit is asked for. */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Lists one page of post summaries in the given order. Pass a null cursor for the first page
+     * and the page's {@link PostPage#getNextCursor()} for each following one. Pages are read by
+     * seeking the sort order's index to the cursor, so every page costs the same however deep
+     * into the listing it is.
+     *
+     * @param filter  Which posts to include.
+     * @param readSet The posts the user has read; only used by {@link PostFilter#READ} and {@link PostFilter#UNREAD}.
+     * @param sort    The order to list the posts in.
+     * @param cursor  The cursor returned with the previous page, or null for the first page.
+     * @param limit   The maximum number of summaries to return, at most {@link #MAX_PAGE_SIZE}.
+     * @return The page of summaries with the cursor for the next page.
+     * @throws SQLException if an error occurs during the query.
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another sort order.
+     */
+    public PostPage listPosts(PostFilter filter, PostReadSet readSet, PostSort sort, String cursor, int limit)
+            throws SQLException {
+        return METRICS.time("listPosts(PostFilter,PostReadSet,PostSort,String,int)",
+                () -> listMatchingPosts(null, filter, readSet, sort, cursor, limit));
+    }
+
+    /**
+     * Lists one page of the posts matching a search query, in the given order rather than by relevance.
+     * A query without any words matches every post.
+     *
+     * @param keyword The search query, or null to list every post.
+     * @param filter  Which posts to include.
+     * @param readSet The posts the user has read; only used by {@link PostFilter#READ} and {@link PostFilter#UNREAD}.
+     * @param sort    The order to list the posts in.
+     * @param cursor  The cursor returned with the previous page, or null for the first page.
+     * @param limit   The maximum number of summaries to return, at most {@link #MAX_PAGE_SIZE}.
+     * @return The page of summaries with the cursor for the next page.
+     * @throws SQLException if an error occurs during the query.
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another sort order.
+     */
+    public PostPage listPosts(String keyword, PostFilter filter, PostReadSet readSet, PostSort sort,
+                              String cursor, int limit) throws SQLException {
+        return METRICS.time("listPosts(String,PostFilter,PostReadSet,PostSort,String,int)",
+                () -> listMatchingPosts(keyword, filter, readSet, sort, cursor, limit));
+    }
+
+    private PostPage listMatchingPosts(String keyword, PostFilter filter, PostReadSet readSet, PostSort sort,
+                                       String cursor, int limit) throws SQLException {
+        ForumEvents.PostList event = new ForumEvents.PostList();
+        event.filter = String.valueOf(filter);
+        event.sort = String.valueOf(sort);
+        event.keyword = keyword;
+        event.continued = cursor != null;
+        event.start();
+        try {
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            String condition = filterCondition(filter, readSet);
+            if (condition == null) {
+                return new PostPage(new ArrayList<>(), null);
+            }
+
+            Integer[] matchingIds = null;
+            if (keyword != null && !PostSearchIndex.tokenize(keyword).isEmpty()) {
+                syncSearchIndex();
+                List<PostSearchIndex.Hit> hits = searchIndex.search(keyword, Integer.MAX_VALUE);
+                if (hits.isEmpty()) {
+                    return new PostPage(new ArrayList<>(), null);
+                }
+                matchingIds = new Integer[hits.size()];
+                for (int i = 0; i < matchingIds.length; i++) {
+                    matchingIds[i] = hits.get(i).getPostId();
+                }
+            }
+
+            StringBuilder query = new StringBuilder("SELECT ").append(SUMMARY_COLUMNS)
+                    .append(" FROM Posts P WHERE ").append(condition);
+            if (matchingIds != null) {
+                query.append(" AND P.postId = ANY(?)");
+            }
+            if (cursor != null) {
+                // Written as a range on the leading key plus a tie break, so the index can seek to it.
+                if (sort.keyColumn == null) {
+                    query.append(" AND P.postId < ?");
+                } else {
+                    String column = sort.keyColumn;
+                    query.append(" AND ").append(column).append(sort.ascending ? " >= ?" : " <= ?")
+                         .append(" AND (").append(column).append(sort.ascending ? " > ?" : " < ?")
+                         .append(" OR P.postId < ?)");
+                }
+            }
+            query.append(" ORDER BY ");
+            if (sort.keyColumn != null) {
+                query.append(sort.keyColumn).append(sort.ascending ? ", " : " DESC, ");
+            }
+            // One extra row tells whether another page follows.
+            query.append("P.postId DESC LIMIT ?");
+
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query.toString());
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                int index = bindFilter(connection, pstmt, condition, readSet, 1);
+                if (matchingIds != null) {
+                    pstmt.setArray(index++, connection.createArrayOf("INTEGER", matchingIds));
+                }
+                if (cursor != null) {
+                    Object[] position = parseCursor(sort, cursor);
+                    if (sort.keyColumn != null) {
+                        pstmt.setObject(index++, position[0]);
+                        pstmt.setObject(index++, position[0]);
+                    }
+                    pstmt.setInt(index++, (Integer) position[1]);
+                }
+                pstmt.setInt(index, pageSize + 1);
+                List<PostSummary> posts = readSummaries(pstmt);
+                event.rows = Math.min(posts.size(), pageSize);
+                if (posts.size() <= pageSize) {
+                    return new PostPage(addPending(posts, pending), null);
+                }
+                posts.remove(pageSize);
+                // The cursor holds the stored sort key, which is what the next page's query compares.
+                String next = formatCursor(sort, posts.get(pageSize - 1));
+                return new PostPage(addPending(posts, pending), next);
+            }
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Lists one page of the questions a user has posted, newest first. The listing seeks the
+     * per-author index, so a page costs the same however many posts the forum has.
+     *
+     * @param userName The author.
+     * @param cursor   The cursor returned with the previous page, or null for the first page.
+     * @param limit    The maximum number of questions to return, at most {@link ActivityPage#MAX_PAGE_SIZE}.
+     * @return The page of questions with the cursor for the next page.
+     * @throws SQLException if an error occurs during the query.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public ActivityPage listPostsByAuthor(String userName, String cursor, int limit) throws SQLException {
+        return METRICS.time("listPostsByAuthor", () -> {
+            int pageSize = Math.max(1, Math.min(limit, ActivityPage.MAX_PAGE_SIZE));
+            String query = "SELECT postId, title, post FROM Posts WHERE userName = ? AND postId < ? "
+                    + "ORDER BY postId DESC LIMIT ?";
+            List<ActivityEntry> entries = new ArrayList<>();
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setString(1, userName);
+                pstmt.setInt(2, ActivityPage.cursorId(cursor));
+                pstmt.setInt(3, pageSize + 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int postId = rs.getInt("postId");
+                        entries.add(new ActivityEntry(postId, postId, rs.getString("title"), rs.getString("post"), false));
+                    }
+                }
+            }
+            return ActivityPage.of(entries, pageSize);
+        });
+    }
+
+    // A cursor is the sort order, the sort key of the last post on the page and its ID.
+    private static String formatCursor(PostSort sort, PostSummary last) {
+        String key;
+        switch (sort) {
+            case MOST_REPLIES:
+                key = Integer.toString(last.getNumReplies());
+                break;
+            case UNANSWERED_FIRST:
+                key = Boolean.toString(last.getNumReplies() > 0);
+                break;
+            case RECENTLY_ACTIVE:
+                key = last.getLastActivity().toString();
+                break;
+            default:
+                key = "";
+        }
+        return sort.name() + "|" + key + "|" + last.getPostId();
+    }
+
+    // Splits a cursor into the sort key value and the post ID.
+    private static Object[] parseCursor(PostSort sort, String cursor) {
+        String[] parts = cursor.split("\\|", -1);
+        if (parts.length != 3 || !parts[0].equals(sort.name())) {
+            throw new IllegalArgumentException("Cursor does not belong to a " + sort + " listing: " + cursor);
+        }
+        try {
+            Object key;
+            switch (sort) {
+                case MOST_REPLIES:
+                    key = Integer.valueOf(parts[1]);
+                    break;
+                case UNANSWERED_FIRST:
+                    key = Boolean.valueOf(parts[1]);
+                    break;
+                case RECENTLY_ACTIVE:
+                    key = Timestamp.valueOf(parts[1]);
+                    break;
+                default:
+                    key = null;
+            }
+            return new Object[] {key, Integer.valueOf(parts[2])};
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed post cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Retrieves the summaries of the given posts in the order the IDs are listed, for example
+     * a page of ranked search results. IDs of posts that no longer exist are skipped.
+     *
+     * @param postIds The IDs of the posts.
+     * @return The summaries, in the order of {@code postIds}.
+     * @throws SQLException if an error occurs during the query.
+     */
+    public List<PostSummary> getPostSummaries(List<Integer> postIds) throws SQLException {
+        return METRICS.time("getPostSummaries(List)", () -> {
+            if (postIds.isEmpty()) {
+                return new ArrayList<>();
+            }
+            String query = "SELECT " + SUMMARY_COLUMNS + " FROM UNNEST(?) WITH ORDINALITY AS S(postId, rank) "
+                    + "JOIN Posts P ON P.postId = S.postId ORDER BY S.rank";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setArray(1, connection.createArrayOf("INTEGER", postIds.toArray()));
+                try (WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                    return addPending(readSummaries(pstmt), pending);
+                }
+            }
+        });
+    }
+
+    private static List<PostSummary> readSummaries(PreparedStatement pstmt) throws SQLException {
+        List<PostSummary> summaries = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                String preview = rs.getString("preview");
+                summaries.add(new PostSummary(rs.getInt("postId"), rs.getString("userName"), rs.getString("title"),
+                        preview == null ? "" : preview, rs.getInt("postLength"), rs.getInt("numReplies"),
+                        rs.getTimestamp("lastActivityAt")));
+            }
+        }
+        return summaries;
+    }
+
+    // Adds the reply counts not written yet to summaries read while the snapshot was open.
+    private static List<PostSummary> addPending(List<PostSummary> summaries, WriteBehindCounters.Snapshot pending) {
+        for (ListIterator<PostSummary> it = summaries.listIterator(); it.hasNext(); ) {
+            PostSummary post = it.next();
+            long delta = pending.pending(REPLIES, post.getPostId());
+            if (delta != 0) {
+                it.set(new PostSummary(post.getPostId(), post.getUserName(), post.getTitle(), post.getPreview(),
+                        post.getPostLength(), post.getNumReplies() + (int) delta, post.getLastActivity()));
+            }
+        }
+        return summaries;
     }
 
     /**
@@ -258,15 +853,19 @@ public class QuestionHandler {
      * @throws SQLException if an error occurs during the query.
      */
     public String getPostContentById(int postId) throws SQLException {
-        String query = "SELECT post FROM Posts WHERE postId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, postId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("post");
+        return METRICS.time("getPostContentById", () -> {
+            String query = "SELECT post FROM Posts WHERE postId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, postId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getString("post");
+                    }
+                }
             }
-        }
-        return null;
+            return null;
+        });
     }
 
     /**
@@ -277,18 +876,24 @@ public class QuestionHandler {
      * @param newContent The new content for the post.
      * @return true if the update was successful; false otherwise.
      */
-    public boolean updatePost(int postId, String newTitle, String newContent) {  
-        String query = "UPDATE Posts SET title = ?, post = ? WHERE postId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, newTitle);
-            pstmt.setString(2, newContent);
-            pstmt.setInt(3, postId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+    public boolean updatePost(int postId, String newTitle, String newContent) {
+        return METRICS.time("updatePost", () -> {
+            String query = "UPDATE Posts SET title = ?, post = ?, lastActivityAt = CURRENT_TIMESTAMP WHERE postId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setString(1, newTitle);
+                pstmt.setString(2, newContent);
+                pstmt.setInt(3, postId);
+                int rowsAffected = pstmt.executeUpdate();
+                if (rowsAffected > 0) {
+                    searchIndex.addPost(postId, newTitle, newContent);
+                }
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        });
     }
 
     /**
@@ -299,12 +904,16 @@ public class QuestionHandler {
      * @throws SQLException if an error occurs during the query.
      */
     public String getPostTitleById(int postId) throws SQLException {
-        String query = "SELECT title FROM Posts WHERE postId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, postId);
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next() ? rs.getString("title") : "";
-        }
+        return METRICS.time("getPostTitleById", () -> {
+            String query = "SELECT title FROM Posts WHERE postId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, postId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getString("title") : "";
+                }
+            }
+        });
     }
 
     /**
@@ -350,18 +959,7 @@ public class QuestionHandler {
      * @return true if suspicious content is detected; false otherwise.
      */
     public boolean detectSQLInjection(String input) {
-        if (input == null || input.isEmpty()) return false;
-        
-        // Sanitize the input and convert to lowercase for case-insensitive matching.
-        String cleaned = sanitizeInput(input).toLowerCase();
-        
-        // Iterate through each SQL injection pattern.
-        for (String pattern : SQL_INJECTION_PATTERNS) {
-            if (cleaned.matches(".*" + pattern + ".*")) {
-                return true;
-            }
-        }
-        return false;
+        return InputSecurityScanner.isSuspicious(input);
     }
 
     /**
@@ -371,10 +969,6 @@ public class QuestionHandler {
      * @return The sanitized string.
      */
     public String sanitizeInput(String input) {
-        if (input == null) return "";
-        
-        // Remove dangerous characters and SQL keywords to prevent injection.
-        return input.replaceAll("[\"'#;()*/]", "")
-                    .replaceAll("\\b(union|select|insert|update|delete|drop|alter|create|execute|shutdown)\\b", "");
+        return InputSecurityScanner.sanitize(input);
     }
 }
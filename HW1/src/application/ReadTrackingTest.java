@@ -0,0 +1,102 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ReadTrackingTest {
+
+    private Connection conn;
+    private QuestionHandler qHandler;
+    private UserHandler uHandler;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:readtrackingtest;DB_CLOSE_DELAY=0");
+        qHandler = new QuestionHandler(conn);
+        uHandler = new UserHandler(conn);
+        for (int i = 1; i <= 6; i++) {
+            qHandler.addPost("student1", "Question number " + i, "Body of question " + i);
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private List<Integer> postIds(ResultSet rs) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        while (rs.next()) {
+            ids.add(rs.getInt("postId"));
+        }
+        return ids;
+    }
+
+    @Test
+    public void testMarkReadIsIdempotent() {
+        uHandler.addPostRead("student2", 3);
+        uHandler.addPostRead("student2", 3);
+        uHandler.addPostRead("student2", 1);
+        assertEquals(Arrays.asList(1, 3), uHandler.getReadPosts("student2"));
+    }
+
+    @Test
+    public void testReadAndUnreadFilters() throws SQLException {
+        uHandler.addPostRead("student2", 2);
+        uHandler.addPostRead("student2", 3);
+        uHandler.addPostRead("student2", 5);
+        PostReadSet readSet = uHandler.getReadPostSet("student2");
+        assertEquals(2, readSet.getRunCount());
+
+        assertEquals(Arrays.asList(2, 3, 5), postIds(qHandler.getReadQuestions(readSet)));
+        assertEquals(Arrays.asList(1, 4, 6), postIds(qHandler.getUnreadQuestions(readSet)));
+        assertEquals("Nothing read means every post is unread",
+                6, postIds(qHandler.getUnreadQuestions(uHandler.getReadPostSet("nobody"))).size());
+    }
+
+    @Test
+    public void testMarkAllPostsRead() throws SQLException {
+        assertTrue(uHandler.markAllPostsRead("student2"));
+        PostReadSet readSet = uHandler.getReadPostSet("student2");
+        assertEquals(6, readSet.size());
+        assertEquals("Consecutive ids compress to one run", 1, readSet.getRunCount());
+        assertTrue(postIds(qHandler.getUnreadQuestions(readSet)).isEmpty());
+    }
+
+    @Test
+    public void testLegacyPostsReadColumnIsMigrated() throws SQLException {
+        try (Connection legacy = DriverManager.getConnection("jdbc:h2:mem:legacyreads;DB_CLOSE_DELAY=0");
+             Statement stmt = legacy.createStatement()) {
+            stmt.execute("CREATE TABLE Users (userName VARCHAR(255) PRIMARY KEY, "
+                    + "PostsRead VARCHAR(10000), RepliesRead VARCHAR(10000))");
+            stmt.execute("INSERT INTO Users (userName, PostsRead) VALUES ('old', '4,2,4,3')");
+
+            UserHandler migrated = new UserHandler(legacy);
+            assertEquals(Arrays.asList(2, 3, 4), migrated.getReadPosts("old"));
+        }
+    }
+
+    @Test
+    public void testEncodingRoundTrip() {
+        PostReadSet readSet = new PostReadSet();
+        readSet.addRange(1, 1000);
+        readSet.add(5000);
+        assertFalse(readSet.add(500));
+        assertEquals(readSet, PostReadSet.fromBytes(readSet.toBytes()));
+        assertTrue("Two runs fit in a few bytes", readSet.toBytes().length < 10);
+    }
+}
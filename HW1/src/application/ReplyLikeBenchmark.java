@@ -0,0 +1,149 @@
+package application;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import databasePart1.ConnectionPool;
+
+/**
+ * JMH benchmark of many threads liking the same reply at once, comparing the like transaction that also
+ * updated {@code Replies.likes} with {@link AnswerHandler#likeReply}, which buffers the count change. The
+ * like mode is a {@code @Param}; the number of liking threads is {@code @Threads}, changed with JMH's
+ * {@code -t} option, for example
+ * {@code java -cp <classes and jars> org.openjdk.jmh.Main ReplyLikeBenchmark -t 32 -rf json}. Each trial
+ * checks that the stored like count matches the ReplyLikes table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class ReplyLikeBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:replylikebenchmark;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000";
+    private static final int POOL_SIZE = 32;
+    private static final int REPLY_ID = 1;
+
+    // Gives every liking thread its own user names.
+    private static final AtomicInteger LIKERS = new AtomicInteger();
+
+    /** How a like is recorded: in one transaction with the counter update, or buffered. */
+    @Param({"legacy", "buffered"})
+    public String mode;
+
+    private ConnectionPool pool;
+    private AnswerHandler aHandler;
+    private boolean buffered;
+
+    /**
+     * The users one benchmark thread likes the reply as, a new one for every like.
+     */
+    @State(Scope.Thread)
+    public static class Liker {
+        final String prefix = "user" + LIKERS.getAndIncrement() + "_";
+        int next;
+    }
+
+    /**
+     * Creates the database with one post and the reply everyone likes.
+     *
+     * @throws SQLException if the tables cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        pool = new ConnectionPool(URL, "sa", "", POOL_SIZE);
+        QuestionHandler qHandler = new QuestionHandler(pool);
+        aHandler = new AnswerHandler(pool, qHandler);
+        qHandler.addPost("author", "Popular question", "Body");
+        aHandler.addAnswer("Popular answer", 1, "author", false);
+        buffered = mode.equals("buffered");
+    }
+
+    /**
+     * Closes the pool, which writes the buffered counts, then checks the count and discards the database.
+     *
+     * @throws SQLException if the database cannot be read
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        pool.close();
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+            check(connection);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("SHUTDOWN");
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean like(Liker liker) throws SQLException {
+        String userName = liker.prefix + liker.next++;
+        if (buffered) {
+            return aHandler.likeReply(REPLY_ID, userName);
+        }
+        legacyLike(pool, REPLY_ID, userName);
+        return true;
+    }
+
+    /**
+     * The like transaction before the counters were buffered: the ReplyLikes row and the counter
+     * update commit together, so every liker waits for the reply's row lock.
+     */
+    private static void legacyLike(ConnectionPool pool, int replyId, String userName) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO ReplyLikes (replyId, userName) VALUES (?, ?)");
+                 PreparedStatement update = connection.prepareStatement(
+                         "UPDATE Replies SET likes = COALESCE(likes, 0) + 1 WHERE replyId = ?")) {
+                insert.setInt(1, replyId);
+                insert.setString(2, userName);
+                insert.executeUpdate();
+                update.setInt(1, replyId);
+                update.executeUpdate();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Fails the trial if the counter disagrees with the ReplyLikes rows.
+    private static void check(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT R.likes, (SELECT COUNT(*) FROM ReplyLikes L "
+                     + "WHERE L.replyId = R.replyId) FROM Replies R WHERE R.replyId = " + REPLY_ID)) {
+            rs.next();
+            if (rs.getInt(1) != rs.getInt(2)) {
+                throw new IllegalStateException("The like counter is " + rs.getInt(1) + " but the table has "
+                        + rs.getInt(2) + " likes");
+            }
+        }
+    }
+}
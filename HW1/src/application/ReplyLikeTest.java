@@ -0,0 +1,113 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class ReplyLikeTest {
+
+    private Connection conn;
+    private QuestionHandler qHandler;
+    private AnswerHandler aHandler;
+    private int firstReply;
+    private int secondReply;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:replyliketest;DB_CLOSE_DELAY=0");
+        qHandler = new QuestionHandler(conn);
+        aHandler = new AnswerHandler(conn, qHandler);
+        qHandler.addPost("student1", "Question", "Body");
+        int postId;
+        try (ResultSet rs = qHandler.getAllQuestions()) {
+            rs.next();
+            postId = rs.getInt("postId");
+        }
+        aHandler.addAnswer("First answer", postId, "student2", false);
+        aHandler.addAnswer("Second answer", postId, "student3", false);
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT replyId FROM Replies ORDER BY replyId")) {
+            rs.next();
+            firstReply = rs.getInt(1);
+            rs.next();
+            secondReply = rs.getInt(1);
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testToggleKeepsCountInStep() throws SQLException {
+        assertTrue(aHandler.toggleLike(firstReply, "student1"));
+        assertTrue(aHandler.isLikedBy(firstReply, "student1"));
+        assertEquals(1, aHandler.getNumLikes(firstReply));
+
+        assertFalse(aHandler.toggleLike(firstReply, "student1"));
+        assertFalse(aHandler.isLikedBy(firstReply, "student1"));
+        assertEquals(0, aHandler.getNumLikes(firstReply));
+    }
+
+    @Test
+    public void testLikeTwiceCountsOnce() {
+        assertTrue(aHandler.likeReply(firstReply, "student1"));
+        assertFalse(aHandler.likeReply(firstReply, "student1"));
+        assertEquals(1, aHandler.getNumLikes(firstReply));
+        assertFalse("Nothing to remove for another user", aHandler.unlikeReply(firstReply, "student4"));
+        assertEquals(1, aHandler.getNumLikes(firstReply));
+        assertFalse("Missing replies cannot be liked", aHandler.likeReply(9999, "student1"));
+    }
+
+    @Test
+    public void testLikedReplyIdsForThread() {
+        aHandler.likeReply(secondReply, "student1");
+        aHandler.likeReply(firstReply, "student4");
+        assertEquals(new HashSet<>(Arrays.asList(secondReply)),
+                aHandler.getLikedReplyIds("student1", Arrays.asList(firstReply, secondReply)));
+        assertTrue(aHandler.getLikedReplyIds("student1", Arrays.asList()).isEmpty());
+        assertEquals(Arrays.asList("student1"), aHandler.getLikers(secondReply));
+    }
+
+    @Test
+    public void testDeletingReplyRemovesLikes() throws SQLException {
+        aHandler.likeReply(firstReply, "student1");
+        aHandler.deleteReplyById(firstReply);
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM ReplyLikes")) {
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testLegacyLikeListIsMigrated() throws SQLException {
+        try (Connection legacy = DriverManager.getConnection("jdbc:h2:mem:legacylikes;DB_CLOSE_DELAY=0");
+             Statement stmt = legacy.createStatement()) {
+            stmt.execute("CREATE TABLE Replies (replyId INT AUTO_INCREMENT PRIMARY KEY, reply VARCHAR(10000), "
+                    + "userName VARCHAR(255), likes INT DEFAULT 0, isPrivate BOOLEAN DEFAULT FALSE, "
+                    + "parentReplyId INT DEFAULT NULL, likeList VARCHAR(10000), numReplies INT DEFAULT 0, postId INT)");
+            // The old counter drifted from the list, and the list has a duplicate.
+            stmt.execute("INSERT INTO Replies (reply, userName, likes, likeList, postId) "
+                    + "VALUES ('old', 'student2', 5, CONCAT(CHAR(10), 'a', CHAR(10), 'b', CHAR(10), 'a'), 1)");
+
+            AnswerHandler migrated = new AnswerHandler(legacy, new QuestionHandler(legacy));
+            assertEquals(2, migrated.getNumLikes(1));
+            assertTrue(migrated.isLikedBy(1, "a"));
+            assertTrue(migrated.isLikedBy(1, "b"));
+        }
+    }
+}
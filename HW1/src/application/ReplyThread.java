@@ -0,0 +1,142 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ReplyThread class is an immutable snapshot of every reply to a post that one user is allowed
+ * to see, arranged as a tree. Each reply carries what the answer view needs to render it, including
+ * whether the viewer liked it and how many reviews it has, so no further queries are needed.
+ *
+ * <p>Threads are built by {@link AnswerHandler#loadThread(int, String)}.</p>
+ */
+public final class ReplyThread {
+
+    /**
+     * One reply in the thread together with the visible replies to it.
+     */
+    public static final class Node {
+        private final int replyId;
+        private final String content;
+        private final String userName;
+        private final int likes;
+        private final int numReplies;
+        private final boolean likedByViewer;
+        private final int reviewCount;
+        private final List<Node> children;
+
+        /**
+         * Constructs a node.
+         *
+         * @param replyId       the unique identifier of the reply
+         * @param content       the text of the reply
+         * @param userName      the username of the reply author
+         * @param likes         the number of likes the reply has received
+         * @param numReplies    the number of replies to this reply, including ones the viewer cannot see
+         * @param likedByViewer whether the viewing user liked the reply
+         * @param reviewCount   the number of reviews written for the reply
+         * @param children      the visible replies to this reply, oldest first
+         */
+        public Node(int replyId, String content, String userName, int likes, int numReplies,
+                    boolean likedByViewer, int reviewCount, List<Node> children) {
+            this.replyId = replyId;
+            this.content = content;
+            this.userName = userName;
+            this.likes = likes;
+            this.numReplies = numReplies;
+            this.likedByViewer = likedByViewer;
+            this.reviewCount = reviewCount;
+            this.children = Collections.unmodifiableList(new ArrayList<>(children));
+        }
+
+        /**
+         * Gets the unique identifier for this reply.
+         * @return The reply ID
+         */
+        public int getReplyId() { return replyId; }
+
+        /**
+         * Gets the text content of the reply.
+         * @return The reply content
+         */
+        public String getContent() { return content; }
+
+        /**
+         * Gets the username of the reply author.
+         * @return The username
+         */
+        public String getUserName() { return userName; }
+
+        /**
+         * Gets the number of likes this reply has received.
+         * @return The like count
+         */
+        public int getLikes() { return likes; }
+
+        /**
+         * Gets the number of replies to this reply.
+         * @return The count of nested replies
+         */
+        public int getNumReplies() { return numReplies; }
+
+        /**
+         * Checks whether the viewing user liked this reply.
+         * @return true if the viewer liked the reply
+         */
+        public boolean isLikedByViewer() { return likedByViewer; }
+
+        /**
+         * Gets the number of reviews written for this reply.
+         * @return The review count
+         */
+        public int getReviewCount() { return reviewCount; }
+
+        /**
+         * Gets the visible replies to this reply, oldest first.
+         * @return An unmodifiable list of child nodes
+         */
+        public List<Node> getChildren() { return children; }
+    }
+
+    private final int postId;
+    private final List<Node> replies;
+
+    /**
+     * Constructs a thread.
+     *
+     * @param postId  the ID of the post the replies belong to
+     * @param replies the visible top-level replies, oldest first
+     */
+    public ReplyThread(int postId, List<Node> replies) {
+        this.postId = postId;
+        this.replies = Collections.unmodifiableList(new ArrayList<>(replies));
+    }
+
+    /**
+     * Gets the ID of the post the replies belong to.
+     * @return The post ID
+     */
+    public int getPostId() { return postId; }
+
+    /**
+     * Gets the visible top-level replies, oldest first.
+     * @return An unmodifiable list of top-level nodes
+     */
+    public List<Node> getReplies() { return replies; }
+
+    /**
+     * Counts every reply in the thread, at any depth.
+     * @return The number of nodes
+     */
+    public int size() {
+        int count = 0;
+        List<Node> pending = new ArrayList<>(replies);
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            count++;
+            pending.addAll(node.getChildren());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,100 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class ReplyThreadTest {
+
+    private Connection conn;
+    private AnswerHandler aHandler;
+    private ReviewHandler rHandler;
+    private int postId;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:replythreadtest;DB_CLOSE_DELAY=0");
+        QuestionHandler qHandler = new QuestionHandler(conn);
+        aHandler = new AnswerHandler(conn, qHandler);
+        rHandler = new ReviewHandler(conn);
+        qHandler.addPost("asker", "Question", "Body");
+        try (ResultSet rs = qHandler.getAllQuestions()) {
+            rs.next();
+            postId = rs.getInt("postId");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private int lastReplyId() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(replyId) FROM Replies")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testTreeCarriesLikesAndReviewCounts() throws SQLException {
+        aHandler.addAnswer("First answer", postId, "student1", false);
+        int first = lastReplyId();
+        aHandler.addAnswer("Second answer", postId, "student2", false);
+        int second = lastReplyId();
+        aHandler.addReplyToReply(first, "Nested reply", "student2", false);
+        int nested = lastReplyId();
+        aHandler.addReplyToReply(nested, "Reply to the nested reply", "student1", false);
+
+        aHandler.likeReply(second, "viewer");
+        rHandler.addReviewForReply("Clear and correct", "reviewer1", first);
+        rHandler.addReviewForReply("Agreed", "reviewer2", first);
+
+        ReplyThread thread = aHandler.loadThread(postId, "viewer");
+        assertEquals(4, thread.size());
+        assertEquals(2, thread.getReplies().size());
+
+        ReplyThread.Node firstNode = thread.getReplies().get(0);
+        assertEquals(first, firstNode.getReplyId());
+        assertEquals(2, firstNode.getReviewCount());
+        assertFalse(firstNode.isLikedByViewer());
+        assertEquals(nested, firstNode.getChildren().get(0).getReplyId());
+        assertEquals("Reply to the nested reply",
+                firstNode.getChildren().get(0).getChildren().get(0).getContent());
+
+        ReplyThread.Node secondNode = thread.getReplies().get(1);
+        assertTrue(secondNode.isLikedByViewer());
+        assertEquals(1, secondNode.getLikes());
+        assertEquals(0, secondNode.getReviewCount());
+    }
+
+    @Test
+    public void testPrivateRepliesFollowVisibilityRules() throws SQLException {
+        aHandler.addAnswer("Private answer", postId, "student1", true);
+        int hidden = lastReplyId();
+        aHandler.addReplyToReply(hidden, "Public reply under a private answer", "student2", false);
+
+        assertEquals("Others cannot see the private answer or replies under it",
+                0, aHandler.loadThread(postId, "viewer").size());
+        assertEquals("The author sees their own answer", 2, aHandler.loadThread(postId, "student1").size());
+        assertEquals("The post author sees every answer", 2, aHandler.loadThread(postId, "asker").size());
+    }
+
+    @Test
+    public void testEmptyThread() throws SQLException {
+        ReplyThread thread = aHandler.loadThread(postId, "viewer");
+        assertEquals(postId, thread.getPostId());
+        assertTrue(thread.getReplies().isEmpty());
+    }
+}
@@ -17,13 +17,13 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.util.Pair;
 import databasePart1.DatabaseHelper;
+import databasePart1.ForumEvents;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Manages the display and interaction with reviews for posts and replies.
@@ -36,6 +36,8 @@ public class Review {
     private int targetId;
     private boolean isForPost;
     private String currentSortOrder = "None";
+    // Background loads for the reviews window currently shown; replaced each time it is shown.
+    private AsyncDataService.Scope loads = AsyncDataService.getShared().newScope();
 
     /**
      * Inner class representing a single review record with its metadata.
@@ -45,6 +47,7 @@ public class Review {
         private String content;
         private String reviewerName;
         private int feedbackCount;
+        private int versionCount;
 
         /**
          * Constructs a ReviewRecord with the specified details.
@@ -53,12 +56,15 @@ public class Review {
          * @param content the text content of the review
          * @param reviewerName the name of the reviewer
          * @param feedbackCount the number of feedback messages received
+         * @param versionCount the number of versions of the review, 1 if it was never edited
          */
-        public ReviewRecord(int reviewId, String content, String reviewerName, int feedbackCount) {
+        public ReviewRecord(int reviewId, String content, String reviewerName, int feedbackCount,
+                            int versionCount) {
             this.reviewId = reviewId;
             this.content = content;
             this.reviewerName = reviewerName;
             this.feedbackCount = feedbackCount;
+            this.versionCount = versionCount;
         }
 
         /**
@@ -80,6 +86,16 @@ public class Review {
          * @return the feedback count for this review
          */
         public int getFeedbackCount() { return feedbackCount; }
+
+        /**
+         * @return the number of versions of the review
+         */
+        public int getVersionCount() { return versionCount; }
+
+        /**
+         * @return whether the review has a previous version to show
+         */
+        public boolean hasPreviousVersion() { return versionCount > 1; }
     }
 
     /**
@@ -103,6 +119,7 @@ public class Review {
      * @param databaseHelper the database helper instance
      */
     public void showReviews(Stage primaryStage, String currentUser, DatabaseHelper databaseHelper) {
+        loads = AsyncDataService.getShared().newScope();
         Stage reviewWindow = new Stage();
         String targetType = isForPost ? "Post" : "Reply";
         reviewWindow.setTitle("Review Manager - Reviews for " + targetType + " ID: " + targetId);
@@ -127,15 +144,15 @@ public class Review {
         bottomLayout.setPadding(new Insets(10));
         bottomLayout.setAlignment(Pos.CENTER_LEFT);
 
-        int userId = databaseHelper.getUserIdByUsername(currentUser);
-        String role = databaseHelper.getUserRoleById(userId);
-        if ("reviewer".equalsIgnoreCase(role)) {
-            Button createReviewButton = new Button("Create Review");
-            createReviewButton.setOnAction(e -> createReview(currentUser, reviewWindow, databaseHelper));
-            Button myProfileButton = new Button("My Profile");
-            myProfileButton.setOnAction(e -> showReviewerProfile(currentUser, reviewWindow, databaseHelper));
-            bottomLayout.getChildren().addAll(createReviewButton, myProfileButton);
-        }
+        loads.load(() -> databaseHelper.getUserRoleById(databaseHelper.getUserIdByUsername(currentUser)), role -> {
+            if ("reviewer".equalsIgnoreCase(role)) {
+                Button createReviewButton = new Button("Create Review");
+                createReviewButton.setOnAction(e -> createReview(currentUser, reviewWindow, databaseHelper));
+                Button myProfileButton = new Button("My Profile");
+                myProfileButton.setOnAction(e -> showReviewerProfile(currentUser, reviewWindow, databaseHelper));
+                bottomLayout.getChildren().addAll(createReviewButton, myProfileButton);
+            }
+        }, error -> error.printStackTrace());
         rootLayout.setBottom(bottomLayout);
 
         Scene scene = new Scene(rootLayout, 600, 500);
@@ -144,6 +161,7 @@ public class Review {
         reviewWindow.setX(primaryStage.getX() + 130);
         reviewWindow.setY(primaryStage.getY() + 30);
         reviewWindow.show();
+        loads.cancelWhenLeft(reviewWindow, scene);
     }
 
     /**
@@ -170,20 +188,18 @@ public class Review {
             if (!errors.isEmpty()) {
                 showAlert("Validation Error", String.join("\n", errors), AlertType.ERROR);
             } else {
-                boolean success;
-                if (isForPost) {
-                    success = reviewHandler.addReviewForPost(reviewContent, reviewerName, targetId);
-                } else {
-                    success = reviewHandler.addReviewForReply(reviewContent, reviewerName, targetId);
-                }
-                if (success) {
-                    showAlert("Success", "Review submitted successfully!", AlertType.INFORMATION);
-                    reviewStage.close();
-                    // Refresh the review screen.
-                    showReviews(primaryStage, reviewerName, databaseHelper);
-                } else {
-                    showAlert("Error", "Failed to submit review.", AlertType.ERROR);
-                }
+                loads.load(() -> isForPost
+                        ? reviewHandler.addReviewForPost(reviewContent, reviewerName, targetId)
+                        : reviewHandler.addReviewForReply(reviewContent, reviewerName, targetId), success -> {
+                    if (success) {
+                        showAlert("Success", "Review submitted successfully!", AlertType.INFORMATION);
+                        reviewStage.close();
+                        // Refresh the review screen.
+                        showReviews(primaryStage, reviewerName, databaseHelper);
+                    } else {
+                        showAlert("Error", "Failed to submit review.", AlertType.ERROR);
+                    }
+                }, error -> loadFailed("Failed to submit review.", error));
             }
         });
 
@@ -247,118 +263,99 @@ public class Review {
         if (reviewsLayout.getChildren().size() > 1) {
             reviewsLayout.getChildren().remove(1, reviewsLayout.getChildren().size());
         }
-
-        try {
-            ResultSet rs;
-            if (isForPost) {
-                rs = reviewHandler.getReviewsByPostId(targetId);
-            } else {
-                rs = reviewHandler.getReviewsByReplyId(targetId);
-            }
-            List<ReviewRecord> reviews = new ArrayList<>();
-            while (rs.next()) {
-                int reviewId = rs.getInt("reviewId");
-                String content = rs.getString("content");
-                String reviewerName = rs.getString("reviewerName");
-                int feedbackCount = rs.getInt("feedbackCount");
-                reviews.add(new ReviewRecord(reviewId, content, reviewerName, feedbackCount));
-            }
-
-            // Apply sorting based on currentSortOrder
-            List<ReviewRecord> sortedReviews = sortReviews(reviews, currentUser, databaseHelper);
-
+        Label loadingLabel = new Label("Loading reviews...");
+        reviewsLayout.getChildren().add(loadingLabel);
+
+        ForumEvents.ReviewLoad event = new ForumEvents.ReviewLoad();
+        event.targetId = targetId;
+        event.forPost = isForPost;
+        event.sort = currentSortOrder;
+        event.begin();
+
+        // Reviews are read and sorted in the background; choosing another order replaces the load.
+        loads.load("reviews", () -> event.measure(() -> sortReviews(loadReviews(), currentUser, databaseHelper)), sortedReviews -> {
+            reviewsLayout.getChildren().remove(loadingLabel);
             for (ReviewRecord review : sortedReviews) {
                 BorderPane reviewPane = createReviewPane(review, currentUser, primaryStage, databaseHelper);
                 reviewsLayout.getChildren().add(reviewPane);
             }
-        } catch (SQLException e) {
-            showAlert("Database Error", "Failed to load reviews", AlertType.ERROR);
-            e.printStackTrace();
-        }
+            event.rows = sortedReviews.size();
+            event.finish();
+        }, error -> {
+            event.finish();
+            loadingLabel.setText("Reviews could not be loaded");
+            loadFailed("Failed to load reviews", error);
+        });
     }
 
-    private List<ReviewRecord> sortReviews(List<ReviewRecord> reviews, String currentUser, DatabaseHelper databaseHelper) {
-        switch (currentSortOrder) {
-            case "TopReviewers":
-                return sortByTopReviewers(reviews, currentUser, databaseHelper);
-            case "Trusted":
-                return filterTrustedReviews(reviews, currentUser, databaseHelper);
-            default:
-                return reviews; // Normal view - no sorting
+    private List<ReviewRecord> loadReviews() throws SQLException {
+        // Only the current version of each review is listed; it carries its version count.
+        ResultSet rs;
+        if (isForPost) {
+            rs = reviewHandler.getCurrentReviewsByPostId(targetId);
+        } else {
+            rs = reviewHandler.getCurrentReviewsByReplyId(targetId);
+        }
+        List<ReviewRecord> reviews = new ArrayList<>();
+        while (rs.next()) {
+            int reviewId = rs.getInt("reviewId");
+            String content = rs.getString("content");
+            String reviewerName = rs.getString("reviewerName");
+            int feedbackCount = rs.getInt("feedbackCount");
+            reviews.add(new ReviewRecord(reviewId, content, reviewerName, feedbackCount,
+                    rs.getInt("versionNumber")));
         }
+        return reviews;
     }
 
-    private List<ReviewRecord> sortByTopReviewers(List<ReviewRecord> reviews, String currentUser, DatabaseHelper databaseHelper) {
+    private List<ReviewRecord> sortReviews(List<ReviewRecord> reviews, String currentUser, DatabaseHelper databaseHelper) {
+        if (!"TopReviewers".equals(currentSortOrder) && !"Trusted".equals(currentSortOrder)) {
+            return reviews; // Normal view - no sorting
+        }
         try {
-            // Create a map of reviewer names to their average ratings
-            Map<String, Double> reviewerRatings = new HashMap<>();
-            
-            for (ReviewRecord review : reviews) {
-                // Only calculate rating once per reviewer
-                if (!reviewerRatings.containsKey(review.getReviewerName())) {
-                    // Get all ratings for this reviewer from the current user
-                    Integer rating = databaseHelper.getReviewerRating(currentUser, review.getReviewerName());
-                    // If no rating exists, use 0 as default
-                    reviewerRatings.put(review.getReviewerName(), rating != null ? rating.doubleValue() : 0.0);
-                }
+            // One profile holds the current user's rating and trust flag for every reviewer
+            ReviewerProfile profile = databaseHelper.getReviewerProfile(currentUser);
+            if ("TopReviewers".equals(currentSortOrder)) {
+                return sortByTopReviewers(reviews, profile);
             }
-            
-            // Sort reviews by reviewer rating (descending), then by feedback count (descending)
-            reviews.sort((a, b) -> {
-                double ratingA = reviewerRatings.get(a.getReviewerName());
-                double ratingB = reviewerRatings.get(b.getReviewerName());
-                
-                // First compare by rating
-                int ratingCompare = Double.compare(ratingB, ratingA);
-                if (ratingCompare != 0) return ratingCompare;
-                
-                // If ratings are equal, compare by feedback count
-                return Integer.compare(b.getFeedbackCount(), a.getFeedbackCount());
-            });
-            
-            return reviews;
+            return filterTrustedReviews(reviews, profile);
         } catch (SQLException e) {
             e.printStackTrace();
             return reviews; // Fallback to original order if error occurs
         }
     }
 
-    private List<ReviewRecord> filterTrustedReviews(List<ReviewRecord> reviews, String currentUser, DatabaseHelper databaseHelper) {
-        try {
-            List<ReviewRecord> trustedReviews = new ArrayList<>();
-            Map<String, Double> trustedReviewerRatings = new HashMap<>();
-            
-            // First collect all trusted reviewers and their ratings
-            for (ReviewRecord review : reviews) {
-                String reviewer = review.getReviewerName();
-                if (databaseHelper.isReviewerTrusted(reviewer, currentUser)) {
-                    trustedReviews.add(review);
-                    if (!trustedReviewerRatings.containsKey(reviewer)) {
-                        // Get the current user's rating for this reviewer
-                        Integer rating = databaseHelper.getReviewerRating(currentUser, reviewer);
-                        trustedReviewerRatings.put(reviewer, rating != null ? rating.doubleValue() : 0.0);
-                    }
-                }
+    private List<ReviewRecord> sortByTopReviewers(List<ReviewRecord> reviews, ReviewerProfile profile) {
+        // Sort reviews by reviewer rating (descending), then by feedback count (descending)
+        reviews.sort(byReviewerRating(profile));
+        return reviews;
+    }
+
+    private List<ReviewRecord> filterTrustedReviews(List<ReviewRecord> reviews, ReviewerProfile profile) {
+        List<ReviewRecord> trustedReviews = new ArrayList<>();
+        for (ReviewRecord review : reviews) {
+            if (profile.isTrusted(review.getReviewerName())) {
+                trustedReviews.add(review);
             }
-            
-            // Sort trusted reviews by their rating (descending), then by feedback count
-            trustedReviews.sort((a, b) -> {
-                double ratingA = trustedReviewerRatings.get(a.getReviewerName());
-                double ratingB = trustedReviewerRatings.get(b.getReviewerName());
-                
-                // First compare by rating
-                int ratingCompare = Double.compare(ratingB, ratingA);
-                if (ratingCompare != 0) return ratingCompare;
-                
-                // If ratings are equal, compare by feedback count
-                return Integer.compare(b.getFeedbackCount(), a.getFeedbackCount());
-            });
-            
-            return trustedReviews;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return reviews; // Fallback to original order if error occurs
         }
+        
+        // Sort trusted reviews by their rating (descending), then by feedback count
+        trustedReviews.sort(byReviewerRating(profile));
+        return trustedReviews;
+    }
+
+    // Orders reviews by the current user's rating of the reviewer, unrated reviewers counting as 0,
+    // then by feedback count, both descending.
+    private static Comparator<ReviewRecord> byReviewerRating(ReviewerProfile profile) {
+        return (a, b) -> {
+            // First compare by rating
+            int ratingCompare = Integer.compare(profile.getRatingOrZero(b.getReviewerName()),
+                                                profile.getRatingOrZero(a.getReviewerName()));
+            if (ratingCompare != 0) return ratingCompare;
+            
+            // If ratings are equal, compare by feedback count
+            return Integer.compare(b.getFeedbackCount(), a.getFeedbackCount());
+        };
     }
 
     /**
@@ -391,11 +388,11 @@ public class Review {
         HBox buttonBox = new HBox(10);
         buttonBox.setAlignment(Pos.CENTER_RIGHT);
         
-        // Check if this review has a previous version.
-        if (reviewHandler.hasPreviousVersion(review.getReviewId())) {
-            Button viewPreviousButton = new Button("View Previous Version");
-            viewPreviousButton.setOnAction(e -> showPreviousVersion(review.getReviewId(), primaryStage));
-            buttonBox.getChildren().add(viewPreviousButton);
+        // Check if this review has previous versions.
+        if (review.hasPreviousVersion()) {
+            Button viewHistoryButton = new Button("View History (" + review.getVersionCount() + " versions)");
+            viewHistoryButton.setOnAction(e -> showVersionHistory(review.getReviewId(), primaryStage));
+            buttonBox.getChildren().add(viewHistoryButton);
         }
         
         // If the current user is the review author, allow update.
@@ -417,48 +414,68 @@ public class Review {
     }
 
     /**
-     * Displays the previous version of a review in a new window.
+     * Displays every version of a review in a new window.
      *
      * @param reviewId the ID of the current review version
      * @param primaryStage the parent stage
      */
-    private void showPreviousVersion(int reviewId, Stage primaryStage) {
-        ReviewHandler.ReviewPrevious previousReview = reviewHandler.getPreviousReview(reviewId);
-        
-        if (previousReview == null) {
+    private void showVersionHistory(int reviewId, Stage primaryStage) {
+        loads.load(() -> reviewHandler.getReviewHistory(reviewId),
+                history -> showVersionHistory(history, primaryStage),
+                error -> loadFailed("Failed to load the review history.", error));
+    }
+
+    /**
+     * Displays the versions of a review once they have been loaded.
+     *
+     * @param history the versions of the review, newest first
+     * @param primaryStage the parent stage
+     */
+    private void showVersionHistory(List<ReviewHandler.ReviewPrevious> history, Stage primaryStage) {
+        if (history.size() < 2) {
             showAlert("Not Found", "No previous version found for this review.", AlertType.INFORMATION);
             return;
         }
         
-        Stage previousVersionStage = new Stage();
-        previousVersionStage.setTitle("Previous Version of Review");
+        Stage historyStage = new Stage();
+        historyStage.setTitle("Review History");
         
         VBox layout = new VBox(10);
         layout.setPadding(new Insets(20));
         
-        Label titleLabel = new Label("Previous Version");
+        Label titleLabel = new Label("Review History");
         titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+        layout.getChildren().add(titleLabel);
         
-        TextArea contentArea = new TextArea(previousReview.getContent());
-        contentArea.setEditable(false);
-        contentArea.setWrapText(true);
-        contentArea.setPrefRowCount(10);
-        
-        Label infoLabel = new Label("Reviewed by: " + previousReview.getReviewerName() + 
-                                   " | Feedback Count: " + previousReview.getFeedbackCount() +
-                                   " | Review ID: " + previousReview.getReviewId());
+        for (int i = 0; i < history.size(); i++) {
+            ReviewHandler.ReviewPrevious version = history.get(i);
+            int versionNumber = history.size() - i;
+            Label versionLabel = new Label("Version " + versionNumber + (i == 0 ? " (current)" : ""));
+            versionLabel.setStyle("-fx-font-weight: bold;");
+            
+            TextArea contentArea = new TextArea(version.getContent());
+            contentArea.setEditable(false);
+            contentArea.setWrapText(true);
+            contentArea.setPrefRowCount(4);
+            
+            Label infoLabel = new Label("Reviewed by: " + version.getReviewerName() + 
+                                       " | Feedback Count: " + version.getFeedbackCount() +
+                                       " | Review ID: " + version.getReviewId());
+            layout.getChildren().addAll(versionLabel, contentArea, infoLabel);
+        }
         
         Button closeButton = new Button("Close");
-        closeButton.setOnAction(e -> previousVersionStage.close());
-        
-        layout.getChildren().addAll(titleLabel, contentArea, infoLabel, closeButton);
+        closeButton.setOnAction(e -> historyStage.close());
+        layout.getChildren().add(closeButton);
         
-        Scene scene = new Scene(layout, 500, 400);
-        previousVersionStage.setScene(scene);
-        previousVersionStage.initOwner(primaryStage);
-        previousVersionStage.setX(primaryStage.getX() + 50);
-        previousVersionStage.setY(primaryStage.getY() + 50);
-        previousVersionStage.show();
+        ScrollPane scrollPane = new ScrollPane(layout);
+        scrollPane.setFitToWidth(true);
+        Scene scene = new Scene(scrollPane, 500, 400);
+        historyStage.setScene(scene);
+        historyStage.initOwner(primaryStage);
+        historyStage.setX(primaryStage.getX() + 50);
+        historyStage.setY(primaryStage.getY() + 50);
+        historyStage.show();
     }
 
     /**
@@ -486,13 +503,14 @@ public class Review {
             if (feedbackMessage.isEmpty()) {
                 showAlert("Feedback message cannot be empty.", "Validation Error", Alert.AlertType.ERROR);
             } else {
-                boolean success = reviewHandler.addFeedback(reviewId, currentUser, feedbackMessage);
-                if (success) {
-                    showAlert("Feedback submitted successfully!", "Success", Alert.AlertType.INFORMATION);
-                    feedbackStage.close();
-                } else {
-                    showAlert("Failed to submit feedback.", "Error", Alert.AlertType.ERROR);
-                }
+                loads.load(() -> reviewHandler.addFeedback(reviewId, currentUser, feedbackMessage), success -> {
+                    if (success) {
+                        showAlert("Feedback submitted successfully!", "Success", Alert.AlertType.INFORMATION);
+                        feedbackStage.close();
+                    } else {
+                        showAlert("Failed to submit feedback.", "Error", Alert.AlertType.ERROR);
+                    }
+                }, error -> loadFailed("Failed to submit feedback.", error));
             }
         });
         
@@ -518,12 +536,11 @@ public class Review {
         Stage updateStage = new Stage();
         updateStage.setTitle("Update Review");
 
-        String currentContent = reviewHandler.getReviewContentById(reviewId);
-
         VBox layout = new VBox(10);
         layout.setPadding(new Insets(20));
         Label infoLabel = new Label("Edit your review. A link to the previous version will be maintained.");
-        TextArea updateArea = new TextArea(currentContent);
+        TextArea updateArea = new TextArea("Loading review...");
+        updateArea.setDisable(true);
         updateArea.setWrapText(true);
         updateArea.setPrefRowCount(5);
 
@@ -533,16 +550,23 @@ public class Review {
             if (newContent.isEmpty()) {
                 showAlert("Validation Error", "Updated review cannot be empty.", Alert.AlertType.ERROR);
             } else {
-                boolean success = reviewHandler.updateReview(reviewId, newContent);
-                if (success) {
-                    showAlert("Success", "Review updated successfully!", Alert.AlertType.INFORMATION);
-                    updateStage.close();
-                    showReviews(primaryStage, reviewerName, databaseHelper);
-                } else {
-                    showAlert("Error", "Failed to update review.", Alert.AlertType.ERROR);
-                }
+                loads.load(() -> reviewHandler.updateReview(reviewId, newContent), success -> {
+                    if (success) {
+                        showAlert("Success", "Review updated successfully!", Alert.AlertType.INFORMATION);
+                        updateStage.close();
+                        showReviews(primaryStage, reviewerName, databaseHelper);
+                    } else {
+                        showAlert("Error", "Failed to update review.", Alert.AlertType.ERROR);
+                    }
+                }, error -> loadFailed("Failed to update review.", error));
             }
         });
+        saveButton.setDisable(true);
+        loads.load(() -> reviewHandler.getReviewContentById(reviewId), currentContent -> {
+            updateArea.setText(currentContent);
+            updateArea.setDisable(false);
+            saveButton.setDisable(false);
+        }, error -> loadFailed("Could not load the review.", error));
 
         layout.getChildren().addAll(infoLabel, updateArea, saveButton);
         Scene scene = new Scene(layout, 500, 350);
@@ -612,9 +636,9 @@ public class Review {
             ResultSet rs;
             // Depending on the target type, fetch reviews accordingly.
             if (isForPost) {
-                rs = reviewHandler.getReviewsByPostId(targetId);
+                rs = reviewHandler.getCurrentReviewsByPostId(targetId);
             } else {
-                rs = reviewHandler.getReviewsByReplyId(targetId);
+                rs = reviewHandler.getCurrentReviewsByReplyId(targetId);
             }
             while (rs.next()) {
                 if (reviewerName.equals(rs.getString("reviewerName"))) {
@@ -646,6 +670,17 @@ public class Review {
         profileStage.show();
     }
 
+    /**
+     * Reports a background database call that failed.
+     *
+     * @param message what could not be done
+     * @param error the cause
+     */
+    private void loadFailed(String message, Throwable error) {
+        showAlert("Database Error", message, AlertType.ERROR);
+        error.printStackTrace();
+    }
+
     /**
      * Utility method to display an alert dialog.
      *
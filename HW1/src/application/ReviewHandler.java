@@ -3,21 +3,103 @@ package application;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+
+import databasePart1.ConnectionPool;
+import databasePart1.OperationMetrics;
+import databasePart1.SchemaMigrator;
+import databasePart1.WriteBehindCounters;
 
 /**
  * Handles the creation, retrieval, updating, and validation of reviews and associated feedback.
  * Provides functionality for managing review versions and reviewer experience information.
  */
 public class ReviewHandler {
-    private Connection connection;
-    // Predefined patterns to detect potential SQL injection attempts.
-    private static final String[] SQL_INJECTION_PATTERNS = {
-        "(?i)\\b(union|select|insert|update|delete|drop|alter|create|execute|shutdown)\\b",
-        "--", 
-        ";", 
-        "/\\*", 
-        "\\*/"
-    };
+    // Call counts and latencies of the public methods, published over JMX.
+    private static final OperationMetrics METRICS = OperationMetrics.forComponent("ReviewHandler");
+
+    // Pool the handler borrows a connection from for each operation.
+    private final ConnectionPool pool;
+    // Feedback counts are buffered and reads add the counts not written yet. A review's count is of
+    // its ReviewFeedback rows, and is recounted from them after a crash.
+    private static final WriteBehindCounters.Counter FEEDBACK =
+            new WriteBehindCounters.Counter("Reviews", "reviewId", "feedbackCount")
+                    .countedBy("SELECT COUNT(*) FROM ReviewFeedback F WHERE F.reviewId = Reviews.reviewId");
+    private final WriteBehindCounters counters;
+    // Versioned schema for the review tables.
+    private static final SchemaMigrator MIGRATIONS = new SchemaMigrator("reviews")
+            .step(1, "Create Reviews, ReviewFeedback and ReviewerExperience tables",
+                    "CREATE TABLE IF NOT EXISTS Reviews ("
+                    + "reviewId INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "replyId INT DEFAULT NULL, "       // Tied to an answer (reply)
+                    + "postId INT DEFAULT NULL, "        // Tied to a question (post)
+                    + "content VARCHAR(10000), "
+                    + "reviewerName VARCHAR(255), "
+                    + "feedbackCount INT DEFAULT 0, "
+                    + "previousReviewId INT DEFAULT NULL"
+                    + ")",
+                    "CREATE TABLE IF NOT EXISTS ReviewFeedback ("
+                    + "feedbackId INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "reviewId INT, "
+                    + "sender VARCHAR(255), "
+                    + "message VARCHAR(10000), "
+                    + "FOREIGN KEY (reviewId) REFERENCES Reviews(reviewId) ON DELETE CASCADE"
+                    + ")",
+                    "CREATE TABLE IF NOT EXISTS ReviewerExperience ("
+                    + "username VARCHAR(255) PRIMARY KEY, "
+                    + "experience VARCHAR(10000)"
+                    + ")")
+            .step(2, "Index reviews by reply, post and previous version",
+                    // ReviewFeedback.reviewId is already indexed through its foreign key.
+                    "CREATE INDEX IF NOT EXISTS idx_reviews_reply ON Reviews (replyId)",
+                    "CREATE INDEX IF NOT EXISTS idx_reviews_post ON Reviews (postId)",
+                    "CREATE INDEX IF NOT EXISTS idx_reviews_previous ON Reviews (previousReviewId)")
+            .step(3, "Create TrustedReviewers and ReviewerWeights tables",
+                    // Both are looked up by (student, reviewer) when ranking a reply's reviews.
+                    "CREATE TABLE IF NOT EXISTS TrustedReviewers ("
+                    + "student VARCHAR(255), "
+                    + "reviewer VARCHAR(255), "
+                    + "PRIMARY KEY (student, reviewer)"
+                    + ")",
+                    "CREATE TABLE IF NOT EXISTS ReviewerWeights ("
+                    + "student VARCHAR(255), "
+                    + "reviewer VARCHAR(255), "
+                    + "weight INT, "
+                    + "PRIMARY KEY (student, reviewer)"
+                    + ")")
+            .step(4, "Mark the current version of each review", ReviewHandler::markReviewVersions);
+
+    /** Highest weight a student can give a reviewer. */
+    public static final int MAX_WEIGHT = 10;
+    /** Score points per unit of reviewer weight. */
+    public static final int WEIGHT_FACTOR = 20;
+    /** Score points for a review by a trusted reviewer. */
+    public static final int TRUST_BONUS = 10;
+    /** Most score points a review can get from its feedback count. */
+    public static final int FEEDBACK_CAP = 9;
+
+    /**
+     * Adds the isCurrent and versionNumber columns and fills them in for existing version chains.
+     * Each chain's numbers are propagated from its first version, one link per pass.
+     */
+    private static void markReviewVersions(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE Reviews ADD COLUMN IF NOT EXISTS isCurrent BOOLEAN DEFAULT TRUE NOT NULL");
+            stmt.execute("ALTER TABLE Reviews ADD COLUMN IF NOT EXISTS versionNumber INT DEFAULT 1 NOT NULL");
+            stmt.executeUpdate("UPDATE Reviews SET isCurrent = FALSE WHERE reviewId IN "
+                    + "(SELECT previousReviewId FROM Reviews WHERE previousReviewId IS NOT NULL)");
+            String renumber = "UPDATE Reviews r SET versionNumber = "
+                    + "(SELECT p.versionNumber + 1 FROM Reviews p WHERE p.reviewId = r.previousReviewId) "
+                    + "WHERE r.versionNumber <> "
+                    + "(SELECT p.versionNumber + 1 FROM Reviews p WHERE p.reviewId = r.previousReviewId)";
+            while (stmt.executeUpdate(renumber) > 0) {
+                // Repeat until every chain is numbered.
+            }
+            // Serve the listings, which only read current versions.
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_reviews_reply_current ON Reviews (replyId, isCurrent)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_reviews_post_current ON Reviews (postId, isCurrent)");
+        }
+    }
 
     /**
      * Constructs a new ReviewHandler with the specified database connection.
@@ -27,44 +109,45 @@ public class ReviewHandler {
      * @throws SQLException if there's an error creating the tables
      */
     public ReviewHandler(Connection connection) throws SQLException {
-        this.connection = connection;
+        this(ConnectionPool.wrap(connection));
+    }
+
+    /**
+     * Constructs a new ReviewHandler that borrows connections from the given pool.
+     * Creates necessary tables if they don't exist.
+     *
+     * @param pool the connection pool to use
+     * @throws SQLException if there's an error creating the tables
+     */
+    public ReviewHandler(ConnectionPool pool) throws SQLException {
+        this.pool = pool;
         createTables();
+        this.counters = WriteBehindCounters.forPool(pool);
+        counters.reconcile(FEEDBACK);
     }
 
     /**
-     * Creates the necessary database tables (Reviews, ReviewFeedback, ReviewerExperience)
-     * if they don't already exist.
+     * Writes the buffered feedback counts to the Reviews table.
+     */
+    public void flushCounters() {
+        METRICS.run("flushCounters", () -> {
+            try {
+                counters.flush();
+            } catch (SQLException e) {
+                System.err.println("Error writing feedback counts: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Brings the review tables (Reviews, ReviewFeedback, ReviewerExperience) up to the
+     * current schema version. Nothing is executed when the database is already current.
      *
      * @throws SQLException if there's an error creating the tables
      */
     private void createTables() throws SQLException {
-        String reviewsTable = "CREATE TABLE IF NOT EXISTS Reviews ("
-                + "reviewId INT AUTO_INCREMENT PRIMARY KEY, "
-                + "replyId INT DEFAULT NULL, "       // Tied to an answer (reply)
-                + "postId INT DEFAULT NULL, "        // Tied to a question (post)
-                + "content VARCHAR(10000), "
-                + "reviewerName VARCHAR(255), "
-                + "feedbackCount INT DEFAULT 0, "
-                + "previousReviewId INT DEFAULT NULL"
-                + ")";
-        
-        String feedbackTable = "CREATE TABLE IF NOT EXISTS ReviewFeedback ("
-                + "feedbackId INT AUTO_INCREMENT PRIMARY KEY, "
-                + "reviewId INT, "
-                + "sender VARCHAR(255), "
-                + "message VARCHAR(10000), "
-                + "FOREIGN KEY (reviewId) REFERENCES Reviews(reviewId) ON DELETE CASCADE"
-                + ")";
-        
-        String experienceTable = "CREATE TABLE IF NOT EXISTS ReviewerExperience ("
-                + "username VARCHAR(255) PRIMARY KEY, "
-                + "experience VARCHAR(10000)"
-                + ")";
-        
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(reviewsTable);
-            stmt.execute(feedbackTable);
-            stmt.execute(experienceTable);
+        try (Connection connection = pool.getConnection()) {
+            MIGRATIONS.migrate(connection);
         }
     }
 
@@ -98,14 +181,7 @@ public class ReviewHandler {
      * @return true if suspicious patterns are found, false otherwise
      */
     public boolean detectSQLInjection(String input) {
-        if (input == null || input.isEmpty()) return false;
-        String cleaned = sanitizeInput(input).toLowerCase();
-        for (String pattern : SQL_INJECTION_PATTERNS) {
-            if (cleaned.matches(".*" + pattern + ".*")) {
-                return true;
-            }
-        }
-        return false;
+        return InputSecurityScanner.isSuspicious(input);
     }
 
     /**
@@ -115,11 +191,7 @@ public class ReviewHandler {
      * @return sanitized version of the input string
      */
     public String sanitizeInput(String input) {
-        if (input == null) return "";
-        String sanitized = input.replaceAll("[\"'#;()*/]", "");
-        sanitized = sanitized.replaceAll("\\b(union|select|insert|update|delete|drop|alter|create|execute|shutdown)\\b", "");
-        sanitized = sanitized.replaceAll("(?i)(;\\s*--|UNION\\s*--)", ";");
-        return sanitized;
+        return InputSecurityScanner.sanitize(input);
     }
 
     /**
@@ -131,21 +203,21 @@ public class ReviewHandler {
      * @return true if the review was successfully added, false otherwise
      */
     public boolean addReviewForReply(String review, String reviewerName, int replyId) {
-        String cleanReview = review;
-        if (detectSQLInjection(review)) {
-            cleanReview = sanitizeInput(review);
-        }
-        String insertQuery = "INSERT INTO Reviews (content, reviewerName, replyId, postId) VALUES (?, ?, ?, NULL)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertQuery)) {
-            pstmt.setString(1, cleanReview);
-            pstmt.setString(2, reviewerName);
-            pstmt.setInt(3, replyId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            System.err.println("Error inserting review for reply: " + e.getMessage());
-            return false;
-        }
+        return METRICS.time("addReviewForReply", () -> {
+            String cleanReview = InputSecurityScanner.scan(review).getCleaned(review);
+            String insertQuery = "INSERT INTO Reviews (content, reviewerName, replyId, postId) VALUES (?, ?, ?, NULL)";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(insertQuery)) {
+                pstmt.setString(1, cleanReview);
+                pstmt.setString(2, reviewerName);
+                pstmt.setInt(3, replyId);
+                int rowsAffected = pstmt.executeUpdate();
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                System.err.println("Error inserting review for reply: " + e.getMessage());
+                return false;
+            }
+        });
     }
 
     /**
@@ -157,55 +229,98 @@ public class ReviewHandler {
      * @return true if the review was successfully added, false otherwise
      */
     public boolean addReviewForPost(String review, String reviewerName, int postId) {
-        String cleanReview = review;
-        if (detectSQLInjection(review)) {
-            cleanReview = sanitizeInput(review);
-        }
-        String insertQuery = "INSERT INTO Reviews (content, reviewerName, postId, replyId) VALUES (?, ?, ?, NULL)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertQuery)) {
-            pstmt.setString(1, cleanReview);
-            pstmt.setString(2, reviewerName);
-            pstmt.setInt(3, postId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            System.err.println("Error inserting review for post: " + e.getMessage());
-            return false;
-        }
+        return METRICS.time("addReviewForPost", () -> {
+            String cleanReview = InputSecurityScanner.scan(review).getCleaned(review);
+            String insertQuery = "INSERT INTO Reviews (content, reviewerName, postId, replyId) VALUES (?, ?, ?, NULL)";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(insertQuery)) {
+                pstmt.setString(1, cleanReview);
+                pstmt.setString(2, reviewerName);
+                pstmt.setInt(3, postId);
+                int rowsAffected = pstmt.executeUpdate();
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                System.err.println("Error inserting review for post: " + e.getMessage());
+                return false;
+            }
+        });
     }
 
     /**
-     * Retrieves all reviews associated with a specific reply.
+     * Retrieves all reviews associated with a specific reply, including every earlier version
+     * of edited reviews. Use {@link #getCurrentReviewsByReplyId(int)} to list the reviews as they are now.
      *
      * @param replyId the ID of the reply
      * @return ResultSet containing all reviews for the specified reply
      */
     public ResultSet getReviewsByReplyId(int replyId) {
-        String query = "SELECT * FROM Reviews WHERE replyId = ? ORDER BY reviewId ASC";
-        try {
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            pstmt.setInt(1, replyId);
-            return pstmt.executeQuery();
-        } catch (SQLException e) {
-            System.err.println("Error fetching reviews for reply: " + e.getMessage());
-            return null;
-        }
+        return METRICS.time("getReviewsByReplyId", () -> {
+            String query = "SELECT * FROM Reviews WHERE replyId = ? ORDER BY reviewId ASC";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                pstmt.setInt(1, replyId);
+                return pending.detach(pstmt.executeQuery(), FEEDBACK);
+            } catch (SQLException e) {
+                System.err.println("Error fetching reviews for reply: " + e.getMessage());
+                return null;
+            }
+        });
     }
 
     /**
-     * Retrieves all reviews associated with a specific post.
+     * Retrieves all reviews associated with a specific post, including every earlier version
+     * of edited reviews. Use {@link #getCurrentReviewsByPostId(int)} to list the reviews as they are now.
      *
      * @param postId the ID of the post
      * @return ResultSet containing all reviews for the specified post
      */
     public ResultSet getReviewsByPostId(int postId) {
-        String query = "SELECT * FROM Reviews WHERE postId = ? ORDER BY reviewId ASC";
-        try {
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            pstmt.setInt(1, postId);
-            return pstmt.executeQuery();
+        return METRICS.time("getReviewsByPostId", () -> {
+            String query = "SELECT * FROM Reviews WHERE postId = ? ORDER BY reviewId ASC";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                pstmt.setInt(1, postId);
+                return pending.detach(pstmt.executeQuery(), FEEDBACK);
+            } catch (SQLException e) {
+                System.err.println("Error fetching reviews for post: " + e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Retrieves the current version of each review of a reply. The {@code versionNumber} column
+     * holds the number of versions the review has had, 1 if it was never edited.
+     *
+     * @param replyId the ID of the reply
+     * @return ResultSet containing the current reviews for the specified reply
+     */
+    public ResultSet getCurrentReviewsByReplyId(int replyId) {
+        return METRICS.time("getCurrentReviewsByReplyId", () -> getCurrentReviews("replyId", replyId));
+    }
+
+    /**
+     * Retrieves the current version of each review of a post. The {@code versionNumber} column
+     * holds the number of versions the review has had, 1 if it was never edited.
+     *
+     * @param postId the ID of the post
+     * @return ResultSet containing the current reviews for the specified post
+     */
+    public ResultSet getCurrentReviewsByPostId(int postId) {
+        return METRICS.time("getCurrentReviewsByPostId", () -> getCurrentReviews("postId", postId));
+    }
+
+    private ResultSet getCurrentReviews(String targetColumn, int targetId) {
+        String query = "SELECT * FROM Reviews WHERE " + targetColumn + " = ? AND isCurrent = TRUE ORDER BY reviewId ASC";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query);
+             WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+            pstmt.setInt(1, targetId);
+            return pending.detach(pstmt.executeQuery(), FEEDBACK);
         } catch (SQLException e) {
-            System.err.println("Error fetching reviews for post: " + e.getMessage());
+            System.err.println("Error fetching current reviews: " + e.getMessage());
             return null;
         }
     }
@@ -217,75 +332,95 @@ public class ReviewHandler {
      * @return the review content as a String, or null if not found
      */
     public String getReviewContentById(int reviewId) {
-        String query = "SELECT content FROM Reviews WHERE reviewId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, reviewId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("content");
+        return METRICS.time("getReviewContentById", () -> {
+            String query = "SELECT content FROM Reviews WHERE reviewId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, reviewId);
+                ResultSet rs = pstmt.executeQuery();
+                if (rs.next()) {
+                    return rs.getString("content");
+                }
+            } catch (SQLException e) {
+                System.err.println("Error fetching review content: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error fetching review content: " + e.getMessage());
-        }
-        return null;
+            return null;
+        });
     }
 
     /**
      * Updates a review by creating a new version while preserving the old version.
+     * The new version becomes the current one in the same transaction that retires the old one,
+     * so a review always has exactly one current version. Only the current version can be updated;
+     * of two concurrent updates of the same version, the second fails.
      *
      * @param reviewId the ID of the review to update
      * @param newContent the new content for the review
      * @return true if the update was successful, false otherwise
      */
     public boolean updateReview(int reviewId, String newContent) {
-        // Retrieve the reviewerName and replyId from the existing review record.
-    	if (reviewId <= 0) {
-            System.err.println("Invalid review ID provided.");
-            return false;
-        }
-        String getQuery = "SELECT reviewerName, replyId FROM Reviews WHERE reviewId = ?";
-        String reviewerName = null;
-        int replyId = -1;
-        int postId = -1;
-        try (PreparedStatement pstmt = connection.prepareStatement(getQuery)) {
-            pstmt.setInt(1, reviewId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                reviewerName = rs.getString("reviewerName");
-                replyId = rs.getInt("replyId");
-                postId = rs.getInt("postId");
-            } else {
-                System.err.println("Review not found for update.");
+        return METRICS.time("updateReview", () -> {
+        	if (reviewId <= 0) {
+                System.err.println("Invalid review ID provided.");
                 return false;
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving review for update: " + e.getMessage());
-            return false;
-        }
-        
-        // Insert a new record for the updated review with a link to the previous version.
-        String insertQuery = "INSERT INTO Reviews (content, reviewerName, replyId, postId, previousReviewId) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertQuery)) {
-            pstmt.setString(1, newContent);
-            pstmt.setString(2, reviewerName);
-            // Preserve the original linkage (only one of these should be set).
-            if (replyId > 0) {
-                pstmt.setInt(3, replyId);
-            } else {
-                pstmt.setNull(3, Types.INTEGER);
-            }
-            if (postId > 0) {
-                pstmt.setInt(4, postId);
-            } else {
-                pstmt.setNull(4, Types.INTEGER);
+            String getQuery = "SELECT reviewerName, replyId, postId, versionNumber FROM Reviews WHERE reviewId = ?";
+            String retireQuery = "UPDATE Reviews SET isCurrent = FALSE WHERE reviewId = ? AND isCurrent = TRUE";
+            String insertQuery = "INSERT INTO Reviews (content, reviewerName, replyId, postId, previousReviewId, versionNumber) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+            try (Connection connection = pool.getConnection()) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (PreparedStatement getStmt = connection.prepareStatement(getQuery);
+                     PreparedStatement retireStmt = connection.prepareStatement(retireQuery);
+                     PreparedStatement insertStmt = connection.prepareStatement(insertQuery)) {
+                    // Retrieve the reviewer and target of the existing review record.
+                    getStmt.setInt(1, reviewId);
+                    String reviewerName;
+                    Object replyId;
+                    Object postId;
+                    int versionNumber;
+                    try (ResultSet rs = getStmt.executeQuery()) {
+                        if (!rs.next()) {
+                            System.err.println("Review not found for update.");
+                            connection.rollback();
+                            return false;
+                        }
+                        reviewerName = rs.getString("reviewerName");
+                        replyId = rs.getObject("replyId");
+                        postId = rs.getObject("postId");
+                        versionNumber = rs.getInt("versionNumber");
+                    }
+
+                    retireStmt.setInt(1, reviewId);
+                    if (retireStmt.executeUpdate() == 0) {
+                        System.err.println("Only the current version of a review can be updated.");
+                        connection.rollback();
+                        return false;
+                    }
+
+                    // Insert a new record for the updated review with a link to the previous version,
+                    // preserving the original linkage (only one of replyId and postId is set).
+                    insertStmt.setString(1, newContent);
+                    insertStmt.setString(2, reviewerName);
+                    insertStmt.setObject(3, replyId, Types.INTEGER);
+                    insertStmt.setObject(4, postId, Types.INTEGER);
+                    insertStmt.setInt(5, reviewId);
+                    insertStmt.setInt(6, versionNumber + 1);
+                    insertStmt.executeUpdate();
+                    connection.commit();
+                    return true;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error updating review: " + e.getMessage());
+                return false;
             }
-            pstmt.setInt(5, reviewId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            System.err.println("Error updating review: " + e.getMessage());
-            return false;
-        }
+        });
     }
 
     /**
@@ -295,34 +430,36 @@ public class ReviewHandler {
      * @return the number of feedback messages for the review, or 0 if not found
      */
     public int getFeedbackCount(int reviewId) {
-        String query = "SELECT feedbackCount FROM Reviews WHERE reviewId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, reviewId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("feedbackCount");
+        return METRICS.time("getFeedbackCount", () -> {
+            String query = "SELECT feedbackCount FROM Reviews WHERE reviewId = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                pstmt.setInt(1, reviewId);
+                ResultSet rs = pstmt.executeQuery();
+                if (rs.next()) {
+                    return rs.getInt("feedbackCount") + (int) pending.pending(FEEDBACK, reviewId);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error fetching feedback count: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error fetching feedback count: " + e.getMessage());
-        }
-        return 0;
+            return 0;
+        });
     }
 
     /**
      * Increments the feedback count for a specific review.
+     * The change is buffered and written to the Reviews table shortly after. The count is of the
+     * review's ReviewFeedback rows and is recounted from them after a crash.
      *
      * @param reviewId the ID of the review
-     * @return true if the count was successfully incremented, false otherwise
+     * @return true once the change is recorded
      */
     public boolean incrementFeedbackCount(int reviewId) {
-        String sql = "UPDATE Reviews SET feedbackCount = feedbackCount + 1 WHERE reviewId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, reviewId);
-            return pstmt.executeUpdate() > 0;
-        } catch (SQLException e) {
-            System.err.println("Error incrementing feedback count: " + e.getMessage());
-            return false;
-        }
+        return METRICS.time("incrementFeedbackCount", () -> {
+            counters.add(FEEDBACK, reviewId, 1);
+            return true;
+        });
     }
 
     /**
@@ -334,21 +471,25 @@ public class ReviewHandler {
      * @return true if the feedback was successfully added, false otherwise
      */
     public boolean addFeedback(int reviewId, String sender, String message) {
-        String insertFeedback = "INSERT INTO ReviewFeedback (reviewId, sender, message) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertFeedback)) {
-            pstmt.setInt(1, reviewId);
-            pstmt.setString(2, sender);
-            pstmt.setString(3, message);
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
-                // If feedback insertion was successful, increment the feedback count.
-                return incrementFeedbackCount(reviewId);
+        return METRICS.time("addFeedback", () -> {
+            String insertFeedback = "INSERT INTO ReviewFeedback (reviewId, sender, message) VALUES (?, ?, ?)";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(insertFeedback)) {
+                pstmt.setInt(1, reviewId);
+                pstmt.setString(2, sender);
+                pstmt.setString(3, message);
+                int rowsAffected = pstmt.executeUpdate();
+                if (rowsAffected > 0) {
+                    // If feedback insertion was successful, increment the feedback count.
+                    counters.add(FEEDBACK, reviewId, 1);
+                    return true;
+                }
+                return false;
+            } catch (SQLException e) {
+                System.err.println("Error adding feedback: " + e.getMessage());
+                return false;
             }
-            return false;
-        } catch (SQLException e) {
-            System.err.println("Error adding feedback: " + e.getMessage());
-            return false;
-        }
+        });
     }
 
     /**
@@ -358,15 +499,17 @@ public class ReviewHandler {
      * @return ResultSet containing all feedback messages for the review
      */
     public ResultSet getFeedbackForReview(int reviewId) {
-        String query = "SELECT sender, message FROM ReviewFeedback WHERE reviewId = ? ORDER BY feedbackId ASC";
-        try {
-            PreparedStatement pstmt = connection.prepareStatement(query);
-            pstmt.setInt(1, reviewId);
-            return pstmt.executeQuery();
-        } catch (SQLException e) {
-            System.err.println("Error fetching feedback for review: " + e.getMessage());
-            return null;
-        }
+        return METRICS.time("getFeedbackForReview", () -> {
+            String query = "SELECT sender, message FROM ReviewFeedback WHERE reviewId = ? ORDER BY feedbackId ASC";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, reviewId);
+                return ConnectionPool.detach(pstmt.executeQuery());
+            } catch (SQLException e) {
+                System.err.println("Error fetching feedback for review: " + e.getMessage());
+                return null;
+            }
+        });
     }
     
     // ============================
@@ -380,17 +523,20 @@ public class ReviewHandler {
      * @return the reviewer's experience information, or null if not found
      */
     public String getExperience(String username) {
-        String query = "SELECT experience FROM ReviewerExperience WHERE username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("experience");
+        return METRICS.time("getExperience", () -> {
+            String query = "SELECT experience FROM ReviewerExperience WHERE username = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setString(1, username);
+                ResultSet rs = pstmt.executeQuery();
+                if (rs.next()) {
+                    return rs.getString("experience");
+                }
+            } catch (SQLException e) {
+                System.err.println("Error retrieving experience: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving experience: " + e.getMessage());
-        }
-        return null;
+            return null;
+        });
     }
 
     /**
@@ -401,34 +547,37 @@ public class ReviewHandler {
      * @return true if the operation was successful, false otherwise
      */
     public boolean updateExperience(String username, String experience) {
-        // First, check if an entry already exists.
-        String checkQuery = "SELECT username FROM ReviewerExperience WHERE username = ?";
-        try (PreparedStatement checkStmt = connection.prepareStatement(checkQuery)) {
-            checkStmt.setString(1, username);
-            ResultSet rs = checkStmt.executeQuery();
-            if (rs.next()) {
-                // Entry exists, so update it.
-                String updateQuery = "UPDATE ReviewerExperience SET experience = ? WHERE username = ?";
-                try (PreparedStatement updateStmt = connection.prepareStatement(updateQuery)) {
-                    updateStmt.setString(1, experience);
-                    updateStmt.setString(2, username);
-                    int rowsAffected = updateStmt.executeUpdate();
-                    return rowsAffected > 0;
-                }
-            } else {
-                // No entry exists, insert a new row.
-                String insertQuery = "INSERT INTO ReviewerExperience (username, experience) VALUES (?, ?)";
-                try (PreparedStatement insertStmt = connection.prepareStatement(insertQuery)) {
-                    insertStmt.setString(1, username);
-                    insertStmt.setString(2, experience);
-                    int rowsAffected = insertStmt.executeUpdate();
-                    return rowsAffected > 0;
+        return METRICS.time("updateExperience", () -> {
+            // First, check if an entry already exists.
+            String checkQuery = "SELECT username FROM ReviewerExperience WHERE username = ?";
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement checkStmt = connection.prepareStatement(checkQuery)) {
+                checkStmt.setString(1, username);
+                ResultSet rs = checkStmt.executeQuery();
+                if (rs.next()) {
+                    // Entry exists, so update it.
+                    String updateQuery = "UPDATE ReviewerExperience SET experience = ? WHERE username = ?";
+                    try (PreparedStatement updateStmt = connection.prepareStatement(updateQuery)) {
+                        updateStmt.setString(1, experience);
+                        updateStmt.setString(2, username);
+                        int rowsAffected = updateStmt.executeUpdate();
+                        return rowsAffected > 0;
+                    }
+                } else {
+                    // No entry exists, insert a new row.
+                    String insertQuery = "INSERT INTO ReviewerExperience (username, experience) VALUES (?, ?)";
+                    try (PreparedStatement insertStmt = connection.prepareStatement(insertQuery)) {
+                        insertStmt.setString(1, username);
+                        insertStmt.setString(2, experience);
+                        int rowsAffected = insertStmt.executeUpdate();
+                        return rowsAffected > 0;
+                    }
                 }
+            } catch (SQLException e) {
+                System.err.println("Error updating/inserting experience: " + e.getMessage());
+                return false;
             }
-        } catch (SQLException e) {
-            System.err.println("Error updating/inserting experience: " + e.getMessage());
-            return false;
-        }
+        });
     }
     
     /**
@@ -438,27 +587,31 @@ public class ReviewHandler {
      * @return ReviewPrevious object containing the previous version, or null if none exists
      */
     public ReviewPrevious getPreviousReview(int reviewId) {
-        String query = "SELECT r1.reviewId, r1.content, r1.reviewerName, r1.feedbackCount " +
-                       "FROM Reviews r1 " +
-                       "JOIN Reviews r2 ON r1.reviewId = r2.previousReviewId " +
-                       "WHERE r2.reviewId = ?";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, reviewId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                int prevReviewId = rs.getInt("reviewId");
-                String content = rs.getString("content");
-                String reviewerName = rs.getString("reviewerName");
-                int feedbackCount = rs.getInt("feedbackCount");
-                
-                return new ReviewPrevious(prevReviewId, content, reviewerName, feedbackCount);
+        return METRICS.time("getPreviousReview", () -> {
+            String query = "SELECT r1.reviewId, r1.content, r1.reviewerName, r1.feedbackCount " +
+                           "FROM Reviews r1 " +
+                           "JOIN Reviews r2 ON r1.reviewId = r2.previousReviewId " +
+                           "WHERE r2.reviewId = ?";
+
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                pstmt.setInt(1, reviewId);
+                ResultSet rs = pstmt.executeQuery();
+
+                if (rs.next()) {
+                    int prevReviewId = rs.getInt("reviewId");
+                    String content = rs.getString("content");
+                    String reviewerName = rs.getString("reviewerName");
+                    int feedbackCount = rs.getInt("feedbackCount") + (int) pending.pending(FEEDBACK, prevReviewId);
+
+                    return new ReviewPrevious(prevReviewId, content, reviewerName, feedbackCount);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error fetching previous review: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error fetching previous review: " + e.getMessage());
-        }
-        return null;
+            return null;
+        });
     }
 
     /**
@@ -468,18 +621,56 @@ public class ReviewHandler {
      * @return true if a previous version exists, false otherwise
      */
     public boolean hasPreviousVersion(int reviewId) {
-        String query = "SELECT 1 FROM Reviews r1 " +
-                       "JOIN Reviews r2 ON r1.reviewId = r2.previousReviewId " +
-                       "WHERE r2.reviewId = ?";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, reviewId);
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next(); // Returns true if a row was found
-        } catch (SQLException e) {
-            System.err.println("Error checking for previous review: " + e.getMessage());
-            return false;
-        }
+        return METRICS.time("hasPreviousVersion", () -> {
+            String query = "SELECT 1 FROM Reviews r1 " +
+                           "JOIN Reviews r2 ON r1.reviewId = r2.previousReviewId " +
+                           "WHERE r2.reviewId = ?";
+
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, reviewId);
+                ResultSet rs = pstmt.executeQuery();
+                return rs.next(); // Returns true if a row was found
+            } catch (SQLException e) {
+                System.err.println("Error checking for previous review: " + e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Retrieves every version of a review in one recursive query, following the
+     * previousReviewId links back from the given version.
+     *
+     * @param reviewId the ID of the version to start from, usually the current one
+     * @return the given version and all earlier ones, newest first; empty if not found or an error occurs
+     */
+    public List<ReviewPrevious> getReviewHistory(int reviewId) {
+        return METRICS.time("getReviewHistory", () -> {
+            String query = "WITH RECURSIVE chain(reviewId, content, reviewerName, feedbackCount, previousReviewId, versionNumber) AS ("
+                    + "SELECT reviewId, content, reviewerName, feedbackCount, previousReviewId, versionNumber "
+                    + "FROM Reviews WHERE reviewId = ? "
+                    + "UNION ALL "
+                    + "SELECT r.reviewId, r.content, r.reviewerName, r.feedbackCount, r.previousReviewId, r.versionNumber "
+                    + "FROM Reviews r JOIN chain c ON r.reviewId = c.previousReviewId) "
+                    + "SELECT reviewId, content, reviewerName, feedbackCount FROM chain ORDER BY versionNumber DESC";
+            List<ReviewPrevious> history = new ArrayList<>();
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(query);
+                 WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                pstmt.setInt(1, reviewId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int versionId = rs.getInt("reviewId");
+                        history.add(new ReviewPrevious(versionId, rs.getString("content"), rs.getString("reviewerName"),
+                                rs.getInt("feedbackCount") + (int) pending.pending(FEEDBACK, versionId)));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Error fetching review history: " + e.getMessage());
+            }
+            return history;
+        });
     }
 
     /**
@@ -551,29 +742,147 @@ public class ReviewHandler {
 		return false;
 	}
 
-	public boolean addTrustedReviewer(String string, String string2) {
-		// TODO Auto-generated method stub
-		return false;
+	/**
+	 * Adds a reviewer to a student's trusted reviewers.
+	 *
+	 * @param student  the student's username
+	 * @param reviewer the reviewer's username
+	 * @return true if the reviewer was added, false if already trusted or an error occurred
+	 */
+	public boolean addTrustedReviewer(String student, String reviewer) {
+		return METRICS.time("addTrustedReviewer", () -> {
+			String query = "INSERT INTO TrustedReviewers (student, reviewer) SELECT ?, ? "
+					+ "WHERE NOT EXISTS (SELECT 1 FROM TrustedReviewers WHERE student = ? AND reviewer = ?)";
+			try (Connection connection = pool.getConnection();
+			     PreparedStatement pstmt = connection.prepareStatement(query)) {
+				pstmt.setString(1, student);
+				pstmt.setString(2, reviewer);
+				pstmt.setString(3, student);
+				pstmt.setString(4, reviewer);
+				return pstmt.executeUpdate() > 0;
+			} catch (SQLException e) {
+				System.err.println("Error adding trusted reviewer: " + e.getMessage());
+				return false;
+			}
+		});
 	}
 
-	public boolean removeTrustedReviewer(String string, String string2) {
-		// TODO Auto-generated method stub
-		return false;
+	/**
+	 * Removes a reviewer from a student's trusted reviewers.
+	 *
+	 * @param student  the student's username
+	 * @param reviewer the reviewer's username
+	 * @return true if the reviewer was removed, false if not trusted or an error occurred
+	 */
+	public boolean removeTrustedReviewer(String student, String reviewer) {
+		return METRICS.time("removeTrustedReviewer", () -> {
+			String query = "DELETE FROM TrustedReviewers WHERE student = ? AND reviewer = ?";
+			try (Connection connection = pool.getConnection();
+			     PreparedStatement pstmt = connection.prepareStatement(query)) {
+				pstmt.setString(1, student);
+				pstmt.setString(2, reviewer);
+				return pstmt.executeUpdate() > 0;
+			} catch (SQLException e) {
+				System.err.println("Error removing trusted reviewer: " + e.getMessage());
+				return false;
+			}
+		});
 	}
 
-	public ResultSet getTrustedReviewsByReplyId(int replyId, String string) {
-		// TODO Auto-generated method stub
-		return null;
+	/**
+	 * Sets the weight a student gives a reviewer's reviews, replacing any earlier weight.
+	 *
+	 * @param student  the student's username
+	 * @param reviewer the reviewer's username
+	 * @param weight   the weight, from 0 to {@value #MAX_WEIGHT}
+	 * @return true if the weight was saved, false if it is out of range or an error occurred
+	 */
+	public boolean setReviewerWeight(String student, String reviewer, int weight) {
+		return METRICS.time("setReviewerWeight", () -> {
+			if (weight < 0 || weight > MAX_WEIGHT) {
+				return false;
+			}
+			String query = "MERGE INTO ReviewerWeights (student, reviewer, weight) KEY (student, reviewer) VALUES (?, ?, ?)";
+			try (Connection connection = pool.getConnection();
+			     PreparedStatement pstmt = connection.prepareStatement(query)) {
+				pstmt.setString(1, student);
+				pstmt.setString(2, reviewer);
+				pstmt.setInt(3, weight);
+				return pstmt.executeUpdate() > 0;
+			} catch (SQLException e) {
+				System.err.println("Error setting reviewer weight: " + e.getMessage());
+				return false;
+			}
+		});
 	}
 
-	public boolean setReviewerWeight(String string, String string2, int i) {
-		// TODO Auto-generated method stub
-		return false;
+	/**
+	 * Retrieves the reviews of a reply written by reviewers the student trusts, best ranked first.
+	 *
+	 * @param replyId the ID of the reply
+	 * @param student the student's username
+	 * @return ResultSet of the trusted reviews with their score, or null if an error occurs
+	 */
+	public ResultSet getTrustedReviewsByReplyId(int replyId, String student) {
+		return METRICS.time("getTrustedReviewsByReplyId", () -> getRankedReviews(replyId, student, true, Integer.MAX_VALUE));
 	}
 
-	public ResultSet getReviewsByReplyIdSortedByWeight(int replyId, String string) {
-		// TODO Auto-generated method stub
-		return null;
+	/**
+	 * Retrieves all reviews of a reply ranked for the student; see
+	 * {@link #getReviewsByReplyIdSortedByWeight(int, String, int)}.
+	 *
+	 * @param replyId the ID of the reply
+	 * @param student the student's username
+	 * @return ResultSet of the ranked reviews, or null if an error occurs
+	 */
+	public ResultSet getReviewsByReplyIdSortedByWeight(int replyId, String student) {
+		return METRICS.time("getReviewsByReplyIdSortedByWeight(int,String)", () -> getRankedReviews(replyId, student, false, Integer.MAX_VALUE));
 	}
-    
-}
\ No newline at end of file
+
+	/**
+	 * Retrieves the top-ranked reviews of a reply for a student. Each review is scored as
+	 * {@value #WEIGHT_FACTOR} times the student's weight for the reviewer (0 if none was set),
+	 * plus {@value #TRUST_BONUS} if the student trusts the reviewer, plus its feedback count, including
+	 * feedback not written yet, capped at {@value #FEEDBACK_CAP}; so weight decides first, then trust,
+	 * then feedback. Equal scores keep the order the reviews were written in, and only the current version of an
+	 * edited review is ranked. The ranking and the limit are applied in the database, which only
+	 * reads the reviews of the one reply.
+	 *
+	 * @param replyId the ID of the reply
+	 * @param student the student's username
+	 * @param limit   the maximum number of reviews to return
+	 * @return ResultSet of the reviews with a {@code score} column, highest first, or null if an error occurs
+	 */
+	public ResultSet getReviewsByReplyIdSortedByWeight(int replyId, String student, int limit) {
+		return METRICS.time("getReviewsByReplyIdSortedByWeight(int,String,int)", () -> getRankedReviews(replyId, student, false, limit));
+	}
+
+	private ResultSet getRankedReviews(int replyId, String student, boolean trustedOnly, int limit) {
+		String query = "SELECT R.*, COALESCE(W.weight, 0) * " + WEIGHT_FACTOR
+				+ " + CASE WHEN T.reviewer IS NULL THEN 0 ELSE " + TRUST_BONUS + " END"
+				+ " + LEAST(R.feedbackCount + COALESCE(P.delta, 0), " + FEEDBACK_CAP + ") AS score "
+				+ "FROM Reviews R "
+				+ "LEFT JOIN ReviewerWeights W ON W.student = ? AND W.reviewer = R.reviewerName "
+				+ "LEFT JOIN TrustedReviewers T ON T.student = ? AND T.reviewer = R.reviewerName "
+				+ "LEFT JOIN UNNEST(CAST(? AS INTEGER ARRAY), CAST(? AS BIGINT ARRAY)) P(reviewId, delta) "
+				+ "ON P.reviewId = R.reviewId "
+				+ "WHERE R.replyId = ? AND R.isCurrent = TRUE" + (trustedOnly ? " AND T.reviewer IS NOT NULL" : "")
+				+ " ORDER BY score DESC, R.reviewId ASC LIMIT ?";
+		try (Connection connection = pool.getConnection();
+		     PreparedStatement pstmt = connection.prepareStatement(query);
+		     WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+			// Feedback that is not written yet is passed in, so the score and the order count it too.
+			Map<Integer, Long> feedback = pending.pending(FEEDBACK);
+			pstmt.setString(1, student);
+			pstmt.setString(2, student);
+			pstmt.setArray(3, connection.createArrayOf("INTEGER", feedback.keySet().toArray(new Integer[0])));
+			pstmt.setArray(4, connection.createArrayOf("BIGINT", feedback.values().toArray(new Long[0])));
+			pstmt.setInt(5, replyId);
+			pstmt.setInt(6, Math.max(0, limit));
+			return pending.detach(pstmt.executeQuery(), FEEDBACK);
+		} catch (SQLException e) {
+			System.err.println("Error ranking reviews for reply: " + e.getMessage());
+			return null;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ReviewVersionTest {
+
+    private Connection conn;
+    private ReviewHandler handler;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:reviewversiontest;DB_CLOSE_DELAY=0");
+        handler = new ReviewHandler(conn);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private int currentReviewId(int replyId) throws SQLException {
+        try (ResultSet rs = handler.getCurrentReviewsByReplyId(replyId)) {
+            assertTrue(rs.next());
+            return rs.getInt("reviewId");
+        }
+    }
+
+    private List<String> contents(List<ReviewHandler.ReviewPrevious> history) {
+        List<String> contents = new ArrayList<>();
+        for (ReviewHandler.ReviewPrevious version : history) {
+            contents.add(version.getContent());
+        }
+        return contents;
+    }
+
+    @Test
+    public void testListingShowsOnlyCurrentVersions() throws SQLException {
+        handler.addReviewForReply("First draft", "reviewer1", 7);
+        handler.addReviewForReply("Other review", "reviewer2", 7);
+        int first = currentReviewId(7);
+        assertTrue(handler.updateReview(first, "Second draft"));
+        int second = -1;
+        try (ResultSet rs = handler.getCurrentReviewsByReplyId(7)) {
+            List<String> listed = new ArrayList<>();
+            while (rs.next()) {
+                listed.add(rs.getString("content") + "/" + rs.getInt("versionNumber"));
+                if ("Second draft".equals(rs.getString("content"))) {
+                    second = rs.getInt("reviewId");
+                }
+            }
+            assertEquals(Arrays.asList("Other review/1", "Second draft/2"), listed);
+        }
+        assertTrue(handler.updateReview(second, "Final draft"));
+
+        int rows = 0;
+        try (ResultSet rs = handler.getReviewsByReplyId(7)) {
+            while (rs.next()) {
+                rows++;
+            }
+        }
+        assertEquals("Every version is kept", 4, rows);
+    }
+
+    @Test
+    public void testHistoryIsReturnedNewestFirst() throws SQLException {
+        handler.addReviewForPost("Version one", "reviewer1", 3);
+        int id = -1;
+        try (ResultSet rs = handler.getCurrentReviewsByPostId(3)) {
+            assertTrue(rs.next());
+            id = rs.getInt("reviewId");
+        }
+        for (String content : Arrays.asList("Version two", "Version three")) {
+            assertTrue(handler.updateReview(id, content));
+            try (ResultSet rs = handler.getCurrentReviewsByPostId(3)) {
+                assertTrue(rs.next());
+                id = rs.getInt("reviewId");
+                assertFalse("The post keeps one current review", rs.next());
+            }
+        }
+        assertEquals(Arrays.asList("Version three", "Version two", "Version one"),
+                contents(handler.getReviewHistory(id)));
+        assertTrue(handler.getReviewHistory(-1).isEmpty());
+    }
+
+    @Test
+    public void testOnlyTheCurrentVersionCanBeUpdated() throws SQLException {
+        handler.addReviewForReply("Original", "reviewer1", 9);
+        int original = currentReviewId(9);
+        assertTrue(handler.updateReview(original, "Edited once"));
+        assertFalse("An old version cannot start a second chain", handler.updateReview(original, "Edited again"));
+        assertEquals(Arrays.asList("Edited once", "Original"), contents(handler.getReviewHistory(currentReviewId(9))));
+    }
+
+    @Test
+    public void testExistingChainsAreMigrated() throws SQLException {
+        try (Connection legacy = DriverManager.getConnection("jdbc:h2:mem:legacyreviews;DB_CLOSE_DELAY=0");
+             Statement stmt = legacy.createStatement()) {
+            stmt.execute("CREATE TABLE Reviews (reviewId INT AUTO_INCREMENT PRIMARY KEY, replyId INT DEFAULT NULL, "
+                    + "postId INT DEFAULT NULL, content VARCHAR(10000), reviewerName VARCHAR(255), "
+                    + "feedbackCount INT DEFAULT 0, previousReviewId INT DEFAULT NULL)");
+            stmt.execute("INSERT INTO Reviews (reviewId, replyId, content, reviewerName, previousReviewId) VALUES "
+                    + "(1, 5, 'a1', 'reviewer1', NULL), (2, 5, 'b1', 'reviewer2', NULL), "
+                    + "(3, 5, 'a2', 'reviewer1', 1), (4, 5, 'a3', 'reviewer1', 3)");
+
+            ReviewHandler migrated = new ReviewHandler(legacy);
+            List<String> listed = new ArrayList<>();
+            try (ResultSet rs = migrated.getCurrentReviewsByReplyId(5)) {
+                while (rs.next()) {
+                    listed.add(rs.getString("content") + "/" + rs.getInt("versionNumber"));
+                }
+            }
+            assertEquals(Arrays.asList("b1/1", "a3/3"), listed);
+            assertEquals(Arrays.asList("a3", "a2", "a1"), contents(migrated.getReviewHistory(4)));
+        }
+    }
+}
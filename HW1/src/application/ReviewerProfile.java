@@ -0,0 +1,78 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ReviewerProfile class holds one student's view of the reviewers: the rating the student gave
+ * each reviewer and which reviewers the student trusts. It is loaded in a single query, so sorting
+ * or filtering any number of reviews by it needs no further database access.
+ */
+public class ReviewerProfile {
+    private final String studentUsername;
+    private final Map<String, Integer> ratings;
+    private final Set<String> trusted;
+
+    /**
+     * Constructs a ReviewerProfile with the given details.
+     *
+     * @param studentUsername the student the profile belongs to
+     * @param ratings         the student's rating of each rated reviewer
+     * @param trusted         the reviewers the student trusts
+     */
+    public ReviewerProfile(String studentUsername, Map<String, Integer> ratings, Set<String> trusted) {
+        this.studentUsername = studentUsername;
+        this.ratings = Collections.unmodifiableMap(new HashMap<>(ratings));
+        this.trusted = Collections.unmodifiableSet(new HashSet<>(trusted));
+    }
+
+    /**
+     * Returns the student the profile belongs to.
+     *
+     * @return the student's username
+     */
+    public String getStudentUsername() { return studentUsername; }
+
+    /**
+     * Returns the rating the student gave a reviewer.
+     *
+     * @param reviewerUsername the reviewer
+     * @return the rating, or null if the student has not rated the reviewer
+     */
+    public Integer getRating(String reviewerUsername) { return ratings.get(reviewerUsername); }
+
+    /**
+     * Returns the rating the student gave a reviewer, counting an unrated reviewer as 0.
+     *
+     * @param reviewerUsername the reviewer
+     * @return the rating, or 0 if the student has not rated the reviewer
+     */
+    public int getRatingOrZero(String reviewerUsername) {
+        Integer rating = ratings.get(reviewerUsername);
+        return rating != null ? rating : 0;
+    }
+
+    /**
+     * Returns whether the student trusts a reviewer.
+     *
+     * @param reviewerUsername the reviewer
+     * @return true if the reviewer is on the student's trusted list
+     */
+    public boolean isTrusted(String reviewerUsername) { return trusted.contains(reviewerUsername); }
+
+    /**
+     * Returns the reviewers the student trusts, sorted by name.
+     *
+     * @return the trusted reviewers
+     */
+    public List<String> getTrustedReviewers() {
+        List<String> sorted = new ArrayList<>(trusted);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,83 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+
+public class ReviewerProfileTest {
+
+    private Connection conn;
+    private ConnectionPool pool;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:reviewerprofiletest;DB_CLOSE_DELAY=0");
+        pool = ConnectionPool.wrap(conn);
+        dbHelper = new DatabaseHelper(pool);
+        dbHelper.register(new User("student1", "Password1!", "Student"));
+        for (String reviewer : Arrays.asList("reviewer1", "reviewer2", "reviewer3")) {
+            dbHelper.register(new User(reviewer, "Password1!", "Reviewer"));
+        }
+        dbHelper.addReview("reviewer1", 4, "student1");
+        dbHelper.addReview("reviewer2", 9, "student1");
+        dbHelper.addTrustedReviewer("reviewer2", "student1");
+        dbHelper.addReview("reviewer3", 7, "student2");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testProfileHoldsRatingsAndTrust() throws SQLException {
+        ReviewerProfile profile = dbHelper.getReviewerProfile("student1");
+        assertEquals(Integer.valueOf(4), profile.getRating("reviewer1"));
+        assertEquals(Integer.valueOf(9), profile.getRating("reviewer2"));
+        assertNull("Ratings by other students are not included", profile.getRating("reviewer3"));
+        assertEquals(0, profile.getRatingOrZero("reviewer3"));
+        assertTrue(profile.isTrusted("reviewer2"));
+        assertFalse(profile.isTrusted("reviewer1"));
+        assertEquals(Arrays.asList("reviewer2"), profile.getTrustedReviewers());
+        assertEquals(dbHelper.getMyReviewers("student1"), profile.getTrustedReviewers());
+    }
+
+    @Test
+    public void testProfileIsCachedUntilChanged() throws SQLException {
+        ReviewerProfile first = dbHelper.getReviewerProfile("student1");
+        long borrows = pool.getBorrowCount();
+        assertSame(first, dbHelper.getReviewerProfile("student1"));
+        assertEquals("A cached profile needs no query", borrows, pool.getBorrowCount());
+
+        dbHelper.addTrustedReviewer("reviewer1", "student1");
+        assertTrue(dbHelper.getReviewerProfile("student1").isTrusted("reviewer1"));
+
+        dbHelper.removeTrustedReviewer("reviewer2", "student1");
+        assertFalse(dbHelper.getReviewerProfile("student1").isTrusted("reviewer2"));
+
+        dbHelper.addOrUpdateReview("reviewer2", 2, "student1");
+        assertEquals(Integer.valueOf(2), dbHelper.getReviewerProfile("student1").getRating("reviewer2"));
+    }
+
+    @Test
+    public void testOtherStudentsProfilesStayCached() throws SQLException {
+        ReviewerProfile other = dbHelper.getReviewerProfile("student2");
+        dbHelper.addOrUpdateReview("reviewer1", 8, "student1");
+        assertSame(other, dbHelper.getReviewerProfile("student2"));
+    }
+}
@@ -0,0 +1,100 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import databasePart1.SchemaMigrator;
+
+public class SchemaMigratorTest {
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:migratortest;DB_CLOSE_DELAY=0");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private boolean indexExists(String indexName) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES "
+                     + "WHERE INDEX_NAME = '" + indexName.toUpperCase() + "'")) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    @Test
+    public void testStepsRunOnceAndVersionIsRecorded() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator("items")
+                .step(1, "Create Items", "CREATE TABLE IF NOT EXISTS Items (id INT PRIMARY KEY)")
+                .step(2, "Seed Items", "INSERT INTO Items VALUES (1)");
+
+        assertEquals(2, migrator.migrate(conn));
+        assertEquals(2, migrator.getCurrentVersion(conn));
+        // The insert would fail on the primary key if it ran a second time.
+        assertEquals(0, migrator.migrate(conn));
+    }
+
+    @Test
+    public void testOnlyNewStepsRunAfterUpgrade() throws SQLException {
+        new SchemaMigrator("items")
+                .step(1, "Create Items", "CREATE TABLE IF NOT EXISTS Items (id INT PRIMARY KEY)")
+                .migrate(conn);
+
+        SchemaMigrator upgraded = new SchemaMigrator("items")
+                .step(1, "Create Items", "CREATE TABLE IF NOT EXISTS Items (id INT PRIMARY KEY)")
+                .step(2, "Add name", "ALTER TABLE Items ADD COLUMN name VARCHAR(255)");
+        assertEquals(1, upgraded.migrate(conn));
+        assertEquals(2, upgraded.getCurrentVersion(conn));
+    }
+
+    @Test
+    public void testFailedStepLeavesVersionUnchanged() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator("broken")
+                .step(1, "Create Things", "CREATE TABLE IF NOT EXISTS Things (id INT)")
+                .step(2, "Bad step", "INSERT INTO MissingTable VALUES (1)");
+        try {
+            migrator.migrate(conn);
+            fail("Broken step should throw");
+        } catch (SQLException expected) {
+            // Version 1 stays applied.
+        }
+        assertEquals(1, migrator.getCurrentVersion(conn));
+        assertTrue("Connection should be back in auto-commit mode", conn.getAutoCommit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVersionsMustIncrease() {
+        new SchemaMigrator("items")
+                .step(2, "Second", "SELECT 1")
+                .step(1, "First", "SELECT 1");
+    }
+
+    @Test
+    public void testHandlersCreateLookupIndexes() throws SQLException {
+        QuestionHandler qHandler = new QuestionHandler(conn);
+        new AnswerHandler(conn, qHandler);
+        new ReviewHandler(conn);
+
+        assertTrue(indexExists("idx_replies_post"));
+        assertTrue(indexExists("idx_replies_parent"));
+        assertTrue(indexExists("idx_reviews_reply"));
+        assertTrue(indexExists("idx_reviews_post"));
+        assertTrue(indexExists("idx_reviews_previous"));
+    }
+}
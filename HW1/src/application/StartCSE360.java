@@ -4,9 +4,9 @@ import javafx.scene.image.Image;
 import javafx.application.Application;
 import javafx.stage.Stage;
 
-import java.sql.Connection;
 import java.sql.SQLException;
 
+import databasePart1.ConnectionPool;
 import databasePart1.DatabaseHelper;
 
 /**
@@ -43,11 +43,11 @@ public class StartCSE360 extends Application {
         	Image icon = new Image(getClass().getResourceAsStream("app-icon.png"));
             primaryStage.getIcons().add(icon);
         	
-            Connection conn = databaseHelper.connectToDatabase(); // Connect to the database
-            QuestionHandler qHandler = new QuestionHandler(conn);
-            AnswerHandler aHandler = new AnswerHandler(conn, qHandler);
-            UserHandler uHandler = new UserHandler(conn);
-            ReviewHandler rHandler = new ReviewHandler(conn);
+            ConnectionPool pool = databaseHelper.getConnectionPool(); // Connect to the database
+            QuestionHandler qHandler = new QuestionHandler(pool);
+            AnswerHandler aHandler = new AnswerHandler(pool, qHandler);
+            UserHandler uHandler = new UserHandler(pool);
+            ReviewHandler rHandler = new ReviewHandler(pool);
             if (databaseHelper.isDatabaseEmpty()) {
             	
             	new FirstPage(databaseHelper, qHandler, aHandler, uHandler, rHandler).show(primaryStage);
@@ -0,0 +1,127 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import databasePart1.ConnectionPool;
+import databasePart1.StatementCache;
+
+public class StatementCacheTest {
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws SQLException {
+        // A small cache makes eviction easy to trigger.
+        pool = new ConnectionPool("jdbc:h2:mem:statementcachetest;DB_CLOSE_DELAY=-1", "sa", "", 2, 2);
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+            stmt.execute("CREATE TABLE Items (id INT PRIMARY KEY, name VARCHAR(255))");
+            stmt.execute("INSERT INTO Items VALUES (1, 'one'), (2, 'two')");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    private String nameById(int id) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT name FROM Items WHERE id = ?")) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString("name") : null;
+            }
+        }
+    }
+
+    private StatementCache.Stats statsFor(String sql) {
+        for (StatementCache.Stats stats : pool.getStatementStats()) {
+            if (stats.getSql().equals(sql)) {
+                return stats;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testRepeatedQueryHitsCache() throws SQLException {
+        assertEquals("one", nameById(1));
+        assertEquals("two", nameById(2));
+        assertEquals("one", nameById(1));
+
+        StatementCache.Stats stats = statsFor("SELECT name FROM Items WHERE id = ?");
+        assertEquals("Statement should be prepared once", 1, stats.getMisses());
+        assertEquals("Later calls should reuse it", 2, stats.getHits());
+    }
+
+    @Test
+    public void testParametersClearedOnReuse() throws SQLException {
+        nameById(1);
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT name FROM Items WHERE id = ?")) {
+            try {
+                pstmt.executeQuery();
+                fail("Reused statement should not keep the old parameter");
+            } catch (SQLException expected) {
+                // Parameter 1 is unset again.
+            }
+        }
+    }
+
+    @Test
+    public void testNestedPrepareOfSameSqlGetsSeparateStatement() throws SQLException {
+        String sql = "SELECT name FROM Items WHERE id = ?";
+        try (Connection conn = pool.getConnection();
+             PreparedStatement outer = conn.prepareStatement(sql);
+             PreparedStatement inner = conn.prepareStatement(sql)) {
+            assertNotSame(outer, inner);
+            outer.setInt(1, 1);
+            inner.setInt(1, 2);
+            try (ResultSet a = outer.executeQuery(); ResultSet b = inner.executeQuery()) {
+                assertTrue(a.next());
+                assertTrue(b.next());
+                assertEquals("one", a.getString(1));
+                assertEquals("two", b.getString(1));
+            }
+        }
+    }
+
+    @Test
+    public void testEvictionClosesStatement() throws SQLException {
+        PreparedStatement first;
+        try (Connection conn = pool.getConnection()) {
+            first = conn.prepareStatement("SELECT 1");
+            first.close();
+            conn.prepareStatement("SELECT 2").close();
+            conn.prepareStatement("SELECT 3").close();
+        }
+        assertEquals(1, statsFor("SELECT 1").getEvictions());
+        assertTrue("Closed wrapper reports closed", first.isClosed());
+        assertEquals(0, statsFor("SELECT 2").getEvictions());
+    }
+
+    @Test
+    public void testStatementReportsBorrowedConnection() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT 1")) {
+            assertTrue(pstmt.getConnection() == conn);
+            assertFalse(pstmt.isClosed());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import databasePart1.ConnectionPool;
+import databasePart1.StatementProfiler;
+
+public class StatementProfilerTest {
+
+    private static int databases;
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ConnectionPool("jdbc:h2:mem:statementprofiler" + (databases++) + ";DB_CLOSE_DELAY=-1", "sa", "", 2);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        pool.setProfiler(null);
+        try (Connection connection = pool.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        pool.close();
+    }
+
+    @Test
+    public void testNormalizeReplacesLiteralsAndInLists() {
+        assertEquals("SELECT * FROM Posts WHERE postId IN (?...) AND title = ?",
+                StatementProfiler.normalize("SELECT *  FROM Posts\n WHERE postId IN (1, 2, 3) AND title = 'it''s'"));
+        assertEquals("SELECT * FROM Posts WHERE postId IN (?...)",
+                StatementProfiler.normalize("SELECT * FROM Posts WHERE postId IN (?,?)"));
+        assertEquals("SELECT col1 FROM t2", StatementProfiler.normalize("SELECT col1 FROM t2"));
+    }
+
+    @Test
+    public void testRepeatedLookupsAreAggregatedWithTheirCallSite() throws SQLException {
+        QuestionHandler qHandler = new QuestionHandler(pool);
+        for (int i = 0; i < 5; i++) {
+            qHandler.addPost("alice", "Title " + i, "Post " + i);
+        }
+        StatementProfiler profiler = new StatementProfiler(60_000);
+        pool.setProfiler(profiler);
+        for (int postId = 1; postId <= 5; postId++) {
+            qHandler.getPostTitleById(postId);
+        }
+
+        List<StatementProfiler.Stats> top = profiler.getTopStatements(10);
+        StatementProfiler.Stats lookup = top.stream()
+                .filter(s -> s.getSql().contains("FROM Posts WHERE postId = ?")).findFirst().orElseThrow();
+        assertEquals(5, lookup.getCount());
+        assertEquals(5, lookup.getRows());
+        assertTrue(lookup.getTopCallSite(), lookup.getTopCallSite().startsWith("QuestionHandler.getPostTitleById:"));
+        assertTrue(profiler.getSlowQueries().isEmpty());
+    }
+
+    @Test
+    public void testSlowQueriesKeepTheirBindParameters() throws SQLException {
+        StatementProfiler profiler = new StatementProfiler(0);
+        pool.setProfiler(profiler);
+        try (Connection connection = pool.getConnection()) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE TABLE Items (id INT PRIMARY KEY, name VARCHAR(50))");
+            }
+            try (PreparedStatement pstmt = connection.prepareStatement("INSERT INTO Items VALUES (?, ?)")) {
+                pstmt.setInt(1, 7);
+                pstmt.setString(2, "seven");
+                assertEquals(1, pstmt.executeUpdate());
+            }
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT name FROM Items WHERE id = 7")) {
+                assertTrue(rs.next());
+            }
+        }
+
+        List<StatementProfiler.SlowQuery> slow = profiler.getSlowQueries();
+        assertEquals(3, slow.size());
+        assertEquals("1=7, 2='seven'", slow.get(1).getParameters());
+        assertEquals(1, slow.get(1).getRows());
+        assertTrue(slow.get(1).getCallSite(), slow.get(1).getCallSite().startsWith("StatementProfilerTest."));
+
+        StatementProfiler.Stats select = profiler.getTopStatements(10).stream()
+                .filter(s -> s.getSql().equals("SELECT name FROM Items WHERE id = ?")).findFirst().orElseThrow();
+        assertEquals(1, select.getRows());
+    }
+
+    @Test
+    public void testFailedStatementsAreCounted() throws SQLException {
+        StatementProfiler profiler = new StatementProfiler(60_000);
+        pool.setProfiler(profiler);
+        try (Connection connection = pool.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.executeQuery("SELECT * FROM Missing");
+        } catch (SQLException expected) {
+            // The statement is still recorded.
+        }
+        assertEquals(1, profiler.getTopStatements(1).get(0).getErrors());
+        assertTrue(profiler.report(5).contains("SELECT * FROM Missing"));
+    }
+}
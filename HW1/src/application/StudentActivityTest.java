@@ -0,0 +1,122 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StudentActivityTest {
+
+    private Connection conn;
+    private QuestionHandler qHandler;
+    private AnswerHandler aHandler;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:studentactivitytest;DB_CLOSE_DELAY=0");
+        qHandler = new QuestionHandler(conn);
+        aHandler = new AnswerHandler(conn, qHandler);
+        qHandler.addPost("student1", "First question", "Body one");
+        qHandler.addPost("student2", "Other question", "Body two");
+        qHandler.addPost("student1", "Second question", "Body three");
+        qHandler.addPost("student1", "Third question", "Body four");
+
+        aHandler.addAnswer("Answer on two", 2, "student1", false);
+        aHandler.addAnswer("Someone else", 2, "student2", false);
+        aHandler.addAnswer("Private note", 3, "student1", true);
+        aHandler.addAnswer("Answer on one", 1, "student1", false);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private List<String> contents(ActivityPage page) {
+        List<String> contents = new ArrayList<>();
+        for (ActivityEntry entry : page.getEntries()) {
+            contents.add(entry.getContent());
+        }
+        return contents;
+    }
+
+    @Test
+    public void testPostsArePagedNewestFirst() throws SQLException {
+        ActivityPage first = qHandler.listPostsByAuthor("student1", null, 2);
+        assertEquals(Arrays.asList("Body four", "Body three"), contents(first));
+        assertEquals("Third question", first.getEntries().get(0).getPostTitle());
+        assertTrue(first.hasMore());
+
+        ActivityPage second = qHandler.listPostsByAuthor("student1", first.getNextCursor(), 2);
+        assertEquals(Arrays.asList("Body one"), contents(second));
+        assertFalse(second.hasMore());
+        assertNull(second.getNextCursor());
+
+        assertTrue(qHandler.listPostsByAuthor("nobody", null, 10).getEntries().isEmpty());
+    }
+
+    @Test
+    public void testRepliesCarryTheirPostTitles() throws SQLException {
+        ActivityPage page = aHandler.listRepliesByAuthor("student1", null, 10);
+        assertEquals(Arrays.asList("Answer on one", "Private note", "Answer on two"), contents(page));
+        List<String> titles = new ArrayList<>();
+        for (ActivityEntry entry : page.getEntries()) {
+            titles.add(entry.getPostTitle());
+        }
+        assertEquals(Arrays.asList("First question", "Second question", "Other question"), titles);
+        assertTrue("Private replies are listed for the instructor", page.getEntries().get(1).isPrivate());
+        assertFalse(page.hasMore());
+
+        ActivityPage firstOfTwo = aHandler.listRepliesByAuthor("student1", null, 2);
+        assertEquals(Arrays.asList("Answer on two"),
+                contents(aHandler.listRepliesByAuthor("student1", firstOfTwo.getNextCursor(), 2)));
+    }
+
+    @Test
+    public void testReplyToDeletedPostHasNoTitle() throws SQLException {
+        assertTrue(qHandler.deletePostById(1));
+        ActivityEntry newest = aHandler.listRepliesByAuthor("student1", null, 1).getEntries().get(0);
+        assertEquals("Answer on one", newest.getContent());
+        assertNull(newest.getPostTitle());
+    }
+
+    @Test
+    public void testListingsUseTheAuthorIndexes() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("EXPLAIN SELECT postId FROM Posts WHERE userName = 'student1' "
+                    + "AND postId < 10 ORDER BY postId DESC LIMIT 3")) {
+                assertTrue(rs.next());
+                assertTrue(rs.getString(1), rs.getString(1).contains("IDX_POSTS_AUTHOR"));
+            }
+            try (ResultSet rs = stmt.executeQuery("EXPLAIN SELECT replyId FROM Replies WHERE userName = 'student1' "
+                    + "AND replyId < 10 ORDER BY replyId DESC LIMIT 3")) {
+                assertTrue(rs.next());
+                assertTrue(rs.getString(1), rs.getString(1).contains("IDX_REPLIES_AUTHOR"));
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedCursorIsRejected() throws SQLException {
+        try {
+            aHandler.listRepliesByAuthor("student1", "not-a-cursor", 10);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Cursors are only ever produced by a previous page.
+        }
+    }
+}
@@ -24,6 +24,7 @@ import application.QuestionHandler;
 import databasePart1.DatabaseHelper;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -41,6 +42,10 @@ public class StudentHomePage {
     private final ReviewHandler rHandler;
     private String userName;
     DatabaseHelper databaseHelper;
+    // The student's user ID, known once the home page has loaded it.
+    private int userId = -1;
+    // Background loads for the home page and its dialogs; cancelled when the student leaves the page.
+    private AsyncDataService.Scope loads = AsyncDataService.getShared().newScope();
 
     /**
      * Constructs a StudentHomePage with the specified handlers, username, and database helper.
@@ -68,6 +73,8 @@ public class StudentHomePage {
      * @param primaryStage the primary Stage where the scene is displayed
      */
     public void show(Stage primaryStage) {
+        loads.cancel();
+        loads = AsyncDataService.getShared().newScope();
         VBox layout = new VBox(10);
         layout.setStyle("-fx-alignment: center; -fx-padding: 20;");
         
@@ -75,19 +82,12 @@ public class StudentHomePage {
         Button submitQuestionButton = new Button("Submit a Question");
         Button displayPostsButton = new Button("Display All Posts");
         
-        // Retrieve the userId using a helper method (assumed to exist)
-        int userId = databaseHelper.getUserIdByUsername(userName);
-        // Get the number of notifications for this user.
-        int numNotifications = databaseHelper.getNumNotifications(userId);
-        
         Button requestStatusButton = new Button("Request to Become Reviewer");
      
-        requestStatusButton.setOnAction(e -> {
+        requestStatusButton.setOnAction(e -> loads.load(() -> {
             String notification = "Request to become reviewer from student: " + userName + " (ID: " + databaseHelper.getUserIdByUsername(userName) + ")";
-            
-            try {
-                boolean sent = databaseHelper.addNotificationToAllInstructors(notification);
-                
+            return databaseHelper.addNotificationToAllInstructors(notification);
+        }, sent -> {
                 if(sent) {
                     Alert infoAlert = new Alert(Alert.AlertType.INFORMATION);
                     infoAlert.setTitle("Success");
@@ -101,21 +101,27 @@ public class StudentHomePage {
                     errorAlert.setContentText("Could not find any instructors to send request to");
                     errorAlert.showAndWait();
                 }
-            } catch (SQLException ex) {
+        }, ex -> {
                 Alert errorAlert = new Alert(Alert.AlertType.ERROR);
                 errorAlert.setTitle("Database Error");
                 errorAlert.setHeaderText("Request Failed");
                 errorAlert.setContentText("Could not send request: " + ex.getMessage());
                 errorAlert.showAndWait();
-            }
-        });
+        }));
         
-        // Create the Notifications button with the count in its label.
-        Button notificationsButton = new Button("Notifications (" + numNotifications + ")");
-        notificationsButton.setOnAction(e -> {
-            // Retrieve notifications for the current user.
-            String notifications = databaseHelper.getNotifications(userId);
-            
+        // Create the Notifications button; the count is filled in once it has been loaded.
+        Button notificationsButton = new Button("Notifications (...)");
+        notificationsButton.setDisable(true);
+        loads.load(() -> {
+            // Retrieve the userId and the number of notifications for this user.
+            int id = databaseHelper.getUserIdByUsername(userName);
+            return new Pair<>(id, databaseHelper.getNumNotifications(id));
+        }, loaded -> {
+            userId = loaded.getKey();
+            notificationsButton.setText("Notifications (" + loaded.getValue() + ")");
+            notificationsButton.setDisable(false);
+        }, error -> error.printStackTrace());
+        notificationsButton.setOnAction(e -> loads.load(() -> databaseHelper.getNotifications(userId), notifications -> {
             // Create a new Stage to display notifications in a TextArea.
             Stage notifStage = new Stage();
             notifStage.setTitle("Your Notifications");
@@ -139,16 +145,17 @@ public class StudentHomePage {
             notifStage.showAndWait();
             
             // Once the notifications window is closed, clear the notifications.
-            boolean cleared = databaseHelper.clearNotifications(userId);
-            if (cleared) {
-                notificationsButton.setText("Notifications (0)");
-            } else {
-                Alert alert = new Alert(Alert.AlertType.ERROR);
-                alert.setTitle("Error");
-                alert.setHeaderText("Could not clear notifications");
-                alert.showAndWait();
-            }
-        });
+            loads.load(() -> databaseHelper.clearNotifications(userId), cleared -> {
+                if (cleared) {
+                    notificationsButton.setText("Notifications (0)");
+                } else {
+                    Alert alert = new Alert(Alert.AlertType.ERROR);
+                    alert.setTitle("Error");
+                    alert.setHeaderText("Could not clear notifications");
+                    alert.showAndWait();
+                }
+            }, error -> error.printStackTrace());
+        }, error -> loadFailed("Could not load notifications", error)));
         
         // Create the Send Message button.
         Button sendMessageButton = new Button("Send Message");
@@ -180,19 +187,22 @@ public class StudentHomePage {
                     errorAlert.showAndWait();
                     return;
                 }
-                // Retrieve recipient's user ID.
-                int recipientId = databaseHelper.getUserIdByUsername(recipientUsername);
-                if(recipientId == -1){
+                loads.load(() -> {
+                    // Retrieve recipient's user ID.
+                    int recipientId = databaseHelper.getUserIdByUsername(recipientUsername);
+                    if (recipientId == -1) {
+                        return null;
+                    }
+                    // Send the message as a notification to the recipient.
+                    return databaseHelper.addNotificationToUser(userName + " (User " + userId + "): "+ messageContent, recipientId);
+                }, sent -> {
+                if(sent == null){
                     Alert errorAlert = new Alert(Alert.AlertType.ERROR);
                     errorAlert.setTitle("Error");
                     errorAlert.setHeaderText("User Not Found");
                     errorAlert.setContentText("Could not find a user with username: " + recipientUsername);
                     errorAlert.showAndWait();
-                    return;
-                }
-                // Send the message as a notification to the recipient.
-                boolean sent = databaseHelper.addNotificationToUser(userName + " (User " + userId + "): "+ messageContent, recipientId);
-                if(sent){
+                } else if(sent){
                     Alert infoAlert = new Alert(Alert.AlertType.INFORMATION);
                     infoAlert.setTitle("Success");
                     infoAlert.setHeaderText(null);
@@ -206,6 +216,7 @@ public class StudentHomePage {
                     errorAlert.setContentText("Could not send message to " + recipientUsername);
                     errorAlert.showAndWait();
                 }
+                }, error -> loadFailed("Could not send message to " + recipientUsername, error));
             });
             
     
@@ -249,8 +260,10 @@ public class StudentHomePage {
         Scene scene = new Scene(layout, 800, 400);
         primaryStage.setScene(scene);
         primaryStage.setTitle("Question Menu");
+        loads.cancelWhenLeft(primaryStage, scene);
     }
  
+ 
     /**
      * Displays a dialog for rating reviewers and marking them as trusted.
      * The dialog allows the student to select a reviewer, assign a rating, and optionally mark them as trusted.
@@ -258,8 +271,18 @@ public class StudentHomePage {
      * @param primaryStage the primary Stage used as the owner for the dialog
      */
     private void showRateReviewersDialog(Stage primaryStage) {
-        try {
-            List<String> reviewers = databaseHelper.getAllReviewersUsernames();
+        loads.load(() -> databaseHelper.getAllReviewersUsernames(),
+                   reviewers -> showRateReviewersDialog(primaryStage, reviewers),
+                   e -> {
+            Alert error = new Alert(Alert.AlertType.ERROR);
+            error.setTitle("Error");
+            error.setHeaderText("Database Error");
+            error.setContentText("Could not retrieve reviewers: " + e.getMessage());
+            error.showAndWait();
+        });
+    }
+
+    private void showRateReviewersDialog(Stage primaryStage, List<String> reviewers) {
             if (reviewers.isEmpty()) {
                 Alert alert = new Alert(Alert.AlertType.INFORMATION);
                 alert.setTitle("No Reviewers");
@@ -291,8 +314,7 @@ public class StudentHomePage {
             // Check if already trusted and disable checkbox if true
             reviewerComboBox.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
                 if (newVal != null) {
-                    try {
-                        boolean alreadyTrusted = databaseHelper.isReviewerTrusted(newVal, userName);
+                    loads.load("trusted", () -> databaseHelper.getReviewerProfile(userName).isTrusted(newVal), alreadyTrusted -> {
                         trustedCheckBox.setSelected(alreadyTrusted);
                         trustedCheckBox.setDisable(alreadyTrusted);
                         if (alreadyTrusted) {
@@ -300,9 +322,7 @@ public class StudentHomePage {
                         } else {
                             trustedCheckBox.setText("Add to Trusted Reviewers");
                         }
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                    }
+                    }, e -> e.printStackTrace());
                 }
             });
 
@@ -337,7 +357,7 @@ public class StudentHomePage {
                 int rating = reviewerRatingTrusted.getKey().getValue();
                 boolean trusted = reviewerRatingTrusted.getValue();
                 
-                try {
+                loads.load(() -> {
                     // Save rating
                     databaseHelper.addReview(reviewer, rating, userName);
                     
@@ -345,7 +365,8 @@ public class StudentHomePage {
                     if (trusted) {
                         databaseHelper.addTrustedReviewer(reviewer, userName);
                     }
-                    
+                    return null;
+                }, saved -> {
                     Alert success = new Alert(Alert.AlertType.INFORMATION);
                     success.setTitle("Success");
                     success.setHeaderText(null);
@@ -355,21 +376,14 @@ public class StudentHomePage {
                     }
                     success.setContentText(message.toString());
                     success.showAndWait();
-                } catch (SQLException e) {
+                }, e -> {
                     Alert error = new Alert(Alert.AlertType.ERROR);
                     error.setTitle("Error");
                     error.setHeaderText("Database Error");
                     error.setContentText("Could not save rating/trust status: " + e.getMessage());
                     error.showAndWait();
-                }
+                });
             });
-        } catch (SQLException e) {
-            Alert error = new Alert(Alert.AlertType.ERROR);
-            error.setTitle("Error");
-            error.setHeaderText("Database Error");
-            error.setContentText("Could not retrieve reviewers: " + e.getMessage());
-            error.showAndWait();
-        }
     }
 
     /**
@@ -378,7 +392,22 @@ public class StudentHomePage {
      * @param primaryStage the primary Stage where the reviewer list is displayed
      */
     private void showReviewerList(Stage primaryStage) {
-        try {
+        loads.load(() -> {
+            // Get all available reviewers, leaving out the student's current reviewers
+            List<String> allReviewers = databaseHelper.getAllReviewersUsernames();
+            allReviewers.removeAll(databaseHelper.getReviewerProfile(userName).getTrustedReviewers());
+            return new Pair<>(allReviewers, loadReviewerEntries());
+        }, reviewers -> showReviewerList(primaryStage, reviewers.getKey(), reviewers.getValue()), e -> {
+            e.printStackTrace();
+            Alert error = new Alert(Alert.AlertType.ERROR);
+            error.setTitle("Error");
+            error.setHeaderText("Database Error");
+            error.setContentText("Could not load reviewer list: " + e.getMessage());
+            error.showAndWait();
+        });
+    }
+
+    private void showReviewerList(Stage primaryStage, List<String> otherReviewers, List<String> reviewerEntries) {
             // Create a new stage for the reviewer list
             Stage reviewerStage = new Stage();
             reviewerStage.setTitle("My Reviewer List");
@@ -386,26 +415,14 @@ public class StudentHomePage {
             VBox layout = new VBox(10);
             layout.setPadding(new Insets(20));
             
-            // Get all available reviewers
-            List<String> allReviewers = databaseHelper.getAllReviewersUsernames();
-            
-            // Get the student's current reviewers (from trusted reviewers table)
-            List<String> myReviewers = databaseHelper.getMyReviewers(userName);
-            
             // Create a list view to display current reviewers with ratings
             ListView<String> reviewerListView = new ListView<>();
-            for (String reviewer : myReviewers) {
-                // Get the rating for this reviewer
-                Integer rating = databaseHelper.getReviewerRating(userName, reviewer);
-                String displayText = reviewer + (rating != null ? " (Your rating: " + rating + ")" : " (Not rated yet)");
-                reviewerListView.getItems().add(displayText);
-            }
+            reviewerListView.getItems().addAll(reviewerEntries);
             
             // Create a combo box for adding new reviewers
             ComboBox<String> reviewerComboBox = new ComboBox<>();
             // Only show reviewers not already in the list
-            allReviewers.removeAll(myReviewers);
-            reviewerComboBox.getItems().addAll(allReviewers);
+            reviewerComboBox.getItems().addAll(otherReviewers);
             reviewerComboBox.setPromptText("Select Reviewer to Add");
             
             // Add button
@@ -413,18 +430,19 @@ public class StudentHomePage {
             addButton.setOnAction(e -> {
                 String selectedReviewer = reviewerComboBox.getSelectionModel().getSelectedItem();
                 if (selectedReviewer != null) {
-                    try {
+                    loads.load(() -> {
                         // Add to trusted reviewers
                         databaseHelper.addTrustedReviewer(selectedReviewer, userName);
                         
-                        // Refresh the list
-                        reviewerListView.getItems().add(selectedReviewer + " (Not rated yet)");
-                        reviewerComboBox.getItems().remove(selectedReviewer);
-                        
                         // Notify the reviewer
                         String notification = userName + " has added you to their reviewer list!";
                         databaseHelper.addNotificationToUser(notification, 
                             databaseHelper.getUserIdByUsername(selectedReviewer));
+                        return null;
+                    }, added -> {
+                        // Refresh the list
+                        reviewerListView.getItems().add(selectedReviewer + " (Not rated yet)");
+                        reviewerComboBox.getItems().remove(selectedReviewer);
                         
                         Alert success = new Alert(Alert.AlertType.INFORMATION);
                         success.setTitle("Success");
@@ -432,14 +450,14 @@ public class StudentHomePage {
                         success.setContentText(selectedReviewer + " added to your reviewer list");
                         success.showAndWait();
                         refreshPage(primaryStage);
-                    } catch (SQLException ex) {
+                    }, ex -> {
                         ex.printStackTrace();
                         Alert error = new Alert(Alert.AlertType.ERROR);
                         error.setTitle("Error");
                         error.setHeaderText("Database Error");
                         error.setContentText("Could not add reviewer: " + ex.getMessage());
                         error.showAndWait();
-                    }
+                    });
                 } else {
                     Alert alert = new Alert(Alert.AlertType.WARNING);
                     alert.setTitle("No Selection");
@@ -457,10 +475,11 @@ public class StudentHomePage {
                     // Extract the reviewer name (remove the rating part if present)
                     String reviewerName = selected.split(" ")[0];
                     
-                    try {
-                        // Remove from trusted reviewers
+                    // Remove from trusted reviewers
+                    loads.load(() -> {
                         databaseHelper.removeTrustedReviewer(reviewerName, userName);
-                        
+                        return null;
+                    }, removed -> {
                         // Refresh the list
                         reviewerListView.getItems().remove(selected);
                         reviewerComboBox.getItems().add(reviewerName);
@@ -471,14 +490,14 @@ public class StudentHomePage {
                         success.setContentText(reviewerName + " removed from your reviewer list");
                         success.showAndWait();
                         refreshPage(primaryStage);
-                    } catch (SQLException ex) {
+                    }, ex -> {
                         ex.printStackTrace();
                         Alert error = new Alert(Alert.AlertType.ERROR);
                         error.setTitle("Error");
                         error.setHeaderText("Database Error");
                         error.setContentText("Could not remove reviewer: " + ex.getMessage());
                         error.showAndWait();
-                    }
+                    });
                 } else {
                     Alert alert = new Alert(Alert.AlertType.WARNING);
                     alert.setTitle("No Selection");
@@ -494,15 +513,8 @@ public class StudentHomePage {
                 String selected = reviewerListView.getSelectionModel().getSelectedItem();
                 if (selected != null) {
                     String reviewerName = selected.split(" ")[0];
-                    showRatingDialog(reviewerName, primaryStage);
-                    
-                    // Refresh the list after rating
-                    try {
-                        refreshReviewerList(reviewerListView);
-                        refreshPage(primaryStage);
-                    } catch (SQLException ex) {
-                        ex.printStackTrace();
-                    }
+                    // The list is refreshed once the rating has been saved
+                    showRatingDialog(reviewerName, reviewerListView);
                 } else {
                     Alert alert = new Alert(Alert.AlertType.WARNING);
                     alert.setTitle("No Selection");
@@ -530,38 +542,32 @@ public class StudentHomePage {
             Scene scene = new Scene(layout, 400, 400);
             reviewerStage.setScene(scene);
             reviewerStage.show();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            Alert error = new Alert(Alert.AlertType.ERROR);
-            error.setTitle("Error");
-            error.setHeaderText("Database Error");
-            error.setContentText("Could not load reviewer list: " + e.getMessage());
-            error.showAndWait();
-        }
     }
 
     /**
      * Displays a dialog for rating a selected reviewer.
      * Allows the student to provide a rating between 1 and 10 and updates the review in the database.
      *
-     * @param reviewerName the name of the reviewer to be rated
+     * @param reviewerName     the name of the reviewer to be rated
+     * @param reviewerListView the reviewer list to refresh once the rating is saved
      */
-    private void showRatingDialog(String reviewerName, Stage primaryStage) {
+    private void showRatingDialog(String reviewerName, ListView<String> reviewerListView) {
+        loads.load(() -> databaseHelper.getReviewerProfile(userName).getRating(reviewerName),
+                   existingRating -> showRatingDialog(reviewerName, existingRating, reviewerListView),
+                   e -> {
+            e.printStackTrace();
+            showRatingDialog(reviewerName, null, reviewerListView);
+        });
+    }
+
+    private void showRatingDialog(String reviewerName, Integer existingRating, ListView<String> reviewerListView) {
         Dialog<Pair<String, Integer>> dialog = new Dialog<>();
         dialog.setTitle("Rate Reviewer");
         dialog.setHeaderText("Rate " + reviewerName);
         
         dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
         
-        int initialRating = 5;
-        try {
-            Integer existingRating = databaseHelper.getReviewerRating(userName, reviewerName);
-            if (existingRating != null) {
-                initialRating = existingRating;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        int initialRating = existingRating != null ? existingRating : 5;
         
         Spinner<Integer> ratingSpinner = new Spinner<>(1, 10, initialRating);
         ratingSpinner.setEditable(true);
@@ -585,44 +591,53 @@ public class StudentHomePage {
         
         Optional<Pair<String, Integer>> result = dialog.showAndWait();
         
-        result.ifPresent(reviewerRating -> {
-            try {
-                databaseHelper.addOrUpdateReview(reviewerRating.getKey(), reviewerRating.getValue(), userName);
-                
+        result.ifPresent(reviewerRating -> loads.load(() -> {
+            databaseHelper.addOrUpdateReview(reviewerRating.getKey(), reviewerRating.getValue(), userName);
+            return databaseHelper.reviewExists(reviewerName, userName);
+        }, updated -> {
                 Alert success = new Alert(Alert.AlertType.INFORMATION);
                 success.setTitle("Success");
                 success.setHeaderText(null);
-                success.setContentText("Rating " + 
-                    (databaseHelper.reviewExists(reviewerName, userName) ? "updated" : "submitted") + 
+                success.setContentText("Rating " + (updated ? "updated" : "submitted") + 
                     " for " + reviewerRating.getKey());
                 success.showAndWait();
                 
-                // Use the passed primaryStage instead
-                showReviewerList(primaryStage);
-            } catch (SQLException e) {
+                refreshReviewerList(reviewerListView);
+        }, e -> {
                 Alert error = new Alert(Alert.AlertType.ERROR);
                 error.setTitle("Error");
                 error.setHeaderText("Database Error");
                 error.setContentText("Could not save rating: " + e.getMessage());
                 error.showAndWait();
-            }
-        });
+        }));
     }
 
     /**
-     * Refreshes the contents of the reviewer list view with the latest data from the database.
+     * Loads the student's reviewers with the rating the student gave each of them.
+     * Runs on a background thread.
      *
-     * @param reviewerListView the ListView displaying the reviewer list
+     * @return one display line per reviewer
      * @throws SQLException if a database access error occurs
      */
-    private void refreshReviewerList(ListView<String> reviewerListView) throws SQLException {
-        reviewerListView.getItems().clear();
-        List<String> myReviewers = databaseHelper.getMyReviewers(userName);
-        for (String reviewer : myReviewers) {
-            Integer rating = databaseHelper.getReviewerRating(userName, reviewer);
-            String displayText = reviewer + (rating != null ? " (Your rating: " + rating + ")" : " (Not rated yet)");
-            reviewerListView.getItems().add(displayText);
+    private List<String> loadReviewerEntries() throws SQLException {
+        List<String> entries = new ArrayList<>();
+        ReviewerProfile profile = databaseHelper.getReviewerProfile(userName);
+        for (String reviewer : profile.getTrustedReviewers()) {
+            Integer rating = profile.getRating(reviewer);
+            entries.add(reviewer + (rating != null ? " (Your rating: " + rating + ")" : " (Not rated yet)"));
         }
+        return entries;
+    }
+
+    /**
+     * Refreshes the contents of the reviewer list view with the latest data from the database.
+     *
+     * @param reviewerListView the ListView displaying the reviewer list
+     */
+    private void refreshReviewerList(ListView<String> reviewerListView) {
+        loads.load("reviewers", this::loadReviewerEntries,
+                   entries -> reviewerListView.getItems().setAll(entries),
+                   e -> e.printStackTrace());
     }
 
     /**
@@ -633,5 +648,14 @@ public class StudentHomePage {
     private void refreshPage(Stage primaryStage) {
     	showReviewerList(primaryStage);
     }
+
+    private void loadFailed(String message, Throwable error) {
+        error.printStackTrace();
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(message);
+        alert.setContentText(error.getMessage());
+        alert.showAndWait();
+    }
     
 }
@@ -4,18 +4,39 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
+import databasePart1.ConnectionPool;
+import databasePart1.OperationMetrics;
+import databasePart1.SchemaMigrator;
+
 /**
  * The UserHandler class manages operations related to user records in the database.
- * It provides methods for creating the Users table, adding posts read by a user,
- * retrieving the list of read posts, and checking if a user exists.
+ * It provides methods for creating the Users table, marking posts as read by a user
+ * and retrieving the posts a user has read. Each user's read posts are kept as a
+ * compressed {@link PostReadSet} in the PostReadSets table.
  */
 public class UserHandler {
-    // Database connection used for executing SQL statements.
-    private Connection connection;
+    // Call counts and latencies of the public methods, published over JMX.
+    private static final OperationMetrics METRICS = OperationMetrics.forComponent("UserHandler");
+
+    // Versioned schema for the Users table.
+    private static final SchemaMigrator MIGRATIONS = new SchemaMigrator("users")
+            .step(1, "Create Users table",
+                    "CREATE TABLE IF NOT EXISTS Users ("
+                    + "userName VARCHAR(255) PRIMARY KEY, "
+                    + "PostsRead VARCHAR(10000), "
+                    + "RepliesRead VARCHAR(10000))")
+            .step(2, "Create PostReadSets table",
+                    "CREATE TABLE IF NOT EXISTS PostReadSets ("
+                    + "userName VARCHAR(255) PRIMARY KEY, "
+                    + "readSet VARBINARY NOT NULL, "
+                    + "readCount BIGINT DEFAULT 0)")
+            .step(3, "Move PostsRead lists into PostReadSets", UserHandler::migratePostsRead);
+
+    // Pool the handler borrows a connection from for each operation.
+    private final ConnectionPool pool;
 
     /**
      * Constructs a UserHandler with the given database connection.
@@ -25,59 +46,131 @@ public class UserHandler {
      * @throws SQLException if a database access error occurs while creating tables
      */
     public UserHandler(Connection connection) throws SQLException {
-        this.connection = connection;
+        this(ConnectionPool.wrap(connection));
+    }
+
+    /**
+     * Constructs a UserHandler that borrows connections from the given pool.
+     * It also creates the necessary database tables if they do not already exist.
+     *
+     * @param pool the connection pool to be used by this handler
+     * @throws SQLException if a database access error occurs while creating tables
+     */
+    public UserHandler(ConnectionPool pool) throws SQLException {
+        this.pool = pool;
         createTables();
     }
 
     /**
-     * Creates the necessary database tables for managing users if they do not already exist.
+     * Brings the Users table up to the current schema version. Nothing is executed
+     * when the database is already current.
      *
      * @throws SQLException if a database access error occurs while creating the table
      */
     private void createTables() throws SQLException {
-        String usersTable = "CREATE TABLE IF NOT EXISTS Users ("
-                + "userName VARCHAR(255) PRIMARY KEY, "
-                + "PostsRead VARCHAR(10000), "
-                + "RepliesRead VARCHAR(10000))";
-        
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(usersTable);
+        try (Connection connection = pool.getConnection()) {
+            MIGRATIONS.migrate(connection);
         }
     }
 
     /**
-     * Adds a post ID to the list of posts read by the user. If the user does not exist, 
-     * a new record is created with the post ID as the initial value. Otherwise, the post ID 
-     * is appended to the existing comma-separated list.
+     * Converts each user's comma-separated PostsRead column into a read set, then empties the column.
+     * Databases whose Users table has no PostsRead column have nothing to convert.
+     */
+    private static void migratePostsRead(Connection connection) throws SQLException {
+        String columnCheck = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_NAME = 'USERS' AND COLUMN_NAME = 'POSTSREAD'";
+        try (PreparedStatement pstmt = connection.prepareStatement(columnCheck);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next() || rs.getInt(1) == 0) {
+                return;
+            }
+        }
+
+        String query = "SELECT userName, PostsRead FROM Users WHERE PostsRead IS NOT NULL";
+        try (PreparedStatement pstmt = connection.prepareStatement(query);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                PostReadSet readSet = new PostReadSet();
+                for (String id : rs.getString("PostsRead").split(",")) {
+                    try {
+                        readSet.add(Integer.parseInt(id.trim()));
+                    } catch (NumberFormatException e) {
+                        System.err.println("Invalid post ID format: " + id);
+                    }
+                }
+                saveReadSet(connection, rs.getString("userName"), readSet);
+            }
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement("UPDATE Users SET PostsRead = NULL")) {
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Marks a post as read by the user. Marking a post that is already read does not write anything,
+     * so the hover tracking in the post list can call this as often as it likes.
      *
      * @param userName The username of the user.
      * @param postId   The ID of the post that has been read.
      */
     public void addPostRead(String userName, int postId) {
-        try {
-            if (!userExists(userName)) {
-                // If the user does not exist, insert a new user record with the initial PostsRead value.
-                String insertSQL = "INSERT INTO Users (userName, PostsRead) VALUES (?, ?)";
-                try (PreparedStatement pstmt = connection.prepareStatement(insertSQL)) {
-                    pstmt.setString(1, userName);
-                    pstmt.setString(2, String.valueOf(postId));
-                    pstmt.executeUpdate();
-                }
-            } else {
-                // If the user exists, update the PostsRead field by appending the new post ID.
-                // If PostsRead is null, it sets it to the new postId; otherwise, it concatenates with a comma.
-                String updateSQL = "UPDATE Users SET PostsRead = "
-                        + "CASE WHEN PostsRead IS NULL THEN ? ELSE CONCAT(PostsRead, ',', ?) END "
-                        + "WHERE userName = ?";
-                try (PreparedStatement pstmt = connection.prepareStatement(updateSQL)) {
-                    pstmt.setString(1, String.valueOf(postId));
-                    pstmt.setString(2, String.valueOf(postId));
-                    pstmt.setString(3, userName);
-                    pstmt.executeUpdate();
+        METRICS.run("addPostRead", () -> {
+            try {
+                // Cheap unlocked check first; almost every hover is on a post that is already read.
+                if (readPostSet(userName).contains(postId)) {
+                    return;
                 }
+                updateReadSet(userName, readSet -> readSet.add(postId));
+            } catch (SQLException e) {
+                System.err.println("Error updating PostsRead: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Marks every existing post as read by the user.
+     *
+     * @param userName The username of the user.
+     * @return true if the read set was saved, false if an error occurred.
+     */
+    public boolean markAllPostsRead(String userName) {
+        return METRICS.time("markAllPostsRead", () -> {
+            try {
+                updateReadSet(userName, readSet -> {
+                    boolean changed = false;
+                    try (Connection connection = pool.getConnection();
+                         PreparedStatement pstmt = connection.prepareStatement("SELECT postId FROM Posts ORDER BY postId");
+                         ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            changed |= readSet.add(rs.getInt("postId"));
+                        }
+                    }
+                    return changed;
+                });
+                return true;
+            } catch (SQLException e) {
+                System.err.println("Error marking all posts read: " + e.getMessage());
+                return false;
             }
-        } catch (SQLException e) {
-            System.err.println("Error updating PostsRead: " + e.getMessage());
+        });
+    }
+
+    /**
+     * Retrieves the set of posts the specified user has read.
+     *
+     * @param userName The username of the user.
+     * @return The user's read set, empty if the user has not read anything.
+     * @throws SQLException if an error occurs during the query.
+     */
+    public PostReadSet getReadPostSet(String userName) throws SQLException {
+        return METRICS.time("getReadPostSet", () -> readPostSet(userName));
+    }
+
+    // Untimed, so getReadPosts and addPostRead count one operation.
+    private PostReadSet readPostSet(String userName) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            return loadReadSet(connection, userName, false);
         }
     }
 
@@ -88,46 +181,67 @@ public class UserHandler {
      * @return A List of Integer post IDs that the user has read.
      */
     public List<Integer> getReadPosts(String userName) {
-        List<Integer> readPosts = new ArrayList<>();
-        String query = "SELECT PostsRead FROM Users WHERE userName = ?";
-        
+        return METRICS.time("getReadPosts", () -> {
+            try {
+                return readPostSet(userName).toList();
+            } catch (SQLException e) {
+                System.err.println("Error retrieving read posts: " + e.getMessage());
+            }
+            return new ArrayList<>();
+        });
+    }
+
+    /**
+     * A change to a user's read set.
+     */
+    @FunctionalInterface
+    private interface ReadSetUpdate {
+        // Returns true if the set changed and needs to be saved.
+        boolean apply(PostReadSet readSet) throws SQLException;
+    }
+
+    /**
+     * Loads the user's read set with a row lock, applies the update and saves the set if it changed,
+     * all in one transaction so concurrent updates for the same user are not lost.
+     */
+    private void updateReadSet(String userName, ReadSetUpdate update) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                PostReadSet readSet = loadReadSet(connection, userName, true);
+                if (update.apply(readSet)) {
+                    saveReadSet(connection, userName, readSet);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static PostReadSet loadReadSet(Connection connection, String userName, boolean forUpdate)
+            throws SQLException {
+        String query = "SELECT readSet FROM PostReadSets WHERE userName = ?" + (forUpdate ? " FOR UPDATE" : "");
         try (PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, userName);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                // Retrieve the comma-separated string of post IDs.
-                String postsRead = rs.getString("PostsRead");
-                if (postsRead != null) {
-                    // Split the string into individual IDs, parse them as integers, and add to the list.
-                    for (String id : postsRead.split(",")) {
-                        try {
-                            readPosts.add(Integer.parseInt(id.trim()));
-                        } catch (NumberFormatException e) {
-                            System.err.println("Invalid post ID format: " + id);
-                        }
-                    }
-                }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return PostReadSet.fromBytes(rs.next() ? rs.getBytes("readSet") : null);
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving read posts: " + e.getMessage());
         }
-        return readPosts;
     }
 
-    /**
-     * Checks if a user exists in the Users table.
-     *
-     * @param userName The username to check.
-     * @return true if the user exists, false otherwise.
-     * @throws SQLException if an error occurs during the query.
-     */
-    private boolean userExists(String userName) throws SQLException {
-        String query = "SELECT 1 FROM Users WHERE userName = ?";
+    private static void saveReadSet(Connection connection, String userName, PostReadSet readSet)
+            throws SQLException {
+        String query = "MERGE INTO PostReadSets (userName, readSet, readCount) KEY (userName) VALUES (?, ?, ?)";
         try (PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, userName);
-            // If the query returns a result, the user exists.
-            return pstmt.executeQuery().next();
+            pstmt.setBytes(2, readSet.toBytes());
+            pstmt.setLong(3, readSet.size());
+            pstmt.executeUpdate();
         }
     }
 }
@@ -0,0 +1,113 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import databasePart1.ConnectionPool;
+import databasePart1.DatabaseHelper;
+import databasePart1.UserIdentityCache;
+
+public class UserIdentityCacheTest {
+
+    private Connection conn;
+    private ConnectionPool pool;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:useridentitytest;DB_CLOSE_DELAY=0");
+        pool = ConnectionPool.wrap(conn);
+        dbHelper = new DatabaseHelper(pool);
+        dbHelper.register(new User("student1", "Password1!", "Student"));
+        dbHelper.register(new User("instructor1", "Password1!", "Instructor"));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testRepeatedLookupsAreServedFromCache() throws SQLException {
+        int id = dbHelper.getUserIdByUsername("student1");
+        long borrows = pool.getBorrowCount();
+        assertEquals(id, dbHelper.getUserIdByUsername("student1"));
+        assertEquals("Student", dbHelper.getUserRole("student1"));
+        assertEquals("Student", dbHelper.getUserRoleById(id));
+        assertTrue(dbHelper.doesUserExist("student1"));
+        assertEquals("Every lookup after the first needs no query", borrows, pool.getBorrowCount());
+
+        UserIdentityCache cache = dbHelper.getIdentityCache();
+        assertEquals(1, cache.getMissCount());
+        assertEquals(4, cache.getHitCount());
+    }
+
+    @Test
+    public void testHelpersOnTheSamePoolShareInvalidations() throws SQLException {
+        DatabaseHelper other = new DatabaseHelper(pool);
+        assertSame(dbHelper.getIdentityCache(), other.getIdentityCache());
+
+        int id = dbHelper.getUserIdByUsername("student1");
+        assertEquals("Student", dbHelper.getUserRoleById(id));
+        assertTrue(other.changeUserRole(id, "Student,Reviewer"));
+        assertEquals("Student,Reviewer", dbHelper.getUserRoleById(id));
+        assertEquals("Student,Reviewer", dbHelper.getUserRole("student1"));
+
+        assertTrue(other.removeUser(id));
+        assertEquals(-1, dbHelper.getUserIdByUsername("student1"));
+        assertEquals("", dbHelper.getUserRoleById(id));
+        assertNull(dbHelper.getUserRole("student1"));
+    }
+
+    @Test
+    public void testRegisteringForgetsUnknownName() throws SQLException {
+        assertFalse(dbHelper.doesUserExist("newcomer"));
+        long borrows = pool.getBorrowCount();
+        assertEquals("Unknown names are remembered too", -1, dbHelper.getUserIdByUsername("newcomer"));
+        assertEquals(borrows, pool.getBorrowCount());
+
+        dbHelper.register(new User("newcomer", "Password1!", "Student"));
+        assertTrue(dbHelper.doesUserExist("newcomer"));
+        assertEquals("Student", dbHelper.getUserRole("newcomer"));
+    }
+
+    @Test
+    public void testCacheStaysWithinCapacity() {
+        UserIdentityCache cache = new UserIdentityCache(3);
+        for (int id = 1; id <= 3; id++) {
+            cache.put(new UserIdentityCache.Identity(id, "user" + id, "Student"), cache.getVersion());
+        }
+        // Reading user1 gives it a second chance, so user2 is the first to go.
+        assertNotNull(cache.getByName("user1"));
+        cache.put(new UserIdentityCache.Identity(4, "user4", "Student"), cache.getVersion());
+
+        assertEquals(3, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.getById(1));
+        assertNull(cache.getByName("user2"));
+        assertNull(cache.getById(2));
+        assertNotNull(cache.getByName("user4"));
+    }
+
+    @Test
+    public void testLoadThatRacedWithAChangeIsNotCached() {
+        UserIdentityCache cache = new UserIdentityCache(10);
+        long version = cache.getVersion();
+        cache.invalidateId(7);
+        cache.put(new UserIdentityCache.Identity(7, "user7", "Student"), version);
+        assertNull(cache.getById(7));
+        assertEquals(0, cache.getSize());
+    }
+}
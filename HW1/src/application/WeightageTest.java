@@ -4,6 +4,8 @@ import static org.junit.Assert.*;
 import org.junit.*;
 import java.sql.*;
 
+import databasePart1.ConnectionPool;
+
 public class WeightageTest {
     private Connection conn;
     private QuestionHandler qHandler;
@@ -138,5 +140,70 @@ public class WeightageTest {
         st.close();
         assertEquals("No weight entry should exist for negative value", 0, count);
     }
-}
 
+    @Test
+    public void testTopReviewsCombineWeightTrustAndFeedback() throws Exception {
+        qHandler.addPost("student1", "Ranking Q", "Ranking body");
+        ResultSet postRs = conn.createStatement().executeQuery("SELECT MAX(postId) AS pid FROM Posts");
+        postRs.next();
+        int postId = postRs.getInt("pid");
+        postRs.close();
+        aHandler.addAnswer("Answer to rank", postId, "student1", false);
+        ResultSet repRs = conn.createStatement().executeQuery("SELECT MAX(replyId) AS rid FROM Replies");
+        repRs.next();
+        int replyId = repRs.getInt("rid");
+        repRs.close();
+        rHandler.addReviewForReply("Review by R1", "reviewer1", replyId);
+        rHandler.addReviewForReply("Review by R2", "reviewer2", replyId);
+        rHandler.addReviewForReply("Review by R3", "reviewer3", replyId);
+        ResultSet ids = conn.createStatement().executeQuery("SELECT reviewId FROM Reviews WHERE reviewerName = 'reviewer3'");
+        ids.next();
+        int r3Review = ids.getInt(1);
+        ids.close();
+        // Equal weights: trust outranks feedback, and feedback outranks no feedback
+        rHandler.setReviewerWeight("student1", "reviewer1", 2);
+        rHandler.setReviewerWeight("student1", "reviewer2", 2);
+        rHandler.setReviewerWeight("student1", "reviewer3", 2);
+        rHandler.addTrustedReviewer("student1", "reviewer2");
+        rHandler.incrementFeedbackCount(r3Review);
+        assertFalse("Weights above the maximum are rejected",
+                rHandler.setReviewerWeight("student1", "reviewer1", ReviewHandler.MAX_WEIGHT + 1));
+
+        ResultSet top = rHandler.getReviewsByReplyIdSortedByWeight(replyId, "student1", 2);
+        assertTrue(top.next());
+        assertEquals("reviewer2", top.getString("reviewerName"));
+        assertEquals(2 * ReviewHandler.WEIGHT_FACTOR + ReviewHandler.TRUST_BONUS, top.getInt("score"));
+        assertTrue(top.next());
+        assertEquals("reviewer3", top.getString("reviewerName"));
+        assertFalse("Only the top two reviews are returned", top.next());
+        top.close();
+    }
+
+    @Test
+    public void testFeedbackNotYetWrittenCountsInTheRanking() throws Exception {
+        // Handlers on a pool buffer the feedback count instead of writing it at once.
+        try (ConnectionPool pool = new ConnectionPool("jdbc:h2:mem:testdb", "", "", 2)) {
+            QuestionHandler pooledQuestions = new QuestionHandler(pool);
+            AnswerHandler pooledAnswers = new AnswerHandler(pool, pooledQuestions);
+            ReviewHandler pooledReviews = new ReviewHandler(pool);
+            pooledQuestions.addPost("student1", "Ranking Q", "Ranking body");
+            pooledAnswers.addAnswer("Answer to rank", 1, "student1", false);
+            pooledReviews.addReviewForReply("Review by R1", "reviewer1", 1);
+            pooledReviews.addReviewForReply("Review by R2", "reviewer2", 1);
+            ResultSet ids = conn.createStatement().executeQuery("SELECT reviewId FROM Reviews WHERE reviewerName = 'reviewer2'");
+            ids.next();
+            int r2Review = ids.getInt(1);
+            ids.close();
+            pooledReviews.incrementFeedbackCount(r2Review);
+            pooledReviews.incrementFeedbackCount(r2Review);
+
+            ResultSet top = pooledReviews.getReviewsByReplyIdSortedByWeight(1, "student1", 1);
+            assertTrue(top.next());
+            assertEquals("reviewer2", top.getString("reviewerName"));
+            assertEquals(2, top.getInt("score"));
+            assertEquals(2, top.getInt("feedbackCount"));
+            assertFalse(top.next());
+            top.close();
+        }
+    }
+}
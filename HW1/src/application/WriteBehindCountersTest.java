@@ -0,0 +1,334 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import databasePart1.ConnectionPool;
+import databasePart1.WriteBehindCounters;
+
+public class WriteBehindCountersTest {
+
+    private static final WriteBehindCounters.Counter HITS =
+            new WriteBehindCounters.Counter("Counted", "id", "hits", "touchedAt");
+    private static final WriteBehindCounters.Counter VISITS = HITS
+            .countedBy("SELECT COUNT(*) FROM Visits V WHERE V.id = Counted.id");
+
+    private static int databases;
+
+    private String url;
+    private Connection keeper;
+
+    @Before
+    public void setUp() throws SQLException {
+        // Each test gets its own database; the keeper connection holds it open after a pool is closed.
+        url = "jdbc:h2:mem:writebehind" + (databases++) + ";DB_CLOSE_DELAY=0";
+        keeper = DriverManager.getConnection(url);
+        try (Statement stmt = keeper.createStatement()) {
+            stmt.execute("CREATE TABLE Counted (id INT PRIMARY KEY, hits INT DEFAULT 0, touchedAt TIMESTAMP)");
+            stmt.execute("INSERT INTO Counted (id) VALUES (1), (2)");
+            stmt.execute("CREATE TABLE Visits (id INT, visitor VARCHAR(20))");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        keeper.close();
+    }
+
+    private int stored(int id) throws SQLException {
+        try (Statement stmt = keeper.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT hits FROM Counted WHERE id = " + id)) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+    private Timestamp touchedAt(int id) throws SQLException {
+        try (Statement stmt = keeper.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT touchedAt FROM Counted WHERE id = " + id)) {
+            assertTrue(rs.next());
+            return rs.getTimestamp(1);
+        }
+    }
+
+    @Test
+    public void testPendingChangesAreVisibleUntilFlushed() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(url, "", "", 2);
+             WriteBehindCounters counters = new WriteBehindCounters(pool, 60_000, 1_000)) {
+            counters.add(HITS, 1, 1);
+            counters.add(HITS, 1, 1);
+            counters.add(HITS, 2, -1);
+
+            assertEquals("Nothing is written before the flush", 0, stored(1));
+            try (WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                assertEquals(2, pending.pending(HITS, 1));
+                assertEquals(-1, pending.pending(HITS, 2));
+            }
+            assertEquals(3, counters.getPendingCount());
+
+            assertEquals(2, counters.flush());
+            assertEquals(2, stored(1));
+            assertEquals(-1, stored(2));
+            assertNotNull("Incrementing records the activity time", touchedAt(1));
+            assertNull("Decrementing leaves the activity time alone", touchedAt(2));
+            try (WriteBehindCounters.Snapshot pending = counters.snapshot()) {
+                assertEquals(0, pending.pending(HITS, 1));
+            }
+            assertEquals(0, counters.getPendingCount());
+            assertEquals("A flush with nothing pending writes nothing", 0, counters.flush());
+        }
+    }
+
+    @Test
+    public void testConcurrentAddsAreNotLost() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(url, "", "", 4);
+             WriteBehindCounters counters = new WriteBehindCounters(pool, 60_000, 1_000_000)) {
+            int threads = 8;
+            int addsPerThread = 2_000;
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> adders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread adder = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < addsPerThread; i++) {
+                        counters.add(HITS, 1, 1);
+                    }
+                });
+                adder.start();
+                adders.add(adder);
+            }
+            // Flush while the adders are running, so changes arrive between taking and subtracting a sum.
+            AtomicBoolean done = new AtomicBoolean();
+            List<Throwable> errors = new ArrayList<>();
+            Thread flusher = new Thread(() -> {
+                while (!done.get()) {
+                    try {
+                        counters.flush();
+                    } catch (SQLException e) {
+                        errors.add(e);
+                    }
+                }
+            });
+            flusher.start();
+            start.countDown();
+            for (Thread adder : adders) {
+                adder.join();
+            }
+            done.set(true);
+            flusher.join();
+            counters.flush();
+
+            assertTrue(errors.isEmpty());
+            assertEquals(threads * addsPerThread, stored(1));
+            assertEquals(0, counters.getPendingCount());
+        }
+    }
+
+    @Test
+    public void testThresholdStartsFlush() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(url, "", "", 2);
+             WriteBehindCounters counters = new WriteBehindCounters(pool, 60_000, 10)) {
+            for (int i = 0; i < 10; i++) {
+                counters.add(HITS, 1, 1);
+            }
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (stored(1) < 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(10, stored(1));
+        }
+    }
+
+    @Test
+    public void testClosingThePoolWritesPendingChanges() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(url, "", "", 2);
+        WriteBehindCounters counters = new WriteBehindCounters(pool, 60_000, 1_000);
+        counters.add(HITS, 2, 5);
+        pool.close();
+        assertEquals(5, stored(2));
+    }
+
+    @Test
+    public void testFlushDoesNotJoinTheCallersTransaction() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(url, "", "", 2);
+             WriteBehindCounters counters = new WriteBehindCounters(pool, 60_000, 1_000)) {
+            counters.add(HITS, 1, 3);
+            try (Connection connection = pool.getConnection()) {
+                connection.setAutoCommit(false);
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.executeUpdate("INSERT INTO Counted (id) VALUES (3)");
+                }
+                assertEquals(1, counters.flush());
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            assertEquals("The flush committed on its own", 3, stored(1));
+            assertEquals(0, counters.getPendingCount());
+        }
+    }
+
+    @Test
+    public void testDetachedRowsIncludePendingChanges() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(url, "", "", 2);
+             WriteBehindCounters counters = new WriteBehindCounters(pool, 60_000, 1_000)) {
+            counters.add(HITS, 2, 4);
+            try (Connection connection = pool.getConnection();
+                 Statement stmt = connection.createStatement();
+                 WriteBehindCounters.Snapshot pending = counters.snapshot();
+                 ResultSet rs = pending.detach(stmt.executeQuery("SELECT * FROM Counted ORDER BY id"), HITS)) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt("hits"));
+                assertTrue(rs.next());
+                assertEquals(4, rs.getInt("hits"));
+                assertFalse(rs.next());
+            }
+            assertEquals("Reading does not write", 0, stored(2));
+        }
+    }
+
+    @Test
+    public void testReconcileRecountsOnlyAfterAnUncleanShutdown() throws SQLException {
+        try (Statement stmt = keeper.createStatement()) {
+            stmt.execute("INSERT INTO Visits VALUES (1, 'a'), (1, 'b'), (2, 'c')");
+        }
+        try (ConnectionPool pool = new ConnectionPool(url, "", "", 2)) {
+            WriteBehindCounters counters = WriteBehindCounters.forPool(pool);
+            assertTrue("A counter never closed cleanly is recounted", counters.reconcile(VISITS));
+            assertFalse("It is only reconciled once", counters.reconcile(VISITS));
+            assertEquals(2, stored(1));
+            try (Statement stmt = keeper.createStatement()) {
+                stmt.execute("INSERT INTO Visits VALUES (1, 'd')");
+            }
+            counters.add(VISITS, 1, 1);
+        }
+        assertEquals(3, stored(1));
+
+        // What a killed process leaves behind: the last change never written and its owner row not refreshed.
+        try (Statement stmt = keeper.createStatement()) {
+            stmt.execute("INSERT INTO Visits VALUES (2, 'e')");
+            stmt.execute("INSERT INTO CounterOwners VALUES ('Counted.hits', 'killed', TIMESTAMP '2000-01-01 00:00:00')");
+        }
+        try (ConnectionPool pool = new ConnectionPool(url, "", "", 2)) {
+            assertTrue(WriteBehindCounters.forPool(pool).reconcile(VISITS));
+            assertEquals(2, stored(2));
+        }
+        try (ConnectionPool pool = new ConnectionPool(url, "", "", 2)) {
+            assertFalse("A clean shutdown needs no recount", WriteBehindCounters.forPool(pool).reconcile(VISITS));
+        }
+        assertEquals("Owners that stopped cleanly or were recounted leave only the marker", 1, owners());
+    }
+
+    @Test
+    public void testReconcileLeavesCountersOfRunningProcessesAlone() throws SQLException {
+        // Two pools on one database stand for two processes sharing the database file.
+        try (ConnectionPool first = new ConnectionPool(url, "", "", 2)) {
+            WriteBehindCounters running = new WriteBehindCounters(first, 60000, 1000);
+            assertTrue(running.reconcile(VISITS));
+            try (Statement stmt = keeper.createStatement()) {
+                stmt.execute("INSERT INTO Visits VALUES (1, 'a')");
+            }
+            running.add(VISITS, 1, 1);
+
+            // An earlier process was killed, but the running one still holds a change the rows include.
+            try (Statement stmt = keeper.createStatement()) {
+                stmt.execute("INSERT INTO CounterOwners VALUES ('Counted.hits', 'killed', TIMESTAMP '2000-01-01 00:00:00')");
+            }
+            try (ConnectionPool second = new ConnectionPool(url, "", "", 2)) {
+                assertFalse("No recount while another owner runs", WriteBehindCounters.forPool(second).reconcile(VISITS));
+            }
+            assertEquals(0, stored(1));
+            assertEquals("A clean shutdown only removes its own owner row", 3, owners());
+        }
+        assertEquals("The running process wrote its change once", 1, stored(1));
+
+        try (ConnectionPool pool = new ConnectionPool(url, "", "", 2)) {
+            assertTrue("The killed owner is recounted once nobody runs", WriteBehindCounters.forPool(pool).reconcile(VISITS));
+        }
+        assertEquals(1, stored(1));
+        assertEquals(1, owners());
+    }
+
+    private int owners() throws SQLException {
+        try (Statement stmt = keeper.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM CounterOwners")) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testSingleConnectionPoolWritesAtOnce() throws SQLException {
+        WriteBehindCounters counters = new WriteBehindCounters(ConnectionPool.wrap(keeper));
+        counters.add(HITS, 1, 4);
+        assertEquals(4, stored(1));
+        assertEquals(0, counters.getPendingCount());
+    }
+
+    @Test
+    public void testLikesFromManyThreadsAreCounted() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(url, "", "", 8)) {
+            QuestionHandler qHandler = new QuestionHandler(pool);
+            AnswerHandler aHandler = new AnswerHandler(pool, qHandler);
+            qHandler.addPost("student1", "Busy post", "Everyone likes the answer");
+            aHandler.addAnswer("The answer", 1, "student2", false);
+            int replyId;
+            try (ResultSet rs = aHandler.getRepliesByPostId(1, "student1")) {
+                assertTrue(rs.next());
+                replyId = rs.getInt("replyId");
+            }
+
+            int threads = 8;
+            int likesPerThread = 25;
+            List<Thread> likers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                Thread liker = new Thread(() -> {
+                    for (int i = 0; i < likesPerThread; i++) {
+                        aHandler.likeReply(replyId, "user" + thread + "_" + i);
+                    }
+                });
+                liker.start();
+                likers.add(liker);
+            }
+            for (Thread liker : likers) {
+                liker.join();
+            }
+
+            assertEquals("Every like is visible before it is written", threads * likesPerThread,
+                    aHandler.getNumLikes(replyId));
+            try (ResultSet rs = aHandler.getRepliesByPostId(1, "student1")) {
+                assertTrue(rs.next());
+                assertEquals(threads * likesPerThread, rs.getInt("likes"));
+            }
+            assertEquals(1, qHandler.getNumReplies(1));
+            aHandler.flushCounters();
+            try (Statement stmt = keeper.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT likes FROM Replies WHERE replyId = " + replyId)) {
+                assertTrue(rs.next());
+                assertEquals(threads * likesPerThread, rs.getInt(1));
+            }
+        }
+    }
+}
@@ -69,7 +69,7 @@ public class databaseCheckTestingAutomation {
 		
 		DatabaseHelper databaseHelper = new DatabaseHelper();
 		try {
-			databaseHelper.connectToDatabase();
+			databaseHelper.connectToDatabase().close();
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
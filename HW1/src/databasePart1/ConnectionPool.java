@@ -0,0 +1,627 @@
+package databasePart1;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
+
+/**
+ * The ConnectionPool class hands out JDBC connections to the DatabaseHelper and the handler classes.
+ * A connection is borrowed with {@link #getConnection()} and given back by calling {@code close()} on it,
+ * so callers can simply use try-with-resources. Idle connections are health checked before they are
+ * handed out again and broken ones are replaced.
+ *
+ * <p>A thread that borrows while it already holds a connection gets the same physical connection back,
+ * so nested handler calls join the caller's transaction instead of waiting for a second connection.
+ * Work that must not join it borrows with {@link #getSeparateConnection()}.</p>
+ *
+ * <p>Each physical connection has its own {@link StatementCache}, so {@code prepareStatement} calls
+ * with SQL that was already prepared on that connection reuse the existing statement.</p>
+ *
+ * <p>When a {@link StatementProfiler} is set, every statement created through the pool's connections
+ * is timed by it. The pool also counts, per thread, the statements created and the SQL errors raised
+ * through it, which lets callers tell how many queries an operation ran and whether any of them failed.</p>
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /** Number of physical connections used when no size is configured. */
+    public static final int DEFAULT_MAX_SIZE = 8;
+
+    /** Number of prepared statements cached per connection when no size is configured. */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    /** Seconds given to {@link Connection#isValid(int)} when checking an idle connection. */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /** Milliseconds a caller waits for a free connection before giving up. */
+    private static final long BORROW_TIMEOUT_MILLIS = 10_000;
+
+    private static RowSetFactory rowSetFactory;
+
+    // Statements each thread has prepared or created, and SQL errors it has run into, through any pool.
+    private static final ThreadLocal<long[]> threadCounts = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final int statementCacheSize;
+
+    // Set only for pools wrapping a single connection owned by the caller.
+    private final Connection sharedConnection;
+
+    private final LinkedBlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+    private final Set<Connection> open = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final ThreadLocal<Lease> currentLease = new ThreadLocal<>();
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, StatementCache.Stats> statementStats = new ConcurrentHashMap<>();
+    private final List<Runnable> closeHooks = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong discardedCount = new AtomicLong();
+
+    private volatile StatementProfiler profiler;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a pool that opens up to {@code maxSize} connections to the given database.
+     * Connections are opened lazily, the first time they are needed.
+     *
+     * @param url      the JDBC URL of the database
+     * @param user     the database user
+     * @param password the database password
+     * @param maxSize  the maximum number of physical connections
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize) {
+        this(url, user, password, maxSize, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a pool that opens up to {@code maxSize} connections to the given database
+     * and caches up to {@code statementCacheSize} prepared statements on each of them.
+     *
+     * @param url                the JDBC URL of the database
+     * @param user               the database user
+     * @param password           the database password
+     * @param maxSize            the maximum number of physical connections
+     * @param statementCacheSize the number of prepared statements kept per connection, 0 to disable caching
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Statement cache size cannot be negative");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.statementCacheSize = statementCacheSize;
+        this.sharedConnection = null;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    private ConnectionPool(Connection connection) {
+        this.url = null;
+        this.user = null;
+        this.password = null;
+        this.maxSize = 1;
+        this.statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+        this.sharedConnection = connection;
+        this.permits = null;
+    }
+
+    /**
+     * Wraps a single connection that is owned by the caller, e.g. an in-memory test database.
+     * Every borrow returns that connection, and closing the pool leaves it open.
+     *
+     * @param connection the connection to hand out
+     * @return a pool backed by the given connection
+     */
+    public static ConnectionPool wrap(Connection connection) {
+        if (connection == null) {
+            throw new IllegalArgumentException("Connection cannot be null");
+        }
+        return new ConnectionPool(connection);
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing the returned connection gives it back.
+     *
+     * @return a connection that is ready to use
+     * @throws SQLException if the pool is closed, no connection frees up in time, or the database cannot be reached
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw (SQLException) countError(new SQLException("Connection pool is closed"));
+        }
+        borrowCount.incrementAndGet();
+
+        Lease lease = currentLease.get();
+        if (lease == null) {
+            Connection physical;
+            try {
+                physical = sharedConnection != null ? sharedConnection : acquire();
+            } catch (SQLException e) {
+                throw (SQLException) countError(e);
+            }
+            lease = new Lease(physical, statementCacheFor(physical));
+            currentLease.set(lease);
+        }
+        lease.depth++;
+        return handleFor(lease);
+    }
+
+    /**
+     * Borrows a connection of its own even when the calling thread already holds one, so that what is
+     * done on it commits or rolls back apart from the caller's transaction. Nested borrows on the calling
+     * thread still get the connection it held before.
+     *
+     * @return a connection that is ready to use
+     * @throws SQLException if the pool is closed or wraps a single connection, no connection frees up in
+     *                      time, or the database cannot be reached
+     */
+    public Connection getSeparateConnection() throws SQLException {
+        if (closed) {
+            throw (SQLException) countError(new SQLException("Connection pool is closed"));
+        }
+        if (sharedConnection != null) {
+            throw (SQLException) countError(new SQLException("A single-connection pool has no separate connection"));
+        }
+        borrowCount.incrementAndGet();
+
+        Connection physical;
+        try {
+            physical = acquire();
+        } catch (SQLException e) {
+            throw (SQLException) countError(e);
+        }
+        Lease lease = new Lease(physical, statementCacheFor(physical));
+        lease.depth++;
+        return handleFor(lease);
+    }
+
+    /**
+     * Takes a healthy idle connection, or opens a new one if none is idle.
+     */
+    private Connection acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            Connection physical;
+            while ((physical = idle.pollFirst()) != null) {
+                if (isHealthy(physical)) {
+                    return physical;
+                }
+                discard(physical);
+            }
+            physical = DriverManager.getConnection(url, user, password);
+            open.add(physical);
+            createdCount.incrementAndGet();
+            return physical;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private StatementCache statementCacheFor(Connection physical) {
+        if (statementCacheSize == 0) {
+            return null;
+        }
+        return statementCaches.computeIfAbsent(physical,
+                c -> new StatementCache(c, statementCacheSize, statementStats));
+    }
+
+    private boolean isHealthy(Connection physical) {
+        try {
+            return !physical.isClosed() && physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Called when the outermost handle of a lease is closed.
+     */
+    private void release(Lease lease) {
+        // A separate connection was never the thread's current lease.
+        if (currentLease.get() == lease) {
+            currentLease.remove();
+        }
+        if (sharedConnection != null) {
+            return;
+        }
+
+        Connection physical = lease.physical;
+        boolean reusable = !closed && !lease.broken;
+        if (reusable) {
+            try {
+                // Never hand an open transaction to the next borrower.
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                reusable = !physical.isClosed();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+
+        if (reusable) {
+            idle.offerFirst(physical);
+        } else {
+            discard(physical);
+        }
+        permits.release();
+    }
+
+    private void discard(Connection physical) {
+        open.remove(physical);
+        StatementCache cache = statementCaches.remove(physical);
+        if (cache != null) {
+            cache.closeAll();
+        }
+        discardedCount.incrementAndGet();
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    private Connection handleFor(Lease lease) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new Handle(lease));
+    }
+
+    /**
+     * Registers a task that runs when the pool is closed, before any connection is closed,
+     * so it can still write to the database.
+     *
+     * @param hook the task to run
+     */
+    public void addCloseHook(Runnable hook) {
+        closeHooks.add(hook);
+    }
+
+    /**
+     * Closes every physical connection. Connections still borrowed are closed as well.
+     * Tasks registered with {@link #addCloseHook(Runnable)} run first.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        for (Runnable hook : closeHooks) {
+            try {
+                hook.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        closed = true;
+        if (sharedConnection != null) {
+            return;
+        }
+        Connection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            discard(physical);
+        }
+        for (Connection leased : open) {
+            discard(leased);
+        }
+    }
+
+    /**
+     * Sets the profiler that times the statements created from now on.
+     *
+     * @param profiler the profiler, or null to stop profiling new statements
+     */
+    public void setProfiler(StatementProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Gets the profiler that times the pool's statements.
+     *
+     * @return the profiler, or null if statements are not profiled
+     */
+    public StatementProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Checks whether the pool has been closed.
+     *
+     * @return true if {@link #close()} has been called
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Checks whether the pool wraps a single caller-owned connection, which every thread shares.
+     *
+     * @return true if the pool was created by {@link #wrap(Connection)}
+     */
+    public boolean isSingleConnection() {
+        return sharedConnection != null;
+    }
+
+    /**
+     * Gets the maximum number of physical connections.
+     * @return the pool size
+     */
+    public int getMaxSize() { return maxSize; }
+
+    /**
+     * Gets the number of physical connections currently open.
+     * @return the open connection count
+     */
+    public int getOpenCount() { return sharedConnection != null ? 1 : open.size(); }
+
+    /**
+     * Gets the number of open connections waiting to be borrowed.
+     * @return the idle connection count
+     */
+    public int getIdleCount() { return idle.size(); }
+
+    /**
+     * Gets the total number of borrows since the pool was created.
+     * @return the borrow count
+     */
+    public long getBorrowCount() { return borrowCount.get(); }
+
+    /**
+     * Gets the number of physical connections opened since the pool was created.
+     * @return the created connection count
+     */
+    public long getCreatedCount() { return createdCount.get(); }
+
+    /**
+     * Gets the number of physical connections closed because they failed a health check or were broken.
+     * @return the discarded connection count
+     */
+    public long getDiscardedCount() { return discardedCount.get(); }
+
+    /**
+     * Gets the number of prepared statements each connection keeps cached.
+     * @return the statement cache size, 0 if caching is disabled
+     */
+    public int getStatementCacheSize() { return statementCacheSize; }
+
+    /**
+     * Gets the statement cache hit, miss and eviction counters for every SQL string prepared
+     * through this pool, most used first.
+     *
+     * @return the counters, one entry per SQL string
+     */
+    public List<StatementCache.Stats> getStatementStats() {
+        return StatementCache.sorted(statementStats);
+    }
+
+    /**
+     * Gets the number of statements the calling thread has prepared or created through any pool, counting
+     * reused cached statements too. The difference between two calls is the number of queries an operation ran.
+     *
+     * @return the calling thread's statement count
+     */
+    public static long getThreadStatementCount() {
+        return threadCounts.get()[0];
+    }
+
+    /**
+     * Gets the number of SQL errors the calling thread has run into through any pool, whether or not the
+     * caller went on to catch them. The difference between two calls tells whether an operation failed
+     * even if it only reported the error and returned a default value.
+     *
+     * @return the calling thread's SQL error count
+     */
+    public static long getThreadErrorCount() {
+        return threadCounts.get()[1];
+    }
+
+    /**
+     * Counts an error thrown by a pooled connection or one of its statements against the calling thread.
+     *
+     * @param error the error
+     * @return the same error, to be rethrown
+     */
+    static Throwable countError(Throwable error) {
+        if (error instanceof SQLException) {
+            threadCounts.get()[1]++;
+        }
+        return error;
+    }
+
+    /**
+     * Copies a result set into memory so it stays readable after its connection is returned to the pool.
+     * The given result set is closed.
+     *
+     * @param rs the result set to copy
+     * @return a disconnected copy of the rows
+     * @throws SQLException if the rows cannot be read
+     */
+    public static ResultSet detach(ResultSet rs) throws SQLException {
+        try (ResultSet source = rs) {
+            CachedRowSet copy = rowSetFactory().createCachedRowSet();
+            copy.populate(source);
+            return copy;
+        }
+    }
+
+    private static synchronized RowSetFactory rowSetFactory() throws SQLException {
+        if (rowSetFactory == null) {
+            rowSetFactory = RowSetProvider.newFactory();
+        }
+        return rowSetFactory;
+    }
+
+    /**
+     * One thread's hold on a physical connection, shared by nested borrows.
+     */
+    private static class Lease {
+        private final Connection physical;
+        private final StatementCache statements;
+        private int depth;
+        private boolean broken;
+
+        Lease(Connection physical, StatementCache statements) {
+            this.physical = physical;
+            this.statements = statements;
+        }
+    }
+
+    /**
+     * The connection handed to callers. Closing it gives the physical connection back to the pool.
+     */
+    private class Handle implements InvocationHandler {
+        private final Lease lease;
+        private boolean handleClosed;
+
+        Handle(Lease lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        if (--lease.depth == 0) {
+                            release(lease);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return handleClosed || lease.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + lease.physical + "]";
+                default:
+                    break;
+            }
+            if (handleClosed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            String name = method.getName();
+            if (name.equals("prepareStatement") || name.equals("createStatement") || name.equals("prepareCall")) {
+                threadCounts.get()[0]++;
+            }
+            try {
+                Object result = null;
+                if (lease.statements != null && method.getName().equals("prepareStatement")) {
+                    if (args.length == 1) {
+                        result = lease.statements.prepare((Connection) proxy, (String) args[0]);
+                    } else if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                        result = lease.statements.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+                    }
+                }
+                if (result == null) {
+                    result = method.invoke(lease.physical, args);
+                }
+                if (result instanceof Statement && !StatementCache.isCached((Statement) result)) {
+                    // Cached statements count their own errors; count those of the others here.
+                    result = ErrorCounter.wrap((Statement) result);
+                }
+                StatementProfiler current = profiler;
+                if (current != null && result instanceof Statement) {
+                    // createStatement has no SQL yet; prepareStatement and prepareCall take it first.
+                    String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                    return current.wrap((Statement) result, sql);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw checkBroken(e.getCause());
+            } catch (SQLException e) {
+                throw checkBroken(e);
+            }
+        }
+
+        private Throwable checkBroken(Throwable cause) {
+            countError(cause);
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                // SQLState class 08 means the connection itself failed.
+                if (state != null && state.startsWith("08")) {
+                    lease.broken = true;
+                }
+            }
+            return cause;
+        }
+    }
+
+    /**
+     * Wraps a statement that is not cached so its SQL errors are counted against the calling thread.
+     */
+    private static class ErrorCounter implements InvocationHandler {
+        private final Statement statement;
+
+        private ErrorCounter(Statement statement) {
+            this.statement = statement;
+        }
+
+        static Statement wrap(Statement statement) {
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return (Statement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { type }, new ErrorCounter(statement));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw countError(e.getCause());
+            }
+        }
+    }
+}
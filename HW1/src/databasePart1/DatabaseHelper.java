@@ -9,10 +9,21 @@ import java.util.UUID;
 
 import javafx.scene.control.TextArea;
 import javafx.util.Pair;
+import application.Notification;
+import application.ReviewerProfile;
 import application.User;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.Random;
 import java.util.Random.*;
 
@@ -23,6 +34,9 @@ import java.util.Random.*;
  * performing operations such as user registration, login validation, and handling invitation codes.
  */
 public class DatabaseHelper {
+    // Call counts and latencies of the public methods, published over JMX.
+    private static final OperationMetrics METRICS = OperationMetrics.forComponent("DatabaseHelper");
+
 
 	// JDBC driver name and database URL 
 	static final String JDBC_DRIVER = "org.h2.Driver";   
@@ -32,226 +46,463 @@ public class DatabaseHelper {
 	static final String USER = "sa"; 
 	static final String PASS = ""; 
 
-	private Connection connection = null;
-	private Statement statement = null; 
-	//	PreparedStatement pstmt
+	// Pool shared by every DatabaseHelper created with the default constructor.
+	private static ConnectionPool sharedPool;
 
-	public Connection connectToDatabase() throws SQLException {
-		try {
-			Class.forName(JDBC_DRIVER); // Load the JDBC driver
+	// Pool supplied by the caller; null when the shared pool is used.
+	private final ConnectionPool pool;
+
+	// Reviewer profiles by student username. Dropped whenever a rating or trust flag of the student changes.
+	private final ConcurrentMap<String, ReviewerProfile> reviewerProfiles = new ConcurrentHashMap<>();
+
+	// Bumped on every profile invalidation, so a load that raced with a write does not cache stale data.
+	private final AtomicLong reviewerProfileVersion = new AtomicLong();
+
+	// User identities by pool, so every DatabaseHelper on the same database sees the same invalidations.
+	private static final Map<ConnectionPool, UserIdentityCache> identityCaches =
+			Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * Creates a DatabaseHelper backed by the shared connection pool for the application database.
+	 * The pool is opened the first time a connection is needed.
+	 */
+	public DatabaseHelper() {
+		this.pool = null;
+	}
+
+	/**
+	 * Creates a DatabaseHelper that borrows its connections from the given pool,
+	 * e.g. one wrapping an in-memory test database.
+	 *
+	 * @param pool the pool to borrow connections from
+	 * @throws SQLException if the tables cannot be created
+	 */
+	public DatabaseHelper(ConnectionPool pool) throws SQLException {
+		this.pool = pool;
+		try (Connection conn = pool.getConnection()) {
+			createTables(conn);
+		}
+	}
+
+	/**
+	 * Returns the connection pool used by this helper, opening the shared pool if needed.
+	 * Handlers should be constructed with this pool so they share its connections.
+	 *
+	 * @return the connection pool
+	 * @throws SQLException if the database cannot be reached
+	 */
+	public ConnectionPool getConnectionPool() throws SQLException {
+		return pool != null ? pool : openSharedPool();
+	}
+
+	private static synchronized ConnectionPool openSharedPool() throws SQLException {
+		if (sharedPool == null || sharedPool.isClosed()) {
+			try {
+				Class.forName(JDBC_DRIVER); // Load the JDBC driver
+			} catch (ClassNotFoundException e) {
+				System.err.println("JDBC Driver not found: " + e.getMessage());
+			}
 			System.out.println("Connecting to database...");
-			connection = DriverManager.getConnection(DB_URL, USER, PASS);
-			statement = connection.createStatement(); 
-//			 You can use this command to clear the database and restart from fresh.
-//			statement.execute("DROP ALL OBJECTS");
-
-			createTables();  // Create the necessary tables if they don't exist
-		} catch (ClassNotFoundException e) {
-			System.err.println("JDBC Driver not found: " + e.getMessage());
+			int poolSize = Integer.getInteger("cse360.db.poolSize", ConnectionPool.DEFAULT_MAX_SIZE);
+			int statementCacheSize = Integer.getInteger("cse360.db.statementCacheSize",
+					ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE);
+			ConnectionPool created = new ConnectionPool(DB_URL, USER, PASS, poolSize, statementCacheSize);
+			long slowQueryMillis = Long.getLong("cse360.db.slowQueryMillis", -1);
+			if (slowQueryMillis >= 0) {
+				// Profile every statement; the costliest are printed when the pool closes.
+				StatementProfiler profiler = new StatementProfiler(slowQueryMillis);
+				created.setProfiler(profiler);
+				created.addCloseHook(() -> System.out.print(profiler.report(20)));
+			}
+			try (Connection conn = created.getConnection()) {
+//				 You can use this command to clear the database and restart from fresh.
+//				conn.createStatement().execute("DROP ALL OBJECTS");
+
+				createTables(conn);  // Create the necessary tables if they don't exist
+			} catch (SQLException e) {
+				created.close();
+				throw e;
+			}
+			sharedPool = created;
 		}
-		return connection;
-	}
-
-	private void createTables() throws SQLException {
-		String userTable = "CREATE TABLE IF NOT EXISTS cse360users ("
-				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
-				+ "userName VARCHAR(255) UNIQUE, "
-				+ "password VARCHAR(255), "
-				+ "role VARCHAR(200), "
-				+ "notifications VARCHAR(10000), "
-				+ "forgotPassword BOOLEAN DEFAULT FALSE)";
-		statement.execute(userTable);
-		
-		// Create the invitation codes table
-	    String invitationCodesTable = "CREATE TABLE IF NOT EXISTS InvitationCodes ("
-	            + "code VARCHAR(10) PRIMARY KEY, "
-	    		+ "role VARCHAR(200), "
-	            + "isUsed BOOLEAN DEFAULT FALSE)";
-	    statement.execute(invitationCodesTable);
-	    
-	    String reviewTable = "CREATE TABLE IF NOT EXISTS reviewer_ratings ("
-	            + "id INT AUTO_INCREMENT PRIMARY KEY, "
-	            + "reviewer_username VARCHAR(255), "
-	            + "rating INT, "
-	            + "student_username VARCHAR(255), "
-	            + "trusted BOOLEAN DEFAULT FALSE, "
-	            + "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
-	    statement.execute(reviewTable);
+		return sharedPool;
+	}
 
+	// Borrows a connection from the pool; closing it returns it.
+	private Connection getConnection() throws SQLException {
+		return getConnectionPool().getConnection();
 	}
 
+	/**
+	 * Returns the cache of user ids, usernames and roles shared by every DatabaseHelper on this
+	 * helper's pool. Its hit and miss counters show how many lookups it saves.
+	 *
+	 * @return the identity cache
+	 * @throws SQLException if the database cannot be reached
+	 */
+	public UserIdentityCache getIdentityCache() throws SQLException {
+		return identityCaches.computeIfAbsent(getConnectionPool(), p ->
+				new UserIdentityCache(Integer.getInteger("cse360.db.identityCacheSize",
+						UserIdentityCache.DEFAULT_CAPACITY)));
+	}
 
-	// Check if the database is empty
-	public boolean isDatabaseEmpty() throws SQLException {
-		String query = "SELECT COUNT(*) AS count FROM cse360users";
-		ResultSet resultSet = statement.executeQuery(query);
-		if (resultSet.next()) {
-			return resultSet.getInt("count") == 0;
+	// Looks up a user by name, reading through the identity cache.
+	private UserIdentityCache.Identity findUserByName(String userName) throws SQLException {
+		UserIdentityCache cache = getIdentityCache();
+		UserIdentityCache.Identity cached = cache.getByName(userName);
+		if (cached != null) {
+			return cached;
+		}
+		if (userName == null) {
+			return UserIdentityCache.Identity.missingName(null);
 		}
-		return true;
+		long version = cache.getVersion();
+		UserIdentityCache.Identity loaded = UserIdentityCache.Identity.missingName(userName);
+		String query = "SELECT id, userName, role FROM cse360users WHERE userName = ?";
+		try (Connection conn = getConnection();
+		     PreparedStatement pstmt = conn.prepareStatement(query)) {
+			pstmt.setString(1, userName);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				if (rs.next()) {
+					loaded = new UserIdentityCache.Identity(rs.getInt("id"), rs.getString("userName"),
+							rs.getString("role"));
+				}
+			}
+		}
+		cache.put(loaded, version);
+		return loaded;
 	}
 
-	// Registers a new user in the database.
-	public void register(User user) throws SQLException {
-	    String insertUser = "INSERT INTO cse360users (userName, password, role, notifications) VALUES (?, ?, ?, ?)";
-	    try (PreparedStatement pstmt = connection.prepareStatement(insertUser)) {
-	        pstmt.setString(1, user.getUserName());
-	        pstmt.setString(2, user.getPassword());
-	        pstmt.setString(3, user.getRole());
+	// Looks up a user by id, reading through the identity cache.
+	private UserIdentityCache.Identity findUserById(int userId) throws SQLException {
+		UserIdentityCache cache = getIdentityCache();
+		UserIdentityCache.Identity cached = cache.getById(userId);
+		if (cached != null) {
+			return cached;
+		}
+		long version = cache.getVersion();
+		UserIdentityCache.Identity loaded = UserIdentityCache.Identity.missingId(userId);
+		String query = "SELECT id, userName, role FROM cse360users WHERE id = ?";
+		try (Connection conn = getConnection();
+		     PreparedStatement pstmt = conn.prepareStatement(query)) {
+			pstmt.setInt(1, userId);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				if (rs.next()) {
+					loaded = new UserIdentityCache.Identity(rs.getInt("id"), rs.getString("userName"),
+							rs.getString("role"));
+				}
+			}
+		}
+		cache.put(loaded, version);
+		return loaded;
+	}
 
-	        // Check if notifications is null and replace it with an empty string
-	        String notifications = user.getNotifications();
-	        pstmt.setString(4, notifications != null ? notifications : "");
+	/**
+	 * Borrows a connection from the pool, opening the pool on first use.
+	 * The caller owns the returned connection and must close it to give it back.
+	 *
+	 * @return a pooled connection
+	 * @throws SQLException if the database cannot be reached
+	 */
+	public Connection connectToDatabase() throws SQLException {
+		return getConnection();
+	}
 
-	        pstmt.executeUpdate();
-	    }
+	// Schema for the users, invitation codes and reviewer ratings tables.
+	private static final SchemaMigrator MIGRATIONS = new SchemaMigrator("core")
+			.step(1, "Create user, invitation code and reviewer rating tables",
+					"CREATE TABLE IF NOT EXISTS cse360users ("
+					+ "id INT AUTO_INCREMENT PRIMARY KEY, "
+					+ "userName VARCHAR(255) UNIQUE, "
+					+ "password VARCHAR(255), "
+					+ "role VARCHAR(200), "
+					+ "notifications VARCHAR(10000), "
+					+ "forgotPassword BOOLEAN DEFAULT FALSE)",
+					"CREATE TABLE IF NOT EXISTS InvitationCodes ("
+					+ "code VARCHAR(10) PRIMARY KEY, "
+					+ "role VARCHAR(200), "
+					+ "isUsed BOOLEAN DEFAULT FALSE)",
+					"CREATE TABLE IF NOT EXISTS reviewer_ratings ("
+					+ "id INT AUTO_INCREMENT PRIMARY KEY, "
+					+ "reviewer_username VARCHAR(255), "
+					+ "rating INT, "
+					+ "student_username VARCHAR(255), "
+					+ "trusted BOOLEAN DEFAULT FALSE, "
+					+ "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP)")
+			.step(2, "One reviewer rating per reviewer and student",
+					// Keep the newest rating of each pair, but don't lose a trusted flag set on an older row.
+					"UPDATE reviewer_ratings r SET trusted = TRUE WHERE EXISTS ("
+					+ "SELECT 1 FROM reviewer_ratings o WHERE o.reviewer_username = r.reviewer_username "
+					+ "AND o.student_username = r.student_username AND o.trusted = TRUE)",
+					"DELETE FROM reviewer_ratings r WHERE EXISTS ("
+					+ "SELECT 1 FROM reviewer_ratings n WHERE n.reviewer_username = r.reviewer_username "
+					+ "AND n.student_username = r.student_username AND n.id > r.id)",
+					"ALTER TABLE reviewer_ratings ADD CONSTRAINT IF NOT EXISTS uq_reviewer_ratings_pair "
+					+ "UNIQUE (reviewer_username, student_username)",
+					"CREATE INDEX IF NOT EXISTS idx_reviewer_ratings_student ON reviewer_ratings (student_username, trusted)")
+			.step(3, "Create Notifications table",
+					"CREATE TABLE IF NOT EXISTS Notifications ("
+					+ "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+					+ "userId INT NOT NULL, "
+					+ "message VARCHAR(10000) NOT NULL, "
+					+ "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+					+ "isRead BOOLEAN DEFAULT FALSE, "
+					+ "FOREIGN KEY (userId) REFERENCES cse360users(id) ON DELETE CASCADE)",
+					// Serves the unread badge count and the per-user listing.
+					"CREATE INDEX IF NOT EXISTS idx_notifications_user ON Notifications (userId, isRead, id)")
+			.step(4, "Move notification text into Notifications", DatabaseHelper::migrateNotificationBlobs);
+
+	// Number of notification rows inserted per batch while migrating the old text column.
+	private static final int MIGRATION_BATCH_SIZE = 500;
+
+	private static void createTables(Connection conn) throws SQLException {
+		MIGRATIONS.migrate(conn);
 	}
 
-	public boolean removeUser(int userId) {
-        // SQL query to delete the user with the given userId
-        String query = "DELETE FROM cse360users WHERE id = ?";
-        try {
-			connectToDatabase();
-		} catch (SQLException e) {
-			// 
-			e.printStackTrace();
+	/**
+	 * Splits each user's newline separated notifications column into Notifications rows.
+	 * Users are read one row at a time and inserts are batched, so a large table is never held
+	 * in memory. The old column is emptied once its lines are copied.
+	 */
+	private static void migrateNotificationBlobs(Connection conn) throws SQLException {
+		String select = "SELECT id, notifications FROM cse360users "
+				+ "WHERE notifications IS NOT NULL AND notifications <> ''";
+		String insert = "INSERT INTO Notifications (userId, message) VALUES (?, ?)";
+		int pending = 0;
+		try (PreparedStatement selectStmt = conn.prepareStatement(select,
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		     PreparedStatement insertStmt = conn.prepareStatement(insert)) {
+			selectStmt.setFetchSize(MIGRATION_BATCH_SIZE);
+			try (ResultSet rs = selectStmt.executeQuery()) {
+				while (rs.next()) {
+					int userId = rs.getInt("id");
+					for (String line : rs.getString("notifications").split("\n")) {
+						if (line.trim().isEmpty()) {
+							continue;
+						}
+						insertStmt.setInt(1, userId);
+						insertStmt.setString(2, line);
+						insertStmt.addBatch();
+						if (++pending == MIGRATION_BATCH_SIZE) {
+							insertStmt.executeBatch();
+							pending = 0;
+						}
+					}
+				}
+			}
+			if (pending > 0) {
+				insertStmt.executeBatch();
+			}
 		}
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            // Set the userId parameter
-            pstmt.setInt(1, userId);
+		try (Statement stmt = conn.createStatement()) {
+			stmt.executeUpdate("UPDATE cse360users SET notifications = NULL WHERE notifications IS NOT NULL");
+		}
+	}
 
-            // Execute the query
-            int rowsAffected = pstmt.executeUpdate();
 
-            // Return true if a row was deleted, false otherwise
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false; // Return false if an error occurs
-        }
-    }
+	// Check if the database is empty
+	public boolean isDatabaseEmpty() throws SQLException {
+		return METRICS.time("isDatabaseEmpty", () -> {
+			String query = "SELECT COUNT(*) AS count FROM cse360users";
+			try (Connection conn = getConnection();
+			     PreparedStatement pstmt = conn.prepareStatement(query);
+			     ResultSet resultSet = pstmt.executeQuery()) {
+				if (resultSet.next()) {
+					return resultSet.getInt("count") == 0;
+				}
+			}
+			return true;
+		});
+	}
+
+	// Registers a new user in the database.
+	public void register(User user) throws SQLException {
+		METRICS.run("register", () -> {
+		    String insertUser = "INSERT INTO cse360users (userName, password, role) VALUES (?, ?, ?)";
+		    try (Connection conn = getConnection();
+		         PreparedStatement pstmt = conn.prepareStatement(insertUser, Statement.RETURN_GENERATED_KEYS)) {
+		        pstmt.setString(1, user.getUserName());
+		        pstmt.setString(2, user.getPassword());
+		        pstmt.setString(3, user.getRole());
+
+		        pstmt.executeUpdate();
+
+		        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+		            if (!keys.next()) {
+		                return;
+		            }
+		            int userId = keys.getInt(1);
+		            // Forget that the name and id were unused
+		            UserIdentityCache identities = getIdentityCache();
+		            identities.invalidateName(user.getUserName());
+		            identities.invalidateId(userId);
+
+		            // Any notifications set on the new user become rows of their own
+		            String notifications = user.getNotifications();
+		            if (notifications != null && !notifications.trim().isEmpty()) {
+		                for (String line : notifications.split("\n")) {
+		                    if (!line.trim().isEmpty()) {
+		                        insertNotification(line, userId);
+		                    }
+		                }
+		            }
+		        }
+		    }
+		});
+	}
+
+	public boolean removeUser(int userId) {
+		return METRICS.time("removeUser", () -> {
+	        // SQL query to delete the user with the given userId
+	        String query = "DELETE FROM cse360users WHERE id = ?";
+	        try (Connection conn = getConnection();
+	             PreparedStatement pstmt = conn.prepareStatement(query)) {
+	            // Set the userId parameter
+	            pstmt.setInt(1, userId);
+
+	            // Execute the query
+	            int rowsAffected = pstmt.executeUpdate();
+	            getIdentityCache().invalidateId(userId);
+
+	            // Return true if a row was deleted, false otherwise
+	            return rowsAffected > 0;
+	        } catch (SQLException e) {
+	            e.printStackTrace();
+	            return false; // Return false if an error occurs
+	        }
+		});
+	}
 
 	// Validates a user's login credentials.
 	public boolean login(User user) throws SQLException {
-		String query = "SELECT * FROM cse360users WHERE userName = ? AND password = ? AND role = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, user.getUserName());
-			pstmt.setString(2, user.getPassword());
-			pstmt.setString(3, user.getRole());
-			try (ResultSet rs = pstmt.executeQuery()) {
-				return rs.next();
+		return METRICS.time("login", () -> {
+			ForumEvents.Login event = new ForumEvents.Login();
+			event.userName = user.getUserName();
+			event.start();
+			try {
+				String query = "SELECT * FROM cse360users WHERE userName = ? AND password = ? AND role = ?";
+				try (Connection conn = getConnection();
+				     PreparedStatement pstmt = conn.prepareStatement(query)) {
+					pstmt.setString(1, user.getUserName());
+					pstmt.setString(2, user.getPassword());
+					pstmt.setString(3, user.getRole());
+					try (ResultSet rs = pstmt.executeQuery()) {
+						event.success = rs.next();
+						if (event.success) {
+							// Later events are recorded with the role the user signed in as
+							ForumEvents.setSessionRole(user.getRole());
+							event.rows = 1;
+						}
+						return event.success;
+					}
+				}
+			} finally {
+				event.finish();
 			}
-		}
+		});
 	}
 	
 	// Checks if a user already exists in the database based on their userName.
 	public boolean doesUserExist(String userName) {
-	    String query = "SELECT COUNT(*) FROM cse360users WHERE userName = ?";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        
-	        pstmt.setString(1, userName);
-	        ResultSet rs = pstmt.executeQuery();
-	        
-	        if (rs.next()) {
-	            // If the count is greater than 0, the user exists
-	            return rs.getInt(1) > 0;
-	        }
-	    } catch (SQLException e) {
-	        e.printStackTrace();
-	    }
-	    return false; // If an error occurs, assume user doesn't exist
+		return METRICS.time("doesUserExist", () -> {
+		    try {
+		        return findUserByName(userName).exists();
+		    } catch (SQLException e) {
+		        e.printStackTrace();
+		    }
+		    return false; // If an error occurs, assume user doesn't exist
+		});
 	}
 	
-	// Retrieves the role of a user from the database using their UserName.
+	// Retrieves the role of a user using their UserName, from the identity cache when possible.
 	public String getUserRole(String userName) {
-	    String query = "SELECT role FROM cse360users WHERE userName = ?";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        pstmt.setString(1, userName);
-	        ResultSet rs = pstmt.executeQuery();
-	        
-	        if (rs.next()) {
-	            return rs.getString("role"); // Return the role if user exists
-	        }
-	    } catch (SQLException e) {
-	        e.printStackTrace();
-	    }
-	    return null; // If no user exists or an error occurs
+		return METRICS.time("getUserRole", () -> {
+		    try {
+		        return findUserByName(userName).getRole(); // Null if no user exists
+		    } catch (SQLException e) {
+		        e.printStackTrace();
+		    }
+		    return null; // If an error occurs
+		});
 	}
 	
 	public String generateInvitationCode(String role) {
-	    // Generate a random 4-character code
-	    String code = UUID.randomUUID().toString().substring(0, 4);
-	    try {
-			connectToDatabase();
-		} catch (SQLException e) {
-			// 
-			e.printStackTrace();
-		}
-	    // SQL query to insert the invitation code and role into the InvitationCodes table
-	    String query = "INSERT INTO InvitationCodes (code, role) VALUES (?, ?)";
-	    
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        // Set the code and role parameters
-	        pstmt.setString(1, code);
-	        pstmt.setString(2, role);
-
-	        // Execute the query
-	        pstmt.executeUpdate();
-	    } catch (SQLException e) {
-	        e.printStackTrace();
-	    }
-
-	    return code; // Return the generated code
+		return METRICS.time("generateInvitationCode", () -> {
+		    // Generate a random 4-character code
+		    String code = UUID.randomUUID().toString().substring(0, 4);
+		    // SQL query to insert the invitation code and role into the InvitationCodes table
+		    String query = "INSERT INTO InvitationCodes (code, role) VALUES (?, ?)";
+
+		    try (Connection conn = getConnection();
+		         PreparedStatement pstmt = conn.prepareStatement(query)) {
+		        // Set the code and role parameters
+		        pstmt.setString(1, code);
+		        pstmt.setString(2, role);
+
+		        // Execute the query
+		        pstmt.executeUpdate();
+		    } catch (SQLException e) {
+		        e.printStackTrace();
+		    }
+
+		    return code; // Return the generated code
+		});
 	}
 	public String getInvitationRole(String invitationCode) {
-        // SQL query to retrieve the role associated with the invitation code
-        String query = "SELECT role FROM InvitationCodes WHERE code = ?";
-        try {
-			connectToDatabase();
-		} catch (SQLException e) {
-			// 
-			e.printStackTrace();
-		}
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            // Set the invitation code parameter
-            pstmt.setString(1, invitationCode);
-
-            // Execute the query
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    // Return the role if the code is found
-                    return rs.getString("role");
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+		return METRICS.time("getInvitationRole", () -> {
+	        // SQL query to retrieve the role associated with the invitation code
+	        String query = "SELECT role FROM InvitationCodes WHERE code = ?";
+	        try (Connection conn = getConnection();
+	             PreparedStatement pstmt = conn.prepareStatement(query)) {
+	            // Set the invitation code parameter
+	            pstmt.setString(1, invitationCode);
+
+	            // Execute the query
+	            try (ResultSet rs = pstmt.executeQuery()) {
+	                if (rs.next()) {
+	                    // Return the role if the code is found
+	                    return rs.getString("role");
+	                }
+	            }
+	        } catch (SQLException e) {
+	            e.printStackTrace();
+	        }
 
-        // Return null if the code is invalid or not found
-        return null;
-    }
+	        // Return null if the code is invalid or not found
+	        return null;
+		});
+	}
 	
 	// Validates an invitation code to check if it is unused.
 	public boolean validateInvitationCode(String code) {
-	    String query = "SELECT * FROM InvitationCodes WHERE code = ? AND isUsed = FALSE";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        pstmt.setString(1, code);
-	        ResultSet rs = pstmt.executeQuery();
-	        if (rs.next()) {
-	            // Mark the code as used
-	            markInvitationCodeAsUsed(code);
-	            return true;
-	        }
-	    } catch (SQLException e) {
-	        e.printStackTrace();
-	    }
-	    return false;
+		return METRICS.time("validateInvitationCode", () -> {
+		    String query = "SELECT * FROM InvitationCodes WHERE code = ? AND isUsed = FALSE";
+		    try (Connection conn = getConnection();
+		         PreparedStatement pstmt = conn.prepareStatement(query)) {
+		        pstmt.setString(1, code);
+		        ResultSet rs = pstmt.executeQuery();
+		        if (rs.next()) {
+		            // Mark the code as used
+		            markCodeUsed(code);
+		            return true;
+		        }
+		    } catch (SQLException e) {
+		        e.printStackTrace();
+		    }
+		    return false;
+		});
 	}
 	
 	// Marks the invitation code as used in the database.
 	public void markInvitationCodeAsUsed(String code) {
+		METRICS.run("markInvitationCodeAsUsed", () -> markCodeUsed(code));
+	}
+
+	// Untimed, so callers that are timed themselves count one operation.
+	private void markCodeUsed(String code) {
 	    String query = "UPDATE InvitationCodes SET isUsed = TRUE WHERE code = ?";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+	    try (Connection conn = getConnection();
+	         PreparedStatement pstmt = conn.prepareStatement(query)) {
 	        pstmt.setString(1, code);
 	        pstmt.executeUpdate();
 	    } catch (SQLException e) {
@@ -259,210 +510,313 @@ public class DatabaseHelper {
 	    }
 	}
 
-	// Closes the database connection and statement.
+	// Closes the connection pool and every connection in it.
 	public void closeConnection() {
-		try{ 
-			if(statement!=null) statement.close(); 
-		} catch(SQLException se2) { 
-			se2.printStackTrace();
-		} 
-		try { 
-			if(connection!=null) connection.close(); 
-		} catch(SQLException se){ 
-			se.printStackTrace(); 
-		} 
+		if (pool != null) {
+			pool.close();
+			return;
+		}
+		synchronized (DatabaseHelper.class) {
+			if (sharedPool != null) {
+				sharedPool.close();
+				sharedPool = null;
+			}
+		}
 	}
 	public void displayAllUsers(TextArea textArea) throws SQLException {
-        // Clear the TextArea before appending new data
-        textArea.clear();
-
-        // SQL query to select all users from the cse360users table
-        String query = "SELECT id, userName, role FROM cse360users";
-        connectToDatabase();
-        try (PreparedStatement pstmt = connection.prepareStatement(query);
-             ResultSet rs = pstmt.executeQuery()) {
-
-            // Iterate through the result set and append each user's information to the TextArea
-            while (rs.next()) {
-                String id = rs.getString("id");
-                String userName = rs.getString("userName");
-                String role = rs.getString("role");
-
-
-                // Append user information to the TextArea
-                textArea.appendText("ID: " + id + "\n");
-                textArea.appendText("Username: " + userName + "\n");
-                textArea.appendText("Role: " + role + "\n");
-                textArea.appendText("-----------------------------\n");
-            }
-        } catch (SQLException e) {
-            // Handle any SQL exceptions
-            e.printStackTrace();
-            textArea.appendText("Error fetching user data from the database.\n");
-        }
-    }
+		METRICS.run("displayAllUsers", () -> {
+	        // Clear the TextArea before appending new data
+	        textArea.clear();
+
+	        // SQL query to select all users from the cse360users table
+	        String query = "SELECT id, userName, role FROM cse360users";
+	        try (Connection conn = getConnection();
+	             PreparedStatement pstmt = conn.prepareStatement(query);
+	             ResultSet rs = pstmt.executeQuery()) {
+
+	            // Iterate through the result set and append each user's information to the TextArea
+	            while (rs.next()) {
+	                String id = rs.getString("id");
+	                String userName = rs.getString("userName");
+	                String role = rs.getString("role");
+
+
+	                // Append user information to the TextArea
+	                textArea.appendText("ID: " + id + "\n");
+	                textArea.appendText("Username: " + userName + "\n");
+	                textArea.appendText("Role: " + role + "\n");
+	                textArea.appendText("-----------------------------\n");
+	            }
+	        } catch (SQLException e) {
+	            // Handle any SQL exceptions
+	            e.printStackTrace();
+	            textArea.appendText("Error fetching user data from the database.\n");
+	        }
+		});
+	}
 	public void displayNotifications(TextArea textArea, int userId) throws SQLException {
-		// Clear the TextArea before appending new data
-        textArea.clear();
-
-        // SQL query to select the notifications from the specified user
-        String query = "SELECT notifications FROM cse360users WHERE id = ?";
-        connectToDatabase();
-        try (PreparedStatement pstmt = connection.prepareStatement(query)){
-            pstmt.setInt(1,  userId);
-        	
-            try(ResultSet rs = pstmt.executeQuery()) {
-	            // Append the notification to the text area
-	            if (rs.next()) {
-	                String notifications = rs.getString("notifications");
-	                
-	                //Working with a null notification creates null pointer errors
-	                if (notifications == null) {
-	                	notifications = "";
-	                }
-	                
-	                textArea.appendText(notifications);
+		METRICS.run("displayNotifications", () -> {
+			// Clear the TextArea before appending new data
+	        textArea.clear();
+
+	        // SQL query to select the notifications from the specified user
+	        String query = "SELECT message FROM Notifications WHERE userId = ? ORDER BY id";
+	        try (Connection conn = getConnection();
+	             PreparedStatement pstmt = conn.prepareStatement(query)){
+	            pstmt.setInt(1,  userId);
+
+	            try(ResultSet rs = pstmt.executeQuery()) {
+		            // Append each notification to the text area on its own line
+		            while (rs.next()) {
+		                textArea.appendText("\n" + rs.getString("message"));
+		            }
 	            }
-            }
-        } catch (SQLException e) {
-            // Handle any SQL exceptions
-            e.printStackTrace();
-            textArea.appendText("Error fetching user data from the database.\n");
-        }
+	        } catch (SQLException e) {
+	            // Handle any SQL exceptions
+	            e.printStackTrace();
+	            textArea.appendText("Error fetching user data from the database.\n");
+	        }
+		});
 	}
 	public String getUserRoleById(int userId) {
-        // SQL query to retrieve the role of the user
-        String query = "SELECT role FROM cse360users WHERE id = ?";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            // Set the userId parameter
-            pstmt.setInt(1, userId);
-
-            // Execute the query
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    // Return the role if the user is found
-                    return rs.getString("role");
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+		return METRICS.time("getUserRoleById", () -> {
+	        try {
+	            String role = findUserById(userId).getRole();
+	            if (role != null) {
+	                // Return the role if the user is found
+	                return role;
+	            }
+	        } catch (SQLException e) {
+	            e.printStackTrace();
+	        }
 
-        // Return null if the user is not found
-        return "";
-    }
+	        // Return an empty role if the user is not found
+	        return "";
+		});
+	}
 	public boolean changeUserRole(int userId, String role) {
-        // SQL query to update the role of the user
-        String query = "UPDATE cse360users SET role = ? WHERE id = ?";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            // Set the role and userId parameters
-            pstmt.setString(1, role);
-            pstmt.setInt(2, userId);
-
-            // Execute the query
-            int rowsAffected = pstmt.executeUpdate();
-
-            // Return true if a row was updated, false otherwise
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false; // Return false if an error occurs
-        }
-    }
+		return METRICS.time("changeUserRole", () -> {
+	        // SQL query to update the role of the user
+	        String query = "UPDATE cse360users SET role = ? WHERE id = ?";
+
+	        try (Connection conn = getConnection();
+	             PreparedStatement pstmt = conn.prepareStatement(query)) {
+	            // Set the role and userId parameters
+	            pstmt.setString(1, role);
+	            pstmt.setInt(2, userId);
+
+	            // Execute the query
+	            int rowsAffected = pstmt.executeUpdate();
+	            getIdentityCache().invalidateId(userId);
+
+	            // Return true if a row was updated, false otherwise
+	            return rowsAffected > 0;
+	        } catch (SQLException e) {
+	            e.printStackTrace();
+	            return false; // Return false if an error occurs
+	        }
+		});
+	}
 	public int getUserIdByUsername(String username) {
-        // SQL query to retrieve the userId based on the username
-        String query = "SELECT id FROM cse360users WHERE userName = ?";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            // Set the username parameter
-            pstmt.setString(1, username);
-
-            // Execute the query
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    // Return the userId if the user is found
-                    return rs.getInt("id");
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+		return METRICS.time("getUserIdByUsername", () -> {
+	        try {
+	            // The id is -1 if the user is not found
+	            return findUserByName(username).getId();
+	        } catch (SQLException e) {
+	            e.printStackTrace();
+	        }
 
-        // Return -1 if the user is not found or an error occurs
-        return -1;
-    }
+	        // Return -1 if an error occurs
+	        return -1;
+		});
+	}
 	public String getFirstAdmin() {
-        // SQL query to retrieve the first admin
-        String query = "SELECT userName FROM cse360users WHERE role = 'admin' LIMIT 1";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query);
-             ResultSet rs = pstmt.executeQuery()) {
-            if (rs.next()) {
-                // Return the username of the first admin
-                return rs.getString("userName");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+		return METRICS.time("getFirstAdmin", () -> {
+	        // SQL query to retrieve the first admin
+	        String query = "SELECT userName FROM cse360users WHERE role = 'admin' LIMIT 1";
 
-        // Return null if no admin is found or an error occurs
-        return null;
-    }
+	        try (Connection conn = getConnection();
+	             PreparedStatement pstmt = conn.prepareStatement(query);
+	             ResultSet rs = pstmt.executeQuery()) {
+	            if (rs.next()) {
+	                // Return the username of the first admin
+	                return rs.getString("userName");
+	            }
+	        } catch (SQLException e) {
+	            e.printStackTrace();
+	        }
+
+	        // Return null if no admin is found or an error occurs
+	        return null;
+		});
+	}
 	public boolean addNotificationToUser(String notification, int userId) {
-		String query = "UPDATE cse360users SET notifications = CONCAT(COALESCE(notifications, ''), '\n', ?) WHERE id = ?";
-		
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            // Set the role and userId parameters
+		return METRICS.time("addNotificationToUser", () -> insertNotification(notification, userId));
+	}
+
+	// Untimed, so callers that are timed themselves count one operation.
+	private boolean insertNotification(String notification, int userId) {
+		// Selecting the id from cse360users inserts nothing for an unknown user
+		String query = "INSERT INTO Notifications (userId, message) SELECT id, ? FROM cse360users WHERE id = ?";
+
+		try (Connection conn = getConnection();
+		     PreparedStatement pstmt = conn.prepareStatement(query)) {
+            // Set the message and userId parameters
             pstmt.setString(1, notification);
             pstmt.setInt(2, userId);
 
             // Execute the query
             int rowsAffected = pstmt.executeUpdate();
 
-            // Return true if a row was updated, false otherwise
+            // Return true if a row was inserted, false otherwise
             return rowsAffected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
             return false; // Return false if an error occurs
         }
 	}
+	// Returns the number of unread notifications, using the (userId, isRead) index
 	public int getNumNotifications(int userId) {
-		String query = "SELECT notifications FROM cse360users WHERE id = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setInt(1, userId);
-			// Execute the query
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    // Return the userId if the user is found
-                    return countNewlines(rs.getString("notifications"));
-                }
-            }
-		} 
-		catch (SQLException e) {
-			e.printStackTrace();
-	    }
-			
-		return -1;		
+		return METRICS.time("getNumNotifications", () -> {
+			ForumEvents.NotificationRead event = new ForumEvents.NotificationRead();
+			event.userId = userId;
+			event.operation = "count";
+			event.start();
+			try {
+				String query = "SELECT COUNT(*) AS count FROM Notifications WHERE userId = ? AND isRead = FALSE";
+				try (Connection conn = getConnection();
+				     PreparedStatement pstmt = conn.prepareStatement(query)) {
+					pstmt.setInt(1, userId);
+					// Execute the query
+		            try (ResultSet rs = pstmt.executeQuery()) {
+		                if (rs.next()) {
+		                    event.rows = 1;
+		                    return rs.getInt("count");
+		                }
+		            }
+				}
+				catch (SQLException e) {
+					e.printStackTrace();
+			    }
+
+				return -1;
+			} finally {
+				event.finish();
+			}
+		});
 	}
+	// Returns all notifications of the user, oldest first, one per line
 	public String getNotifications(int userId) {
-		String query = "SELECT notifications FROM cse360users WHERE id = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setInt(1, userId);
-			// Execute the query
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    // Return the userId if the user is found
-                    return rs.getString("notifications");
-                }
-            }
-		} 
-		catch (SQLException e) {
-			e.printStackTrace();
-	    }
-			
-		return "";		
+		return METRICS.time("getNotifications", () -> {
+			ForumEvents.NotificationRead event = new ForumEvents.NotificationRead();
+			event.userId = userId;
+			event.operation = "all";
+			event.start();
+			try {
+				String query = "SELECT message FROM Notifications WHERE userId = ? ORDER BY id";
+				try (Connection conn = getConnection();
+				     PreparedStatement pstmt = conn.prepareStatement(query)) {
+					pstmt.setInt(1, userId);
+					// Execute the query
+		            try (ResultSet rs = pstmt.executeQuery()) {
+		                StringBuilder notifications = new StringBuilder();
+		                while (rs.next()) {
+		                    notifications.append("\n").append(rs.getString("message"));
+		                    event.rows++;
+		                }
+		                return notifications.toString();
+		            }
+				}
+				catch (SQLException e) {
+					e.printStackTrace();
+			    }
+
+				return "";
+			} finally {
+				event.finish();
+			}
+		});
+	}
+
+	/**
+	 * Retrieves one page of a user's notifications, newest first.
+	 *
+	 * @param userId the id of the user
+	 * @param offset the number of notifications to skip
+	 * @param limit  the maximum number of notifications to return
+	 * @return the notifications on the page, empty if there are none or an error occurs
+	 */
+	public List<Notification> getNotificationsPage(int userId, int offset, int limit) {
+		return METRICS.time("getNotificationsPage", () -> {
+			ForumEvents.NotificationRead event = new ForumEvents.NotificationRead();
+			event.userId = userId;
+			event.operation = "page";
+			event.start();
+			try {
+				List<Notification> page = new ArrayList<>();
+				String query = "SELECT id, userId, message, createdAt, isRead FROM Notifications "
+						+ "WHERE userId = ? ORDER BY id DESC LIMIT ? OFFSET ?";
+				try (Connection conn = getConnection();
+				     PreparedStatement pstmt = conn.prepareStatement(query)) {
+					pstmt.setInt(1, userId);
+					pstmt.setInt(2, limit);
+					pstmt.setInt(3, offset);
+					try (ResultSet rs = pstmt.executeQuery()) {
+						while (rs.next()) {
+							page.add(new Notification(rs.getLong("id"), rs.getInt("userId"), rs.getString("message"),
+									rs.getTimestamp("createdAt"), rs.getBoolean("isRead")));
+						}
+					}
+				} catch (SQLException e) {
+					e.printStackTrace();
+				}
+				event.rows = page.size();
+				return page;
+			} finally {
+				event.finish();
+			}
+		});
+	}
+
+	/**
+	 * Marks every notification of the user as read, which resets the unread count.
+	 *
+	 * @param userId the id of the user
+	 * @return true if the update ran without error
+	 */
+	public boolean markNotificationsRead(int userId) {
+		return METRICS.time("markNotificationsRead", () -> {
+			String query = "UPDATE Notifications SET isRead = TRUE WHERE userId = ? AND isRead = FALSE";
+			try (Connection conn = getConnection();
+			     PreparedStatement pstmt = conn.prepareStatement(query)) {
+				pstmt.setInt(1, userId);
+				pstmt.executeUpdate();
+				return true;
+			} catch (SQLException e) {
+				e.printStackTrace();
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Deletes a single notification by its id.
+	 *
+	 * @param notificationId the id of the notification
+	 * @return true if a notification was deleted
+	 */
+	public boolean deleteNotification(long notificationId) {
+		return METRICS.time("deleteNotification", () -> {
+			String query = "DELETE FROM Notifications WHERE id = ?";
+			try (Connection conn = getConnection();
+			     PreparedStatement pstmt = conn.prepareStatement(query)) {
+				pstmt.setLong(1, notificationId);
+				return pstmt.executeUpdate() > 0;
+			} catch (SQLException e) {
+				e.printStackTrace();
+				return false;
+			}
+		});
 	}
 	public static int countNewlines(String text) {
 	    if (text == null || text.isEmpty()) {
@@ -471,128 +825,107 @@ public class DatabaseHelper {
 	    return text.split("\n", -1).length - 1;
 	}
 	public boolean setForgetPassword(int userId) {
-	    // Query to retrieve the current value of forgotPassword for the user
-	    String selectQuery = "SELECT forgotPassword FROM cse360users WHERE id = ?";
-	    // Query to update the forgotPassword field
-	    String updateQuery = "UPDATE cse360users SET forgotPassword = ? WHERE id = ?";
-
-	    try (PreparedStatement selectStmt = connection.prepareStatement(selectQuery);
-	         PreparedStatement updateStmt = connection.prepareStatement(updateQuery)) {
-
-	        // Retrieve the current value of forgotPassword
-	        selectStmt.setInt(1, userId);
-	        try (ResultSet rs = selectStmt.executeQuery()) {
-	            if (rs.next()) {
-	                boolean currentValue = rs.getBoolean("forgotPassword");
-	                boolean newValue = !currentValue; // Toggle the value
-
-	                // Update the forgotPassword field
-	                updateStmt.setBoolean(1, newValue);
-	                updateStmt.setInt(2, userId);
-
-	                int rowsUpdated = updateStmt.executeUpdate(); // Execute the update
-	                return rowsUpdated > 0; // Return true if the update was successful
-	            }
-	        }
-	    } catch (SQLException e) {
-	        e.printStackTrace(); // Log the exception
-	    }
-	    return false; // Return false if the operation failed
+		return METRICS.time("setForgetPassword", () -> {
+		    // Query to retrieve the current value of forgotPassword for the user
+		    String selectQuery = "SELECT forgotPassword FROM cse360users WHERE id = ?";
+		    // Query to update the forgotPassword field
+		    String updateQuery = "UPDATE cse360users SET forgotPassword = ? WHERE id = ?";
+
+		    try (Connection conn = getConnection();
+		         PreparedStatement selectStmt = conn.prepareStatement(selectQuery);
+		         PreparedStatement updateStmt = conn.prepareStatement(updateQuery)) {
+
+		        // Retrieve the current value of forgotPassword
+		        selectStmt.setInt(1, userId);
+		        try (ResultSet rs = selectStmt.executeQuery()) {
+		            if (rs.next()) {
+		                boolean currentValue = rs.getBoolean("forgotPassword");
+		                boolean newValue = !currentValue; // Toggle the value
+
+		                // Update the forgotPassword field
+		                updateStmt.setBoolean(1, newValue);
+		                updateStmt.setInt(2, userId);
+
+		                int rowsUpdated = updateStmt.executeUpdate(); // Execute the update
+		                return rowsUpdated > 0; // Return true if the update was successful
+		            }
+		        }
+		    } catch (SQLException e) {
+		        e.printStackTrace(); // Log the exception
+		    }
+		    return false; // Return false if the operation failed
+		});
 	}
 	public boolean setPassword(int userId, String password) {
-	    // SQL query to update the password for the specified user
-	    String query = "UPDATE cse360users SET password = ? WHERE id = ?";
-
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        // Set the password and userId parameters
-	        pstmt.setString(1, password);
-	        pstmt.setInt(2, userId);
-
-	        // Execute the update query
-	        int rowsAffected = pstmt.executeUpdate();
-
-	        // Return true if the update was successful (at least one row affected)
-	        return rowsAffected > 0;
-	    } catch (SQLException e) {
-	        e.printStackTrace(); // Log the exception
-	        return false; // Return false if an error occurs
-	    }
+		return METRICS.time("setPassword", () -> {
+		    // SQL query to update the password for the specified user
+		    String query = "UPDATE cse360users SET password = ? WHERE id = ?";
+
+		    try (Connection conn = getConnection();
+		         PreparedStatement pstmt = conn.prepareStatement(query)) {
+		        // Set the password and userId parameters
+		        pstmt.setString(1, password);
+		        pstmt.setInt(2, userId);
+
+		        // Execute the update query
+		        int rowsAffected = pstmt.executeUpdate();
+
+		        // Return true if the update was successful (at least one row affected)
+		        return rowsAffected > 0;
+		    } catch (SQLException e) {
+		        e.printStackTrace(); // Log the exception
+		        return false; // Return false if an error occurs
+		    }
+		});
 	}
 	public boolean getForgotPasswordStatus(int userId) {
-	    String query = "SELECT forgotPassword FROM cse360users WHERE id = ?";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        pstmt.setInt(1, userId);
-	        try (ResultSet rs = pstmt.executeQuery()) {
-	            if (rs.next()) {
-	                return rs.getBoolean("forgotPassword");
-	            }
-	        }
-	    } catch (SQLException e) {
-	        e.printStackTrace();
-	    }
-	    return false; // Default to false if userId not found or error occurs
+		return METRICS.time("getForgotPasswordStatus", () -> {
+		    String query = "SELECT forgotPassword FROM cse360users WHERE id = ?";
+		    try (Connection conn = getConnection();
+		         PreparedStatement pstmt = conn.prepareStatement(query)) {
+		        pstmt.setInt(1, userId);
+		        try (ResultSet rs = pstmt.executeQuery()) {
+		            if (rs.next()) {
+		                return rs.getBoolean("forgotPassword");
+		            }
+		        }
+		    } catch (SQLException e) {
+		        e.printStackTrace();
+		    }
+		    return false; // Default to false if userId not found or error occurs
+		});
 	}
+	// Deletes every notification of the user whose text contains the given string
 	public boolean deleteNotificationLine(int userId, String notification) {
-	    // Retrieve the current notifications for the user
-	    String currentNotifications = getNotifications(userId);
-	    if (currentNotifications == null || currentNotifications.isEmpty()) {
-	        return false; // No notifications to delete
-	    }
-
-	    // Split the notifications into lines
-	    String[] lines = currentNotifications.split("\n");
-
-	    // Use a StringBuilder to reconstruct the notifications without the line containing userId
-	    StringBuilder updatedNotifications = new StringBuilder();
-	    boolean lineFound = false;
-
-	    for (String line : lines) {
-	        // Check if the line contains the userId
-	        if (!line.contains(notification)) {
-	            updatedNotifications.append(line).append("\n");
-	        	
-	        } else {
-	            lineFound = true; // Mark that the line was found and remove
-	        }
-	    }
-	
-
-	    // If the line was not found, return false
-	    if (!lineFound) {
-	        return false;
-	    }
-
-	    // Remove the trailing newline character
-	    if (updatedNotifications.length() > 0) {
-	        updatedNotifications.setLength(updatedNotifications.length() - 1);
-	    }
-
-	    // Update the notifications in the database
-	    String query = "UPDATE cse360users SET notifications = ? WHERE id = ?";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        pstmt.setString(1, updatedNotifications.toString());
-	        pstmt.setInt(2, userId);
-
-	        // Execute the update query
-	        int rowsAffected = pstmt.executeUpdate();
-
-	        // Return true if the update was successful (at least one row affected)
-	        return rowsAffected > 0;
-	    } catch (SQLException e) {
-	        e.printStackTrace(); // Log the exception
-	        return false; // Return false if an error occurs
-	    }
+		return METRICS.time("deleteNotificationLine", () -> {
+		    String query = "DELETE FROM Notifications WHERE userId = ? AND LOCATE(?, message) > 0";
+		    try (Connection conn = getConnection();
+		         PreparedStatement pstmt = conn.prepareStatement(query)) {
+		        pstmt.setInt(1, userId);
+		        pstmt.setString(2, notification);
+
+		        // Return true if at least one notification matched
+		        return pstmt.executeUpdate() > 0;
+		    } catch (SQLException e) {
+		        e.printStackTrace(); // Log the exception
+		        return false; // Return false if an error occurs
+		    }
+		});
 	}
 	public boolean clearNotifications(int userId) {
-	    String query = "UPDATE cse360users SET notifications = '' WHERE id = ?";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        pstmt.setInt(1, userId);
-	        int rowsAffected = pstmt.executeUpdate();
-	        return rowsAffected > 0;
-	    } catch (SQLException e) {
-	        e.printStackTrace();
-	        return false;
-	    }
+		return METRICS.time("clearNotifications", () -> {
+		    String query = "DELETE FROM Notifications WHERE userId = ?";
+		    try (Connection conn = getConnection();
+		         PreparedStatement pstmt = conn.prepareStatement(query)) {
+		        pstmt.setInt(1, userId);
+		        pstmt.executeUpdate();
+		        // Clearing an already empty list still counts as success
+		        return true;
+		    } catch (SQLException e) {
+		        e.printStackTrace();
+		        return false;
+		    }
+		});
 	}
 	/**
      * Retrieves all usernames of users whose role contains 'reviewer'.
@@ -601,132 +934,216 @@ public class DatabaseHelper {
      * @throws SQLException If a database access error occurs.
      */
     public List<String> getAllReviewersUsernames() throws SQLException {
-        List<String> reviewersUsernames = new ArrayList<>();
-        connectToDatabase(); // Ensure connection is established
+        return METRICS.time("getAllReviewersUsernames", () -> {
+            List<String> reviewersUsernames = new ArrayList<>();
 
-        String query = "SELECT userName FROM cse360users WHERE role LIKE '%Reviewer%'";
-        try (PreparedStatement pstmt = connection.prepareStatement(query);
-             ResultSet rs = pstmt.executeQuery()) {
+            String query = "SELECT userName FROM cse360users WHERE role LIKE '%Reviewer%'";
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query);
+                 ResultSet rs = pstmt.executeQuery()) {
 
-            while (rs.next()) {
-                reviewersUsernames.add(rs.getString("userName"));
+                while (rs.next()) {
+                    reviewersUsernames.add(rs.getString("userName"));
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                throw e;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            throw e;
-        }
 
-        return reviewersUsernames;
+            return reviewersUsernames;
+        });
     }
+    // Saves the rating, replacing any earlier rating of the same reviewer by this student.
     public void addReview(String reviewerUsername, int rating, String studentUsername) throws SQLException {
-        String query = "INSERT INTO reviewer_ratings (reviewer_username, rating, student_username) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        METRICS.run("addReview", () -> mergeReview(reviewerUsername, rating, studentUsername));
+    }
+
+    // Untimed, so addOrUpdateReview counts one operation.
+    private void mergeReview(String reviewerUsername, int rating, String studentUsername) throws SQLException {
+        String query = "MERGE INTO reviewer_ratings (reviewer_username, rating, student_username, timestamp) "
+                + "KEY (reviewer_username, student_username) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
             pstmt.setString(1, reviewerUsername);
             pstmt.setInt(2, rating);
             pstmt.setString(3, studentUsername);
             pstmt.executeUpdate();
+        } finally {
+            invalidateReviewerProfile(studentUsername);
         }
     }
     public void addTrustedReviewer(String reviewerUsername, String studentUsername) throws SQLException {
-        String query = "UPDATE reviewer_ratings SET trusted = TRUE WHERE reviewer_username = ? AND student_username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, reviewerUsername);
-            pstmt.setString(2,  studentUsername);
-            pstmt.executeUpdate();
-            
+        METRICS.run("addTrustedReviewer", () -> {
+            String query = "UPDATE reviewer_ratings SET trusted = TRUE WHERE reviewer_username = ? AND student_username = ?";
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setString(1, reviewerUsername);
+                pstmt.setString(2,  studentUsername);
+                pstmt.executeUpdate();
+            } finally {
+                invalidateReviewerProfile(studentUsername);
+            }
+
             // Also add a notification to the reviewer
             String notification = studentUsername + " has added you to their trusted reviewers list!";
-            addNotificationToUser(notification, getUserIdByUsername(reviewerUsername));
-        }
+            insertNotification(notification, findUserByName(reviewerUsername).getId());
+        });
     }
 
     public boolean isReviewerTrusted(String reviewerUsername, String studentUsername) throws SQLException {
-        String query = "SELECT trusted FROM reviewer_ratings WHERE reviewer_username = ? AND student_username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, reviewerUsername);
-            pstmt.setString(2,  studentUsername);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getBoolean("trusted");
+        return METRICS.time("isReviewerTrusted", () -> {
+            String query = "SELECT trusted FROM reviewer_ratings WHERE reviewer_username = ? AND student_username = ?";
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setString(1, reviewerUsername);
+                pstmt.setString(2,  studentUsername);
+                ResultSet rs = pstmt.executeQuery();
+                if (rs.next()) {
+                    return rs.getBoolean("trusted");
+                }
             }
-        }
-        return false;
+            return false;
+        });
     }
     public List<String> getMyReviewers(String studentUsername) throws SQLException {
-        List<String> reviewers = new ArrayList<>();
-        // Modified query to get distinct reviewers and include trusted status
-        String query = "SELECT DISTINCT reviewer_username FROM reviewer_ratings " +
-                       "WHERE student_username = ? AND trusted = TRUE " +
-                       "ORDER BY reviewer_username";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, studentUsername);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    reviewers.add(rs.getString("reviewer_username"));
+        return METRICS.time("getMyReviewers", () -> {
+            List<String> reviewers = new ArrayList<>();
+            // Modified query to get distinct reviewers and include trusted status
+            String query = "SELECT DISTINCT reviewer_username FROM reviewer_ratings " +
+                           "WHERE student_username = ? AND trusted = TRUE " +
+                           "ORDER BY reviewer_username";
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setString(1, studentUsername);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        reviewers.add(rs.getString("reviewer_username"));
+                    }
                 }
             }
-        }
-        return reviewers;
+            return reviewers;
+        });
     }
 
     public Integer getReviewerRating(String studentUsername, String reviewerUsername) throws SQLException {
-        String query = "SELECT rating FROM reviewer_ratings WHERE student_username = ? AND reviewer_username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, studentUsername);
-            pstmt.setString(2, reviewerUsername);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("rating");
+        return METRICS.time("getReviewerRating", () -> {
+            String query = "SELECT rating FROM reviewer_ratings WHERE student_username = ? AND reviewer_username = ?";
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setString(1, studentUsername);
+                pstmt.setString(2, reviewerUsername);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt("rating");
+                    }
                 }
             }
-        }
-        return null;
+            return null;
+        });
     }
 
     public void removeTrustedReviewer(String reviewerUsername, String studentUsername) throws SQLException {
-        String query = "UPDATE reviewer_ratings SET trusted = FALSE WHERE reviewer_username = ? AND student_username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, reviewerUsername);
-            pstmt.setString(2, studentUsername);
-            pstmt.executeUpdate();
-        }
+        METRICS.run("removeTrustedReviewer", () -> {
+            String query = "UPDATE reviewer_ratings SET trusted = FALSE WHERE reviewer_username = ? AND student_username = ?";
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setString(1, reviewerUsername);
+                pstmt.setString(2, studentUsername);
+                pstmt.executeUpdate();
+            } finally {
+                invalidateReviewerProfile(studentUsername);
+            }
+        });
     }
  // Check if a review already exists for this student-reviewer pair
     public boolean reviewExists(String reviewerUsername, String studentUsername) throws SQLException {
-        String query = "SELECT COUNT(*) FROM reviewer_ratings WHERE reviewer_username = ? AND student_username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, reviewerUsername);
-            pstmt.setString(2, studentUsername);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                return rs.next() && rs.getInt(1) > 0;
+        return METRICS.time("reviewExists", () -> {
+            String query = "SELECT COUNT(*) FROM reviewer_ratings WHERE reviewer_username = ? AND student_username = ?";
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setString(1, reviewerUsername);
+                pstmt.setString(2, studentUsername);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() && rs.getInt(1) > 0;
+                }
             }
-        }
+        });
     }
 
     // Update an existing review
     public void updateReview(String reviewerUsername, int rating, String studentUsername) throws SQLException {
-        String query = "UPDATE reviewer_ratings SET rating = ?, timestamp = CURRENT_TIMESTAMP WHERE reviewer_username = ? AND student_username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, rating);
-            pstmt.setString(2, reviewerUsername);
-            pstmt.setString(3, studentUsername);
-            pstmt.executeUpdate();
-        }
+        METRICS.run("updateReview", () -> {
+            String query = "UPDATE reviewer_ratings SET rating = ?, timestamp = CURRENT_TIMESTAMP WHERE reviewer_username = ? AND student_username = ?";
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setInt(1, rating);
+                pstmt.setString(2, reviewerUsername);
+                pstmt.setString(3, studentUsername);
+                pstmt.executeUpdate();
+            } finally {
+                invalidateReviewerProfile(studentUsername);
+            }
+        });
     }
 
     // Modified addReview to handle updates
     public void addOrUpdateReview(String reviewerUsername, int rating, String studentUsername) throws SQLException {
-        if (reviewExists(reviewerUsername, studentUsername)) {
-            updateReview(reviewerUsername, rating, studentUsername);
-        } else {
-            String query = "INSERT INTO reviewer_ratings (reviewer_username, rating, student_username) VALUES (?, ?, ?)";
-            try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-                pstmt.setString(1, reviewerUsername);
-                pstmt.setInt(2, rating);
-                pstmt.setString(3, studentUsername);
-                pstmt.executeUpdate();
+        METRICS.run("addOrUpdateReview", () -> mergeReview(reviewerUsername, rating, studentUsername));
+    }
+
+    /**
+     * Returns a student's ratings and trust flags for all reviewers, loaded in one query.
+     * Profiles are cached per student until one of the student's ratings or trust flags is changed
+     * through this helper, so sorting reviews by reviewer costs at most one query however many
+     * reviews there are.
+     *
+     * @param studentUsername the student
+     * @return the student's reviewer profile
+     * @throws SQLException if a database access error occurs
+     */
+    public ReviewerProfile getReviewerProfile(String studentUsername) throws SQLException {
+        return METRICS.time("getReviewerProfile", () -> {
+            ReviewerProfile cached = reviewerProfiles.get(studentUsername);
+            if (cached != null) {
+                return cached;
             }
-        }
+            long version = reviewerProfileVersion.get();
+            Map<String, Integer> ratings = new HashMap<>();
+            Set<String> trusted = new HashSet<>();
+            String query = "SELECT reviewer_username, rating, trusted FROM reviewer_ratings WHERE student_username = ?";
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setString(1, studentUsername);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String reviewer = rs.getString("reviewer_username");
+                        int rating = rs.getInt("rating");
+                        if (!rs.wasNull()) {
+                            ratings.put(reviewer, rating);
+                        }
+                        if (rs.getBoolean("trusted")) {
+                            trusted.add(reviewer);
+                        }
+                    }
+                }
+            }
+            ReviewerProfile profile = new ReviewerProfile(studentUsername, ratings, trusted);
+            // Only cache if no rating or trust flag changed while the profile was being read,
+            // re-checking after the put in case one changed in between.
+            if (reviewerProfileVersion.get() == version) {
+                reviewerProfiles.putIfAbsent(studentUsername, profile);
+                if (reviewerProfileVersion.get() != version) {
+                    reviewerProfiles.remove(studentUsername, profile);
+                }
+            }
+            return profile;
+        });
+    }
+
+    // Drops the cached profile of a student after their ratings or trust flags change.
+    private void invalidateReviewerProfile(String studentUsername) {
+        reviewerProfileVersion.incrementAndGet();
+        reviewerProfiles.remove(studentUsername);
     }
     /**
      * Adds a notification to all users who have a role of "Instructor"
@@ -735,32 +1152,54 @@ public class DatabaseHelper {
      * @throws SQLException If a database access error occurs
      */
     public boolean addNotificationToAllInstructors(String notification) throws SQLException {
-        // First, get all user IDs with Instructor role
-        List<Integer> instructorIds = new ArrayList<>();
-        String query = "SELECT id FROM cse360users WHERE role = 'Instructor'";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            while (rs.next()) {
-                instructorIds.add(rs.getInt("id"));
-            }
-        }
-        
-        // If no instructors found, return false
-        if (instructorIds.isEmpty()) {
-            return false;
+        return METRICS.time("addNotificationToAllInstructors", () -> insertNotificationForRole(notification, "Instructor") > 0);
+    }
+
+    /**
+     * Adds a notification to every user with the given role using a single INSERT ... SELECT,
+     * so all recipients are written in one statement and one commit.
+     * @param notification The notification message to be added
+     * @param role The exact role of the recipients
+     * @return the number of users the notification was added to
+     * @throws SQLException If a database access error occurs
+     */
+    public int addNotificationToRole(String notification, String role) throws SQLException {
+        return METRICS.time("addNotificationToRole", () -> insertNotificationForRole(notification, role));
+    }
+
+    // Untimed, so addNotificationToAllInstructors counts one operation.
+    private int insertNotificationForRole(String notification, String role) throws SQLException {
+        String query = "INSERT INTO Notifications (userId, message) SELECT id, ? FROM cse360users WHERE role = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setString(1, notification);
+            pstmt.setString(2, role);
+            return pstmt.executeUpdate();
         }
-        
-        // Add notification to each instructor
-        boolean success = false;
-        for (int id : instructorIds) {
-            if (addNotificationToUser(notification, id)) {
-                success = true;
+    }
+
+    /**
+     * Adds a notification to each of the given users in a single statement. Ids that do not
+     * belong to a user are skipped.
+     * @param notification The notification message to be added
+     * @param userIds The ids of the recipients
+     * @return the number of users the notification was added to
+     * @throws SQLException If a database access error occurs
+     */
+    public int addNotificationToUsers(String notification, List<Integer> userIds) throws SQLException {
+        return METRICS.time("addNotificationToUsers", () -> {
+            if (userIds.isEmpty()) {
+                return 0;
             }
-        }
-        
-        return success;
+            String query = "INSERT INTO Notifications (userId, message) "
+                    + "SELECT id, ? FROM cse360users WHERE id = ANY(?)";
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setString(1, notification);
+                pstmt.setArray(2, conn.createArrayOf("INTEGER", userIds.toArray()));
+                return pstmt.executeUpdate();
+            }
+        });
     }
     
 	
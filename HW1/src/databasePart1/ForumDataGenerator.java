@@ -0,0 +1,556 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import application.AnswerHandler;
+import application.PostReadSet;
+import application.QuestionHandler;
+import application.ReviewHandler;
+import application.UserHandler;
+
+/**
+ * The ForumDataGenerator class fills a database with a synthetic forum: users with student, reviewer and
+ * instructor roles, posts, replies with nested reply chains and private replies, likes, reviews with edit
+ * histories, review feedback, reviewer ratings, trust and weights, and read state. The same seed and
+ * volumes always produce the same rows, so a slow query found at scale can be reproduced exactly.
+ *
+ * <p>Rows are written with batched inserts on one connection, committing every {@value #BATCH_SIZE} rows,
+ * and every derived column (reply, like and feedback counts, review version numbers) is filled in
+ * directly instead of through the handlers. The default volumes load in a few seconds in memory, and
+ * fifty thousand users with a million and a half replies and three million likes in about four minutes.
+ * Generated rows are added after any existing ones and the id sequences are moved past them, so the
+ * handlers keep working on the database afterwards. Handlers that were already open should rebuild
+ * their in-memory state ({@link QuestionHandler#rebuildSearchIndex()}); new handlers load it as usual.</p>
+ *
+ * <p>Volumes are set with the fluent setters, e.g.
+ * {@code new ForumDataGenerator(pool, 1).users(50_000).posts(250_000).repliesPerPost(4).generate()}.
+ * {@link #main(String[])} generates into a database from the command line.</p>
+ */
+public class ForumDataGenerator {
+
+    // Rows written between commits.
+    private static final int BATCH_SIZE = 1000;
+
+    // Every generated timestamp is counted from here, so the rows do not depend on the clock.
+    private static final long EPOCH_MILLIS = Timestamp.valueOf("2025-01-06 09:00:00").getTime();
+
+    private static final String[] WORDS = {
+        "exam", "homework", "chapter", "database", "table", "junit", "test", "method", "review", "deadline",
+        "lecture", "project", "team", "question", "answer", "grading", "rubric", "design", "sprint", "javafx",
+        "how", "do", "i", "the", "is", "on", "and", "with", "this", "for", "why", "does", "my", "not", "work"
+    };
+
+    private final ConnectionPool pool;
+    private final long seed;
+    private String namePrefix = "user";
+    private int users = 1000;
+    private int posts = 5000;
+    private int repliesPerPost = 4;
+    private int nestedPercent = 25;
+    private int maxNestedDepth = 3;
+    private int privatePercent = 5;
+    private int likesPerReply = 2;
+    private int reviewerPercent = 10;
+    private int reviewedPercent = 20;
+    private int reviewsPerReply = 2;
+    private int editedPercent = 15;
+    private int feedbackPerReview = 1;
+    private int ratingsPerStudent = 3;
+    private int readPercent = 60;
+
+    /**
+     * Constructs a generator writing to the given pool.
+     *
+     * @param pool the pool of the database to fill
+     * @param seed the seed every random choice is derived from
+     */
+    public ForumDataGenerator(ConnectionPool pool, long seed) {
+        this.pool = pool;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the prefix of the generated user names; user {@code i} is named prefix + i.
+     * @param namePrefix the prefix, "user" by default
+     * @return this generator
+     */
+    public ForumDataGenerator namePrefix(String namePrefix) { this.namePrefix = namePrefix; return this; }
+
+    /**
+     * Sets the number of users.
+     * @param users the number of users, 1000 by default
+     * @return this generator
+     */
+    public ForumDataGenerator users(int users) { this.users = Math.max(1, users); return this; }
+
+    /**
+     * Sets the number of posts.
+     * @param posts the number of posts, 5000 by default
+     * @return this generator
+     */
+    public ForumDataGenerator posts(int posts) { this.posts = Math.max(0, posts); return this; }
+
+    /**
+     * Sets the average number of top-level replies per post; each post gets between 0 and twice as many.
+     * @param repliesPerPost the average, 4 by default
+     * @return this generator
+     */
+    public ForumDataGenerator repliesPerPost(int repliesPerPost) { this.repliesPerPost = Math.max(0, repliesPerPost); return this; }
+
+    /**
+     * Sets how many top-level replies start a chain of nested replies, and how deep a chain can go.
+     * @param percent  the share of top-level replies with a chain, 25 by default
+     * @param maxDepth the longest chain, 3 by default
+     * @return this generator
+     */
+    public ForumDataGenerator nested(int percent, int maxDepth) {
+        this.nestedPercent = percent;
+        this.maxNestedDepth = Math.max(1, maxDepth);
+        return this;
+    }
+
+    /**
+     * Sets the share of replies that are private.
+     * @param percent the share, 5 by default
+     * @return this generator
+     */
+    public ForumDataGenerator privatePercent(int percent) { this.privatePercent = percent; return this; }
+
+    /**
+     * Sets the average number of likes per reply; each reply gets between 0 and twice as many.
+     * @param likesPerReply the average, 2 by default
+     * @return this generator
+     */
+    public ForumDataGenerator likesPerReply(int likesPerReply) { this.likesPerReply = Math.max(0, likesPerReply); return this; }
+
+    /**
+     * Sets the share of users who are reviewers.
+     * @param percent the share, 10 by default
+     * @return this generator
+     */
+    public ForumDataGenerator reviewerPercent(int percent) { this.reviewerPercent = percent; return this; }
+
+    /**
+     * Sets which top-level replies are reviewed and by how many reviewers.
+     * @param percent         the share of top-level replies with reviews, 20 by default
+     * @param reviewsPerReply the average number of reviewers of a reviewed reply, 2 by default
+     * @param editedPercent   the share of reviews edited once or twice, 15 by default
+     * @return this generator
+     */
+    public ForumDataGenerator reviews(int percent, int reviewsPerReply, int editedPercent) {
+        this.reviewedPercent = percent;
+        this.reviewsPerReply = Math.max(1, reviewsPerReply);
+        this.editedPercent = editedPercent;
+        return this;
+    }
+
+    /**
+     * Sets the average number of feedback messages on the current version of a review.
+     * @param feedbackPerReview the average, 1 by default
+     * @return this generator
+     */
+    public ForumDataGenerator feedbackPerReview(int feedbackPerReview) { this.feedbackPerReview = Math.max(0, feedbackPerReview); return this; }
+
+    /**
+     * Sets the average number of reviewers each student rates; about a third of the rated reviewers are trusted.
+     * @param ratingsPerStudent the average, 3 by default
+     * @return this generator
+     */
+    public ForumDataGenerator ratingsPerStudent(int ratingsPerStudent) { this.ratingsPerStudent = Math.max(0, ratingsPerStudent); return this; }
+
+    /**
+     * Sets the share of users with read state; each of them has read a run of older posts and a few newer ones.
+     * @param percent the share, 60 by default
+     * @return this generator
+     */
+    public ForumDataGenerator readPercent(int percent) { this.readPercent = percent; return this; }
+
+    /**
+     * Gets the name of a generated user.
+     *
+     * @param index the user's index, from 0
+     * @return the user name
+     */
+    public String userName(int index) {
+        return namePrefix + index;
+    }
+
+    /**
+     * Generates the forum. The tables are created first if they do not exist.
+     *
+     * @return the number of rows written to each table, in the order they were written
+     * @throws SQLException if the rows cannot be written; rows of batches already committed are kept
+     */
+    public Map<String, Long> generate() throws SQLException {
+        // The handlers own the schema; constructing them brings every table up to date.
+        DatabaseHelper dbHelper = new DatabaseHelper(pool);
+        QuestionHandler qHandler = new QuestionHandler(pool);
+        new AnswerHandler(pool, qHandler);
+        new ReviewHandler(pool);
+        new UserHandler(pool);
+
+        Map<String, Long> rows = new LinkedHashMap<>();
+        Random random = new Random(seed);
+        try (Connection conn = pool.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                int[] reviewers = generateUsers(conn, random, rows);
+                generateRatings(conn, random, reviewers, rows);
+                generatePosts(conn, random, reviewers, rows);
+                generateReadState(conn, random, rows);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        dbHelper.getIdentityCache().invalidateAll();
+        return rows;
+    }
+
+    // Inserts the users and returns the indexes of the reviewers.
+    private int[] generateUsers(Connection conn, Random random, Map<String, Long> rows) throws SQLException {
+        List<Integer> reviewers = new ArrayList<>();
+        try (Batch batch = new Batch(conn, "cse360users", "INSERT INTO cse360users (userName, password, role) VALUES (?, ?, ?)")) {
+            for (int u = 0; u < users; u++) {
+                String role;
+                if (u % 100 == 99) {
+                    role = "Instructor";
+                } else if (random.nextInt(100) < reviewerPercent) {
+                    role = "Student,Reviewer";
+                    reviewers.add(u);
+                } else {
+                    role = "Student";
+                }
+                batch.stmt.setString(1, userName(u));
+                batch.stmt.setString(2, "Password1!");
+                batch.stmt.setString(3, role);
+                batch.add();
+            }
+            rows.put(batch.table, batch.count);
+        }
+        if (reviewers.isEmpty()) {
+            reviewers.add(0);
+        }
+        return reviewers.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Rates reviewers for each student, with the matching trust and weight rows the review ranking reads.
+    private void generateRatings(Connection conn, Random random, int[] reviewers, Map<String, Long> rows)
+            throws SQLException {
+        try (Batch ratings = new Batch(conn, "reviewer_ratings", "INSERT INTO reviewer_ratings "
+                     + "(reviewer_username, rating, student_username, trusted, timestamp) VALUES (?, ?, ?, ?, ?)");
+             Batch trusted = new Batch(conn, "TrustedReviewers", "INSERT INTO TrustedReviewers (student, reviewer) VALUES (?, ?)");
+             Batch weights = new Batch(conn, "ReviewerWeights",
+                     "INSERT INTO ReviewerWeights (student, reviewer, weight) VALUES (?, ?, ?)")) {
+            for (int u = 0; u < users; u++) {
+                int count = Math.min(reviewers.length, random.nextInt(2 * ratingsPerStudent + 1));
+                int start = random.nextInt(reviewers.length);
+                for (int r = 0; r < count; r++) {
+                    // Consecutive reviewers from a random start are distinct without a lookup.
+                    String reviewer = userName(reviewers[(start + r) % reviewers.length]);
+                    String student = userName(u);
+                    if (reviewer.equals(student)) {
+                        continue;
+                    }
+                    boolean isTrusted = random.nextInt(3) == 0;
+                    ratings.stmt.setString(1, reviewer);
+                    ratings.stmt.setInt(2, 1 + random.nextInt(5));
+                    ratings.stmt.setString(3, student);
+                    ratings.stmt.setBoolean(4, isTrusted);
+                    ratings.stmt.setTimestamp(5, timestamp(u));
+                    ratings.add();
+                    if (isTrusted) {
+                        trusted.stmt.setString(1, student);
+                        trusted.stmt.setString(2, reviewer);
+                        trusted.add();
+                    }
+                    weights.stmt.setString(1, student);
+                    weights.stmt.setString(2, reviewer);
+                    weights.stmt.setInt(3, random.nextInt(ReviewHandler.MAX_WEIGHT + 1));
+                    weights.add();
+                }
+            }
+            rows.put(ratings.table, ratings.count);
+            rows.put(trusted.table, trusted.count);
+            rows.put(weights.table, weights.count);
+        }
+    }
+
+    // Inserts the posts with their replies, likes, reviews and feedback, one post at a time.
+    private void generatePosts(Connection conn, Random random, int[] reviewers, Map<String, Long> rows)
+            throws SQLException {
+        int postId = maxId(conn, "Posts", "postId");
+        int replyId = maxId(conn, "Replies", "replyId");
+        int reviewId = maxId(conn, "Reviews", "reviewId");
+        try (Batch postBatch = new Batch(conn, "Posts", "INSERT INTO Posts "
+                     + "(postId, userName, title, post, numReplies, lastActivityAt) VALUES (?, ?, ?, ?, ?, ?)");
+             Batch replyBatch = new Batch(conn, "Replies", "INSERT INTO Replies "
+                     + "(replyId, reply, userName, likes, isPrivate, parentReplyId, numReplies, postId) "
+                     + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+             Batch likeBatch = new Batch(conn, "ReplyLikes", "INSERT INTO ReplyLikes (replyId, userName, likedAt) VALUES (?, ?, ?)");
+             Batch reviewBatch = new Batch(conn, "Reviews", "INSERT INTO Reviews (reviewId, replyId, content, "
+                     + "reviewerName, feedbackCount, previousReviewId, isCurrent, versionNumber) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+             Batch feedbackBatch = new Batch(conn, "ReviewFeedback",
+                     "INSERT INTO ReviewFeedback (reviewId, sender, message) VALUES (?, ?, ?)")) {
+            // Children reference their parents, so batches are always flushed parents first.
+            Batch[] order = {postBatch, replyBatch, likeBatch, reviewBatch, feedbackBatch};
+            for (int p = 0; p < posts; p++) {
+                postId++;
+                int topLevel = random.nextInt(2 * repliesPerPost + 1);
+                postBatch.stmt.setInt(1, postId);
+                postBatch.stmt.setString(2, userName(random.nextInt(users)));
+                postBatch.stmt.setString(3, sentence(random, 3 + random.nextInt(6)));
+                postBatch.stmt.setString(4, sentence(random, 10 + random.nextInt(60)));
+                postBatch.stmt.setInt(5, topLevel);
+                postBatch.stmt.setTimestamp(6, timestamp(p + (topLevel > 0 ? 1 + random.nextInt(30) : 0)));
+                postBatch.stmt.addBatch();
+                postBatch.count++;
+
+                for (int r = 0; r < topLevel; r++) {
+                    int depth = random.nextInt(100) < nestedPercent ? 1 + random.nextInt(maxNestedDepth) : 0;
+                    int topReplyId = ++replyId;
+                    addReply(random, replyBatch, likeBatch, topReplyId, postId, null, depth > 0, p);
+                    if (random.nextInt(100) < reviewedPercent) {
+                        reviewId = addReviews(random, reviewers, reviewBatch, feedbackBatch, topReplyId, reviewId);
+                    }
+                    // Each nested reply answers the one before it, so a chain is as deep as it is long.
+                    int parent = topReplyId;
+                    for (int d = 1; d <= depth; d++) {
+                        addReply(random, replyBatch, likeBatch, ++replyId, postId, parent, d < depth, p);
+                        parent = replyId;
+                    }
+                }
+                if (postBatch.pending() + replyBatch.pending() + likeBatch.pending()
+                        + reviewBatch.pending() + feedbackBatch.pending() >= BATCH_SIZE) {
+                    flush(conn, order);
+                }
+            }
+            flush(conn, order);
+            for (Batch batch : order) {
+                rows.put(batch.table, batch.count);
+            }
+        }
+        restartIdentity(conn, "Posts", "postId", postId);
+        restartIdentity(conn, "Replies", "replyId", replyId);
+        restartIdentity(conn, "Reviews", "reviewId", reviewId);
+    }
+
+    private void addReply(Random random, Batch replyBatch, Batch likeBatch, int replyId, int postId,
+            Integer parentReplyId, boolean hasChild, int age) throws SQLException {
+        int likes = Math.min(users, random.nextInt(2 * likesPerReply + 1));
+        replyBatch.stmt.setInt(1, replyId);
+        replyBatch.stmt.setString(2, sentence(random, 5 + random.nextInt(40)));
+        replyBatch.stmt.setString(3, userName(random.nextInt(users)));
+        replyBatch.stmt.setInt(4, likes);
+        replyBatch.stmt.setBoolean(5, random.nextInt(100) < privatePercent);
+        if (parentReplyId == null) {
+            replyBatch.stmt.setNull(6, Types.INTEGER);
+        } else {
+            replyBatch.stmt.setInt(6, parentReplyId);
+        }
+        replyBatch.stmt.setInt(7, hasChild ? 1 : 0);
+        replyBatch.stmt.setInt(8, postId);
+        replyBatch.stmt.addBatch();
+        replyBatch.count++;
+
+        int start = random.nextInt(users);
+        for (int l = 0; l < likes; l++) {
+            likeBatch.stmt.setInt(1, replyId);
+            likeBatch.stmt.setString(2, userName((start + l) % users));
+            likeBatch.stmt.setTimestamp(3, timestamp(age + 1 + l));
+            likeBatch.stmt.addBatch();
+            likeBatch.count++;
+        }
+    }
+
+    // Adds the reviews of one reply, some with earlier versions; returns the last review id used.
+    private int addReviews(Random random, int[] reviewers, Batch reviewBatch, Batch feedbackBatch, int replyId,
+            int reviewId) throws SQLException {
+        int count = Math.min(reviewers.length, 1 + random.nextInt(2 * reviewsPerReply));
+        int start = random.nextInt(reviewers.length);
+        for (int r = 0; r < count; r++) {
+            String reviewer = userName(reviewers[(start + r) % reviewers.length]);
+            int versions = random.nextInt(100) < editedPercent ? 2 + random.nextInt(2) : 1;
+            int feedback = random.nextInt(2 * feedbackPerReview + 1);
+            for (int v = 1; v <= versions; v++) {
+                boolean current = v == versions;
+                reviewBatch.stmt.setInt(1, ++reviewId);
+                reviewBatch.stmt.setInt(2, replyId);
+                reviewBatch.stmt.setString(3, sentence(random, 8 + random.nextInt(30)));
+                reviewBatch.stmt.setString(4, reviewer);
+                reviewBatch.stmt.setInt(5, current ? feedback : 0);
+                if (v == 1) {
+                    reviewBatch.stmt.setNull(6, Types.INTEGER);
+                } else {
+                    reviewBatch.stmt.setInt(6, reviewId - 1);
+                }
+                reviewBatch.stmt.setBoolean(7, current);
+                reviewBatch.stmt.setInt(8, v);
+                reviewBatch.stmt.addBatch();
+                reviewBatch.count++;
+            }
+            for (int f = 0; f < feedback; f++) {
+                feedbackBatch.stmt.setInt(1, reviewId);
+                feedbackBatch.stmt.setString(2, userName(random.nextInt(users)));
+                feedbackBatch.stmt.setString(3, sentence(random, 4 + random.nextInt(20)));
+                feedbackBatch.stmt.addBatch();
+                feedbackBatch.count++;
+            }
+        }
+        return reviewId;
+    }
+
+    // Gives some users a read set: a run of the oldest generated posts and a few later ones.
+    private void generateReadState(Connection conn, Random random, Map<String, Long> rows) throws SQLException {
+        if (posts == 0) {
+            rows.put("PostReadSets", 0L);
+            return;
+        }
+        int lastPostId = maxId(conn, "Posts", "postId");
+        int firstPostId = lastPostId - posts + 1;
+        try (Batch batch = new Batch(conn, "PostReadSets",
+                "MERGE INTO PostReadSets (userName, readSet, readCount) KEY (userName) VALUES (?, ?, ?)")) {
+            for (int u = 0; u < users; u++) {
+                if (random.nextInt(100) >= readPercent) {
+                    continue;
+                }
+                PostReadSet readSet = new PostReadSet();
+                int caughtUpTo = firstPostId + random.nextInt(posts);
+                readSet.addRange(firstPostId, caughtUpTo);
+                for (int extra = random.nextInt(10); extra > 0; extra--) {
+                    readSet.add(firstPostId + random.nextInt(posts));
+                }
+                batch.stmt.setString(1, userName(u));
+                batch.stmt.setBytes(2, readSet.toBytes());
+                batch.stmt.setLong(3, readSet.size());
+                batch.add();
+            }
+            rows.put(batch.table, batch.count);
+        }
+    }
+
+    private static void flush(Connection conn, Batch[] order) throws SQLException {
+        for (Batch batch : order) {
+            batch.flush();
+        }
+        conn.commit();
+    }
+
+    private static int maxId(Connection conn, String table, String column) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // Explicit ids do not advance an identity column, so move it past the generated rows.
+    private static void restartIdentity(Connection conn, String table, String column, int lastId) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + (lastId + 1));
+        }
+    }
+
+    private static Timestamp timestamp(int minutes) {
+        return new Timestamp(EPOCH_MILLIS + minutes * 60_000L);
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (i == 0) {
+                text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                text.append(' ').append(word);
+            }
+        }
+        return text.append('.').toString();
+    }
+
+    /**
+     * A batched insert into one table, executed and committed every {@value #BATCH_SIZE} rows by
+     * {@link #add()}, or together with the batches of related tables by {@link #flush(Connection, Batch[])}.
+     */
+    private static final class Batch implements AutoCloseable {
+        private final Connection conn;
+        private final String table;
+        private final PreparedStatement stmt;
+        private long count;
+        private long flushed;
+
+        Batch(Connection conn, String table, String sql) throws SQLException {
+            this.conn = conn;
+            this.table = table;
+            this.stmt = conn.prepareStatement(sql);
+        }
+
+        long pending() {
+            return count - flushed;
+        }
+
+        void add() throws SQLException {
+            stmt.addBatch();
+            if (++count - flushed >= BATCH_SIZE) {
+                flush();
+                conn.commit();
+            }
+        }
+
+        void flush() throws SQLException {
+            if (pending() > 0) {
+                stmt.executeBatch();
+                flushed = count;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            flush();
+            stmt.close();
+        }
+    }
+
+    /**
+     * Generates a forum into a database. The first argument is the JDBC URL, an in-memory database by
+     * default; the volumes are system properties named after the setters ({@code gen.users},
+     * {@code gen.posts}, {@code gen.repliesPerPost}, ...) and {@code gen.seed} sets the seed.
+     *
+     * @param args the JDBC URL of the database to fill
+     * @throws SQLException if the database cannot be filled
+     */
+    public static void main(String[] args) throws SQLException {
+        String url = args.length > 0 ? args[0] : "jdbc:h2:mem:generated;DB_CLOSE_DELAY=-1";
+        try (ConnectionPool pool = new ConnectionPool(url, "sa", "", 2)) {
+            ForumDataGenerator generator = new ForumDataGenerator(pool, Long.getLong("gen.seed", 1L))
+                    .users(Integer.getInteger("gen.users", 1000))
+                    .posts(Integer.getInteger("gen.posts", 5000))
+                    .repliesPerPost(Integer.getInteger("gen.repliesPerPost", 4))
+                    .likesPerReply(Integer.getInteger("gen.likesPerReply", 2))
+                    .feedbackPerReview(Integer.getInteger("gen.feedbackPerReview", 1))
+                    .ratingsPerStudent(Integer.getInteger("gen.ratingsPerStudent", 3))
+                    .readPercent(Integer.getInteger("gen.readPercent", 60));
+            long start = System.nanoTime();
+            Map<String, Long> rows = generator.generate();
+            for (Map.Entry<String, Long> table : rows.entrySet()) {
+                System.out.printf("%-18s %,12d rows%n", table.getKey(), table.getValue());
+            }
+            System.out.printf("Generated in %.1f s%n", (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
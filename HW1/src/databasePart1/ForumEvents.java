@@ -0,0 +1,235 @@
+package databasePart1;
+
+import java.util.concurrent.Callable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The ForumEvents class holds the Java Flight Recorder events of the forum's main operations and page loads.
+ * They cost next to nothing unless a recording is running, so a continuous recording can be left on, e.g. with
+ * {@code -XX:StartFlightRecording:disk=true,maxage=1h}, and a stall in the UI matched with the database work
+ * behind it in JDK Mission Control or with {@code jfr print --events cse360.ThreadLoad}.
+ *
+ * <p>Every event carries the role of the signed-in user, the rows it produced and the number of statements it
+ * ran. Statements are counted per thread with {@link ConnectionPool#getThreadStatementCount()}; page loads, whose
+ * data is read on a background thread, count that work with {@link PageLoad#measure(Callable)}.</p>
+ */
+public final class ForumEvents {
+
+    private static volatile String sessionRole = "";
+
+    private ForumEvents() {
+    }
+
+    /**
+     * Sets the role of the user signed in to this application, recorded with every event.
+     *
+     * @param role the role, or null when nobody is signed in
+     */
+    public static void setSessionRole(String role) {
+        sessionRole = role == null ? "" : role;
+    }
+
+    /**
+     * Gets the role of the user signed in to this application.
+     *
+     * @return the role, empty if nobody is signed in
+     */
+    public static String getSessionRole() {
+        return sessionRole;
+    }
+
+    /**
+     * The fields and timing shared by every forum event. An operation calls {@link #start()} before its
+     * work and {@link #finish()} after it.
+     */
+    @Category({ "CSE360", "Forum" })
+    @StackTrace(false)
+    public abstract static class ForumEvent extends Event {
+        @Label("Role")
+        @Description("Role of the signed-in user")
+        public String role;
+
+        @Label("Rows")
+        @Description("Rows returned, shown or written")
+        public long rows;
+
+        @Label("Queries")
+        @Description("Statements run for the operation")
+        public long queries;
+
+        // Not recorded; the thread's statement count when start() was called, or -1.
+        private transient long statementMark = -1;
+
+        /**
+         * Starts timing an operation that runs on the calling thread, counting the statements it runs.
+         */
+        public void start() {
+            if (isEnabled()) {
+                statementMark = ConnectionPool.getThreadStatementCount();
+            }
+            begin();
+        }
+
+        /**
+         * Ends the event and records it if a recording wants it.
+         */
+        public void finish() {
+            end();
+            if (shouldCommit()) {
+                if (statementMark >= 0) {
+                    queries += ConnectionPool.getThreadStatementCount() - statementMark;
+                }
+                role = sessionRole;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * An event of a page whose data is read in the background. The page calls {@code begin()} when it asks
+     * for its data, runs the read through {@link #measure(Callable)} and calls {@link #finish()} once the data
+     * is shown, so the event spans everything the user waited for.
+     */
+    public abstract static class PageLoad extends ForumEvent {
+        @Label("Load Time")
+        @Description("Time spent reading the data; the rest of the duration was queueing and layout")
+        @Timespan(Timespan.NANOSECONDS)
+        public long loadTime;
+
+        /**
+         * Runs the data access of the page, counting its time and statements. The page's background
+         * service hands the result to the UI thread, which makes these fields visible to {@link #finish()}.
+         *
+         * @param <T>  the type of the result
+         * @param work the data access
+         * @return the result of the work
+         * @throws Exception if the work fails
+         */
+        public <T> T measure(Callable<T> work) throws Exception {
+            if (!isEnabled()) {
+                return work.call();
+            }
+            long mark = ConnectionPool.getThreadStatementCount();
+            long start = System.nanoTime();
+            try {
+                return work.call();
+            } finally {
+                loadTime += System.nanoTime() - start;
+                queries += ConnectionPool.getThreadStatementCount() - mark;
+            }
+        }
+    }
+
+    /**
+     * A post was created.
+     */
+    @Name("cse360.PostCreate")
+    @Label("Post Create")
+    @Description("A student asked a question")
+    public static class PostCreate extends ForumEvent {
+        @Label("User")
+        public String userName;
+
+        @Label("Post Id")
+        public int postId;
+    }
+
+    /**
+     * Posts were searched by keyword.
+     */
+    @Name("cse360.PostSearch")
+    @Label("Post Search")
+    @Description("Posts ranked by a keyword search")
+    public static class PostSearch extends ForumEvent {
+        @Label("Keyword")
+        public String keyword;
+    }
+
+    /**
+     * A page of the post list was read.
+     */
+    @Name("cse360.PostList")
+    @Label("Post List")
+    @Description("One page of the filtered and sorted post list")
+    public static class PostList extends ForumEvent {
+        @Label("Filter")
+        public String filter;
+
+        @Label("Sort")
+        public String sort;
+
+        @Label("Keyword")
+        public String keyword;
+
+        @Label("Next Page")
+        @Description("Whether the page continued from a cursor")
+        public boolean continued;
+    }
+
+    /**
+     * The replies of a post were loaded and shown.
+     */
+    @Name("cse360.ThreadLoad")
+    @Label("Thread Load")
+    @Description("The answer page read a post's replies and laid them out")
+    public static class ThreadLoad extends PageLoad {
+        @Label("Post Id")
+        public int postId;
+
+        @Label("Sort")
+        public String sort;
+    }
+
+    /**
+     * The reviews of a post or reply were loaded, sorted and shown.
+     */
+    @Name("cse360.ReviewLoad")
+    @Label("Review Load")
+    @Description("The review page read, sorted and laid out the current reviews")
+    public static class ReviewLoad extends PageLoad {
+        @Label("Target Id")
+        public int targetId;
+
+        @Label("For Post")
+        @Description("Whether the reviews are of a post rather than a reply")
+        public boolean forPost;
+
+        @Label("Sort")
+        public String sort;
+    }
+
+    /**
+     * A user's notifications were read.
+     */
+    @Name("cse360.NotificationRead")
+    @Label("Notification Read")
+    @Description("Notifications or their count read for a user")
+    public static class NotificationRead extends ForumEvent {
+        @Label("User Id")
+        public int userId;
+
+        @Label("Operation")
+        public String operation;
+    }
+
+    /**
+     * A user tried to sign in.
+     */
+    @Name("cse360.Login")
+    @Label("Login")
+    @Description("A sign-in attempt")
+    public static class Login extends ForumEvent {
+        @Label("User")
+        public String userName;
+
+        @Label("Success")
+        public boolean success;
+    }
+}
@@ -0,0 +1,376 @@
+package databasePart1;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The OperationMetrics class counts the calls, failures and latency of the public methods of one
+ * component, such as a handler. A method runs its body through {@link #time(String, Operation)} or
+ * {@link #run(String, Action)}, and gets its own JMX MXBean named
+ * {@code cse360:type=Operation,component=<component>,method=<method>} the first time it is called,
+ * so JConsole or any JMX client can watch the rate, error count and latency percentiles of every
+ * forum operation in a running application.
+ *
+ * <p>A call fails if an exception escapes it or if a pooled connection reported an SQL error on the calling
+ * thread while it ran (see {@link ConnectionPool#getThreadErrorCount()}), so methods that print an error and
+ * return a default value are counted as failed too.</p>
+ *
+ * <p>Recording takes no lock: a call costs two {@link System#nanoTime()} reads, one map lookup and a
+ * few striped counter updates. Set {@code -Dcse360.metrics.jmx=false} to keep the counters without
+ * registering MBeans.</p>
+ */
+public class OperationMetrics {
+
+    /** The JMX domain of the operation MBeans. */
+    public static final String JMX_DOMAIN = "cse360";
+
+    private static final boolean REGISTER_JMX =
+            Boolean.parseBoolean(System.getProperty("cse360.metrics.jmx", "true"));
+
+    private static final ConcurrentMap<String, OperationMetrics> COMPONENTS = new ConcurrentHashMap<>();
+
+    private final String component;
+    private final ConcurrentMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+
+    private OperationMetrics(String component) {
+        this.component = component;
+    }
+
+    /**
+     * Gets the metrics of a component, creating them the first time. Every instance of a handler
+     * shares its class's metrics.
+     *
+     * @param component the component name, usually the simple class name
+     * @return the component's metrics
+     */
+    public static OperationMetrics forComponent(String component) {
+        return COMPONENTS.computeIfAbsent(component, OperationMetrics::new);
+    }
+
+    /**
+     * Gets the metrics of every component created so far.
+     *
+     * @return the components' metrics
+     */
+    public static List<OperationMetrics> getComponents() {
+        return new ArrayList<>(COMPONENTS.values());
+    }
+
+    /**
+     * The body of a method that returns a value.
+     *
+     * @param <T> the type of the result
+     * @param <E> the type of exception the body may throw
+     */
+    @FunctionalInterface
+    public interface Operation<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * The body of a method that returns nothing.
+     *
+     * @param <E> the type of exception the body may throw
+     */
+    @FunctionalInterface
+    public interface Action<E extends Exception> {
+        void run() throws E;
+    }
+
+    /**
+     * Runs and times the body of a method that returns a value.
+     *
+     * @param <T>       the type of the result
+     * @param <E>       the type of exception the body may throw
+     * @param method    the method name
+     * @param operation the body of the method
+     * @return the result of the body
+     * @throws E if the body throws it
+     */
+    public <T, E extends Exception> T time(String method, Operation<T, E> operation) throws E {
+        Call call = begin(method);
+        try {
+            return operation.call();
+        } catch (Throwable e) {
+            call.fail();
+            throw e;
+        } finally {
+            call.end();
+        }
+    }
+
+    /**
+     * Runs and times the body of a method that returns nothing.
+     *
+     * @param <E>    the type of exception the body may throw
+     * @param method the method name
+     * @param action the body of the method
+     * @throws E if the body throws it
+     */
+    public <E extends Exception> void run(String method, Action<E> action) throws E {
+        Call call = begin(method);
+        try {
+            action.run();
+        } catch (Throwable e) {
+            call.fail();
+            throw e;
+        } finally {
+            call.end();
+        }
+    }
+
+    /**
+     * Starts timing one call of a method, for code that cannot be wrapped in a lambda.
+     *
+     * @param method the method name
+     * @return the call, to be ended in a {@code finally} block
+     */
+    public Call begin(String method) {
+        MethodStats stats = methods.get(method);
+        if (stats == null) {
+            stats = methods.computeIfAbsent(method, this::newMethod);
+        }
+        return new Call(stats, System.nanoTime(), ConnectionPool.getThreadErrorCount());
+    }
+
+    private MethodStats newMethod(String method) {
+        MethodStats stats = new MethodStats(component, method);
+        if (REGISTER_JMX) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Operation,component="
+                        + ObjectName.quote(component) + ",method=" + ObjectName.quote(method));
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(stats, name);
+                }
+            } catch (JMException | RuntimeException e) {
+                System.err.println("Could not register metrics for " + component + "." + method + ": " + e.getMessage());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Gets the component name.
+     *
+     * @return the name the component's MBeans are registered under
+     */
+    public String getComponent() {
+        return component;
+    }
+
+    /**
+     * Gets the statistics of one method.
+     *
+     * @param method the method name
+     * @return the statistics, or null if the method has not been called
+     */
+    public MethodStats getMethod(String method) {
+        return methods.get(method);
+    }
+
+    /**
+     * Gets the statistics of every method called so far, slowest in total first.
+     *
+     * @return the statistics
+     */
+    public List<MethodStats> getMethods() {
+        List<MethodStats> list = new ArrayList<>(methods.values());
+        list.sort((a, b) -> Long.compare(b.latency.getTotalNanos(), a.latency.getTotalNanos()));
+        return list;
+    }
+
+    /**
+     * One timed call. It counts as an error if {@link #fail()} was called before {@link #end()} or if
+     * the calling thread ran into an SQL error in between.
+     */
+    public static final class Call {
+        private final MethodStats stats;
+        private final long start;
+        private final long errorMark;
+        private boolean failed;
+
+        Call(MethodStats stats, long start, long errorMark) {
+            this.stats = stats;
+            this.start = start;
+            this.errorMark = errorMark;
+        }
+
+        /**
+         * Marks the call as failed.
+         */
+        public void fail() {
+            failed = true;
+        }
+
+        /**
+         * Ends the call and records its latency and outcome.
+         */
+        public void end() {
+            stats.record(System.nanoTime() - start, failed || ConnectionPool.getThreadErrorCount() != errorMark);
+        }
+    }
+
+    /**
+     * The attributes and operations of one method's MBean.
+     */
+    public interface MethodStatsMXBean {
+        /** @return the component the method belongs to */
+        String getComponent();
+        /** @return the method name */
+        String getMethod();
+        /** @return the number of calls since the start or the last reset */
+        long getCount();
+        /** @return the number of failed calls */
+        long getErrors();
+        /** @return the share of calls that failed, from 0 to 1 */
+        double getErrorRate();
+        /** @return calls per second, exponentially weighted over about the last minute */
+        double getOneMinuteRate();
+        /** @return calls per second since the start or the last reset */
+        double getMeanRate();
+        /** @return the mean latency in milliseconds */
+        double getMeanMillis();
+        /** @return the median latency in milliseconds */
+        double getP50Millis();
+        /** @return the 95th percentile latency in milliseconds */
+        double getP95Millis();
+        /** @return the 99th percentile latency in milliseconds */
+        double getP99Millis();
+        /** @return the 99.9th percentile latency in milliseconds */
+        double getP999Millis();
+        /** @return the longest latency in milliseconds */
+        double getMaxMillis();
+        /** Forgets every recorded call. */
+        void reset();
+    }
+
+    /**
+     * The counters and latency histogram of one method.
+     */
+    public static final class MethodStats implements MethodStatsMXBean {
+        // The one-minute rate is updated in 5 second ticks, the way Unix load averages are.
+        private static final long TICK_NANOS = 5_000_000_000L;
+        private static final double ALPHA = 1 - Math.exp(-5 / 60.0);
+
+        private final String component;
+        private final String method;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder uncounted = new LongAdder();
+        private volatile long startNanos = System.nanoTime();
+        private long lastTick = startNanos;
+        private double rate;
+        private boolean rateInitialized;
+
+        MethodStats(String component, String method) {
+            this.component = component;
+            this.method = method;
+        }
+
+        void record(long nanos, boolean failed) {
+            latency.record(nanos);
+            uncounted.increment();
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        // Folds the calls since the last tick into the rate, one tick at a time.
+        private synchronized double tick() {
+            long now = System.nanoTime();
+            while (now - lastTick >= TICK_NANOS) {
+                double instant = uncounted.sumThenReset() / (TICK_NANOS / 1e9);
+                if (rateInitialized) {
+                    rate += ALPHA * (instant - rate);
+                } else {
+                    rate = instant;
+                    rateInitialized = true;
+                }
+                lastTick += TICK_NANOS;
+            }
+            return rate;
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+
+        /**
+         * Gets the latency histogram of the method.
+         *
+         * @return the histogram
+         */
+        public LatencyHistogram getLatency() { return latency; }
+
+        @Override
+        public String getComponent() { return component; }
+
+        @Override
+        public String getMethod() { return method; }
+
+        @Override
+        public long getCount() { return latency.getCount(); }
+
+        @Override
+        public long getErrors() { return errors.sum(); }
+
+        @Override
+        public double getErrorRate() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) getErrors() / count;
+        }
+
+        @Override
+        public double getOneMinuteRate() { return tick(); }
+
+        @Override
+        public double getMeanRate() {
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            return seconds <= 0 ? 0 : getCount() / seconds;
+        }
+
+        @Override
+        public double getMeanMillis() { return latency.getMeanNanos() / 1e6; }
+
+        @Override
+        public double getP50Millis() { return millis(latency.getPercentileNanos(50)); }
+
+        @Override
+        public double getP95Millis() { return millis(latency.getPercentileNanos(95)); }
+
+        @Override
+        public double getP99Millis() { return millis(latency.getPercentileNanos(99)); }
+
+        @Override
+        public double getP999Millis() { return millis(latency.getPercentileNanos(99.9)); }
+
+        @Override
+        public double getMaxMillis() { return millis(latency.getMaxNanos()); }
+
+        @Override
+        public synchronized void reset() {
+            latency.reset();
+            errors.reset();
+            uncounted.reset();
+            startNanos = System.nanoTime();
+            lastTick = startNanos;
+            rate = 0;
+            rateInitialized = false;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s.%s count=%d errors=%d p50=%.3fms p99=%.3fms max=%.3fms",
+                    component, method, getCount(), getErrors(), getP50Millis(), getP99Millis(), getMaxMillis());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SchemaMigrator class brings one part of the schema up to date by running numbered migration steps.
+ * Each component (for example the tables owned by one handler) records the last version it applied in the
+ * {@code schema_version} table, so steps run once per database and are skipped entirely when the database
+ * is already current.
+ *
+ * <p>Steps must be idempotent (use {@code IF NOT EXISTS} and similar), because databases created before
+ * versioning was added run every step once against tables that may already exist.</p>
+ */
+public class SchemaMigrator {
+
+    /**
+     * A single migration step.
+     */
+    @FunctionalInterface
+    public interface Step {
+        /**
+         * Applies the step on the given connection.
+         *
+         * @param conn the connection to run the step on
+         * @throws SQLException if the step fails
+         */
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private static final String VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version ("
+            + "component VARCHAR(100) PRIMARY KEY, "
+            + "version INT NOT NULL, "
+            + "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
+
+    private final String component;
+    private final List<Integer> versions = new ArrayList<>();
+    private final List<String> descriptions = new ArrayList<>();
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Constructs a migrator for the given component.
+     *
+     * @param component the name the component's version is recorded under
+     */
+    public SchemaMigrator(String component) {
+        this.component = component;
+    }
+
+    /**
+     * Adds a migration step. Steps must be added in increasing version order.
+     *
+     * @param version     the version the database is at after this step
+     * @param description a short description printed when the step runs
+     * @param step        the step to run
+     * @return this migrator
+     */
+    public SchemaMigrator step(int version, String description, Step step) {
+        if (version <= getLatestVersion()) {
+            throw new IllegalArgumentException("Migration versions must increase: " + component + " v" + version);
+        }
+        versions.add(version);
+        descriptions.add(description);
+        steps.add(step);
+        return this;
+    }
+
+    /**
+     * Adds a migration step that executes the given SQL statements in order.
+     *
+     * @param version     the version the database is at after this step
+     * @param description a short description printed when the step runs
+     * @param statements  the SQL statements to execute
+     * @return this migrator
+     */
+    public SchemaMigrator step(int version, String description, String... statements) {
+        return step(version, description, conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the version the last step brings the database to.
+     * @return the latest version, or 0 if there are no steps
+     */
+    public int getLatestVersion() {
+        return versions.isEmpty() ? 0 : versions.get(versions.size() - 1);
+    }
+
+    /**
+     * Gets the name the component's version is recorded under.
+     * @return the component name
+     */
+    public String getComponent() { return component; }
+
+    /**
+     * Runs every step newer than the version recorded for this component. Each step is committed
+     * together with its version update, so a failed step can simply be retried on the next start.
+     *
+     * @param conn the connection to migrate
+     * @return the number of steps applied
+     * @throws SQLException if a step fails
+     */
+    public int migrate(Connection conn) throws SQLException {
+        int current = getCurrentVersion(conn);
+        if (current >= getLatestVersion()) {
+            return 0;
+        }
+
+        int applied = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        try {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < steps.size(); i++) {
+                int version = versions.get(i);
+                if (version <= current) {
+                    continue;
+                }
+                try {
+                    steps.get(i).apply(conn);
+                    recordVersion(conn, version);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + component + " v" + version + " failed: " + e.getMessage(), e);
+                }
+                System.out.println("Applied migration " + component + " v" + version + ": " + descriptions.get(i));
+                applied++;
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    /**
+     * Reads the version recorded for this component, creating the version table if needed.
+     *
+     * @param conn the connection to read from
+     * @return the recorded version, or 0 if the component has never been migrated
+     * @throws SQLException if the version cannot be read
+     */
+    public int getCurrentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(VERSION_TABLE);
+        }
+        String query = "SELECT version FROM schema_version WHERE component = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setString(1, component);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt("version") : 0;
+            }
+        }
+    }
+
+    private void recordVersion(Connection conn, int version) throws SQLException {
+        String query = "MERGE INTO schema_version (component, version, applied_at) KEY (component) "
+                + "VALUES (?, ?, CURRENT_TIMESTAMP)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setString(1, component);
+            pstmt.setInt(2, version);
+            pstmt.executeUpdate();
+        }
+    }
+}
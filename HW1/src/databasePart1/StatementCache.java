@@ -0,0 +1,327 @@
+package databasePart1;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The StatementCache class keeps the prepared statements of one physical connection so that
+ * identical SQL is parsed and planned only once. Statements are kept in least-recently-used order
+ * and the oldest one is closed when the cache is full.
+ *
+ * <p>Callers never see the cached statement itself. They get a wrapper whose {@code close()} clears
+ * the parameters and puts the statement back in the cache, so existing try-with-resources code keeps working.
+ * If the same SQL is prepared again while its cached statement is still open, the second caller gets
+ * an ordinary uncached statement.</p>
+ */
+public class StatementCache {
+
+    /** Passed as the generated keys flag for statements prepared without one. */
+    private static final int NO_GENERATED_KEYS = -1;
+
+    private final Connection physical;
+    private final int capacity;
+    private final ConcurrentMap<String, Stats> stats;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Constructs a cache for the given connection.
+     *
+     * @param physical the connection the statements are prepared on
+     * @param capacity the maximum number of statements kept open
+     * @param stats    hit and miss counters keyed by SQL text, shared with the other caches of the pool
+     */
+    StatementCache(Connection physical, int capacity, ConcurrentMap<String, Stats> stats) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.stats = stats;
+        // Access order turns the map into an LRU list.
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a prepared statement for the SQL, reusing a cached one when it is free.
+     *
+     * @param owner the connection handle the caller borrowed, returned by {@code getConnection()} on the statement
+     * @param sql   the SQL text
+     * @return a statement whose {@code close()} returns it to the cache
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(Connection owner, String sql) throws SQLException {
+        return prepare(owner, sql, NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Returns a prepared statement for the SQL with the given generated keys flag,
+     * reusing a cached one when it is free.
+     *
+     * @param owner             the connection handle the caller borrowed
+     * @param sql               the SQL text
+     * @param autoGeneratedKeys a {@link java.sql.Statement} generated keys constant
+     * @return a statement whose {@code close()} returns it to the cache
+     * @throws SQLException if the statement cannot be prepared
+     */
+    synchronized PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        Stats counters = stats.computeIfAbsent(sql, Stats::new);
+
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            counters.hits.increment();
+            entry.inUse = true;
+            return wrap(owner, entry);
+        }
+
+        counters.misses.increment();
+        PreparedStatement statement = autoGeneratedKeys == NO_GENERATED_KEYS
+                ? physical.prepareStatement(sql)
+                : physical.prepareStatement(sql, autoGeneratedKeys);
+        if (entry != null) {
+            // The cached copy is still open further up the call stack.
+            return statement;
+        }
+
+        entry = new Entry(key, statement);
+        entry.inUse = true;
+        entries.put(key, entry);
+        evictOverflow(counters);
+        return wrap(owner, entry);
+    }
+
+    private void evictOverflow(Stats counters) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > capacity && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            stats.computeIfAbsent(sqlOf(eldest.key), Stats::new).evictions.increment();
+            eldest.evicted = true;
+            if (!eldest.inUse) {
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    /**
+     * Puts a statement back after its wrapper was closed.
+     */
+    private synchronized void giveBack(Entry entry) {
+        boolean reusable = !entry.evicted && !entry.dirty;
+        if (reusable) {
+            try {
+                ResultSet open = entry.statement.getResultSet();
+                if (open != null) {
+                    open.close();
+                }
+                entry.statement.clearParameters();
+                entry.statement.clearWarnings();
+                reusable = !entry.statement.isClosed();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+
+        entry.inUse = false;
+        if (!reusable) {
+            if (!entry.evicted) {
+                entries.remove(entry.key);
+            }
+            closeQuietly(entry.statement);
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called when the connection is closed.
+     */
+    synchronized void closeAll() {
+        for (Entry entry : entries.values()) {
+            entry.evicted = true;
+            if (!entry.inUse) {
+                closeQuietly(entry.statement);
+            }
+        }
+        entries.clear();
+    }
+
+    /**
+     * Gets the number of statements currently cached.
+     * @return the cached statement count
+     */
+    public synchronized int size() { return entries.size(); }
+
+    /**
+     * Gets the maximum number of statements this cache keeps open.
+     * @return the capacity
+     */
+    public int getCapacity() { return capacity; }
+
+    private static String sqlOf(String key) {
+        return key.substring(key.indexOf(':') + 1);
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks whether a statement is a wrapper handed out by a statement cache.
+     *
+     * @param statement the statement
+     * @return true if closing the statement returns it to a cache
+     */
+    static boolean isCached(Statement statement) {
+        return Proxy.isProxyClass(statement.getClass()) && Proxy.getInvocationHandler(statement) instanceof Handle;
+    }
+
+    private PreparedStatement wrap(Connection owner, Entry entry) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new Handle(owner, entry));
+    }
+
+    /**
+     * Returns the hit and miss counters of every SQL string seen so far, most used first.
+     *
+     * @param stats the counters to sort
+     * @return a sorted copy of the counters
+     */
+    static List<Stats> sorted(Map<String, Stats> stats) {
+        List<Stats> list = new ArrayList<>(stats.values());
+        list.sort((a, b) -> Long.compare(b.getHits() + b.getMisses(), a.getHits() + a.getMisses()));
+        return list;
+    }
+
+    /**
+     * Hit, miss and eviction counters for one SQL string.
+     */
+    public static class Stats {
+        private final String sql;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        Stats(String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * Gets the SQL text.
+         * @return the SQL text
+         */
+        public String getSql() { return sql; }
+
+        /**
+         * Gets the number of times a cached statement was reused.
+         * @return the hit count
+         */
+        public long getHits() { return hits.sum(); }
+
+        /**
+         * Gets the number of times the statement had to be prepared.
+         * @return the miss count
+         */
+        public long getMisses() { return misses.sum(); }
+
+        /**
+         * Gets the number of times the statement was closed to make room for another.
+         * @return the eviction count
+         */
+        public long getEvictions() { return evictions.sum(); }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d evictions=%d %s", getHits(), getMisses(), getEvictions(), sql);
+        }
+    }
+
+    /**
+     * A cached statement and its state.
+     */
+    private static class Entry {
+        private final String key;
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+        // Set when the caller changed a setting that clearParameters() does not reset.
+        private boolean dirty;
+
+        Entry(String key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * The statement handed to callers. Closing it returns the cached statement.
+     */
+    private class Handle implements InvocationHandler {
+        private final Connection owner;
+        private final Entry entry;
+        private boolean handleClosed;
+
+        Handle(Connection owner, Entry entry) {
+            this.owner = owner;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        giveBack(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return handleClosed || entry.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + entry.statement + "]";
+                case "setMaxRows":
+                case "setLargeMaxRows":
+                case "setFetchSize":
+                case "setFetchDirection":
+                case "setQueryTimeout":
+                case "setMaxFieldSize":
+                case "setEscapeProcessing":
+                case "setPoolable":
+                case "closeOnCompletion":
+                    entry.dirty = true;
+                    break;
+                default:
+                    break;
+            }
+            if (handleClosed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw ConnectionPool.countError(e.getCause());
+            }
+        }
+    }
+}
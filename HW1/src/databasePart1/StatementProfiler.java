@@ -0,0 +1,565 @@
+package databasePart1;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The StatementProfiler class times every statement executed through a {@link ConnectionPool} it is
+ * attached to with {@link ConnectionPool#setProfiler(StatementProfiler)}. For each statement it records
+ * the execution time, the rows returned or changed and the handler method that ran it.
+ *
+ * <p>Executions are grouped by normalized SQL, in which literals become {@code ?} and {@code IN} lists of any
+ * length become {@code IN (?...)}, so {@link #getTopStatements(int)} ranks the shapes of query by the total
+ * time spent in them. A lookup run once per row of another query shows up there as one cheap statement with
+ * a huge count. Executions slower than the threshold are also written to the error output together with
+ * their bind parameters and kept in {@link #getSlowQueries()}.</p>
+ */
+public class StatementProfiler {
+
+    /** Number of slow queries kept for {@link #getSlowQueries()}. */
+    public static final int SLOW_QUERY_HISTORY = 100;
+
+    /** Call sites kept per statement; later ones are counted under "other". */
+    private static final int MAX_CALL_SITES = 8;
+
+    /** Characters of a bind parameter shown in the slow-query log. */
+    private static final int MAX_PARAMETER_LENGTH = 80;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern LAMBDA = Pattern.compile("lambda\\$(\\w+?)\\$\\d+");
+
+    // Frames of the JDBC plumbing, skipped when looking for the code that ran a statement.
+    private static final List<String> PLUMBING = List.of(StatementProfiler.class.getName(),
+            ConnectionPool.class.getName(), StatementCache.class.getName(), OperationMetrics.class.getName(),
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "org.h2.");
+
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private final long slowThresholdNanos;
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> normalized = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    /**
+     * Constructs a profiler.
+     *
+     * @param slowThresholdMillis executions taking at least this many milliseconds are logged as slow
+     */
+    public StatementProfiler(long slowThresholdMillis) {
+        if (slowThresholdMillis < 0) {
+            throw new IllegalArgumentException("Slow query threshold cannot be negative");
+        }
+        this.slowThresholdNanos = slowThresholdMillis * 1_000_000;
+    }
+
+    /**
+     * Gets the slow query threshold.
+     *
+     * @return the threshold in milliseconds
+     */
+    public long getSlowThresholdMillis() {
+        return slowThresholdNanos / 1_000_000;
+    }
+
+    /**
+     * Wraps a statement so its executions are recorded.
+     *
+     * @param statement the statement to wrap
+     * @param sql       the SQL the statement was prepared with, or null for a plain statement
+     * @return a statement of the same kind that records its executions here
+     */
+    Statement wrap(Statement statement, String sql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(StatementProfiler.class.getClassLoader(),
+                new Class<?>[] { type }, new StatementHandle(statement, sql));
+    }
+
+    /**
+     * Reduces SQL to its shape: literals become {@code ?}, {@code IN} lists collapse to {@code IN (?...)}
+     * and runs of whitespace become one space.
+     *
+     * @param sql the SQL text
+     * @return the normalized SQL
+     */
+    public static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        return IN_LIST.matcher(shape).replaceAll("IN (?...)");
+    }
+
+    private Stats statsFor(String sql) {
+        // Most SQL is a constant, so the regex work is done once per distinct string.
+        String shape = normalized.get(sql);
+        if (shape == null) {
+            shape = normalize(sql);
+            if (normalized.size() < 10_000) {
+                normalized.put(sql, shape);
+            }
+        }
+        return stats.computeIfAbsent(shape, Stats::new);
+    }
+
+    private static String callSite() {
+        Optional<StackWalker.StackFrame> frame = WALKER.walk(frames -> frames
+                .filter(f -> PLUMBING.stream().noneMatch(f.getClassName()::startsWith)
+                        && !f.getClassName().contains("$Proxy"))
+                .findFirst());
+        if (!frame.isPresent()) {
+            return "unknown";
+        }
+        StackWalker.StackFrame f = frame.get();
+        String className = f.getClassName();
+        // A method body timed by OperationMetrics runs as a lambda named lambda$<method>$<n>.
+        Matcher lambda = LAMBDA.matcher(f.getMethodName());
+        String methodName = lambda.matches() ? lambda.group(1) : f.getMethodName();
+        return className.substring(className.lastIndexOf('.') + 1) + "." + methodName + ":" + f.getLineNumber();
+    }
+
+    private void record(String sql, long nanos, long rows, boolean failed, String callSite,
+            Map<Integer, Object> parameters, int batched) {
+        Stats counters = statsFor(sql);
+        counters.latency.record(nanos);
+        if (rows > 0) {
+            counters.rows.add(rows);
+        }
+        if (failed) {
+            counters.errors.increment();
+        }
+        counters.countCallSite(callSite);
+
+        if (nanos >= slowThresholdNanos) {
+            String shown = batched > 0 ? "batch of " + batched : formatParameters(parameters);
+            SlowQuery slow = new SlowQuery(sql, nanos, rows, callSite, shown);
+            System.err.println(slow);
+            synchronized (slowQueries) {
+                slowQueries.addLast(slow);
+                if (slowQueries.size() > SLOW_QUERY_HISTORY) {
+                    slowQueries.removeFirst();
+                }
+            }
+        }
+    }
+
+    private static String formatParameters(Map<Integer, Object> parameters) {
+        if (parameters == null || parameters.isEmpty()) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+            Object value = parameter.getValue();
+            String shown = value instanceof String ? "'" + value + "'" : String.valueOf(value);
+            if (shown.length() > MAX_PARAMETER_LENGTH) {
+                shown = shown.substring(0, MAX_PARAMETER_LENGTH) + "...";
+            }
+            text.append(text.length() == 0 ? "" : ", ").append(parameter.getKey()).append('=').append(shown);
+        }
+        return text.toString();
+    }
+
+    private void addRows(String sql, long rows) {
+        if (rows > 0) {
+            statsFor(sql).rows.add(rows);
+        }
+    }
+
+    /**
+     * Gets the statements with the most total execution time.
+     *
+     * @param limit the maximum number of statements to return
+     * @return the statistics of the costliest statements, costliest first
+     */
+    public List<Stats> getTopStatements(int limit) {
+        List<Stats> list = new ArrayList<>(stats.values());
+        list.sort((a, b) -> Long.compare(b.latency.getTotalNanos(), a.latency.getTotalNanos()));
+        return list.subList(0, Math.min(limit, list.size()));
+    }
+
+    /**
+     * Gets the most recent slow executions, oldest first.
+     *
+     * @return up to {@value #SLOW_QUERY_HISTORY} slow queries
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    /**
+     * Forgets every recorded execution.
+     */
+    public void reset() {
+        stats.clear();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    /**
+     * Formats the costliest statements as a table, one line per statement.
+     *
+     * @param limit the maximum number of statements to include
+     * @return the report
+     */
+    public String report(int limit) {
+        StringBuilder text = new StringBuilder(String.format("%10s %10s %9s %9s %10s  %s%n",
+                "total ms", "count", "mean ms", "p99 ms", "rows", "statement (top call site)"));
+        for (Stats s : getTopStatements(limit)) {
+            text.append(String.format("%10.1f %10d %9.3f %9.3f %10d  %s (%s)%n", s.getTotalMillis(), s.getCount(),
+                    s.getMeanMillis(), s.getP99Millis(), s.getRows(), s.getSql(), s.getTopCallSite()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Execution counters for one normalized statement.
+     */
+    public static class Stats {
+        private final String sql;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> callSites = new ConcurrentHashMap<>();
+
+        Stats(String sql) {
+            this.sql = sql;
+        }
+
+        private void countCallSite(String callSite) {
+            LongAdder count = callSites.get(callSite);
+            if (count == null) {
+                String key = callSites.size() < MAX_CALL_SITES ? callSite : "other";
+                count = callSites.computeIfAbsent(key, k -> new LongAdder());
+            }
+            count.increment();
+        }
+
+        /**
+         * Gets the normalized SQL.
+         * @return the SQL with its literals replaced by {@code ?}
+         */
+        public String getSql() { return sql; }
+
+        /**
+         * Gets the number of executions.
+         * @return the execution count
+         */
+        public long getCount() { return latency.getCount(); }
+
+        /**
+         * Gets the number of executions that threw.
+         * @return the error count
+         */
+        public long getErrors() { return errors.sum(); }
+
+        /**
+         * Gets the rows returned by queries or changed by updates, over all executions.
+         * Rows of a query are counted as they are read.
+         * @return the row count
+         */
+        public long getRows() { return rows.sum(); }
+
+        /**
+         * Gets the total execution time.
+         * @return the total in milliseconds
+         */
+        public double getTotalMillis() { return latency.getTotalNanos() / 1e6; }
+
+        /**
+         * Gets the mean execution time.
+         * @return the mean in milliseconds
+         */
+        public double getMeanMillis() { return latency.getMeanNanos() / 1e6; }
+
+        /**
+         * Gets the 99th percentile execution time.
+         * @return the percentile in milliseconds
+         */
+        public double getP99Millis() { return latency.getPercentileNanos(99) / 1e6; }
+
+        /**
+         * Gets the longest execution time.
+         * @return the maximum in milliseconds
+         */
+        public double getMaxMillis() { return latency.getMaxNanos() / 1e6; }
+
+        /**
+         * Gets how many executions came from each call site.
+         * @return executions keyed by {@code Class.method:line}, in call site order
+         */
+        public Map<String, Long> getCallSites() {
+            Map<String, Long> counts = new TreeMap<>();
+            callSites.forEach((site, count) -> counts.put(site, count.sum()));
+            return counts;
+        }
+
+        /**
+         * Gets the call site that ran the statement most often.
+         * @return the call site, or "unknown" if the statement has not run
+         */
+        public String getTopCallSite() {
+            String top = "unknown";
+            long most = 0;
+            for (Map.Entry<String, LongAdder> site : callSites.entrySet()) {
+                long count = site.getValue().sum();
+                if (count > most) {
+                    most = count;
+                    top = site.getKey();
+                }
+            }
+            return top;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d total=%.1fms mean=%.3fms rows=%d %s", getCount(), getTotalMillis(),
+                    getMeanMillis(), getRows(), sql);
+        }
+    }
+
+    /**
+     * One execution that took longer than the threshold.
+     */
+    public static class SlowQuery {
+        private final String sql;
+        private final long nanos;
+        private final long rows;
+        private final String callSite;
+        private final String parameters;
+
+        SlowQuery(String sql, long nanos, long rows, String callSite, String parameters) {
+            this.sql = sql;
+            this.nanos = nanos;
+            this.rows = rows;
+            this.callSite = callSite;
+            this.parameters = parameters;
+        }
+
+        /**
+         * Gets the SQL as it was executed.
+         * @return the SQL text
+         */
+        public String getSql() { return sql; }
+
+        /**
+         * Gets the execution time.
+         * @return the time in milliseconds
+         */
+        public double getMillis() { return nanos / 1e6; }
+
+        /**
+         * Gets the rows changed by an update.
+         * @return the update count, or -1 for a query, whose rows are read after it executes
+         */
+        public long getRows() { return rows; }
+
+        /**
+         * Gets the code that ran the statement.
+         * @return the call site as {@code Class.method:line}
+         */
+        public String getCallSite() { return callSite; }
+
+        /**
+         * Gets the bind parameters.
+         * @return the parameters as {@code index=value} pairs, empty if there were none
+         */
+        public String getParameters() { return parameters; }
+
+        @Override
+        public String toString() {
+            return String.format("Slow query (%.1f ms%s) at %s: %s%s", getMillis(),
+                    rows >= 0 ? ", " + rows + " rows" : "", callSite, sql,
+                    parameters.isEmpty() ? "" : " [" + parameters + "]");
+        }
+    }
+
+    /**
+     * The statement handed to callers. Executions are timed and bind parameters remembered for the slow-query log.
+     */
+    private class StatementHandle implements InvocationHandler {
+        private final Statement statement;
+        private final String preparedSql;
+        private final Map<Integer, Object> parameters;
+        private String lastSql;
+        private int batched;
+        private ResultHandle openResult;
+
+        StatementHandle(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+            this.parameters = preparedSql != null ? new TreeMap<>() : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Profiled[" + statement + "]";
+                case "clearParameters":
+                    if (parameters != null) {
+                        parameters.clear();
+                    }
+                    break;
+                case "addBatch":
+                    batched++;
+                    break;
+                case "close":
+                    closeResult();
+                    break;
+                default:
+                    if (parameters != null && name.startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer) {
+                        parameters.put((Integer) args[0], args[1]);
+                    }
+                    break;
+            }
+            if (!name.startsWith("execute")) {
+                Object result = invokeTarget(method, args);
+                return name.equals("getResultSet") && result != null ? track((ResultSet) result) : result;
+            }
+
+            closeResult();
+            String sql = preparedSql != null ? preparedSql : args != null && args.length > 0 ? (String) args[0] : "";
+            lastSql = sql;
+            String callSite = callSite();
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invokeTarget(method, args);
+            } catch (Throwable e) {
+                record(sql, System.nanoTime() - start, -1, true, callSite, parameters, batched);
+                batched = 0;
+                throw e;
+            }
+            long nanos = System.nanoTime() - start;
+            long rows = -1;
+            if (result instanceof Integer || result instanceof Long) {
+                rows = ((Number) result).longValue();
+            } else if (result instanceof int[]) {
+                rows = sum((int[]) result);
+            } else if (result instanceof long[]) {
+                rows = sum((long[]) result);
+            }
+            record(sql, nanos, rows, false, callSite, parameters, batched);
+            batched = 0;
+            if (result instanceof ResultSet) {
+                return track((ResultSet) result);
+            }
+            return result;
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private ResultSet track(ResultSet rs) {
+            openResult = new ResultHandle(rs, lastSql);
+            return (ResultSet) Proxy.newProxyInstance(StatementProfiler.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class }, openResult);
+        }
+
+        private void closeResult() {
+            if (openResult != null) {
+                openResult.flush();
+                openResult = null;
+            }
+        }
+
+        private long sum(int[] counts) {
+            long total = 0;
+            for (int count : counts) {
+                total += Math.max(0, count);
+            }
+            return total;
+        }
+
+        private long sum(long[] counts) {
+            long total = 0;
+            for (long count : counts) {
+                total += Math.max(0, count);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The result set handed to callers. Counts the rows read and adds them to the statement once it is closed.
+     */
+    private class ResultHandle implements InvocationHandler {
+        private final ResultSet rs;
+        private final String sql;
+        private long rows;
+        private boolean flushed;
+
+        ResultHandle(ResultSet rs, String sql) {
+            this.rs = rs;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Profiled[" + rs + "]";
+                case "close":
+                    flush();
+                    break;
+                default:
+                    break;
+            }
+            Object result;
+            try {
+                result = method.invoke(rs, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                rows++;
+            }
+            return result;
+        }
+
+        void flush() {
+            if (!flushed && sql != null) {
+                addRows(sql, rows);
+            }
+            flushed = true;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package databasePart1;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The UserIdentityCache class remembers which id and role belong to each username, so the lookups
+ * that nearly every page makes are answered without a query. An identity can be found by username
+ * or by id. Usernames that do not exist are remembered too, until a user with that name registers.
+ *
+ * <p>Lookups never lock. When the cache holds more than its capacity, identities are evicted in
+ * clock order: each one gets a second chance if it was read since the clock last passed it.</p>
+ *
+ * <p>Writers call {@link #getVersion()} before querying and pass the version to
+ * {@link #put(Identity, long)}, so an identity read while another thread changed the user is not kept.</p>
+ */
+public class UserIdentityCache {
+
+    /** Number of identities kept when no capacity is configured. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * A user's id, username and role as stored in the cse360users table, or the absence of a user.
+     */
+    public static final class Identity {
+        private final int id;
+        private final String userName;
+        private final String role;
+
+        /**
+         * Constructs an identity.
+         *
+         * @param id       the user id, or -1 if there is no such user
+         * @param userName the username, or null if the user was looked up by an id that does not exist
+         * @param role     the user's role, or null if there is no such user
+         */
+        public Identity(int id, String userName, String role) {
+            this.id = id;
+            this.userName = userName;
+            this.role = role;
+        }
+
+        /**
+         * Creates the identity recorded for a username that has no user.
+         *
+         * @param userName the username
+         * @return the missing identity
+         */
+        public static Identity missingName(String userName) {
+            return new Identity(-1, userName, null);
+        }
+
+        /**
+         * Creates the identity recorded for an id that has no user.
+         *
+         * @param id the user id
+         * @return the missing identity
+         */
+        public static Identity missingId(int id) {
+            return new Identity(id, null, null);
+        }
+
+        /**
+         * Checks whether the user exists.
+         *
+         * @return true if the identity belongs to a stored user
+         */
+        public boolean exists() { return role != null; }
+
+        /**
+         * Gets the user id.
+         * @return the id, or -1 for a username that has no user
+         */
+        public int getId() { return id; }
+
+        /**
+         * Gets the username.
+         * @return the username, or null for an id that has no user
+         */
+        public String getUserName() { return userName; }
+
+        /**
+         * Gets the user's role.
+         * @return the role, or null if the user does not exist
+         */
+        public String getRole() { return role; }
+    }
+
+    /**
+     * One cached identity with the clock's reference flag.
+     */
+    private static final class Entry {
+        final Identity identity;
+        final AtomicBoolean removed = new AtomicBoolean();
+        volatile boolean referenced;
+
+        Entry(Identity identity) {
+            this.identity = identity;
+        }
+    }
+
+    private final int capacity;
+    private final ConcurrentMap<String, Entry> byName = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Entry> byId = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private final Object evictionLock = new Object();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    /**
+     * Constructs a cache holding up to {@link #DEFAULT_CAPACITY} identities.
+     */
+    public UserIdentityCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a cache holding up to {@code capacity} identities.
+     *
+     * @param capacity the maximum number of identities kept
+     */
+    public UserIdentityCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Looks up the identity of a username.
+     *
+     * @param userName the username
+     * @return the cached identity, or null if it has to be loaded
+     */
+    public Identity getByName(String userName) {
+        return hit(userName != null ? byName.get(userName) : null);
+    }
+
+    /**
+     * Looks up the identity of a user id.
+     *
+     * @param id the user id
+     * @return the cached identity, or null if it has to be loaded
+     */
+    public Identity getById(int id) {
+        return hit(byId.get(id));
+    }
+
+    private Identity hit(Entry entry) {
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        hitCount.increment();
+        return entry.identity;
+    }
+
+    /**
+     * Gets the current version, to be read before loading an identity from the database.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Caches a loaded identity under its username and id, unless a user was changed since
+     * {@code loadedAtVersion} was read.
+     *
+     * @param identity        the loaded identity
+     * @param loadedAtVersion the value of {@link #getVersion()} before the identity was loaded
+     */
+    public void put(Identity identity, long loadedAtVersion) {
+        if (version.get() != loadedAtVersion) {
+            return;
+        }
+        Entry entry = new Entry(identity);
+        if (identity.getUserName() != null) {
+            replace(byName.put(identity.getUserName(), entry), entry);
+        }
+        if (identity.getId() != -1) {
+            replace(byId.put(identity.getId(), entry), entry);
+        }
+        clock.add(entry);
+        size.incrementAndGet();
+        // A user changed while this entry was being added; the change may have missed it.
+        if (version.get() != loadedAtVersion) {
+            remove(entry);
+        }
+        if (size.get() > capacity) {
+            evict();
+        }
+    }
+
+    private void replace(Entry previous, Entry entry) {
+        if (previous != null && previous != entry) {
+            remove(previous);
+        }
+    }
+
+    /**
+     * Drops a username, e.g. because a user with that name registered.
+     *
+     * @param userName the username
+     */
+    public void invalidateName(String userName) {
+        version.incrementAndGet();
+        Entry entry = userName != null ? byName.get(userName) : null;
+        if (entry != null && remove(entry)) {
+            invalidationCount.increment();
+        }
+    }
+
+    /**
+     * Drops a user id, e.g. because the user's role changed or the user was removed.
+     *
+     * @param id the user id
+     */
+    public void invalidateId(int id) {
+        version.incrementAndGet();
+        Entry entry = byId.get(id);
+        if (entry != null && remove(entry)) {
+            invalidationCount.increment();
+        }
+    }
+
+    /**
+     * Drops every identity.
+     */
+    public void invalidateAll() {
+        version.incrementAndGet();
+        for (Entry entry : byName.values()) {
+            remove(entry);
+        }
+        for (Entry entry : byId.values()) {
+            remove(entry);
+        }
+        invalidationCount.increment();
+    }
+
+    // Removes an entry from both indexes. Returns false if it was already removed.
+    private boolean remove(Entry entry) {
+        if (!entry.removed.compareAndSet(false, true)) {
+            return false;
+        }
+        Identity identity = entry.identity;
+        if (identity.getUserName() != null) {
+            byName.remove(identity.getUserName(), entry);
+        }
+        if (identity.getId() != -1) {
+            byId.remove(identity.getId(), entry);
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Moves the clock hand until the cache is back within its capacity.
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            while (size.get() > capacity) {
+                Entry entry = clock.poll();
+                if (entry == null) {
+                    return;
+                }
+                if (entry.removed.get()) {
+                    continue;
+                }
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    clock.add(entry);
+                } else if (remove(entry)) {
+                    evictionCount.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the maximum number of identities kept.
+     * @return the capacity
+     */
+    public int getCapacity() { return capacity; }
+
+    /**
+     * Gets the number of identities currently cached.
+     * @return the cached identity count
+     */
+    public int getSize() { return size.get(); }
+
+    /**
+     * Gets the number of lookups answered from the cache.
+     * @return the hit count
+     */
+    public long getHitCount() { return hitCount.sum(); }
+
+    /**
+     * Gets the number of lookups that had to query the database.
+     * @return the miss count
+     */
+    public long getMissCount() { return missCount.sum(); }
+
+    /**
+     * Gets the number of identities dropped to stay within the capacity.
+     * @return the eviction count
+     */
+    public long getEvictionCount() { return evictionCount.sum(); }
+
+    /**
+     * Gets the number of identities dropped because their user changed.
+     * @return the invalidation count
+     */
+    public long getInvalidationCount() { return invalidationCount.sum(); }
+
+    /**
+     * Gets the share of lookups answered from the cache.
+     * @return the hit rate between 0 and 1, or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,704 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The WriteBehindCounters class buffers increments of hot counter columns, such as the like count
+ * of a reply, so that many users changing the same counter do not queue up on its row lock.
+ * Each (counter, row) pair has a {@link LongAdder} that threads add to without locking, and the
+ * summed deltas are written in one batched transaction a short time later.
+ *
+ * <p>A flush is scheduled {@link #DEFAULT_FLUSH_INTERVAL_MILLIS} after the first unflushed change,
+ * or started at once when {@link #DEFAULT_FLUSH_THRESHOLD} changes are waiting. A flush always runs
+ * in a transaction of its own, so it never commits or rolls back with work of the calling thread.
+ * Readers add the changes that are still pending to the values they read, through a {@link Snapshot},
+ * so users see their own changes right away. Queries that sort or filter on a counter see the value
+ * of the last flush, at most one flush interval old.</p>
+ *
+ * <p>Pending changes are written when the pool is closed and when the JVM shuts down normally.
+ * A counter that is derived from other rows, such as likes from the rows of a likes table, is
+ * given the query that counts them with {@link Counter#countedBy(String)}. {@link #reconcile(Counter)}
+ * records each running instance as an owner of the counter in the CounterOwners table and recounts
+ * it at startup when an earlier owner stopped without writing its changes, so changes lost when a
+ * process was killed are repaired from the rows themselves.</p>
+ *
+ * <p>Several processes can share one database file. A running owner refreshes its row every
+ * {@link #OWNER_HEARTBEAT_MILLIS}; one not seen for {@link #OWNER_TIMEOUT_MILLIS} is taken to have
+ * stopped. A recount while another owner is running could count its pending changes twice, so it is
+ * put off until a startup finds no running owner. The limits: changes lost by a killed process stay
+ * lost until such a startup, and so does a counter of a process restarted within the timeout of its
+ * own crash. A process paused for longer than the timeout can have its pending changes counted twice.</p>
+ *
+ * <p>Handlers share one instance per pool through {@link #forPool(ConnectionPool)}. A pool that wraps
+ * a single connection is shared by every thread, so flushing it in the background is not safe. For
+ * such pools each change is written at once by the calling thread.</p>
+ */
+public class WriteBehindCounters implements AutoCloseable {
+
+    /** Milliseconds a change may wait before it is written when no interval is configured. */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 500;
+
+    /** Number of waiting changes that starts a flush at once when no threshold is configured. */
+    public static final int DEFAULT_FLUSH_THRESHOLD = 1000;
+
+    /** Milliseconds between the refreshes of a running instance's CounterOwners rows. */
+    public static final long OWNER_HEARTBEAT_MILLIS = 5000;
+
+    /** Milliseconds after its last refresh that an owner is taken to have stopped. */
+    public static final long OWNER_TIMEOUT_MILLIS = 30000;
+
+    // One daemon thread writes the changes of every instance.
+    private static final ScheduledExecutorService FLUSHER = createFlusher();
+
+    // Instances that still have to be flushed when the JVM shuts down.
+    private static final Set<WriteBehindCounters> LIVE =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    // The instance of each open pool, removed when the pool is closed.
+    private static final Map<ConnectionPool, WriteBehindCounters> SHARED = new HashMap<>();
+
+    // One row per derived counter and instance that may hold unwritten changes of it, deleted when the
+    // instance closes cleanly. A row with an empty owner marks a counter that has been counted before.
+    private static final String CREATE_OWNER_TABLE = "CREATE TABLE IF NOT EXISTS CounterOwners ("
+            + "counterName VARCHAR(255) NOT NULL, "
+            + "owner VARCHAR(36) NOT NULL, "
+            + "seenAt TIMESTAMP NOT NULL, "
+            + "PRIMARY KEY (counterName, owner))";
+    private static final String STALE = "seenAt < DATEADD(MILLISECOND, -" + OWNER_TIMEOUT_MILLIS + ", LOCALTIMESTAMP)";
+    private static final String SELECT_OWNERS = "SELECT owner, " + STALE + " AS stale FROM CounterOwners WHERE counterName = ?";
+    private static final String DELETE_STALE_OWNERS = "DELETE FROM CounterOwners WHERE counterName = ? AND owner <> '' AND " + STALE;
+    private static final String MERGE_OWNER = "MERGE INTO CounterOwners (counterName, owner, seenAt) KEY (counterName, owner) "
+            + "VALUES (?, ?, LOCALTIMESTAMP)";
+    private static final String TOUCH_OWNER = "UPDATE CounterOwners SET seenAt = LOCALTIMESTAMP WHERE owner = ?";
+    private static final String DELETE_OWNER = "DELETE FROM CounterOwners WHERE owner = ?";
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(WriteBehindCounters::flushAll, "counter-shutdown-flush"));
+    }
+
+    /**
+     * One counter column, identified by its table, key column and value column. A counter can also
+     * name a timestamp column that is moved forward whenever the counter is incremented.
+     */
+    public static final class Counter {
+        private final String table;
+        private final String keyColumn;
+        private final String valueColumn;
+        private final String activityColumn;
+        private final String countQuery;
+        private final String updateSql;
+
+        /**
+         * Constructs a counter.
+         *
+         * @param table       the table holding the counter
+         * @param keyColumn   the integer primary key column of the table
+         * @param valueColumn the counter column
+         */
+        public Counter(String table, String keyColumn, String valueColumn) {
+            this(table, keyColumn, valueColumn, null);
+        }
+
+        /**
+         * Constructs a counter that also records when it was last incremented.
+         *
+         * @param table          the table holding the counter
+         * @param keyColumn      the integer primary key column of the table
+         * @param valueColumn    the counter column
+         * @param activityColumn the timestamp column set when the counter is incremented, or null
+         */
+        public Counter(String table, String keyColumn, String valueColumn, String activityColumn) {
+            this(table, keyColumn, valueColumn, activityColumn, null);
+        }
+
+        private Counter(String table, String keyColumn, String valueColumn, String activityColumn, String countQuery) {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.valueColumn = valueColumn;
+            this.activityColumn = activityColumn;
+            this.countQuery = countQuery;
+            // The time is bound twice and is NULL when the counter was only decremented, keeping the old value.
+            this.updateSql = "UPDATE " + table + " SET " + valueColumn + " = COALESCE(" + valueColumn + ", 0) + ?"
+                    + (activityColumn != null ? ", " + activityColumn + " = COALESCE(GREATEST(" + activityColumn
+                            + ", ?), " + activityColumn + ", ?)" : "")
+                    + " WHERE " + keyColumn + " = ?";
+        }
+
+        /**
+         * Returns this counter with the query that counts its true value from the rows it is derived
+         * from, for example {@code SELECT COUNT(*) FROM ReplyLikes L WHERE L.replyId = Replies.replyId}.
+         * The query refers to the counter's row by the name of its table.
+         *
+         * @param countQuery a scalar query giving the counter's value for one row
+         * @return a counter that {@link WriteBehindCounters#reconcile(Counter)} can recount
+         */
+        public Counter countedBy(String countQuery) {
+            return new Counter(table, keyColumn, valueColumn, activityColumn, countQuery);
+        }
+
+        // The key of the counter in the CounterOwners table.
+        private String name() {
+            return table + "." + valueColumn;
+        }
+
+        @Override
+        public String toString() {
+            return updateSql;
+        }
+    }
+
+    /**
+     * The unflushed changes of one row's counter.
+     */
+    private static final class Cell {
+        final LongAdder delta = new LongAdder();
+        final LongAccumulator touchedAt = new LongAccumulator(Math::max, 0);
+        // Only read and written while holding the flush lock.
+        long flushedTouch;
+    }
+
+    /**
+     * A change taken from a cell by a flush, subtracted once it is committed.
+     */
+    private static final class Taken {
+        final int id;
+        final Cell cell;
+        final long delta;
+        final long touchedAt;
+
+        Taken(int id, Cell cell, long delta, long touchedAt) {
+            this.id = id;
+            this.cell = cell;
+            this.delta = delta;
+            this.touchedAt = touchedAt;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final long flushIntervalMillis;
+    private final int flushThreshold;
+    private final boolean inline;
+    // Identifies this instance in the CounterOwners table.
+    private final String owner = UUID.randomUUID().toString();
+
+    // Cells are kept once created: one small object per row whose counter was ever changed.
+    private final ConcurrentMap<Counter, ConcurrentMap<Integer, Cell>> cells = new ConcurrentHashMap<>();
+    private final LongAdder pendingChanges = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean flushStarted = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    // Counters this instance is an owner of, released once everything is written. Guarded by flushLock.
+    private final Set<Counter> reconciled = new LinkedHashSet<>();
+    // Refreshes the owner rows while the instance runs. Guarded by flushLock.
+    private ScheduledFuture<?> heartbeat;
+    // Readers hold the read lock while adding pending changes to stored values; a flush takes the
+    // write lock to commit and subtract what it wrote, so a change is never counted twice.
+    private final ReadWriteLock visibility = new ReentrantReadWriteLock();
+
+    private volatile boolean closed;
+
+    /**
+     * Constructs counters that are written through the given pool with the default interval and threshold.
+     *
+     * @param pool the pool to borrow connections from
+     */
+    public WriteBehindCounters(ConnectionPool pool) {
+        this(pool, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    /**
+     * Constructs counters that are written through the given pool.
+     *
+     * @param pool                the pool to borrow connections from
+     * @param flushIntervalMillis the longest a change waits before it is written
+     * @param flushThreshold      the number of waiting changes that starts a flush at once
+     */
+    public WriteBehindCounters(ConnectionPool pool, long flushIntervalMillis, int flushThreshold) {
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Flush interval cannot be negative");
+        }
+        if (flushThreshold < 1) {
+            throw new IllegalArgumentException("Flush threshold must be at least 1");
+        }
+        this.pool = pool;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flushThreshold = flushThreshold;
+        this.inline = pool.isSingleConnection();
+        LIVE.add(this);
+        pool.addCloseHook(this::close);
+    }
+
+    /**
+     * Gets the counters shared by everything that writes through the given pool, so that a change made
+     * by one handler is seen by the others and each derived counter is reconciled once. A pool that
+     * wraps a single connection writes every change at once and gets an instance of its own.
+     *
+     * @param pool the pool to borrow connections from
+     * @return the pool's counters
+     */
+    public static WriteBehindCounters forPool(ConnectionPool pool) {
+        if (pool.isSingleConnection()) {
+            return new WriteBehindCounters(pool);
+        }
+        synchronized (SHARED) {
+            return SHARED.computeIfAbsent(pool, WriteBehindCounters::new);
+        }
+    }
+
+    private static ScheduledExecutorService createFlusher() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "counter-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static void flushAll() {
+        List<WriteBehindCounters> live;
+        synchronized (LIVE) {
+            live = new ArrayList<>(LIVE);
+        }
+        for (WriteBehindCounters counters : live) {
+            // A closed pool already flushed its counters when it was closed.
+            if (!counters.pool.isClosed()) {
+                counters.close();
+            }
+        }
+    }
+
+    /**
+     * Adds to a row's counter. The change is visible through {@link #snapshot()} at once and is written
+     * to the database by a later flush. Call it after the transaction that caused the change has committed.
+     *
+     * @param counter the counter to change
+     * @param id      the key of the row
+     * @param delta   the amount to add, negative to subtract
+     */
+    public void add(Counter counter, int id, long delta) {
+        Cell cell = cells.computeIfAbsent(counter, c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(id, key -> new Cell());
+        cell.delta.add(delta);
+        if (delta > 0 && counter.activityColumn != null) {
+            cell.touchedAt.accumulate(System.currentTimeMillis());
+        }
+        pendingChanges.increment();
+
+        if (inline || closed) {
+            flushQuietly();
+        } else if (pendingChanges.sum() >= flushThreshold) {
+            if (flushStarted.compareAndSet(false, true)) {
+                FLUSHER.execute(this::scheduledFlush);
+            }
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            FLUSHER.schedule(this::scheduledFlush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scheduledFlush() {
+        // Cleared first so changes made during this flush schedule the next one.
+        flushScheduled.set(false);
+        flushStarted.set(false);
+        if (!pool.isClosed()) {
+            flushQuietly();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            // The changes stay pending and are retried by the next flush.
+            System.err.println("Error writing counters: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every pending change in a transaction of its own, on a connection other than the one the
+     * calling thread may hold, so a rollback of the caller's work cannot undo counts that were already
+     * taken off the pending changes. Do not call it while holding a {@link Snapshot}.
+     *
+     * @return the number of rows whose counters were written
+     * @throws SQLException if the changes could not be written; they stay pending
+     */
+    public int flush() throws SQLException {
+        synchronized (flushLock) {
+            long changes = pendingChanges.sum();
+            Map<Counter, List<Taken>> batch = take();
+            if (batch.isEmpty()) {
+                pendingChanges.add(-changes);
+                return 0;
+            }
+
+            int rows = 0;
+            // A single-connection pool has no other connection; its changes are written right after
+            // the caller's commit, outside any transaction.
+            try (Connection connection = inline ? pool.getConnection() : pool.getSeparateConnection()) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    for (Map.Entry<Counter, List<Taken>> entry : batch.entrySet()) {
+                        Counter counter = entry.getKey();
+                        try (PreparedStatement pstmt = connection.prepareStatement(counter.updateSql)) {
+                            for (Taken taken : entry.getValue()) {
+                                int index = 1;
+                                pstmt.setLong(index++, taken.delta);
+                                if (counter.activityColumn != null) {
+                                    Timestamp touched = taken.touchedAt > taken.cell.flushedTouch
+                                            ? new Timestamp(taken.touchedAt) : null;
+                                    pstmt.setTimestamp(index++, touched);
+                                    pstmt.setTimestamp(index++, touched);
+                                }
+                                pstmt.setInt(index, taken.id);
+                                pstmt.addBatch();
+                                rows++;
+                            }
+                            pstmt.executeBatch();
+                        }
+                    }
+                    visibility.writeLock().lock();
+                    try {
+                        if (autoCommit) {
+                            connection.commit();
+                        }
+                        for (List<Taken> taken : batch.values()) {
+                            for (Taken change : taken) {
+                                change.cell.delta.add(-change.delta);
+                                change.cell.flushedTouch = Math.max(change.cell.flushedTouch, change.touchedAt);
+                            }
+                        }
+                    } finally {
+                        visibility.writeLock().unlock();
+                    }
+                } catch (SQLException e) {
+                    if (autoCommit) {
+                        connection.rollback();
+                    }
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+            pendingChanges.add(-changes);
+            flushCount.increment();
+            return rows;
+        }
+    }
+
+    /**
+     * Records this instance as an owner of a derived counter until {@link #close()} writes its changes,
+     * and recounts the counter from its rows if it was never counted or an earlier owner stopped
+     * without writing its changes, unless another owner is still running. Call it at startup, after
+     * the tables exist and before the counter is changed: a change made while it runs may be counted
+     * twice. Each counter is only reconciled once per instance; a single-connection pool writes every
+     * change at once and is never reconciled.
+     *
+     * @param counter a counter given its query with {@link Counter#countedBy(String)}
+     * @return true if the counter was recounted
+     * @throws SQLException if the counter could not be recounted
+     */
+    public boolean reconcile(Counter counter) throws SQLException {
+        if (counter.countQuery == null) {
+            throw new IllegalArgumentException("Counter has no count query: " + counter.name());
+        }
+        if (inline) {
+            return false;
+        }
+        synchronized (flushLock) {
+            if (reconciled.contains(counter)) {
+                return false;
+            }
+            boolean recount;
+            try (Connection connection = pool.getSeparateConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    try (Statement stmt = connection.createStatement()) {
+                        stmt.execute(CREATE_OWNER_TABLE);
+                    }
+                    boolean counted = false;
+                    boolean abandoned = false;
+                    boolean running = false;
+                    try (PreparedStatement pstmt = connection.prepareStatement(SELECT_OWNERS)) {
+                        pstmt.setString(1, counter.name());
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (rs.next()) {
+                                if (rs.getString("owner").isEmpty()) {
+                                    counted = true;
+                                } else if (rs.getBoolean("stale")) {
+                                    abandoned = true;
+                                } else {
+                                    running = true;
+                                }
+                            }
+                        }
+                    }
+                    // A running owner's pending changes are already in the rows it counts, so recounting
+                    // now would count them twice; stopped owners are left for a later startup.
+                    recount = (!counted || abandoned) && !running;
+                    if (recount) {
+                        String sql = "UPDATE " + counter.table + " SET " + counter.valueColumn + " = ("
+                                + counter.countQuery + ") WHERE COALESCE(" + counter.valueColumn + ", -1) <> ("
+                                + counter.countQuery + ")";
+                        try (Statement stmt = connection.createStatement()) {
+                            stmt.executeUpdate(sql);
+                        }
+                        try (PreparedStatement pstmt = connection.prepareStatement(DELETE_STALE_OWNERS)) {
+                            pstmt.setString(1, counter.name());
+                            pstmt.executeUpdate();
+                        }
+                        mergeOwner(connection, counter, "");
+                    }
+                    mergeOwner(connection, counter, owner);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+            reconciled.add(counter);
+            if (heartbeat == null) {
+                heartbeat = FLUSHER.scheduleWithFixedDelay(this::touchOwner, OWNER_HEARTBEAT_MILLIS,
+                        OWNER_HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return recount;
+        }
+    }
+
+    private static void mergeOwner(Connection connection, Counter counter, String owner) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(MERGE_OWNER)) {
+            pstmt.setString(1, counter.name());
+            pstmt.setString(2, owner);
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Shows other processes that this instance is still running.
+    private void touchOwner() {
+        if (pool.isClosed()) {
+            return;
+        }
+        try (Connection connection = pool.getSeparateConnection();
+             PreparedStatement pstmt = connection.prepareStatement(TOUCH_OWNER)) {
+            pstmt.setString(1, owner);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Error refreshing counter owner: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Collects the cells that have something to write, grouped by counter.
+     */
+    private Map<Counter, List<Taken>> take() {
+        Map<Counter, List<Taken>> batch = new LinkedHashMap<>();
+        for (Map.Entry<Counter, ConcurrentMap<Integer, Cell>> counter : cells.entrySet()) {
+            for (Map.Entry<Integer, Cell> row : counter.getValue().entrySet()) {
+                Cell cell = row.getValue();
+                // Never reset the adder here: a concurrent add would be lost. The sum is subtracted after the commit.
+                long delta = cell.delta.sum();
+                long touchedAt = cell.touchedAt.get();
+                if (delta != 0 || touchedAt > cell.flushedTouch) {
+                    batch.computeIfAbsent(counter.getKey(), c -> new ArrayList<>())
+                            .add(new Taken(row.getKey(), cell, delta, touchedAt));
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Starts reading stored counter values. While the snapshot is open no flush can commit, so adding
+     * {@link Snapshot#pending} to a value read from the database counts every change exactly once.
+     * Close the snapshot on the thread that opened it and do not flush while it is open.
+     *
+     * @return the open snapshot
+     */
+    public Snapshot snapshot() {
+        visibility.readLock().lock();
+        return new Snapshot();
+    }
+
+    /**
+     * A view of the pending changes that keeps flushes from committing until it is closed.
+     */
+    public final class Snapshot implements AutoCloseable {
+        private boolean open = true;
+
+        private Snapshot() {
+        }
+
+        /**
+         * Gets the change to a row's counter that has not been written yet.
+         *
+         * @param counter the counter
+         * @param id      the key of the row
+         * @return the amount to add to the stored value
+         */
+        public long pending(Counter counter, int id) {
+            ConcurrentMap<Integer, Cell> rows = cells.get(counter);
+            Cell cell = rows != null ? rows.get(id) : null;
+            return cell != null ? cell.delta.sum() : 0;
+        }
+
+        /**
+         * Gets the changes to a counter that have not been written yet, for queries that sort or filter
+         * on it and so have to apply them in the database.
+         *
+         * @param counter the counter
+         * @return the amount to add to the stored value of each row with a pending change
+         */
+        public Map<Integer, Long> pending(Counter counter) {
+            Map<Integer, Long> changes = new HashMap<>();
+            ConcurrentMap<Integer, Cell> rows = cells.get(counter);
+            if (rows != null) {
+                for (Map.Entry<Integer, Cell> row : rows.entrySet()) {
+                    long delta = row.getValue().delta.sum();
+                    if (delta != 0) {
+                        changes.put(row.getKey(), delta);
+                    }
+                }
+            }
+            return changes;
+        }
+
+        /**
+         * Copies a result set into memory like {@link ConnectionPool#detach(ResultSet)}, adding the pending
+         * changes of the given counters to their columns. Counters whose key or value column is not in
+         * the rows are left out. The given result set is closed.
+         *
+         * @param rs       the result set to copy, read while this snapshot is open
+         * @param counters the counters whose columns are in the rows
+         * @return a disconnected copy of the rows with the counters brought up to date
+         * @throws SQLException if the rows cannot be read
+         */
+        public ResultSet detach(ResultSet rs, Counter... counters) throws SQLException {
+            ResultSet copy = ConnectionPool.detach(rs);
+            List<Counter> present = new ArrayList<>();
+            ResultSetMetaData meta = copy.getMetaData();
+            for (Counter counter : counters) {
+                ConcurrentMap<Integer, Cell> rows = cells.get(counter);
+                if (rows != null && !rows.isEmpty() && hasColumn(meta, counter.keyColumn)
+                        && hasColumn(meta, counter.valueColumn)) {
+                    present.add(counter);
+                }
+            }
+            if (present.isEmpty()) {
+                return copy;
+            }
+            while (copy.next()) {
+                boolean changed = false;
+                for (Counter counter : present) {
+                    long delta = pending(counter, copy.getInt(counter.keyColumn));
+                    if (delta != 0) {
+                        copy.updateLong(counter.valueColumn, copy.getLong(counter.valueColumn) + delta);
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    copy.updateRow();
+                }
+            }
+            copy.beforeFirst();
+            return copy;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                visibility.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of changes that have not been written yet.
+     *
+     * @return the pending change count
+     */
+    public long getPendingCount() {
+        return pendingChanges.sum();
+    }
+
+    /**
+     * Gets the number of flushes that wrote at least one row.
+     *
+     * @return the flush count
+     */
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    private static boolean hasColumn(ResultSetMetaData meta, String column) throws SQLException {
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            if (meta.getColumnLabel(i).equalsIgnoreCase(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes every pending change and, if nothing is left pending, removes this instance as an owner of
+     * the reconciled counters so a later startup does not recount them. Later changes are written at
+     * once by the calling thread. The pool closes its counters before it closes its connections.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (SHARED) {
+            SHARED.remove(pool, this);
+        }
+        try {
+            synchronized (flushLock) {
+                if (heartbeat != null) {
+                    heartbeat.cancel(false);
+                }
+                flush();
+                if (!reconciled.isEmpty() && getPendingCount() == 0) {
+                    try (Connection connection = pool.getSeparateConnection();
+                         PreparedStatement pstmt = connection.prepareStatement(DELETE_OWNER)) {
+                        pstmt.setString(1, owner);
+                        pstmt.executeUpdate();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            // The owner rows stay, so the counters are recounted once they time out.
+            System.err.println("Error writing counters: " + e.getMessage());
+        }
+        LIVE.remove(this);
+    }
+}